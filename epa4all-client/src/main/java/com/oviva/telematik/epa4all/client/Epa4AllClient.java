@@ -3,7 +3,9 @@ package com.oviva.telematik.epa4all.client;
 import de.gematik.epa.ihe.model.document.Document;
 import de.gematik.epa.ihe.model.simple.AuthorInstitution;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public interface Epa4AllClient {
 
@@ -22,6 +24,41 @@ public interface Epa4AllClient {
   @NonNull
   WriteDocumentResponse writeDocument(@NonNull String insurantId, @NonNull Document document);
 
+  /**
+   * write a document to an insurants electronic health record
+   *
+   * @param insurantId the KVNR of the insurant (patient)
+   * @param document the document to write into the electronic health record
+   * @param bypassDeduplication upload even if the same document was written before
+   */
+  @NonNull
+  WriteDocumentResponse writeDocument(
+      @NonNull String insurantId, @NonNull Document document, boolean bypassDeduplication);
+
+  /**
+   * asynchronous variant of {@link #writeDocument(String, Document)}, the calling thread is not
+   * blocked by the account lookup, authorization and upload
+   *
+   * @param insurantId the KVNR of the insurant (patient)
+   * @param document the document to write into the electronic health record
+   * @return completes with the response or exceptionally with the failure
+   */
+  @NonNull
+  CompletableFuture<WriteDocumentResponse> writeDocumentAsync(
+      @NonNull String insurantId, @NonNull Document document);
+
+  /**
+   * write many documents to an insurants electronic health record, the documents are submitted in
+   * as few requests as the configured batch limits allow
+   *
+   * @param insurantId the KVNR of the insurant (patient)
+   * @param documents the documents to write into the electronic health record
+   * @return the outcome for each document, rejected documents do not fail the whole call
+   */
+  @NonNull
+  WriteDocumentsResponse writeDocuments(
+      @NonNull String insurantId, @NonNull List<Document> documents);
+
   /**
    * replace a document in an insurants electronic health record
    *
@@ -32,4 +69,16 @@ public interface Epa4AllClient {
   @NonNull
   WriteDocumentResponse replaceDocument(
       @NonNull String insurantId, @NonNull Document document, @NonNull UUID documentToReplaceId);
+
+  /**
+   * asynchronous variant of {@link #replaceDocument(String, Document, UUID)}
+   *
+   * @param insurantId the KVNR of the insurant (patient)
+   * @param document the document to write into the electronic health record
+   * @param documentToReplaceId the ID of the document to replace
+   * @return completes with the response or exceptionally with the failure
+   */
+  @NonNull
+  CompletableFuture<WriteDocumentResponse> replaceDocumentAsync(
+      @NonNull String insurantId, @NonNull Document document, @NonNull UUID documentToReplaceId);
 }
@@ -1,3 +1,13 @@
 package com.oviva.telematik.epa4all.client;
 
-public record WriteDocumentResponse(String requestId) {}
+/**
+ * @param requestId the request ID of the write
+ * @param deduplicated true if the same document was written before and the upload was skipped, the
+ *     request ID is the one of the earlier write
+ */
+public record WriteDocumentResponse(String requestId, boolean deduplicated) {
+
+  public WriteDocumentResponse(String requestId) {
+    this(requestId, false);
+  }
+}
@@ -0,0 +1,44 @@
+package com.oviva.telematik.epa4all.client;
+
+import java.util.List;
+
+/**
+ * @param results one result per document, in the order the documents were passed
+ */
+public record WriteDocumentsResponse(List<DocumentResult> results) {
+
+  public boolean isSuccess() {
+    return results.stream().allMatch(r -> r.status() == Status.WRITTEN);
+  }
+
+  public enum Status {
+    WRITTEN,
+    /** the document itself was rejected, see errors */
+    REJECTED,
+    /**
+     * the document was valid but not stored because another document in the same submission was
+     * rejected, it can be written again as is. Also reported if the submission failed without an
+     * answer of the ePA, e.g. a transport or authorization error, then the cause is set.
+     */
+    NOT_WRITTEN
+  }
+
+  /**
+   * @param index the position of the document in the request
+   * @param requestId the request ID of the submission containing the document, null unless written
+   * @param errors the errors reported for the document or its submission, empty if written
+   * @param cause the failure that prevented the submission, null if the ePA answered
+   */
+  public record DocumentResult(
+      int index,
+      Status status,
+      String requestId,
+      List<WriteDocumentException.Error> errors,
+      Throwable cause) {
+
+    public DocumentResult(
+        int index, Status status, String requestId, List<WriteDocumentException.Error> errors) {
+      this(index, status, requestId, errors, null);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which VAU sessions were already authorised with the SMC-B, so that subsequent calls can
+ * skip the full authorization flow.
+ *
+ * <p>The VAU proxy keeps one tunnel per endpoint and insurant, an authorization is therefore only
+ * valid for that exact tunnel. The server side session expires after a period of inactivity, the
+ * cache mirrors that by expiring entries that were not used within the TTL.
+ */
+public class AuthorizedSessionCache {
+
+  /** the ePA user session expires after 20 minutes of inactivity */
+  public static final Duration DEFAULT_TTL = Duration.ofMinutes(20);
+
+  private final Clock clock;
+  private final Duration ttl;
+
+  private final ConcurrentHashMap<Key, Instant> lastUsed = new ConcurrentHashMap<>();
+
+  public AuthorizedSessionCache(Clock clock, Duration ttl) {
+    this.clock = clock;
+    this.ttl = ttl;
+  }
+
+  /**
+   * Checks whether the session is authorised and not yet expired, also extends its lifetime on
+   * success.
+   */
+  public boolean isAuthorized(Key key) {
+    var now = clock.instant();
+    var used = lastUsed.computeIfPresent(key, (k, last) -> isExpired(last, now) ? null : now);
+    return used != null;
+  }
+
+  public void authorized(Key key) {
+    lastUsed.put(key, clock.instant());
+  }
+
+  public void invalidate(Key key) {
+    lastUsed.remove(key);
+  }
+
+  public int size() {
+    return lastUsed.size();
+  }
+
+  private boolean isExpired(Instant lastUsed, Instant now) {
+    return !lastUsed.plus(ttl).isAfter(now);
+  }
+
+  public record Key(URI endpoint, String telematikId, String insurantId) {}
+}
@@ -0,0 +1,24 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+/**
+ * Upper bounds for a single submission when writing many documents, larger batches are split into
+ * several submissions.
+ *
+ * @param maxDocuments max. number of documents per submission
+ * @param maxBytes max. sum of the document sizes per submission, a single larger document is still
+ *     submitted on its own
+ */
+public record BatchLimits(int maxDocuments, long maxBytes) {
+
+  // ePA limits a single document to 25 MiB, the whole request is bounded by the VAU proxy
+  public static final BatchLimits DEFAULT = new BatchLimits(20, 25L * 1024 * 1024);
+
+  public BatchLimits {
+    if (maxDocuments <= 0) {
+      throw new IllegalArgumentException("invalid max documents: %d".formatted(maxDocuments));
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("invalid max bytes: %d".formatted(maxBytes));
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import com.oviva.telematik.epa4all.client.ClientException;
+import com.oviva.telematik.epa4all.client.Epa4AllClient;
+import com.oviva.telematik.vau.epa4all.client.info.InformationService;
+import de.gematik.epa.ihe.model.document.Document;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes documents for many insurants in parallel. Jobs are routed to the provider holding the
+ * account of the insurant and the number of concurrent uploads per provider is bounded. Jobs of the
+ * same insurant run one after the other, they share the authorised VAU session of the client.
+ */
+public class BulkWriteEngine {
+
+  private static final Logger log = LoggerFactory.getLogger(BulkWriteEngine.class);
+
+  private final Epa4AllClient client;
+  private final InformationService informationService;
+  private final Options options;
+  private final Clock clock;
+
+  // serialises jobs of the same insurant, only insurants with jobs running have a lock
+  private final Map<String, InsurantLock> insurantLocks = new ConcurrentHashMap<>();
+  private final Map<URI, Semaphore> providerPermits = new ConcurrentHashMap<>();
+
+  public BulkWriteEngine(
+      Epa4AllClient client, InformationService informationService, Options options) {
+    this(client, informationService, options, Clock.systemUTC());
+  }
+
+  BulkWriteEngine(
+      Epa4AllClient client, InformationService informationService, Options options, Clock clock) {
+    this.client = client;
+    this.informationService = informationService;
+    this.options = options;
+    this.clock = clock;
+  }
+
+  /**
+   * @param concurrencyPerProvider max. concurrent uploads to each provider
+   * @param maxInFlight max. jobs started but not yet finished, bounds memory for huge streams
+   * @param failurePolicy decides what happens with failed jobs
+   */
+  public record Options(int concurrencyPerProvider, int maxInFlight, FailurePolicy failurePolicy) {
+
+    public Options {
+      if (concurrencyPerProvider <= 0) {
+        throw new IllegalArgumentException(
+            "invalid concurrency per provider: %d".formatted(concurrencyPerProvider));
+      }
+      if (maxInFlight <= 0) {
+        throw new IllegalArgumentException("invalid max in flight: %d".formatted(maxInFlight));
+      }
+      if (failurePolicy == null) {
+        throw new IllegalArgumentException("failure policy missing");
+      }
+    }
+
+    public static Options defaults() {
+      return new Options(4, 64, FailurePolicy.retry(3, Duration.ofSeconds(1)));
+    }
+
+    public Options withFailurePolicy(FailurePolicy failurePolicy) {
+      return new Options(concurrencyPerProvider, maxInFlight, failurePolicy);
+    }
+  }
+
+  public record Job(String insurantId, Document document) {}
+
+  public enum Status {
+    WRITTEN,
+    /** no provider has an account for the insurant */
+    NO_ACCOUNT,
+    FAILED,
+    /** not attempted, the run was cancelled or aborted */
+    SKIPPED
+  }
+
+  /**
+   * @param requestId the request ID of the upload, null unless written
+   * @param error the last failure, null unless failed
+   */
+  public record Result(Job job, Status status, String requestId, Throwable error) {}
+
+  public record Progress(
+      long submitted,
+      long written,
+      long noAccount,
+      long failed,
+      long skipped,
+      long retries,
+      int inFlight,
+      Duration elapsed) {}
+
+  /** Decides how to continue after a job failed. */
+  @FunctionalInterface
+  public interface FailurePolicy {
+
+    Decision onFailure(Job job, Throwable error, int attempt);
+
+    enum Decision {
+      RETRY,
+      /** report the job as failed and continue with the others */
+      SKIP,
+      /** report the job as failed and stop the whole run */
+      ABORT
+    }
+
+    static FailurePolicy skip() {
+      return (job, error, attempt) -> Decision.SKIP;
+    }
+
+    static FailurePolicy abort() {
+      return (job, error, attempt) -> Decision.ABORT;
+    }
+
+    /**
+     * Retries unexpected failures, e.g. transport errors, up to the given number of attempts.
+     * Documents rejected by the ePA are not retried, they would be rejected again.
+     */
+    static FailurePolicy retry(int maxAttempts, Duration backoff) {
+      return new FailurePolicy() {
+        @Override
+        public Decision onFailure(Job job, Throwable error, int attempt) {
+          var rejected =
+              error instanceof ClientException
+                  || error instanceof com.oviva.telematik.epaapi.WriteDocumentException;
+          if (rejected || attempt >= maxAttempts) {
+            return Decision.SKIP;
+          }
+          return Decision.RETRY;
+        }
+
+        @Override
+        public Duration backoff(int attempt) {
+          return backoff.multipliedBy(1L << Math.min(attempt - 1, 10));
+        }
+      };
+    }
+
+    /**
+     * @return how long to wait before the next attempt
+     */
+    default Duration backoff(int attempt) {
+      return Duration.ZERO;
+    }
+  }
+
+  /**
+   * Starts writing the jobs in the background. Results are passed to the sink as jobs complete, in
+   * no particular order. The sink is never called concurrently.
+   *
+   * <p>If the sink fails, no further jobs are started and the sink is not called again. The failure
+   * is thrown by {@link Run#await(Duration)}.
+   */
+  public Run start(Stream<Job> jobs, Consumer<Result> sink) {
+    var run = new Run(sink);
+    Thread.ofVirtual().name("bulk-write").start(() -> run.execute(jobs));
+    return run;
+  }
+
+  public class Run {
+
+    private final Consumer<Result> sink;
+    private final Instant startedAt = clock.instant();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean cancelled;
+    private final AtomicReference<RuntimeException> sinkFailure = new AtomicReference<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder noAccount = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private Run(Consumer<Result> sink) {
+      this.sink = sink;
+    }
+
+    /** Stops starting new jobs, jobs already running complete. Remaining jobs are skipped. */
+    public void cancel() {
+      cancelled = true;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    /**
+     * Blocks until all jobs were processed or skipped.
+     *
+     * @return true if done, false if the timeout elapsed
+     * @throws RuntimeException the first failure of the sink, once done
+     */
+    public boolean await(Duration timeout) throws InterruptedException {
+      if (!done.await(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+        return false;
+      }
+      if (sinkFailure.get() != null) {
+        throw sinkFailure.get();
+      }
+      return true;
+    }
+
+    public Progress progress() {
+      return new Progress(
+          submitted.sum(),
+          written.sum(),
+          noAccount.sum(),
+          failed.sum(),
+          skipped.sum(),
+          retries.sum(),
+          inFlight.get(),
+          Duration.between(startedAt, clock.instant()));
+    }
+
+    private void execute(Stream<Job> jobs) {
+      var permits = new Semaphore(options.maxInFlight());
+      try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        jobs.forEach(
+            job -> {
+              submitted.increment();
+              if (cancelled) {
+                emit(new Result(job, Status.SKIPPED, null, null));
+                return;
+              }
+
+              permits.acquireUninterruptibly();
+              inFlight.incrementAndGet();
+              executor.execute(
+                  () -> {
+                    try {
+                      emit(process(job));
+                    } finally {
+                      inFlight.decrementAndGet();
+                      permits.release();
+                    }
+                  });
+            });
+      } catch (RuntimeException e) {
+        log.atError().setCause(e).log("bulk write aborted, reading jobs failed");
+        cancelled = true;
+      } finally {
+        done.countDown();
+      }
+    }
+
+    private Result process(Job job) {
+      if (cancelled) {
+        return new Result(job, Status.SKIPPED, null, null);
+      }
+
+      var lock = lockInsurant(job.insurantId());
+      try {
+        return writeWithPolicy(job);
+      } finally {
+        unlockInsurant(job.insurantId(), lock);
+      }
+    }
+
+    private Result writeWithPolicy(Job job) {
+      for (int attempt = 1; ; attempt++) {
+        if (cancelled) {
+          return new Result(job, Status.SKIPPED, null, null);
+        }
+
+        Throwable error;
+        try {
+          // failed lookups, e.g. a provider outage, are retried like failed uploads
+          var endpoint = informationService.findAccountEndpoint(job.insurantId());
+          if (endpoint.isEmpty()) {
+            return new Result(job, Status.NO_ACCOUNT, null, null);
+          }
+          return write(job, endpoint.get());
+        } catch (RuntimeException e) {
+          error = e;
+        }
+
+        var decision = options.failurePolicy().onFailure(job, error, attempt);
+        switch (decision) {
+          case RETRY -> {
+            retries.increment();
+            sleep(options.failurePolicy().backoff(attempt));
+          }
+          case SKIP -> {
+            return new Result(job, Status.FAILED, null, error);
+          }
+          case ABORT -> {
+            log.atWarn().setCause(error).log("bulk write aborted by failure policy");
+            cancelled = true;
+            return new Result(job, Status.FAILED, null, error);
+          }
+        }
+      }
+    }
+
+    private Result write(Job job, URI endpoint) {
+      var permits =
+          providerPermits.computeIfAbsent(
+              endpoint, e -> new Semaphore(options.concurrencyPerProvider()));
+      permits.acquireUninterruptibly();
+      try {
+        var res = client.writeDocument(job.insurantId(), job.document());
+        return new Result(job, Status.WRITTEN, res.requestId(), null);
+      } finally {
+        permits.release();
+      }
+    }
+
+    private synchronized void emit(Result result) {
+      switch (result.status()) {
+        case WRITTEN -> written.increment();
+        case NO_ACCOUNT -> noAccount.increment();
+        case FAILED -> failed.increment();
+        case SKIPPED -> skipped.increment();
+      }
+      if (sinkFailure.get() != null) {
+        return;
+      }
+      try {
+        sink.accept(result);
+      } catch (RuntimeException e) {
+        log.atError().setCause(e).log("bulk write aborted, result sink failed");
+        sinkFailure.set(e);
+        cancelled = true;
+      }
+    }
+
+    private void sleep(Duration d) {
+      if (d.isZero() || d.isNegative()) {
+        return;
+      }
+      try {
+        Thread.sleep(d);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancelled = true;
+      }
+    }
+  }
+
+  private InsurantLock lockInsurant(String insurantId) {
+    var lock =
+        insurantLocks.compute(
+            insurantId,
+            (id, l) -> {
+              var held = l != null ? l : new InsurantLock();
+              held.holders++;
+              return held;
+            });
+    lock.lock.lock();
+    return lock;
+  }
+
+  private void unlockInsurant(String insurantId, InsurantLock lock) {
+    lock.lock.unlock();
+    insurantLocks.compute(insurantId, (id, l) -> --l.holders == 0 ? null : l);
+  }
+
+  private static class InsurantLock {
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // jobs holding or waiting for the lock, guarded by the map entry
+    private int holders;
+  }
+}
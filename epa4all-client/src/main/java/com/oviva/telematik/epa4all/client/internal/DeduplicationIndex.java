@@ -0,0 +1,340 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import de.gematik.epa.ihe.model.document.Document;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers which documents were already written to which record, so that re-sending the same
+ * document can be skipped. Documents are identified by a SHA-256 over their content and the
+ * metadata that classifies them (mime type, type, format and class code).
+ *
+ * <p>Concurrent writes of the same document are deduplicated as well: {@link #claim(String,
+ * Document)} lets the first writer upload while the others wait for its outcome.
+ *
+ * <p>Entries are appended to a file and loaded on open. Expired entries are pruned periodically,
+ * the file is rewritten with only the live entries on open and whenever it holds more than twice as
+ * many records as there are live entries. Record layout:
+ *
+ * <pre>
+ *   kvnr(UTF) | sha-256(32) | written at, epoch seconds(8) | request id(UTF)
+ * </pre>
+ */
+public class DeduplicationIndex implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(DeduplicationIndex.class);
+
+  private static final int HASH_LENGTH = 32;
+
+  private static final Duration PRUNE_INTERVAL = Duration.ofMinutes(1);
+  private static final int MIN_RECORDS_TO_REWRITE = 1024;
+
+  // a writer that neither records nor releases must not block its duplicates forever
+  static final Duration MAX_CLAIM_WAIT = Duration.ofMinutes(2);
+
+  private final Path file;
+  private final Duration ttl;
+  private final Clock clock;
+
+  private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+  // writes in progress, completed with the request ID or null if the write failed
+  private final Map<Key, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+  // guarded by this
+  private DataOutputStream out;
+  private int fileRecords;
+  private Instant prunedAt;
+
+  private DeduplicationIndex(Path file, Duration ttl, Clock clock) {
+    this.file = file;
+    this.ttl = ttl;
+    this.clock = clock;
+  }
+
+  /**
+   * @param ttl how long a written document is remembered
+   */
+  public static DeduplicationIndex open(Path file, Duration ttl, Clock clock) {
+    var index = new DeduplicationIndex(file, ttl, clock);
+    try {
+      index.load();
+      index.rewrite();
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to open deduplication index " + file, e);
+    }
+    return index;
+  }
+
+  /**
+   * @return the request ID of the earlier write of the same document, if any
+   */
+  public Optional<String> lookup(String insurantId, Document document) {
+    return lookup(new Key(insurantId, hash(document)));
+  }
+
+  /**
+   * Like {@link #lookup(String, Document)}, but if the document was not written before the caller
+   * becomes its writer: concurrent claims of the same document wait until the writer either {@link
+   * #record recorded} the write or {@link #release released} the claim.
+   *
+   * @return the request ID of the earlier write, empty if the caller must write the document
+   * @throws IllegalStateException if the concurrent write did not finish within {@link
+   *     #MAX_CLAIM_WAIT}
+   */
+  public Optional<String> claim(String insurantId, Document document) {
+    return claim(insurantId, document, MAX_CLAIM_WAIT);
+  }
+
+  Optional<String> claim(String insurantId, Document document, Duration maxWait) {
+    var key = new Key(insurantId, hash(document));
+    while (true) {
+      var previous = lookup(key);
+      if (previous.isPresent()) {
+        return previous;
+      }
+
+      var claim = new CompletableFuture<String>();
+      var other = inFlight.putIfAbsent(key, claim);
+      if (other == null) {
+        // the previous writer may have recorded just before we claimed
+        previous = lookup(key);
+        if (previous.isPresent()) {
+          inFlight.remove(key, claim);
+          claim.complete(previous.get());
+        }
+        return previous;
+      }
+
+      var requestId = await(other, maxWait);
+      if (requestId != null) {
+        return Optional.of(requestId);
+      }
+      // the other write failed, try to become the writer
+    }
+  }
+
+  private static String await(CompletableFuture<String> claim, Duration maxWait) {
+    try {
+      return claim.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new IllegalStateException(
+          "write of the same document still in flight after %s".formatted(maxWait), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted waiting for a write of the same document", e);
+    } catch (ExecutionException e) {
+      // claims are only ever completed normally
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** Gives up a claim without a write, e.g. because the upload failed. */
+  public void release(String insurantId, Document document) {
+    var claim = inFlight.remove(new Key(insurantId, hash(document)));
+    if (claim != null) {
+      claim.complete(null);
+    }
+  }
+
+  private Optional<String> lookup(Key key) {
+    var entry = entries.get(key);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    if (isExpired(entry)) {
+      entries.remove(key, entry);
+      return Optional.empty();
+    }
+    return Optional.of(entry.requestId());
+  }
+
+  public void record(String insurantId, Document document, String requestId) {
+    var key = new Key(insurantId, hash(document));
+    var entry = new Entry(requestId, clock.instant());
+    entries.put(key, entry);
+
+    var claim = inFlight.remove(key);
+    if (claim != null) {
+      claim.complete(requestId);
+    }
+
+    try {
+      append(key, entry);
+    } catch (IOException e) {
+      // not fatal, the document is merely written again
+      log.atWarn().setCause(e).log("failed to persist deduplication entry");
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      out.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to close deduplication index " + file, e);
+    }
+  }
+
+  static byte[] hash(Document document) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256");
+      var metadata = document.documentMetadata();
+      if (metadata != null) {
+        Stream.of(
+                metadata.mimeType(),
+                metadata.typeCode(),
+                metadata.formatCode(),
+                metadata.classCode())
+            .forEach(
+                s -> {
+                  // length prefixed, "ab"+"c" must not collide with "a"+"bc"
+                  var bytes = s != null ? s.getBytes(StandardCharsets.UTF_8) : new byte[0];
+                  digest.update(intToBytes(bytes.length));
+                  digest.update(bytes);
+                });
+      }
+      var data = document.documentData();
+      if (data != null) {
+        digest.update(data);
+      }
+      return digest.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  private synchronized void append(Key key, Entry entry) throws IOException {
+    write(out, key, entry);
+    out.flush();
+    fileRecords++;
+
+    var now = clock.instant();
+    if (now.isBefore(prunedAt.plus(PRUNE_INTERVAL))) {
+      return;
+    }
+    prunedAt = now;
+    entries.values().removeIf(this::isExpired);
+    if (fileRecords > MIN_RECORDS_TO_REWRITE && fileRecords > 2 * entries.size()) {
+      rewrite();
+    }
+  }
+
+  private void load() throws IOException {
+    if (!Files.exists(file)) {
+      return;
+    }
+    try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      while (true) {
+        Key key;
+        Entry entry;
+        try {
+          var insurantId = in.readUTF();
+          var hash = new byte[HASH_LENGTH];
+          in.readFully(hash);
+          var writtenAt = Instant.ofEpochSecond(in.readLong());
+          var requestId = in.readUTF();
+          key = new Key(insurantId, hash);
+          entry = new Entry(requestId, writtenAt);
+        } catch (EOFException | UTFDataFormatException e) {
+          // end of file or a torn last record
+          return;
+        }
+        if (!isExpired(entry)) {
+          entries.put(key, entry);
+        }
+      }
+    }
+  }
+
+  /** Rewrites the file with only the live entries and opens it for appending. */
+  private synchronized void rewrite() throws IOException {
+    var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    var records = 0;
+    try (var o = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      for (var e : entries.entrySet()) {
+        write(o, e.getKey(), e.getValue());
+        records++;
+      }
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    fileRecords = records;
+    prunedAt = clock.instant();
+    if (out != null) {
+      // still appending to the replaced file, nothing is lost by closing it
+      out.close();
+    }
+    out =
+        new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)));
+  }
+
+  private static void write(DataOutputStream o, Key key, Entry entry) throws IOException {
+    o.writeUTF(key.insurantId());
+    o.write(key.hash());
+    o.writeLong(entry.writtenAt().getEpochSecond());
+    o.writeUTF(entry.requestId() != null ? entry.requestId() : "");
+  }
+
+  private boolean isExpired(Entry entry) {
+    return !entry.writtenAt().plus(ttl).isAfter(clock.instant());
+  }
+
+  private static byte[] intToBytes(int i) {
+    return new byte[] {(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i};
+  }
+
+  private record Entry(String requestId, Instant writtenAt) {}
+
+  private record Key(String insurantId, byte[] hash) {
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key k
+          && insurantId.equals(k.insurantId)
+          && MessageDigest.isEqual(hash, k.hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * insurantId.hashCode() + Arrays.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+      return "Key[%s, %s]".formatted(insurantId, HexFormat.of().formatHex(hash));
+    }
+  }
+}
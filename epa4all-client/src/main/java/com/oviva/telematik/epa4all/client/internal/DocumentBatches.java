@@ -0,0 +1,123 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import com.oviva.telematik.epa4all.client.WriteDocumentException;
+import com.oviva.telematik.epa4all.client.WriteDocumentsResponse;
+import de.gematik.epa.ihe.model.document.Document;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** Splits documents into submissions and attributes registry errors back to documents. */
+class DocumentBatches {
+
+  private DocumentBatches() {}
+
+  /**
+   * @return the indices of the documents of each submission, in order
+   */
+  static List<List<Integer>> split(List<Document> documents, BatchLimits limits) {
+
+    var batches = new ArrayList<List<Integer>>();
+    var current = new ArrayList<Integer>();
+    long currentBytes = 0;
+
+    for (int i = 0; i < documents.size(); i++) {
+      var size = size(documents.get(i));
+      var full = current.size() >= limits.maxDocuments() || currentBytes + size > limits.maxBytes();
+      if (!current.isEmpty() && full) {
+        batches.add(current);
+        current = new ArrayList<>();
+        currentBytes = 0;
+      }
+      current.add(i);
+      currentBytes += size;
+    }
+    if (!current.isEmpty()) {
+      batches.add(current);
+    }
+    return batches;
+  }
+
+  static List<WriteDocumentsResponse.DocumentResult> written(
+      List<Integer> batch, String requestId) {
+    return batch.stream()
+        .map(
+            i ->
+                new WriteDocumentsResponse.DocumentResult(
+                    i, WriteDocumentsResponse.Status.WRITTEN, requestId, List.of()))
+        .toList();
+  }
+
+  /** Reports the documents of a submission that failed without an answer of the ePA. */
+  static List<WriteDocumentsResponse.DocumentResult> notWritten(
+      List<Integer> batch, Throwable cause) {
+    return batch.stream()
+        .map(
+            i ->
+                new WriteDocumentsResponse.DocumentResult(
+                    i, WriteDocumentsResponse.Status.NOT_WRITTEN, null, List.of(), cause))
+        .toList();
+  }
+
+  /**
+   * Attributes the errors of a failed submission to its documents. The registry references
+   * documents by their entryUUID or uniqueId in the error location. Errors without such reference
+   * concern the submission as a whole and are reported for every document.
+   */
+  static List<WriteDocumentsResponse.DocumentResult> failed(
+      List<Document> documents,
+      List<Integer> batch,
+      List<com.oviva.telematik.epaapi.WriteDocumentException.Error> errors) {
+
+    var unattributed =
+        errors.stream()
+            .filter(e -> batch.stream().noneMatch(i -> references(e, documents.get(i))))
+            .map(DocumentBatches::map)
+            .toList();
+
+    // if no error can be attributed, we can't tell which documents are fine
+    var anyAttributed = unattributed.size() < errors.size();
+
+    var results = new ArrayList<WriteDocumentsResponse.DocumentResult>(batch.size());
+    for (var i : batch) {
+      var own =
+          errors.stream()
+              .filter(e -> references(e, documents.get(i)))
+              .map(DocumentBatches::map)
+              .toList();
+      var status =
+          !own.isEmpty() || !anyAttributed
+              ? WriteDocumentsResponse.Status.REJECTED
+              : WriteDocumentsResponse.Status.NOT_WRITTEN;
+      var documentErrors = Stream.concat(own.stream(), unattributed.stream()).toList();
+      results.add(new WriteDocumentsResponse.DocumentResult(i, status, null, documentErrors));
+    }
+    return results;
+  }
+
+  private static boolean references(
+      com.oviva.telematik.epaapi.WriteDocumentException.Error error, Document document) {
+    var metadata = document.documentMetadata();
+    if (metadata == null) {
+      return false;
+    }
+    return Stream.of(metadata.entryUUID(), metadata.uniqueId())
+        .filter(id -> id != null && !id.isBlank())
+        .anyMatch(id -> contains(error.location(), id) || contains(error.value(), id));
+  }
+
+  private static boolean contains(String s, String id) {
+    return s != null && s.contains(id);
+  }
+
+  private static WriteDocumentException.Error map(
+      com.oviva.telematik.epaapi.WriteDocumentException.Error e) {
+    return new WriteDocumentException.Error(
+        e.value(), e.codeContext(), e.errorCode(), e.severity(), e.location());
+  }
+
+  private static long size(Document document) {
+    var data = document.documentData();
+    return data != null ? data.length : 0;
+  }
+}
@@ -0,0 +1,44 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import de.gematik.epa.ihe.model.document.Document;
+import java.io.IOException;
+
+/** Turns documents into bytes and back, used to persist documents in the outbox. */
+public interface DocumentCodec {
+
+  byte[] encode(Document document);
+
+  Document decode(byte[] data);
+
+  /** Encodes documents as JSON, the document content is base64 encoded. */
+  static DocumentCodec json() {
+    var mapper =
+        new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    return new DocumentCodec() {
+      @Override
+      public byte[] encode(Document document) {
+        try {
+          return mapper.writeValueAsBytes(document);
+        } catch (JsonProcessingException e) {
+          throw new IllegalArgumentException("failed to encode document", e);
+        }
+      }
+
+      @Override
+      public Document decode(byte[] data) {
+        try {
+          return mapper.readValue(data, Document.class);
+        } catch (IOException e) {
+          throw new IllegalArgumentException("failed to decode document", e);
+        }
+      }
+    };
+  }
+}
@@ -1,15 +1,19 @@
 package com.oviva.telematik.epa4all.client.internal;
 
+import com.oviva.epa.client.KonnektorClient;
 import com.oviva.epa.client.KonnektorService;
 import com.oviva.epa.client.konn.internal.util.NaiveTrustManager;
+import com.oviva.epa.client.model.SigningPriority;
 import com.oviva.epa.client.model.SmcbCard;
 import com.oviva.telematik.epa4all.client.Epa4AllClient;
 import com.oviva.telematik.epaapi.ClientConfiguration;
 import com.oviva.telematik.epaapi.SoapClientFactory;
 import com.oviva.telematik.vau.epa4all.client.Epa4AllClientException;
 import com.oviva.telematik.vau.epa4all.client.authz.AuthorizationService;
-import com.oviva.telematik.vau.epa4all.client.authz.internal.RsaSignatureAdapter;
+import com.oviva.telematik.vau.epa4all.client.authz.internal.SmcbCardPool;
+import com.oviva.telematik.vau.epa4all.client.info.AccountIndex;
 import com.oviva.telematik.vau.epa4all.client.info.InformationService;
+import com.oviva.telematik.vau.epa4all.client.info.InformationServiceBuilder;
 import com.oviva.telematik.vau.httpclient.internal.DowngradeHttpClient;
 import com.oviva.telematik.vau.httpclient.internal.JavaHttpClient;
 import com.oviva.telematik.vau.proxy.VauProxy;
@@ -17,8 +21,16 @@ import java.net.InetSocketAddress;
 import java.net.ProxySelector;
 import java.net.http.HttpClient;
 import java.security.*;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -39,8 +51,15 @@ public class Epa4AllClientFactory implements AutoCloseable {
   private final VauProxy proxyServer;
   private final SoapClientFactory client;
   private final AuthorizationService authorizationService;
+  private final AuthorizationService bulkAuthorizationService;
   private final InformationService informationService;
   private final SmcbCard card;
+  private final BatchLimits batchLimits;
+  private final Executor asyncExecutor;
+  private final DeduplicationIndex deduplicationIndex;
+  private final AccountIndex accountIndex;
+  private final AuthorizedSessionCache sessionCache =
+      new AuthorizedSessionCache(Clock.systemUTC(), AuthorizedSessionCache.DEFAULT_TTL);
 
   public Epa4AllClientFactory(
       VauProxy proxyServer,
@@ -48,11 +67,112 @@ public class Epa4AllClientFactory implements AutoCloseable {
       AuthorizationService authorizationService,
       InformationService informationService,
       SmcbCard card) {
+    this(
+        proxyServer,
+        client,
+        authorizationService,
+        informationService,
+        card,
+        BatchLimits.DEFAULT,
+        Epa4AllClientImpl.VIRTUAL_THREADS);
+  }
+
+  public Epa4AllClientFactory(
+      VauProxy proxyServer,
+      SoapClientFactory client,
+      AuthorizationService authorizationService,
+      InformationService informationService,
+      SmcbCard card,
+      BatchLimits batchLimits,
+      Executor asyncExecutor) {
+    this(
+        proxyServer,
+        client,
+        authorizationService,
+        informationService,
+        card,
+        batchLimits,
+        asyncExecutor,
+        null);
+  }
+
+  /**
+   * @param deduplicationIndex skips writing documents already written, null to always write; closed
+   *     with this factory
+   */
+  public Epa4AllClientFactory(
+      VauProxy proxyServer,
+      SoapClientFactory client,
+      AuthorizationService authorizationService,
+      InformationService informationService,
+      SmcbCard card,
+      BatchLimits batchLimits,
+      Executor asyncExecutor,
+      DeduplicationIndex deduplicationIndex) {
+    this(
+        proxyServer,
+        client,
+        authorizationService,
+        informationService,
+        card,
+        batchLimits,
+        asyncExecutor,
+        deduplicationIndex,
+        null);
+  }
+
+  /**
+   * @param accountIndex the persistent account index of the information service, null if none;
+   *     closed with this factory
+   */
+  public Epa4AllClientFactory(
+      VauProxy proxyServer,
+      SoapClientFactory client,
+      AuthorizationService authorizationService,
+      InformationService informationService,
+      SmcbCard card,
+      BatchLimits batchLimits,
+      Executor asyncExecutor,
+      DeduplicationIndex deduplicationIndex,
+      AccountIndex accountIndex) {
+    this(
+        proxyServer,
+        client,
+        authorizationService,
+        informationService,
+        card,
+        batchLimits,
+        asyncExecutor,
+        deduplicationIndex,
+        accountIndex,
+        authorizationService);
+  }
+
+  /**
+   * @param bulkAuthorizationService authorizes the sessions of bulk writes and the outbox, e.g.
+   *     signing with bulk priority
+   */
+  public Epa4AllClientFactory(
+      VauProxy proxyServer,
+      SoapClientFactory client,
+      AuthorizationService authorizationService,
+      InformationService informationService,
+      SmcbCard card,
+      BatchLimits batchLimits,
+      Executor asyncExecutor,
+      DeduplicationIndex deduplicationIndex,
+      AccountIndex accountIndex,
+      AuthorizationService bulkAuthorizationService) {
     this.proxyServer = proxyServer;
     this.client = client;
     this.authorizationService = authorizationService;
+    this.bulkAuthorizationService = bulkAuthorizationService;
     this.informationService = informationService;
     this.card = card;
+    this.batchLimits = batchLimits;
+    this.asyncExecutor = asyncExecutor;
+    this.deduplicationIndex = deduplicationIndex;
+    this.accountIndex = accountIndex;
   }
 
   public static Epa4AllClientFactory create(
@@ -60,47 +180,200 @@ public class Epa4AllClientFactory implements AutoCloseable {
       InetSocketAddress konnektorProxyAddress,
       Environment environment,
       List<TrustManager> trustManagers) {
+    return create(
+        konnektorService,
+        konnektorProxyAddress,
+        environment,
+        trustManagers,
+        BatchLimits.DEFAULT,
+        Epa4AllClientImpl.VIRTUAL_THREADS,
+        null);
+  }
+
+  public static Epa4AllClientFactory create(
+      KonnektorService konnektorService,
+      InetSocketAddress konnektorProxyAddress,
+      Environment environment,
+      List<TrustManager> trustManagers,
+      BatchLimits batchLimits,
+      Executor asyncExecutor,
+      DeduplicationIndex deduplicationIndex) {
+    return create(
+        konnektorService,
+        konnektorProxyAddress,
+        environment,
+        trustManagers,
+        batchLimits,
+        asyncExecutor,
+        deduplicationIndex,
+        null);
+  }
+
+  /**
+   * @param accountIndex remembers where accounts were found across restarts, null to always ask the
+   *     providers; closed with the factory
+   */
+  public static Epa4AllClientFactory create(
+      KonnektorService konnektorService,
+      InetSocketAddress konnektorProxyAddress,
+      Environment environment,
+      List<TrustManager> trustManagers,
+      BatchLimits batchLimits,
+      Executor asyncExecutor,
+      DeduplicationIndex deduplicationIndex,
+      AccountIndex accountIndex) {
+
+    var startedAt = System.nanoTime();
+    var phases = new ConcurrentSkipListMap<String, Long>();
+
+    // the slow steps are independent, reading the cards and starting the VAU proxy overlap
+    var cardsLookup = measureAsync(phases, "smcb_cards", konnektorService::listSmcbCards);
+    var proxyStartup =
+        measureAsync(
+                phases,
+                "trust_store",
+                () -> determineTrustStore(environment == Environment.PU, null))
+            .thenApplyAsync(
+                trustStore ->
+                    measure(
+                        phases,
+                        "vau_proxy",
+                        () -> {
+                          var proxy = buildVauProxy(environment, konnektorProxyAddress, trustStore);
+                          return new StartedProxy(proxy, proxy.start());
+                        }),
+                Epa4AllClientImpl.VIRTUAL_THREADS);
 
     var outerHttpClient =
         buildOuterHttpClient(konnektorProxyAddress, buildSslContext(trustManagers));
 
-    var informationService = buildInformationService(environment, outerHttpClient);
+    var informationService = buildInformationService(environment, outerHttpClient, accountIndex);
 
-    var trustStore = determineTrustStore(environment == Environment.PU, null);
-    var proxyServer = buildVauProxy(environment, konnektorProxyAddress, trustStore);
+    var proxy = join(proxyStartup);
+    var proxyServer = proxy.proxy();
+    try {
+      var vauProxyServerListener = proxy.serverInfo().listenAddress();
+      var vauProxyServerAddr = new InetSocketAddress(LOCALHOST, vauProxyServerListener.getPort());
+
+      // HTTP client used to communicate inside the VAU tunnel
+      var innerVauClient = buildInnerHttpClient(vauProxyServerAddr);
+
+      var cards = join(cardsLookup);
+      var card = findSmcBCard(cards);
+
+      // signatures are spread over all cards of the institution
+      var signer =
+          new SmcbCardPool(
+              konnektorService,
+              card.telematikId(),
+              cards,
+              SmcbCardPool.DEFAULT_QUARANTINE,
+              Clock.systemUTC());
+      var authorizationService = new AuthorizationService(innerVauClient, outerHttpClient, signer);
+
+      // background jobs sign behind interactive requests if the Konnektor queues signatures
+      var bulkSigner =
+          konnektorService instanceof KonnektorClient konnektorClient
+              ? signer.withKonnektorService(konnektorClient.withPriority(SigningPriority.BULK))
+              : signer;
+      var bulkAuthorizationService =
+          new AuthorizationService(innerVauClient, outerHttpClient, bulkSigner);
+
+      var client =
+          new SoapClientFactory(
+              new ClientConfiguration(
+                  new InetSocketAddress(LOCALHOST, vauProxyServerListener.getPort())));
+
+      log.atInfo().log(
+          "epa4all client factory started in {}ms, phases in ms: {}",
+          (System.nanoTime() - startedAt) / 1_000_000,
+          phases);
+
+      return new Epa4AllClientFactory(
+          proxyServer,
+          client,
+          authorizationService,
+          informationService,
+          card,
+          batchLimits,
+          asyncExecutor,
+          deduplicationIndex,
+          accountIndex,
+          bulkAuthorizationService);
+    } catch (RuntimeException e) {
+      proxyServer.stop();
+      throw e;
+    }
+  }
 
-    var serverInfo = proxyServer.start();
-    var vauProxyServerListener = serverInfo.listenAddress();
-    var vauProxyServerAddr = new InetSocketAddress(LOCALHOST, vauProxyServerListener.getPort());
+  /** Runs a startup step on its own thread, recording its duration. */
+  private static <T> CompletableFuture<T> measureAsync(
+      Map<String, Long> phases, String phase, Supplier<T> step) {
+    return CompletableFuture.supplyAsync(
+        () -> measure(phases, phase, step), Epa4AllClientImpl.VIRTUAL_THREADS);
+  }
 
-    // HTTP client used to communicate inside the VAU tunnel
-    var innerVauClient = buildInnerHttpClient(vauProxyServerAddr);
+  private static <T> T measure(Map<String, Long> phases, String phase, Supplier<T> step) {
+    var start = System.nanoTime();
+    try {
+      return step.get();
+    } finally {
+      phases.put(phase, (System.nanoTime() - start) / 1_000_000);
+    }
+  }
+
+  private static <T> T join(CompletableFuture<T> f) {
+    try {
+      return f.join();
+    } catch (CompletionException e) {
+      // surface the original failure, e.g. no SMC-B found
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw e;
+    }
+  }
 
-    var card = findSmcBCard(konnektorService);
+  private record StartedProxy(VauProxy proxy, VauProxy.ServerInfo serverInfo) {}
 
-    var signer = new RsaSignatureAdapter(konnektorService, card);
-    var authorizationService = new AuthorizationService(innerVauClient, outerHttpClient, signer);
+  public Epa4AllClient newClient() {
+    return newClient(authorizationService);
+  }
 
-    var client =
-        new SoapClientFactory(
-            new ClientConfiguration(
-                new InetSocketAddress(LOCALHOST, vauProxyServerListener.getPort())));
+  private Epa4AllClient newClient(AuthorizationService authorizationService) {
+    return new Epa4AllClientImpl(
+        informationService,
+        authorizationService,
+        card,
+        client,
+        sessionCache,
+        batchLimits,
+        asyncExecutor,
+        deduplicationIndex);
+  }
 
-    return new Epa4AllClientFactory(
-        proxyServer, client, authorizationService, informationService, card);
+  /**
+   * Creates an engine writing documents for many insurants, sharing this factory's sessions. New
+   * sessions are authorized with bulk signing priority.
+   */
+  public BulkWriteEngine newBulkWriteEngine(BulkWriteEngine.Options options) {
+    return new BulkWriteEngine(newClient(bulkAuthorizationService), informationService, options);
   }
 
-  public Epa4AllClient newClient() {
-    return new Epa4AllClientImpl(informationService, authorizationService, card, client);
+  /**
+   * Opens a durable outbox draining through a client of this factory with bulk signing priority,
+   * the caller must close it before closing the factory.
+   */
+  public Outbox openOutbox(Outbox.Options options, Consumer<Outbox.Outcome> listener) {
+    return Outbox.open(newClient(bulkAuthorizationService), informationService, options, listener);
   }
 
-  private static SmcbCard findSmcBCard(KonnektorService konnektorService) {
-    var cards = konnektorService.listSmcbCards();
+  private static SmcbCard findSmcBCard(List<SmcbCard> cards) {
     if (cards.isEmpty()) {
       throw new Epa4AllClientException("no SMC-B cards found");
     }
     if (cards.size() > 1) {
-      log.atInfo().log("more than one SMC-B card found, using first one");
+      log.atInfo().log("more than one SMC-B card found, using institution of first one");
     }
     return cards.get(0);
   }
@@ -113,11 +386,15 @@ public class Epa4AllClientFactory implements AutoCloseable {
     return new VauProxy(
         new VauProxy.Configuration(
             konnektorProxyAddress,
+            "localhost",
             0,
             isPu,
             xUserAgent,
             buildSslContext(List.of(new NaiveTrustManager())),
-            trustStore));
+            trustStore,
+            VauProxy.ThreadModel.virtualThreads(),
+            null,
+            null));
   }
 
   private static KeyStore determineTrustStore(boolean isPu, KeyStore providedTrustStore) {
@@ -130,8 +407,8 @@ public class Epa4AllClientFactory implements AutoCloseable {
     }
   }
 
-  private static InformationService buildInformationService(
-      Environment environment, HttpClient outerHttpClient) {
+  static InformationService buildInformationService(
+      Environment environment, HttpClient outerHttpClient, AccountIndex accountIndex) {
 
     var providers =
         List.of(InformationService.EpaProvider.IBM, InformationService.EpaProvider.BITMARCK);
@@ -142,7 +419,12 @@ public class Epa4AllClientFactory implements AutoCloseable {
           case RU -> InformationService.Environment.DEV;
         };
 
-    return new InformationService(outerHttpClient, informationServiceEnvironment, providers);
+    return InformationServiceBuilder.newBuilder()
+        .outerHttpClient(outerHttpClient)
+        .environment(informationServiceEnvironment)
+        .providers(providers)
+        .accountIndex(accountIndex)
+        .build();
   }
 
   private static com.oviva.telematik.vau.httpclient.HttpClient buildInnerHttpClient(
@@ -189,5 +471,12 @@ public class Epa4AllClientFactory implements AutoCloseable {
   @Override
   public void close() {
     proxyServer.stop();
+    if (deduplicationIndex != null) {
+      deduplicationIndex.close();
+    }
+    if (accountIndex != null) {
+      accountIndex.close();
+    }
+    Logs.flush(Duration.ofSeconds(3));
   }
 }
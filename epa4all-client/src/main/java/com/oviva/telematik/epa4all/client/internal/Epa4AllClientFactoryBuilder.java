@@ -2,20 +2,34 @@ package com.oviva.telematik.epa4all.client.internal;
 
 import com.oviva.epa.client.KonnektorService;
 import com.oviva.epa.client.konn.internal.util.NaiveTrustManager;
+import com.oviva.telematik.vau.epa4all.client.info.AccountIndex;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import javax.net.ssl.TrustManager;
 
 /** Builder for Epa4AllClientFactory. */
 public class Epa4AllClientFactoryBuilder {
 
+  // slots of a new account index, it grows as needed
+  private static final int ACCOUNT_INDEX_CAPACITY = 1 << 16;
+
   private KonnektorService konnektorService;
   private InetSocketAddress konnektorProxyAddress;
   private TrustManager trustManager;
 
   private Environment environment;
+  private BatchLimits batchLimits = BatchLimits.DEFAULT;
+  private Executor asyncExecutor = Epa4AllClientImpl.VIRTUAL_THREADS;
+  private Path deduplicationFile;
+  private Duration deduplicationTtl;
+  private Path accountIndexFile;
+  private Duration accountIndexMaxAge;
 
   private Epa4AllClientFactoryBuilder() {}
 
@@ -50,6 +64,45 @@ public class Epa4AllClientFactoryBuilder {
     return this;
   }
 
+  /** limits for each submission when writing many documents at once */
+  @NonNull
+  public Epa4AllClientFactoryBuilder batchLimits(@NonNull BatchLimits batchLimits) {
+    this.batchLimits = Objects.requireNonNull(batchLimits, "batchLimits must not be null");
+    return this;
+  }
+
+  /** runs the asynchronous client calls, by default each call gets its own virtual thread */
+  @NonNull
+  public Epa4AllClientFactoryBuilder asyncExecutor(@NonNull Executor asyncExecutor) {
+    this.asyncExecutor = Objects.requireNonNull(asyncExecutor, "asyncExecutor must not be null");
+    return this;
+  }
+
+  /**
+   * skips writing a document that was already written to the same record within the TTL
+   *
+   * @param file persists the written documents across restarts
+   */
+  @NonNull
+  public Epa4AllClientFactoryBuilder deduplicationIndex(@NonNull Path file, @NonNull Duration ttl) {
+    this.deduplicationFile = Objects.requireNonNull(file, "file must not be null");
+    this.deduplicationTtl = Objects.requireNonNull(ttl, "ttl must not be null");
+    return this;
+  }
+
+  /**
+   * remembers which provider holds the account of an insurant across restarts
+   *
+   * @param file the memory-mapped index, compacted on open
+   * @param maxAge how long an entry is trusted before the providers are asked again
+   */
+  @NonNull
+  public Epa4AllClientFactoryBuilder accountIndex(@NonNull Path file, @NonNull Duration maxAge) {
+    this.accountIndexFile = Objects.requireNonNull(file, "file must not be null");
+    this.accountIndexMaxAge = Objects.requireNonNull(maxAge, "maxAge must not be null");
+    return this;
+  }
+
   @NonNull
   public Epa4AllClientFactoryBuilder useInsecureTrustManager() {
     this.trustManager = new NaiveTrustManager();
@@ -63,7 +116,36 @@ public class Epa4AllClientFactoryBuilder {
     Objects.requireNonNull(environment, "environment must be set");
     Objects.requireNonNull(trustManager, "trustManager must be set");
 
-    return Epa4AllClientFactory.create(
-        konnektorService, konnektorProxyAddress, environment, List.of(trustManager));
+    var deduplicationIndex =
+        deduplicationFile != null
+            ? DeduplicationIndex.open(deduplicationFile, deduplicationTtl, Clock.systemUTC())
+            : null;
+    AccountIndex accountIndex = null;
+    try {
+      if (accountIndexFile != null) {
+        accountIndex =
+            AccountIndex.open(
+                accountIndexFile, ACCOUNT_INDEX_CAPACITY, accountIndexMaxAge, Clock.systemUTC());
+      }
+
+      return Epa4AllClientFactory.create(
+          konnektorService,
+          konnektorProxyAddress,
+          environment,
+          List.of(trustManager),
+          batchLimits,
+          asyncExecutor,
+          deduplicationIndex,
+          accountIndex);
+    } catch (RuntimeException e) {
+      // the factory owns the indexes only once created
+      if (accountIndex != null) {
+        accountIndex.close();
+      }
+      if (deduplicationIndex != null) {
+        deduplicationIndex.close();
+      }
+      throw e;
+    }
   }
 }
@@ -4,32 +4,127 @@ import com.oviva.epa.client.model.SmcbCard;
 import com.oviva.telematik.epa4all.client.ClientException;
 import com.oviva.telematik.epa4all.client.Epa4AllClient;
 import com.oviva.telematik.epa4all.client.WriteDocumentResponse;
+import com.oviva.telematik.epa4all.client.WriteDocumentsResponse;
 import com.oviva.telematik.epaapi.PhrService;
 import com.oviva.telematik.epaapi.SoapClientFactory;
+import com.oviva.telematik.epaapi.WriteDocumentException;
 import com.oviva.telematik.vau.epa4all.client.authz.AuthorizationService;
 import com.oviva.telematik.vau.epa4all.client.info.InformationService;
 import de.gematik.epa.ihe.model.document.Document;
 import de.gematik.epa.ihe.model.simple.AuthorInstitution;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.URI;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import org.apache.cxf.transport.http.HTTPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Epa4AllClientImpl implements Epa4AllClient {
 
+  private static final Logger log = LoggerFactory.getLogger(Epa4AllClientImpl.class);
+
+  /** starts a new virtual thread for each task, the stages mostly wait for remote calls */
+  public static final Executor VIRTUAL_THREADS =
+      task -> Thread.ofVirtual().name("epa4all-async").start(task);
+
+  // IHE XDS.b registry error code, returned if the record of the insurant does not exist
+  private static final String UNKNOWN_PATIENT_ID = "XDSUnknownPatientId";
+
   private final InformationService informationService;
   private final AuthorizationService authorizationService;
   private final SmcbCard card;
   private final SoapClientFactory soapClientFactory;
+  private final AuthorizedSessionCache sessionCache;
+  private final BatchLimits batchLimits;
+  private final Executor asyncExecutor;
+  private final DeduplicationIndex deduplicationIndex;
 
   public Epa4AllClientImpl(
       InformationService informationService,
       AuthorizationService authorizationService,
       SmcbCard card,
       SoapClientFactory soapClientFactory) {
+    this(
+        informationService,
+        authorizationService,
+        card,
+        soapClientFactory,
+        new AuthorizedSessionCache(Clock.systemUTC(), AuthorizedSessionCache.DEFAULT_TTL));
+  }
+
+  /**
+   * @param sessionCache shared between all clients using the same VAU proxy
+   */
+  public Epa4AllClientImpl(
+      InformationService informationService,
+      AuthorizationService authorizationService,
+      SmcbCard card,
+      SoapClientFactory soapClientFactory,
+      AuthorizedSessionCache sessionCache) {
+    this(
+        informationService,
+        authorizationService,
+        card,
+        soapClientFactory,
+        sessionCache,
+        BatchLimits.DEFAULT,
+        VIRTUAL_THREADS);
+  }
+
+  /**
+   * @param sessionCache shared between all clients using the same VAU proxy
+   * @param batchLimits limits for each submission of {@link #writeDocuments(String, List)}
+   * @param asyncExecutor runs the stages of the asynchronous calls, these block on I/O
+   */
+  public Epa4AllClientImpl(
+      InformationService informationService,
+      AuthorizationService authorizationService,
+      SmcbCard card,
+      SoapClientFactory soapClientFactory,
+      AuthorizedSessionCache sessionCache,
+      BatchLimits batchLimits,
+      Executor asyncExecutor) {
+    this(
+        informationService,
+        authorizationService,
+        card,
+        soapClientFactory,
+        sessionCache,
+        batchLimits,
+        asyncExecutor,
+        null);
+  }
+
+  /**
+   * @param sessionCache shared between all clients using the same VAU proxy
+   * @param batchLimits limits for each submission of {@link #writeDocuments(String, List)}
+   * @param asyncExecutor runs the stages of the asynchronous calls, these block on I/O
+   * @param deduplicationIndex skips writing documents that were written before, null to disable
+   */
+  public Epa4AllClientImpl(
+      InformationService informationService,
+      AuthorizationService authorizationService,
+      SmcbCard card,
+      SoapClientFactory soapClientFactory,
+      AuthorizedSessionCache sessionCache,
+      BatchLimits batchLimits,
+      Executor asyncExecutor,
+      DeduplicationIndex deduplicationIndex) {
 
     this.informationService = informationService;
     this.authorizationService = authorizationService;
     this.card = card;
     this.soapClientFactory = soapClientFactory;
+    this.sessionCache = sessionCache;
+    this.batchLimits = batchLimits;
+    this.asyncExecutor = asyncExecutor;
+    this.deduplicationIndex = deduplicationIndex;
 
     Logs.log(
         "create_client",
@@ -47,11 +142,111 @@ public class Epa4AllClientImpl implements Epa4AllClient {
   @Override
   public @NonNull WriteDocumentResponse writeDocument(
       @NonNull String insurantId, @NonNull Document document) {
+    return writeDocument(insurantId, document, false);
+  }
+
+  @Override
+  public @NonNull WriteDocumentResponse writeDocument(
+      @NonNull String insurantId, @NonNull Document document, boolean bypassDeduplication) {
 
     Logs.log("write_document");
-    var phrService = openPhrServiceForInsurant(insurantId);
-    var requestId = phrService.writeDocument(insurantId, document);
-    return new WriteDocumentResponse(requestId);
+    if (!bypassDeduplication) {
+      var previous = claimWrite(insurantId, document);
+      if (previous != null) {
+        return previous;
+      }
+    }
+
+    var recorded = false;
+    try {
+      var requestId =
+          withAuthorizedPhrService(insurantId, phr -> phr.writeDocument(insurantId, document));
+      recordWrite(insurantId, document, requestId);
+      recorded = true;
+      return new WriteDocumentResponse(requestId);
+    } finally {
+      // also on errors, a claim left behind would block later writes of the document
+      if (!recorded) {
+        releaseWrite(insurantId, document, bypassDeduplication);
+      }
+    }
+  }
+
+  @Override
+  public @NonNull CompletableFuture<WriteDocumentResponse> writeDocumentAsync(
+      @NonNull String insurantId, @NonNull Document document) {
+
+    Logs.log("write_document_async");
+    return CompletableFuture.supplyAsync(() -> claimWrite(insurantId, document), asyncExecutor)
+        .thenCompose(
+            previous ->
+                previous != null
+                    ? CompletableFuture.completedFuture(previous)
+                    : uploadAsync(insurantId, document));
+  }
+
+  private CompletableFuture<WriteDocumentResponse> uploadAsync(
+      String insurantId, Document document) {
+    return CompletableFuture.supplyAsync(() -> findEndpoint(insurantId), asyncExecutor)
+        .thenApplyAsync(
+            endpoint ->
+                withAuthorizedPhrService(
+                    insurantId, endpoint, phr -> phr.writeDocument(insurantId, document)),
+            asyncExecutor)
+        .thenApply(
+            requestId -> {
+              recordWrite(insurantId, document, requestId);
+              return new WriteDocumentResponse(requestId);
+            })
+        .whenComplete(
+            (response, e) -> {
+              if (e != null) {
+                releaseWrite(insurantId, document, false);
+              }
+            });
+  }
+
+  @Override
+  public @NonNull WriteDocumentsResponse writeDocuments(
+      @NonNull String insurantId, @NonNull List<Document> documents) {
+
+    Logs.log("write_documents", new Logs.Attr("documents", String.valueOf(documents.size())));
+
+    var results = new ArrayList<WriteDocumentsResponse.DocumentResult>(documents.size());
+    var batches = DocumentBatches.split(documents, batchLimits);
+    for (int b = 0; b < batches.size(); b++) {
+      var batch = batches.get(b);
+      var batchDocuments = batch.stream().map(documents::get).toList();
+      try {
+        var requestId =
+            withAuthorizedPhrService(
+                insurantId, phr -> phr.writeDocuments(insurantId, batchDocuments));
+        results.addAll(DocumentBatches.written(batch, requestId));
+      } catch (WriteDocumentException e) {
+        if (isUnknownAccount(e)) {
+          // no point in submitting the remaining batches
+          for (var remaining : batches.subList(b, batches.size())) {
+            results.addAll(DocumentBatches.failed(documents, remaining, e.errors()));
+          }
+          break;
+        }
+        results.addAll(DocumentBatches.failed(documents, batch, e.errors()));
+      } catch (RuntimeException e) {
+        // e.g. transport or authorization failures, the remaining batches would fail alike
+        log.atWarn()
+            .setCause(e)
+            .log(
+                "writing batch {} of {} failed, remaining documents not written",
+                b + 1,
+                batches.size());
+        for (var remaining : batches.subList(b, batches.size())) {
+          results.addAll(DocumentBatches.notWritten(remaining, e));
+        }
+        break;
+      }
+    }
+
+    return new WriteDocumentsResponse(results);
   }
 
   @NonNull
@@ -60,20 +255,114 @@ public class Epa4AllClientImpl implements Epa4AllClient {
       @NonNull String insurantId, @NonNull Document document, @NonNull UUID documentToReplaceId) {
 
     Logs.log("replace_document");
-    var phrService = openPhrServiceForInsurant(insurantId);
-    var requestId = phrService.replaceDocument(insurantId, document, documentToReplaceId);
+    var requestId =
+        withAuthorizedPhrService(
+            insurantId, phr -> phr.replaceDocument(insurantId, document, documentToReplaceId));
     return new WriteDocumentResponse(requestId);
   }
 
-  private PhrService openPhrServiceForInsurant(String insurantId) {
+  @NonNull
+  @Override
+  public CompletableFuture<WriteDocumentResponse> replaceDocumentAsync(
+      @NonNull String insurantId, @NonNull Document document, @NonNull UUID documentToReplaceId) {
+
+    Logs.log("replace_document_async");
+    return CompletableFuture.supplyAsync(() -> findEndpoint(insurantId), asyncExecutor)
+        .thenApplyAsync(
+            endpoint ->
+                withAuthorizedPhrService(
+                    insurantId,
+                    endpoint,
+                    phr -> phr.replaceDocument(insurantId, document, documentToReplaceId)),
+            asyncExecutor)
+        .thenApply(WriteDocumentResponse::new);
+  }
+
+  /**
+   * Runs the call in an authorised VAU session. Authorised sessions are re-used, if the backend
+   * rejects the cached authorization the session is authorised again and the call is retried once.
+   */
+  private <T> T withAuthorizedPhrService(String insurantId, Function<PhrService, T> call) {
+    return withAuthorizedPhrService(insurantId, findEndpoint(insurantId), call);
+  }
+
+  private <T> T withAuthorizedPhrService(
+      String insurantId, URI endpoint, Function<PhrService, T> call) {
 
-    var endpoint =
-        informationService
-            .findAccountEndpoint(insurantId)
-            .orElseThrow(
-                () -> new ClientException("endpoint for KVNR %s not found".formatted(insurantId)));
+    var key = new AuthorizedSessionCache.Key(endpoint, card.telematikId(), insurantId);
+    var wasCached = sessionCache.isAuthorized(key);
+    if (!wasCached) {
+      authorize(key);
+    }
 
-    authorizationService.authorizeVauWithSmcB(endpoint, insurantId);
+    var phrService = openPhrService(endpoint);
+    try {
+      return call.apply(phrService);
+    } catch (RuntimeException e) {
+      if (isUnknownAccount(e)) {
+        // the account moved or was closed, the next call looks it up again
+        informationService.invalidate(insurantId);
+        sessionCache.invalidate(key);
+        throw e;
+      }
+      if (!isUnauthorized(e)) {
+        throw e;
+      }
+
+      sessionCache.invalidate(key);
+      if (!wasCached) {
+        throw e;
+      }
+
+      log.atDebug().log("cached VAU authorization rejected by {}, re-authorizing", endpoint);
+      authorize(key);
+      return call.apply(phrService);
+    }
+  }
+
+  /**
+   * @return the earlier write of the document, or null if the caller claimed the write and must
+   *     either record or release it
+   */
+  private WriteDocumentResponse claimWrite(String insurantId, Document document) {
+    if (deduplicationIndex == null) {
+      return null;
+    }
+    return deduplicationIndex
+        .claim(insurantId, document)
+        .map(
+            requestId -> {
+              Logs.log("write_document_deduplicated");
+              return new WriteDocumentResponse(requestId, true);
+            })
+        .orElse(null);
+  }
+
+  private void recordWrite(String insurantId, Document document, String requestId) {
+    if (deduplicationIndex != null) {
+      deduplicationIndex.record(insurantId, document, requestId);
+    }
+  }
+
+  private void releaseWrite(String insurantId, Document document, boolean bypassDeduplication) {
+    if (deduplicationIndex != null && !bypassDeduplication) {
+      deduplicationIndex.release(insurantId, document);
+    }
+  }
+
+  private URI findEndpoint(String insurantId) {
+    return informationService
+        .findAccountEndpoint(insurantId)
+        .orElseThrow(
+            () -> new ClientException("endpoint for KVNR %s not found".formatted(insurantId)));
+  }
+
+  private void authorize(AuthorizedSessionCache.Key key) {
+    authorizationService.authorizeVauWithSmcB(key.endpoint(), key.insurantId());
+    sessionCache.authorized(key);
+  }
+
+  private PhrService openPhrService(URI endpoint) {
 
     var phrEndpoint =
         UriMangle.downgradeHttpsUri(endpoint)
@@ -82,4 +371,19 @@ public class Epa4AllClientImpl implements Epa4AllClient {
     var phrPort = soapClientFactory.getIDocumentManagementPort(phrEndpoint);
     return new PhrService(phrPort);
   }
+
+  static boolean isUnknownAccount(Throwable e) {
+    return e instanceof WriteDocumentException wde
+        && wde.errors().stream().anyMatch(err -> UNKNOWN_PATIENT_ID.equals(err.errorCode()));
+  }
+
+  private static boolean isUnauthorized(Throwable e) {
+    for (var t = e; t != null; t = t.getCause()) {
+      if (t instanceof HTTPException h
+          && (h.getResponseCode() == 401 || h.getResponseCode() == 403)) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
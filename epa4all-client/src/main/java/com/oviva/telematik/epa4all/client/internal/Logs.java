@@ -5,62 +5,236 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
 
+/**
+ * Usage telemetry. Events are buffered in a bounded ring and exported in batches by a single
+ * background thread, logging never blocks the caller. Events that don't fit into the buffer are
+ * dropped and counted.
+ */
 public class Logs {
 
   // TODO
   private static final URI SERVER =
       URI.create("https://telserver-150654775538.europe-west3.run.app/events");
 
+  private static final int CAPACITY = 1024;
+  private static final int MAX_BATCH = 256;
+  private static final Duration INTERVAL = Duration.ofSeconds(2);
+
   private static int maxFailures = 8;
-  private static Logs instance = new Logs();
+  private static Logs instance =
+      new Logs(
+          httpSink(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build()),
+          CAPACITY,
+          MAX_BATCH,
+          INTERVAL,
+          !"true".equalsIgnoreCase(System.getenv("TELEMETRY_OPTOUT")));
+
+  private final String sessionId = "epa4all-client-" + UUID.randomUUID();
+
+  private final Predicate<String> sink;
+  private final int maxBatch;
+  private final long intervalNanos;
+  private final boolean shouldLog;
+
+  // multi-producer, single-consumer ring, producers claim a slot by advancing the tail
+  private final AtomicReferenceArray<Event> ring;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
 
-  private HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build();
-  private String sessionId = "epa4all-client-" + UUID.randomUUID();
+  private final AtomicLong dropped = new AtomicLong();
+  private final Queue<CompletableFuture<Void>> flushRequests = new ConcurrentLinkedQueue<>();
+  private final Thread exporter;
+  private volatile int failures = 0;
 
-  private boolean shouldLog = true;
-  private int failures = 0;
+  /**
+   * @param sink sends one batch, returns whether it was accepted
+   * @param capacity size of the buffer, rounded up to a power of two
+   * @param maxBatch max. events per batch, a full batch is exported right away
+   * @param interval max. time an event waits for export
+   */
+  Logs(Predicate<String> sink, int capacity, int maxBatch, Duration interval, boolean shouldLog) {
+    if (capacity <= 0 || maxBatch <= 0) {
+      throw new IllegalArgumentException(
+          "invalid capacity %d or batch size %d".formatted(capacity, maxBatch));
+    }
+    var size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.ring = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.sink = sink;
+    this.maxBatch = maxBatch;
+    this.intervalNanos = interval.toNanos();
+    this.shouldLog = shouldLog;
+    this.exporter = Thread.ofPlatform().name("epa4all-telemetry").daemon().unstarted(this::export);
+    if (shouldLog) {
+      exporter.start();
+    }
+  }
 
-  private Logs() {
-    shouldLog = !"true".equalsIgnoreCase(System.getenv("TELEMETRY_OPTOUT"));
+  public static void log(String event, Attr... attrs) {
+    instance.offer(event, attrs);
   }
 
-  public static synchronized void log(String event, Attr... attrs) {
-    instance._log(event, attrs);
+  /** Exports all events logged so far, waits at most the given timeout. */
+  public static void flush(Duration timeout) {
+    instance.flushAndWait(timeout);
+  }
+
+  /**
+   * @return the number of events dropped because the buffer was full
+   */
+  public static long droppedCount() {
+    return instance.dropped();
   }
 
   public record Attr(String key, String value) {}
 
-  private void _log(String event, Attr... attrs) {
+  private record Event(String name, long ts, Attr[] attrs) {}
+
+  void offer(String event, Attr... attrs) {
     if (!shouldLog || maxFailures <= failures) {
       return;
     }
 
-    var raws = "";
+    long t;
+    do {
+      t = tail.get();
+      if (t - head.get() >= ring.length()) {
+        dropped.incrementAndGet();
+        return;
+      }
+    } while (!tail.compareAndSet(t, t + 1));
+
+    ring.lazySet((int) (t & mask), new Event(event, System.currentTimeMillis(), attrs));
+
+    if (t - head.get() + 1 >= maxBatch) {
+      LockSupport.unpark(exporter);
+    }
+  }
+
+  void flushAndWait(Duration timeout) {
+    if (!shouldLog || !exporter.isAlive()) {
+      return;
+    }
+    var done = new CompletableFuture<Void>();
+    flushRequests.add(done);
+    LockSupport.unpark(exporter);
+    try {
+      done.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // telemetry is best effort
+    }
+  }
+
+  long dropped() {
+    return dropped.get();
+  }
+
+  private void export() {
+    while (maxFailures > failures) {
+      LockSupport.parkNanos(this, intervalNanos);
+
+      var requests = new ArrayList<CompletableFuture<Void>>();
+      for (CompletableFuture<Void> r; (r = flushRequests.poll()) != null; ) {
+        requests.add(r);
+      }
+
+      List<Event> batch;
+      while (!(batch = drain()).isEmpty()) {
+        send(batch);
+      }
+      requests.forEach(r -> r.complete(null));
+    }
+
+    // given up, nobody must wait for us anymore
+    flushRequests.forEach(r -> r.complete(null));
+  }
+
+  private List<Event> drain() {
+    var batch = new ArrayList<Event>();
+    var h = head.get();
+    while (batch.size() < maxBatch) {
+      var slot = (int) (h & mask);
+      var e = ring.get(slot);
+      if (e == null) {
+        // empty, or claimed but not yet published
+        break;
+      }
+      ring.lazySet(slot, null);
+      batch.add(e);
+      head.lazySet(++h);
+    }
+    return batch;
+  }
+
+  private void send(List<Event> batch) {
+    var body = new StringBuilder();
+    for (var e : batch) {
+      appendEvent(body, e.name(), e.ts(), e.attrs());
+    }
+
+    var lost = dropped.getAndSet(0);
+    if (lost > 0) {
+      appendEvent(
+          body,
+          "telemetry_dropped",
+          System.currentTimeMillis(),
+          new Attr[] {new Attr("count", String.valueOf(lost))});
+    }
+
+    if (!sink.test(body.toString())) {
+      failures++;
+    }
+  }
+
+  private void appendEvent(StringBuilder body, String event, long ts, Attr[] attrs) {
+    var raws = new StringBuilder();
     for (var attr : attrs) {
       var k = attr.key != null ? attr.key.replaceAll("[\"\\\\]", "_") : "";
       var v = attr.value != null ? attr.value.replaceAll("[\"\\\\]", "_") : "";
-      raws += ",\"%s\":\"%s\"".formatted(k, v);
+      raws.append(",\"%s\":\"%s\"".formatted(k, v));
     }
 
-    var req =
-        HttpRequest.newBuilder(SERVER)
-            .POST(
-                HttpRequest.BodyPublishers.ofString(
-                    """
-            {"$event":"%s","$ts":%d,"$sid":"%s"%s}"""
-                        .formatted(event, System.currentTimeMillis(), sessionId, raws)))
-            .header("Content-Type", "application/x-json-stream")
-            .build();
+    body.append(
+            """
+        {"$event":"%s","$ts":%d,"$sid":"%s"%s}"""
+                .formatted(event, ts, sessionId, raws))
+        .append('\n');
+  }
 
-    try {
-      var res = client.send(req, HttpResponse.BodyHandlers.discarding());
-      if (res.statusCode() != 204) {
-        failures++;
+  private static Predicate<String> httpSink(HttpClient client) {
+    return body -> {
+      var req =
+          HttpRequest.newBuilder(SERVER)
+              .POST(HttpRequest.BodyPublishers.ofString(body))
+              .header("Content-Type", "application/x-json-stream")
+              .build();
+
+      try {
+        var res = client.send(req, HttpResponse.BodyHandlers.discarding());
+        return res.statusCode() == 204;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (Exception e) {
+        return false;
       }
-    } catch (Exception e) {
-      failures++;
-    }
+    };
   }
 }
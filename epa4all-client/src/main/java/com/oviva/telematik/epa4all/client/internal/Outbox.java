@@ -0,0 +1,431 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import com.oviva.telematik.epa4all.client.ClientException;
+import com.oviva.telematik.epa4all.client.Epa4AllClient;
+import com.oviva.telematik.epaapi.WriteDocumentException;
+import com.oviva.telematik.vau.epa4all.client.info.InformationService;
+import de.gematik.epa.ihe.model.document.Document;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable queue of document writes. Enqueued writes are persisted in a local journal and drained in
+ * the background through an {@link Epa4AllClient}, failed writes are retried with exponential
+ * backoff. Writes not completed before a shutdown or crash are picked up again on the next open.
+ *
+ * <p>Writes are delivered at least once: if the process dies during an upload, the write is
+ * repeated after the restart.
+ *
+ * <p>The journal is compacted whenever it grew well beyond its size after the last compaction, and
+ * completed idempotency keys past their retention are pruned while running.
+ */
+public class Outbox implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(Outbox.class);
+
+  static final long DEFAULT_COMPACT_AT_BYTES = 64L * 1024 * 1024;
+  private static final Duration PRUNE_INTERVAL = Duration.ofMinutes(1);
+
+  private final Epa4AllClient client;
+  private final InformationService informationService;
+  private final Options options;
+  private final Consumer<Outcome> listener;
+  private final Clock clock;
+  private final long compactAtBytes;
+
+  private final OutboxJournal journal;
+  private final Map<String, OutboxJournal.Entry> pending = new ConcurrentHashMap<>();
+  private final Map<String, OutboxJournal.Completion> completed = new ConcurrentHashMap<>();
+
+  // completions hold it shared, compaction exclusively to snapshot consistent pending and completed
+  private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+  private final AtomicBoolean compacting = new AtomicBoolean();
+  private volatile long compactedSize;
+  private volatile Instant prunedAt = Instant.MIN;
+
+  private final DelayQueue<ScheduledJob> scheduled = new DelayQueue<>();
+  private final Map<URI, Semaphore> providerPermits = new ConcurrentHashMap<>();
+  private final Semaphore inFlight;
+  private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+  private final Thread dispatcher;
+  private volatile boolean closed;
+
+  /**
+   * @param journalFile the journal, created if it does not exist
+   * @param concurrencyPerProvider max. concurrent uploads to each provider
+   * @param maxInFlight max. uploads in progress over all providers
+   * @param maxAttempts attempts before a write is given up
+   * @param initialBackoff backoff before the first retry, doubles with every further attempt
+   * @param maxBackoff upper bound for the backoff
+   * @param idempotencyRetention how long completed idempotency keys are remembered
+   * @param codec persists the documents
+   */
+  public record Options(
+      Path journalFile,
+      int concurrencyPerProvider,
+      int maxInFlight,
+      int maxAttempts,
+      Duration initialBackoff,
+      Duration maxBackoff,
+      Duration idempotencyRetention,
+      DocumentCodec codec) {
+
+    public Options {
+      if (journalFile == null) {
+        throw new IllegalArgumentException("journal file missing");
+      }
+      if (concurrencyPerProvider <= 0 || maxInFlight <= 0) {
+        throw new IllegalArgumentException(
+            "invalid concurrency: %d per provider, %d in flight"
+                .formatted(concurrencyPerProvider, maxInFlight));
+      }
+      if (maxAttempts <= 0) {
+        throw new IllegalArgumentException("invalid max attempts: %d".formatted(maxAttempts));
+      }
+      if (initialBackoff == null || maxBackoff == null || idempotencyRetention == null) {
+        throw new IllegalArgumentException("durations missing");
+      }
+      if (codec == null) {
+        throw new IllegalArgumentException("codec missing");
+      }
+    }
+
+    public static Options defaults(Path journalFile) {
+      return new Options(
+          journalFile,
+          4,
+          32,
+          10,
+          Duration.ofSeconds(1),
+          Duration.ofMinutes(10),
+          Duration.ofDays(7),
+          DocumentCodec.json());
+    }
+  }
+
+  public enum Status {
+    WRITTEN,
+    /** given up, either rejected by the ePA or out of attempts */
+    FAILED
+  }
+
+  /**
+   * @param requestId the request ID of the upload, null unless written
+   * @param error the last failure, null unless failed
+   */
+  public record Outcome(
+      String jobId, String insurantId, Status status, String requestId, Throwable error) {}
+
+  private Outbox(
+      Epa4AllClient client,
+      InformationService informationService,
+      Options options,
+      Consumer<Outcome> listener,
+      Clock clock,
+      long compactAtBytes) {
+    this.client = client;
+    this.informationService = informationService;
+    this.options = options;
+    this.listener = listener;
+    this.clock = clock;
+    this.compactAtBytes = compactAtBytes;
+    this.inFlight = new Semaphore(options.maxInFlight());
+    this.journal = OutboxJournal.open(options.journalFile());
+    this.dispatcher = Thread.ofVirtual().name("outbox-dispatcher").unstarted(this::dispatchLoop);
+  }
+
+  /**
+   * Opens the outbox and resumes all writes that were pending when it was last closed.
+   *
+   * @param listener notified about every completed write, must not block
+   */
+  public static Outbox open(
+      Epa4AllClient client,
+      InformationService informationService,
+      Options options,
+      Consumer<Outcome> listener) {
+    return open(
+        client, informationService, options, listener, Clock.systemUTC(), DEFAULT_COMPACT_AT_BYTES);
+  }
+
+  /**
+   * @param compactAtBytes the journal is compacted once it grew beyond twice its compacted size and
+   *     at least this size
+   */
+  static Outbox open(
+      Epa4AllClient client,
+      InformationService informationService,
+      Options options,
+      Consumer<Outcome> listener,
+      Clock clock,
+      long compactAtBytes) {
+    var outbox = new Outbox(client, informationService, options, listener, clock, compactAtBytes);
+    outbox.recover();
+    outbox.dispatcher.start();
+    return outbox;
+  }
+
+  /**
+   * Enqueues a write. Enqueueing the same idempotency key again, while pending or within the
+   * retention after completion, has no effect.
+   *
+   * @param idempotencyKey identifies the write, also used as job ID; null to generate one
+   * @return completes with the job ID once the write is durable
+   */
+  public CompletableFuture<String> enqueue(
+      String idempotencyKey, String insurantId, Document document) {
+
+    if (closed) {
+      throw new IllegalStateException("outbox closed");
+    }
+
+    var jobId = idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
+    var entry =
+        new OutboxJournal.Entry(
+            jobId, insurantId, clock.instant(), options.codec().encode(document));
+
+    if (completed.containsKey(jobId) || pending.putIfAbsent(jobId, entry) != null) {
+      return CompletableFuture.completedFuture(jobId);
+    }
+
+    return journal
+        .appendEnqueued(entry)
+        .whenComplete(
+            (ignored, e) -> {
+              if (e != null) {
+                pending.remove(jobId);
+                return;
+              }
+              // only scheduled once durable, a crash before would otherwise lose the outcome
+              scheduled.add(ScheduledJob.now(entry, 1));
+            })
+        .thenApply(ignored -> jobId);
+  }
+
+  public int pendingCount() {
+    return pending.size();
+  }
+
+  /** Stops the workers, uploads in progress are completed. Pending writes remain in the journal. */
+  @Override
+  public void close() {
+    closed = true;
+    dispatcher.interrupt();
+    try {
+      dispatcher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    workers.close();
+    journal.close();
+  }
+
+  private void recover() {
+    var replay = journal.replay();
+
+    var retainAfter = clock.instant().minus(options.idempotencyRetention());
+    replay.completed().values().stream()
+        .filter(c -> c.completedAt().isAfter(retainAfter))
+        .forEach(c -> completed.put(c.jobId(), c));
+    pending.putAll(replay.pending());
+
+    // also drops everything that completed or expired since the last open
+    journal.compact(pending.values(), completed.values());
+    compactedSize = journal.size();
+    prunedAt = clock.instant();
+
+    pending.values().forEach(e -> scheduled.add(ScheduledJob.now(e, 1)));
+    if (!pending.isEmpty()) {
+      log.atInfo().log("recovered {} pending writes from outbox journal", pending.size());
+    }
+  }
+
+  private void dispatchLoop() {
+    while (!closed) {
+      try {
+        var job = scheduled.take();
+        inFlight.acquire();
+        workers.execute(
+            () -> {
+              try {
+                process(job);
+              } finally {
+                inFlight.release();
+              }
+            });
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private void process(ScheduledJob job) {
+    var entry = job.entry();
+    Throwable error;
+    try {
+      // a failed lookup throws and is retried, only a lookup without account is final
+      var endpoint = informationService.findAccountEndpoint(entry.insurantId());
+      if (endpoint.isEmpty()) {
+        var e = new ClientException("no account for KVNR %s".formatted(entry.insurantId()));
+        log.atWarn().setCause(e).log("giving up outbox write {}", entry.jobId());
+        complete(entry, Status.FAILED, null, e);
+        return;
+      }
+
+      var permits =
+          providerPermits.computeIfAbsent(
+              endpoint.get(), e -> new Semaphore(options.concurrencyPerProvider()));
+      permits.acquireUninterruptibly();
+      try {
+        var document = options.codec().decode(entry.document());
+        var res = client.writeDocument(entry.insurantId(), document);
+        complete(entry, Status.WRITTEN, res.requestId(), null);
+        return;
+      } finally {
+        permits.release();
+      }
+    } catch (RuntimeException e) {
+      error = e;
+    }
+
+    if (isPermanent(error, job.attempt()) || job.attempt() >= options.maxAttempts()) {
+      log.atWarn().setCause(error).log("giving up outbox write {}", entry.jobId());
+      complete(entry, Status.FAILED, null, error);
+      return;
+    }
+
+    if (closed) {
+      // still pending in the journal, retried after the next open
+      return;
+    }
+
+    var backoff = backoff(job.attempt());
+    log.atDebug()
+        .setCause(error)
+        .log("outbox write {} failed, retry in {}", entry.jobId(), backoff);
+    scheduled.add(
+        new ScheduledJob(entry, job.attempt() + 1, System.nanoTime() + backoff.toNanos()));
+  }
+
+  private void complete(OutboxJournal.Entry entry, Status status, String requestId, Throwable e) {
+    var now = clock.instant();
+
+    journalLock.readLock().lock();
+    try {
+      var done =
+          status == Status.WRITTEN
+              ? journal.appendDone(entry.jobId(), requestId, now)
+              : journal.appendFailed(entry.jobId(), e != null ? e.getMessage() : null, now);
+      done.join();
+
+      completed.put(
+          entry.jobId(),
+          new OutboxJournal.Completion(entry.jobId(), status == Status.WRITTEN, now));
+      pending.remove(entry.jobId());
+    } catch (CompletionException ex) {
+      // the job stays pending in the journal, it is repeated after the next open
+      log.atError().setCause(ex).log("failed to record outcome of outbox write {}", entry.jobId());
+      return;
+    } finally {
+      journalLock.readLock().unlock();
+    }
+
+    pruneCompleted(now);
+    compactIfGrown();
+
+    try {
+      listener.accept(new Outcome(entry.jobId(), entry.insurantId(), status, requestId, e));
+    } catch (RuntimeException ex) {
+      log.atWarn().setCause(ex).log("outbox listener failed");
+    }
+  }
+
+  private void pruneCompleted(Instant now) {
+    if (now.isBefore(prunedAt.plus(PRUNE_INTERVAL))) {
+      return;
+    }
+    prunedAt = now;
+    var retainAfter = now.minus(options.idempotencyRetention());
+    completed.values().removeIf(c -> !c.completedAt().isAfter(retainAfter));
+  }
+
+  /** Rewrites the journal with only the live records, keeps it from growing with every write. */
+  private void compactIfGrown() {
+    var size = journal.size();
+    if (size < compactAtBytes
+        || size < 2 * compactedSize
+        || !compacting.compareAndSet(false, true)) {
+      return;
+    }
+
+    journalLock.writeLock().lock();
+    try {
+      journal.compact(pending.values(), completed.values());
+      compactedSize = journal.size();
+      log.atDebug().log("compacted outbox journal from {} to {} bytes", size, compactedSize);
+    } catch (RuntimeException e) {
+      // appends continue on the old journal, retried with the next completion
+      log.atWarn().setCause(e).log("failed to compact outbox journal");
+    } finally {
+      journalLock.writeLock().unlock();
+      compacting.set(false);
+    }
+  }
+
+  private Duration backoff(int attempt) {
+    var exp = options.initialBackoff().multipliedBy(1L << Math.min(attempt - 1, 20));
+    var capped = exp.compareTo(options.maxBackoff()) > 0 ? options.maxBackoff() : exp;
+    // full jitter, avoids retrying in lock-step after an outage
+    return Duration.ofMillis(ThreadLocalRandom.current().nextLong(capped.toMillis() + 1));
+  }
+
+  private static boolean isPermanent(Throwable e, int attempt) {
+    if (Epa4AllClientImpl.isUnknownAccount(e)) {
+      // the client dropped the cached account, the retry looks it up again
+      return attempt > 1;
+    }
+    // rejected by the ePA, retrying won't help; failed account lookups are not among these
+    return e instanceof ClientException
+        || e instanceof WriteDocumentException
+        || e instanceof IllegalArgumentException;
+  }
+
+  private record ScheduledJob(OutboxJournal.Entry entry, int attempt, long readyAtNanos)
+      implements Delayed {
+
+    static ScheduledJob now(OutboxJournal.Entry entry, int attempt) {
+      return new ScheduledJob(entry, attempt, System.nanoTime());
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(readyAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+      return Long.compare(readyAtNanos, ((ScheduledJob) o).readyAtNanos);
+    }
+  }
+}
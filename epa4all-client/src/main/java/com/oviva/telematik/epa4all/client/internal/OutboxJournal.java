@@ -0,0 +1,344 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the outbox. Appends are written and fsync'ed by a single writer thread,
+ * all appends queued while a sync is running go into the next sync (group commit).
+ *
+ * <p>Record layout:
+ *
+ * <pre>
+ *   length(4) | crc32 of body(4) | body
+ *   body: type(1) | job id | ... type specific fields
+ * </pre>
+ *
+ * A torn record at the end of the file, e.g. after a crash during a write, is truncated on open.
+ * Records are read one by one, the journal may grow larger than fits into memory until compacted.
+ */
+class OutboxJournal implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(OutboxJournal.class);
+
+  private static final byte TYPE_ENQUEUED = 1;
+  private static final byte TYPE_DONE = 2;
+  private static final byte TYPE_FAILED = 3;
+
+  private static final int MAX_BATCH = 1024;
+  private static final int MAX_MESSAGE_LENGTH = 1000;
+
+  private final Path file;
+  private final LinkedBlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+  private final Thread writer;
+
+  private FileChannel channel;
+  private volatile long size;
+  private volatile boolean closed;
+
+  record Entry(String jobId, String insurantId, Instant enqueuedAt, byte[] document) {}
+
+  record Completion(String jobId, boolean written, Instant completedAt) {}
+
+  record Replay(Map<String, Entry> pending, Map<String, Completion> completed) {}
+
+  private record PendingWrite(byte[] record, CompletableFuture<Void> synced) {}
+
+  // stops the writer, interrupting it instead would close the file channel
+  private static final PendingWrite STOP = new PendingWrite(new byte[0], null);
+
+  private OutboxJournal(Path file, FileChannel channel) {
+    this.file = file;
+    this.channel = channel;
+    this.writer = Thread.ofPlatform().name("outbox-journal").daemon().unstarted(this::writeLoop);
+  }
+
+  static OutboxJournal open(Path file) {
+    try {
+      var channel =
+          FileChannel.open(
+              file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      var journal = new OutboxJournal(file, channel);
+      journal.writer.start();
+      return journal;
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to open outbox journal " + file, e);
+    }
+  }
+
+  /** Reads all records, must be called before the first append. */
+  Replay replay() {
+    var pending = new LinkedHashMap<String, Entry>();
+    var completed = new LinkedHashMap<String, Completion>();
+
+    try {
+      var fileSize = channel.size();
+      channel.position(0);
+      // not closed, that would close the channel
+      var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+      long valid = 0;
+      while (fileSize - valid >= 8) {
+        var length = in.readInt();
+        var crc = in.readInt();
+        if (length < 0 || length > fileSize - valid - 8) {
+          break;
+        }
+        var body = new byte[length];
+        in.readFully(body);
+        if (crc32(body) != crc) {
+          break;
+        }
+        apply(body, pending, completed);
+        valid += 8 + length;
+      }
+
+      if (valid < fileSize) {
+        log.atWarn().log("truncating torn outbox journal tail, {} bytes", fileSize - valid);
+        channel.truncate(valid);
+      }
+      channel.position(valid);
+      size = valid;
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to replay outbox journal " + file, e);
+    }
+
+    return new Replay(pending, completed);
+  }
+
+  CompletableFuture<Void> appendEnqueued(Entry entry) {
+    return append(enqueuedBody(entry));
+  }
+
+  CompletableFuture<Void> appendDone(String jobId, String requestId, Instant completedAt) {
+    return append(completionBody(TYPE_DONE, jobId, completedAt, requestId));
+  }
+
+  CompletableFuture<Void> appendFailed(String jobId, String message, Instant completedAt) {
+    var m = message != null ? message : "";
+    var truncated = m.length() > MAX_MESSAGE_LENGTH ? m.substring(0, MAX_MESSAGE_LENGTH) : m;
+    return append(completionBody(TYPE_FAILED, jobId, completedAt, truncated));
+  }
+
+  /**
+   * @return the bytes written to the journal file, grows with every append until compacted
+   */
+  long size() {
+    return size;
+  }
+
+  /**
+   * Rewrites the journal with only the given records, blocks until done. Appends queued meanwhile
+   * are written to the compacted journal.
+   */
+  synchronized void compact(Collection<Entry> pending, Collection<Completion> completed) {
+    var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (var out =
+        FileChannel.open(
+            tmp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+
+      // completions first, they are needed to dedup enqueues during replay
+      for (var c : completed) {
+        var type = c.written() ? TYPE_DONE : TYPE_FAILED;
+        writeFully(out, frame(completionBody(type, c.jobId(), c.completedAt(), "")));
+      }
+      for (var e : pending) {
+        writeFully(out, frame(enqueuedBody(e)));
+      }
+      out.force(true);
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to compact outbox journal " + file, e);
+    }
+
+    try {
+      channel.close();
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      size = channel.size();
+      channel.position(size);
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to swap compacted outbox journal " + file, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    queue.add(STOP);
+    try {
+      writer.join();
+      // the writer may have stopped with appends still queued
+      flush(drain(null));
+      channel.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to close outbox journal " + file, e);
+    }
+  }
+
+  private CompletableFuture<Void> append(byte[] body) {
+    if (closed) {
+      return CompletableFuture.failedFuture(new IllegalStateException("outbox journal closed"));
+    }
+    var write = new PendingWrite(frame(body), new CompletableFuture<>());
+    queue.add(write);
+    return write.synced();
+  }
+
+  private void writeLoop() {
+    while (true) {
+      try {
+        var batch = drain(queue.take());
+        var stop = batch.remove(STOP);
+        flush(batch);
+        if (stop) {
+          return;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private List<PendingWrite> drain(PendingWrite first) {
+    var batch = new ArrayList<PendingWrite>();
+    if (first != null) {
+      batch.add(first);
+    }
+    queue.drainTo(batch, MAX_BATCH);
+    return batch;
+  }
+
+  private synchronized void flush(List<PendingWrite> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      for (var w : batch) {
+        writeFully(channel, w.record());
+      }
+      channel.force(false);
+      size = channel.position();
+      batch.forEach(w -> w.synced().complete(null));
+    } catch (IOException e) {
+      log.atError().setCause(e).log("failed to write outbox journal");
+      batch.forEach(w -> w.synced().completeExceptionally(e));
+    }
+  }
+
+  private static void apply(
+      byte[] body, Map<String, Entry> pending, Map<String, Completion> completed)
+      throws IOException {
+    var in = new DataInputStream(new ByteArrayInputStream(body));
+    var type = in.readByte();
+    var jobId = in.readUTF();
+    switch (type) {
+      case TYPE_ENQUEUED -> {
+        var insurantId = in.readUTF();
+        var enqueuedAt = Instant.ofEpochMilli(in.readLong());
+        var document = new byte[in.readInt()];
+        in.readFully(document);
+        if (!completed.containsKey(jobId)) {
+          pending.put(jobId, new Entry(jobId, insurantId, enqueuedAt, document));
+        }
+      }
+      case TYPE_DONE, TYPE_FAILED -> {
+        pending.remove(jobId);
+        completed.put(
+            jobId, new Completion(jobId, type == TYPE_DONE, Instant.ofEpochMilli(in.readLong())));
+      }
+      default -> throw new IOException("unknown outbox journal record type: %d".formatted(type));
+    }
+  }
+
+  private static byte[] enqueuedBody(Entry entry) {
+    return body(
+        TYPE_ENQUEUED,
+        entry.jobId(),
+        out -> {
+          out.writeUTF(entry.insurantId());
+          out.writeLong(entry.enqueuedAt().toEpochMilli());
+          out.writeInt(entry.document().length);
+          out.write(entry.document());
+        });
+  }
+
+  private static byte[] completionBody(
+      byte type, String jobId, Instant completedAt, String detail) {
+    return body(
+        type,
+        jobId,
+        out -> {
+          out.writeLong(completedAt.toEpochMilli());
+          out.writeUTF(detail);
+        });
+  }
+
+  private static byte[] body(byte type, String jobId, BodyWriter fields) {
+    try {
+      var bytes = new ByteArrayOutputStream(128);
+      var out = new DataOutputStream(bytes);
+      out.writeByte(type);
+      out.writeUTF(jobId);
+      fields.write(out);
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] frame(byte[] body) {
+    return ByteBuffer.allocate(8 + body.length)
+        .putInt(body.length)
+        .putInt(crc32(body))
+        .put(body)
+        .array();
+  }
+
+  private static int crc32(byte[] body) {
+    var crc = new CRC32();
+    crc.update(body);
+    return (int) crc.getValue();
+  }
+
+  private static void writeFully(FileChannel channel, byte[] record) throws IOException {
+    var buf = ByteBuffer.wrap(record);
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+  }
+
+  @FunctionalInterface
+  private interface BodyWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+}
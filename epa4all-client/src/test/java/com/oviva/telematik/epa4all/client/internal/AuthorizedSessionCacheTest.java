@@ -0,0 +1,63 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.oviva.epa.client.MutableClock;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class AuthorizedSessionCacheTest {
+
+  private static final AuthorizedSessionCache.Key KEY =
+      new AuthorizedSessionCache.Key(
+          URI.create("https://epa-as-1.dev.epa4all.de"), "1-2-3", "X123456789");
+
+  @Test
+  void isAuthorized_shouldExpireAfterInactivity() {
+    // Given
+    var clock = new MutableClock(Instant.EPOCH);
+    var cache = new AuthorizedSessionCache(clock, Duration.ofMinutes(20));
+    cache.authorized(KEY);
+
+    // When & Then
+    clock.advance(Duration.ofMinutes(15));
+    assertTrue(cache.isAuthorized(KEY));
+
+    // use extends the lifetime
+    clock.advance(Duration.ofMinutes(15));
+    assertTrue(cache.isAuthorized(KEY));
+
+    clock.advance(Duration.ofMinutes(20));
+    assertFalse(cache.isAuthorized(KEY));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void invalidate_shouldRemoveSession() {
+    // Given
+    var cache = new AuthorizedSessionCache(Clock.systemUTC(), Duration.ofMinutes(20));
+    cache.authorized(KEY);
+
+    // When
+    cache.invalidate(KEY);
+
+    // Then
+    assertFalse(cache.isAuthorized(KEY));
+  }
+
+  @Test
+  void isAuthorized_shouldBeScopedToInsurant() {
+    // Given
+    var cache = new AuthorizedSessionCache(Clock.systemUTC(), Duration.ofMinutes(20));
+    cache.authorized(KEY);
+
+    // When
+    var other = new AuthorizedSessionCache.Key(KEY.endpoint(), KEY.telematikId(), "Y987654321");
+
+    // Then
+    assertFalse(cache.isAuthorized(other));
+  }
+}
@@ -0,0 +1,226 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.oviva.telematik.epa4all.client.Epa4AllClient;
+import com.oviva.telematik.epa4all.client.WriteDocumentResponse;
+import com.oviva.telematik.epa4all.client.internal.BulkWriteEngine.FailurePolicy;
+import com.oviva.telematik.vau.epa4all.client.info.AccountLookupException;
+import com.oviva.telematik.vau.epa4all.client.info.InformationService;
+import de.gematik.epa.ihe.model.document.Document;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class BulkWriteEngineTest {
+
+  private static final URI IBM = URI.create("https://epa-as-1.dev.epa4all.de");
+
+  @Mock private Epa4AllClient client;
+  @Mock private InformationService informationService;
+  @Mock private Document document;
+
+  @Test
+  void start_shouldBoundConcurrencyPerProvider() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint(any())).thenReturn(Optional.of(IBM));
+
+    var running = new AtomicInteger();
+    var maxRunning = new AtomicInteger();
+    when(client.writeDocument(any(), any()))
+        .thenAnswer(
+            inv -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              Thread.sleep(5);
+              running.decrementAndGet();
+              return new WriteDocumentResponse("r");
+            });
+
+    var engine =
+        new BulkWriteEngine(
+            client, informationService, new BulkWriteEngine.Options(2, 16, FailurePolicy.skip()));
+    var results = new ArrayList<BulkWriteEngine.Result>();
+
+    // When
+    var run = engine.start(jobs(20), results::add);
+
+    // Then
+    assertTrue(run.await(Duration.ofSeconds(10)));
+    assertEquals(20, results.size());
+    assertTrue(maxRunning.get() <= 2);
+    assertEquals(20, run.progress().written());
+  }
+
+  @Test
+  void start_shouldRetryAndReportNoAccount() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint("X000000000")).thenReturn(Optional.empty());
+    when(informationService.findAccountEndpoint("X000000001")).thenReturn(Optional.of(IBM));
+    when(client.writeDocument(eq("X000000001"), any()))
+        .thenThrow(new IllegalStateException("connection reset"))
+        .thenReturn(new WriteDocumentResponse("r1"));
+
+    var engine =
+        new BulkWriteEngine(
+            client,
+            informationService,
+            new BulkWriteEngine.Options(1, 4, FailurePolicy.retry(3, Duration.ZERO)));
+    var results = new ArrayList<BulkWriteEngine.Result>();
+
+    // When
+    var run = engine.start(jobs(2), results::add);
+
+    // Then
+    assertTrue(run.await(Duration.ofSeconds(10)));
+    var progress = run.progress();
+    assertEquals(1, progress.written());
+    assertEquals(1, progress.noAccount());
+    assertEquals(1, progress.retries());
+  }
+
+  @Test
+  void start_shouldNotReportFailedLookupAsNoAccount() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint(any()))
+        .thenThrow(new AccountLookupException("provider unreachable"));
+
+    var engine =
+        new BulkWriteEngine(
+            client, informationService, new BulkWriteEngine.Options(1, 4, FailurePolicy.skip()));
+    var results = new ArrayList<BulkWriteEngine.Result>();
+
+    // When
+    var run = engine.start(jobs(1), results::add);
+
+    // Then
+    assertTrue(run.await(Duration.ofSeconds(10)));
+    assertEquals(BulkWriteEngine.Status.FAILED, results.get(0).status());
+    assertInstanceOf(AccountLookupException.class, results.get(0).error());
+    assertEquals(0, run.progress().noAccount());
+    verifyNoInteractions(client);
+  }
+
+  @Test
+  void start_shouldRetryFailedLookup() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint(any()))
+        .thenThrow(new AccountLookupException("provider unreachable"))
+        .thenReturn(Optional.of(IBM));
+    when(client.writeDocument(any(), any())).thenReturn(new WriteDocumentResponse("r"));
+
+    var engine =
+        new BulkWriteEngine(
+            client,
+            informationService,
+            new BulkWriteEngine.Options(1, 4, FailurePolicy.retry(3, Duration.ZERO)));
+    var results = new ArrayList<BulkWriteEngine.Result>();
+
+    // When
+    var run = engine.start(jobs(1), results::add);
+
+    // Then
+    assertTrue(run.await(Duration.ofSeconds(10)));
+    assertEquals(BulkWriteEngine.Status.WRITTEN, results.get(0).status());
+    assertEquals(1, run.progress().retries());
+  }
+
+  @Test
+  void start_shouldNotBlockOtherInsurantsDuringBackoff() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint(any())).thenReturn(Optional.of(IBM));
+    when(client.writeDocument(eq("X000000000"), any()))
+        .thenThrow(new IllegalStateException("connection reset"))
+        .thenReturn(new WriteDocumentResponse("r0"));
+    when(client.writeDocument(eq("X000000001"), any())).thenReturn(new WriteDocumentResponse("r1"));
+
+    var engine =
+        new BulkWriteEngine(
+            client,
+            informationService,
+            new BulkWriteEngine.Options(1, 4, FailurePolicy.retry(3, Duration.ofMillis(500))));
+    var results = new CopyOnWriteArrayList<BulkWriteEngine.Result>();
+
+    // When
+    var run = engine.start(jobs(2), results::add);
+
+    // Then
+    assertTrue(run.await(Duration.ofSeconds(10)));
+    assertEquals(
+        List.of("X000000001", "X000000000"),
+        results.stream().map(r -> r.job().insurantId()).toList());
+  }
+
+  @Test
+  void start_shouldSkipRemainingJobs_whenAborted() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint(any())).thenReturn(Optional.of(IBM));
+    when(client.writeDocument(any(), any())).thenThrow(new IllegalStateException("boom"));
+
+    var engine =
+        new BulkWriteEngine(
+            client, informationService, new BulkWriteEngine.Options(1, 1, FailurePolicy.abort()));
+    var results = new ArrayList<BulkWriteEngine.Result>();
+
+    // When
+    var run = engine.start(jobs(5), results::add);
+
+    // Then
+    assertTrue(run.await(Duration.ofSeconds(10)));
+    assertEquals(5, results.size());
+    assertEquals(1, run.progress().failed());
+    assertEquals(4, run.progress().skipped());
+    verify(client, times(1)).writeDocument(any(), any());
+  }
+
+  @Test
+  void start_shouldStopAndRethrow_whenSinkFails() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint(any())).thenReturn(Optional.of(IBM));
+    when(client.writeDocument(any(), any())).thenReturn(new WriteDocumentResponse("r"));
+
+    var engine =
+        new BulkWriteEngine(
+            client, informationService, new BulkWriteEngine.Options(1, 1, FailurePolicy.skip()));
+    var sinkFailure = new IllegalStateException("disk full");
+    var calls = new AtomicInteger();
+
+    // When
+    var run =
+        engine.start(
+            jobs(5),
+            r -> {
+              calls.incrementAndGet();
+              throw sinkFailure;
+            });
+
+    // Then
+    var e = assertThrows(IllegalStateException.class, () -> run.await(Duration.ofSeconds(10)));
+    assertSame(sinkFailure, e);
+    assertEquals(1, calls.get());
+    assertEquals(4, run.progress().skipped());
+    verify(client, times(1)).writeDocument(any(), any());
+  }
+
+  private Stream<BulkWriteEngine.Job> jobs(int n) {
+    return IntStream.range(0, n)
+        .mapToObj(i -> new BulkWriteEngine.Job("X%09d".formatted(i), document));
+  }
+}
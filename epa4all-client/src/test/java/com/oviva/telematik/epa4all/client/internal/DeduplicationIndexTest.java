@@ -0,0 +1,187 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.oviva.epa.client.MutableClock;
+import de.gematik.epa.ihe.model.document.Document;
+import de.gematik.epa.ihe.model.document.DocumentMetadata;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DeduplicationIndexTest {
+
+  private static final String KVNR = "X123456789";
+  private static final Instant NOW = Instant.parse("2025-01-10T10:00:00Z");
+
+  @TempDir Path dir;
+
+  @Test
+  void lookup_shouldFindRecordedDocumentAfterReopen() throws Exception {
+
+    // Given
+    var file = dir.resolve("dedup.idx");
+    try (var index = DeduplicationIndex.open(file, Duration.ofDays(1), clockAt(NOW))) {
+      index.record(KVNR, document("text/plain", "hello"), "r1");
+    }
+    // a torn record from a crash while appending
+    Files.write(file, new byte[] {0, 10, 'X'}, StandardOpenOption.APPEND);
+
+    // When
+    try (var index = DeduplicationIndex.open(file, Duration.ofDays(1), clockAt(NOW))) {
+
+      // Then
+      assertEquals(Optional.of("r1"), index.lookup(KVNR, document("text/plain", "hello")));
+      assertEquals(1, index.size());
+    }
+  }
+
+  @Test
+  void lookup_shouldNotMatchOtherContentMetadataOrRecord() {
+
+    // Given
+    try (var index =
+        DeduplicationIndex.open(dir.resolve("dedup.idx"), Duration.ofDays(1), clockAt(NOW))) {
+      index.record(KVNR, document("text/plain", "hello"), "r1");
+
+      // When
+      var otherContent = index.lookup(KVNR, document("text/plain", "hello!"));
+      var otherMimeType = index.lookup(KVNR, document("application/pdf", "hello"));
+      var otherRecord = index.lookup("Y123456789", document("text/plain", "hello"));
+
+      // Then
+      assertTrue(otherContent.isEmpty());
+      assertTrue(otherMimeType.isEmpty());
+      assertTrue(otherRecord.isEmpty());
+    }
+  }
+
+  @Test
+  void open_shouldDropExpiredEntries() {
+
+    // Given
+    var file = dir.resolve("dedup.idx");
+    try (var index = DeduplicationIndex.open(file, Duration.ofHours(1), clockAt(NOW))) {
+      index.record(KVNR, document("text/plain", "hello"), "r1");
+    }
+
+    // When
+    try (var index =
+        DeduplicationIndex.open(file, Duration.ofHours(1), clockAt(NOW.plusSeconds(3601)))) {
+
+      // Then
+      assertEquals(0, index.size());
+      assertTrue(index.lookup(KVNR, document("text/plain", "hello")).isEmpty());
+    }
+  }
+
+  @Test
+  void record_shouldPruneExpiredEntriesAndCompactFile() throws Exception {
+
+    // Given
+    var file = dir.resolve("dedup.idx");
+    var clock = new MutableClock(NOW);
+    try (var index = DeduplicationIndex.open(file, Duration.ofHours(1), clock)) {
+      for (int i = 0; i < 2000; i++) {
+        index.record(KVNR, document("text/plain", "hello " + i), "r" + i);
+      }
+      var grown = Files.size(file);
+
+      // When
+      clock.advance(Duration.ofHours(2));
+      index.record(KVNR, document("text/plain", "fresh"), "r-fresh");
+
+      // Then
+      assertEquals(1, index.size());
+      assertTrue(Files.size(file) < grown / 1000);
+      assertEquals(Optional.of("r-fresh"), index.lookup(KVNR, document("text/plain", "fresh")));
+    }
+
+    try (var index = DeduplicationIndex.open(file, Duration.ofHours(1), clock)) {
+      assertEquals(Optional.of("r-fresh"), index.lookup(KVNR, document("text/plain", "fresh")));
+    }
+  }
+
+  @Test
+  void claim_shouldMakeConcurrentDuplicateWaitForFirstWrite() throws Exception {
+
+    // Given
+    try (var index =
+            DeduplicationIndex.open(dir.resolve("dedup.idx"), Duration.ofDays(1), clockAt(NOW));
+        var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      assertTrue(index.claim(KVNR, document("text/plain", "hello")).isEmpty());
+
+      // When
+      var duplicate = executor.submit(() -> index.claim(KVNR, document("text/plain", "hello")));
+      Thread.sleep(50);
+      assertFalse(duplicate.isDone());
+      index.record(KVNR, document("text/plain", "hello"), "r1");
+
+      // Then
+      assertEquals(Optional.of("r1"), duplicate.get(5, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  void claim_shouldLetWaiterWrite_whenFirstWriteFails() throws Exception {
+
+    // Given
+    try (var index =
+            DeduplicationIndex.open(dir.resolve("dedup.idx"), Duration.ofDays(1), clockAt(NOW));
+        var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      assertTrue(index.claim(KVNR, document("text/plain", "hello")).isEmpty());
+      var duplicate = executor.submit(() -> index.claim(KVNR, document("text/plain", "hello")));
+      Thread.sleep(50);
+
+      // When
+      index.release(KVNR, document("text/plain", "hello"));
+
+      // Then
+      assertTrue(duplicate.get(5, TimeUnit.SECONDS).isEmpty());
+    }
+  }
+
+  @Test
+  void claim_shouldStopWaiting_whenFirstWriterNeverFinishes() throws Exception {
+
+    // Given
+    try (var index =
+        DeduplicationIndex.open(dir.resolve("dedup.idx"), Duration.ofDays(1), clockAt(NOW))) {
+      assertTrue(index.claim(KVNR, document("text/plain", "hello")).isEmpty());
+
+      // When
+      var e =
+          assertThrows(
+              IllegalStateException.class,
+              () -> index.claim(KVNR, document("text/plain", "hello"), Duration.ofMillis(50)));
+
+      // Then
+      assertTrue(e.getMessage().contains("in flight"));
+    }
+  }
+
+  private static Clock clockAt(Instant instant) {
+    return Clock.fixed(instant, ZoneOffset.UTC);
+  }
+
+  private static Document document(String mimeType, String content) {
+    var metadata =
+        new DocumentMetadata(
+            null, null, null, null, null, null, null, null, null, null, null, null, null, mimeType,
+            null, null, null, null, null, null, null, null, null, null, null, null);
+    return new Document(content.getBytes(StandardCharsets.UTF_8), metadata, KVNR);
+  }
+}
@@ -0,0 +1,84 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.oviva.telematik.epa4all.client.WriteDocumentsResponse;
+import com.oviva.telematik.epaapi.WriteDocumentException;
+import de.gematik.epa.ihe.model.document.Document;
+import de.gematik.epa.ihe.model.document.DocumentMetadata;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DocumentBatchesTest {
+
+  @Test
+  void split_shouldRespectMaxDocuments() {
+    // Given
+    var documents = List.of(document("a", 1), document("b", 1), document("c", 1));
+
+    // When
+    var batches = DocumentBatches.split(documents, new BatchLimits(2, 1024));
+
+    // Then
+    assertEquals(List.of(List.of(0, 1), List.of(2)), batches);
+  }
+
+  @Test
+  void split_shouldRespectMaxBytes() {
+    // Given
+    var documents =
+        List.of(document("a", 600), document("b", 600), document("c", 2000), document("d", 10));
+
+    // When
+    var batches = DocumentBatches.split(documents, new BatchLimits(10, 1024));
+
+    // Then
+    assertEquals(List.of(List.of(0), List.of(1), List.of(2), List.of(3)), batches);
+  }
+
+  @Test
+  void failed_shouldAttributeErrorsByEntryUuid() {
+    // Given
+    var documents = List.of(document("a", 1), document("b", 1));
+    var errors =
+        List.of(
+            new WriteDocumentException.Error(
+                "invalid format", null, "XDSRepositoryMetadataError", "Error", "urn:uuid:b"));
+
+    // When
+    var results = DocumentBatches.failed(documents, List.of(0, 1), errors);
+
+    // Then
+    assertEquals(WriteDocumentsResponse.Status.NOT_WRITTEN, results.get(0).status());
+    assertEquals(0, results.get(0).errors().size());
+    assertEquals(WriteDocumentsResponse.Status.REJECTED, results.get(1).status());
+    assertEquals("XDSRepositoryMetadataError", results.get(1).errors().get(0).errorCode());
+  }
+
+  @Test
+  void failed_shouldRejectAll_whenNoErrorIsAttributable() {
+    // Given
+    var documents = List.of(document("a", 1), document("b", 1));
+    var errors =
+        List.of(
+            new WriteDocumentException.Error(
+                "unknown patient", null, "XDSUnknownPatientId", "Error", null));
+
+    // When
+    var results = DocumentBatches.failed(documents, List.of(0, 1), errors);
+
+    // Then
+    for (var r : results) {
+      assertEquals(WriteDocumentsResponse.Status.REJECTED, r.status());
+      assertEquals("XDSUnknownPatientId", r.errors().get(0).errorCode());
+    }
+  }
+
+  private static Document document(String entryUuid, int size) {
+    var metadata = mock(DocumentMetadata.class);
+    when(metadata.entryUUID()).thenReturn("urn:uuid:" + entryUuid);
+    return new Document(new byte[size], metadata, null);
+  }
+}
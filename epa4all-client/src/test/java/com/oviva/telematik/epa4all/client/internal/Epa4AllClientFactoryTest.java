@@ -0,0 +1,68 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.oviva.telematik.vau.epa4all.client.info.AccountIndex;
+import com.oviva.telematik.vau.epa4all.client.info.InformationService;
+import com.oviva.telematik.vau.proxy.VauProxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class Epa4AllClientFactoryTest {
+
+  private static final String KVNR = "X123456789";
+
+  @TempDir Path dir;
+
+  @Test
+  void buildInformationService_shouldFindAccountInIndexWithoutAskingProviders() {
+
+    // Given
+    var outerHttpClient = mock(HttpClient.class);
+    try (var index =
+        AccountIndex.open(
+            dir.resolve("accounts.idx"), 16, Duration.ofDays(30), Clock.systemUTC())) {
+      index.put(KVNR, InformationService.EpaProvider.BITMARCK.id());
+
+      // When
+      var service =
+          Epa4AllClientFactory.buildInformationService(Environment.RU, outerHttpClient, index);
+      var endpoint = service.findAccountEndpoint(KVNR);
+
+      // Then
+      assertEquals(Optional.of(URI.create("https://epa-as-2.dev.epa4all.de")), endpoint);
+      verifyNoInteractions(outerHttpClient);
+    }
+  }
+
+  @Test
+  void close_shouldCloseAccountIndex() {
+
+    // Given
+    var accountIndex = mock(AccountIndex.class);
+    var factory =
+        new Epa4AllClientFactory(
+            mock(VauProxy.class),
+            null,
+            null,
+            null,
+            null,
+            BatchLimits.DEFAULT,
+            Epa4AllClientImpl.VIRTUAL_THREADS,
+            null,
+            accountIndex);
+
+    // When
+    factory.close();
+
+    // Then
+    verify(accountIndex).close();
+  }
+}
@@ -1,32 +1,48 @@
 package com.oviva.telematik.epa4all.client.internal;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 import com.oviva.epa.client.model.SmcbCard;
 import com.oviva.telematik.epa4all.client.ClientException;
+import com.oviva.telematik.epa4all.client.WriteDocumentsResponse;
 import com.oviva.telematik.epaapi.SoapClientFactory;
 import com.oviva.telematik.vau.epa4all.client.authz.AuthorizationService;
+import com.oviva.telematik.vau.epa4all.client.info.AccountLookupException;
 import com.oviva.telematik.vau.epa4all.client.info.InformationService;
 import de.gematik.epa.ihe.model.Author;
 import de.gematik.epa.ihe.model.document.Document;
 import de.gematik.epa.ihe.model.document.DocumentMetadata;
 import de.gematik.epa.ihe.model.simple.AuthorInstitution;
 import de.gematik.epa.ihe.model.simple.ByteArray;
+import jakarta.xml.ws.WebServiceException;
 import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import oasis.names.tc.ebxml_regrep.xsd.rs._3.RegistryResponseType;
 import org.apache.cxf.endpoint.Client;
 import org.apache.cxf.frontend.ClientProxy;
+import org.apache.cxf.transport.http.HTTPException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import telematik.ws.phr.wsdl.IDocumentManagementPortType;
 
@@ -38,6 +54,10 @@ class Epa4AllClientImplTest {
   @Mock private SmcbCard card;
   @Mock private SoapClientFactory soapClientFactory;
 
+  @Spy
+  private AuthorizedSessionCache sessionCache =
+      new AuthorizedSessionCache(Clock.systemUTC(), Duration.ofMinutes(20));
+
   @InjectMocks private Epa4AllClientImpl client;
 
   private static final String INSURANT_ID = "X123456789";
@@ -75,6 +95,327 @@ class Epa4AllClientImplTest {
     }
   }
 
+  @Test
+  void writeDocument_shouldReuseAuthorizedSession() {
+
+    // Given
+    when(informationService.findAccountEndpoint(INSURANT_ID))
+        .thenReturn(Optional.of(HTTPS_ENDPOINT_URI));
+
+    var regRes = mockRegistryResponseType("r1");
+    var documentManagementPort = mockDocumentManagementPort(regRes);
+    var document = mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME);
+
+    try (var m = mockStatic(ClientProxy.class)) {
+      var endpoint = mock(Client.class);
+      when(endpoint.getRequestContext()).thenReturn(new java.util.HashMap<>());
+      m.when(() -> ClientProxy.getClient(documentManagementPort)).thenReturn(endpoint);
+
+      // When
+      client.writeDocument(INSURANT_ID, document);
+      client.writeDocument(INSURANT_ID, document);
+
+      // Then
+      verify(authorizationService, times(1)).authorizeVauWithSmcB(HTTPS_ENDPOINT_URI, INSURANT_ID);
+    }
+  }
+
+  @Test
+  void writeDocument_shouldReauthorize_whenCachedSessionIsRejected() throws Exception {
+
+    // Given
+    when(informationService.findAccountEndpoint(INSURANT_ID))
+        .thenReturn(Optional.of(HTTPS_ENDPOINT_URI));
+
+    var regRes = mockRegistryResponseType("r2");
+    var documentManagementPort = mock(IDocumentManagementPortType.class);
+    when(soapClientFactory.getIDocumentManagementPort(any())).thenReturn(documentManagementPort);
+    when(documentManagementPort.documentRepositoryProvideAndRegisterDocumentSetB(any()))
+        .thenThrow(
+            new WebServiceException(
+                new HTTPException(403, "Forbidden", new URL("http://epa.example.com/"))))
+        .thenReturn(regRes);
+
+    sessionCache.authorized(new AuthorizedSessionCache.Key(HTTPS_ENDPOINT_URI, null, INSURANT_ID));
+
+    var document = mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME);
+
+    try (var m = mockStatic(ClientProxy.class)) {
+      var endpoint = mock(Client.class);
+      when(endpoint.getRequestContext()).thenReturn(new java.util.HashMap<>());
+      m.when(() -> ClientProxy.getClient(documentManagementPort)).thenReturn(endpoint);
+
+      // When
+      var res = client.writeDocument(INSURANT_ID, document);
+
+      // Then
+      assertEquals("r2", res.requestId());
+      verify(authorizationService, times(1)).authorizeVauWithSmcB(HTTPS_ENDPOINT_URI, INSURANT_ID);
+    }
+  }
+
+  @Test
+  void writeDocument_shouldNotRetry_whenFreshAuthorizationIsRejected() throws Exception {
+
+    // Given
+    when(informationService.findAccountEndpoint(INSURANT_ID))
+        .thenReturn(Optional.of(HTTPS_ENDPOINT_URI));
+
+    var documentManagementPort = mock(IDocumentManagementPortType.class);
+    when(soapClientFactory.getIDocumentManagementPort(any())).thenReturn(documentManagementPort);
+    when(documentManagementPort.documentRepositoryProvideAndRegisterDocumentSetB(any()))
+        .thenThrow(
+            new WebServiceException(
+                new HTTPException(401, "Unauthorized", new URL("http://epa.example.com/"))));
+
+    var document = mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME);
+
+    try (var m = mockStatic(ClientProxy.class)) {
+      var endpoint = mock(Client.class);
+      when(endpoint.getRequestContext()).thenReturn(new java.util.HashMap<>());
+      m.when(() -> ClientProxy.getClient(documentManagementPort)).thenReturn(endpoint);
+
+      // When & Then
+      assertThrows(WebServiceException.class, () -> client.writeDocument(INSURANT_ID, document));
+      verify(authorizationService, times(1)).authorizeVauWithSmcB(HTTPS_ENDPOINT_URI, INSURANT_ID);
+      assertEquals(0, sessionCache.size());
+    }
+  }
+
+  @Test
+  void writeDocuments_shouldSubmitInBatchesWithSingleAuthorization() {
+
+    // Given
+    var batchClient =
+        new Epa4AllClientImpl(
+            informationService,
+            authorizationService,
+            card,
+            soapClientFactory,
+            sessionCache,
+            new BatchLimits(2, 1024 * 1024),
+            Epa4AllClientImpl.VIRTUAL_THREADS);
+
+    when(informationService.findAccountEndpoint(INSURANT_ID))
+        .thenReturn(Optional.of(HTTPS_ENDPOINT_URI));
+
+    var regRes = mockRegistryResponseType("r3");
+    var documentManagementPort = mockDocumentManagementPort(regRes);
+    var documents =
+        List.of(
+            mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME),
+            mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME),
+            mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME));
+
+    try (var m = mockStatic(ClientProxy.class)) {
+      var endpoint = mock(Client.class);
+      when(endpoint.getRequestContext()).thenReturn(new java.util.HashMap<>());
+      m.when(() -> ClientProxy.getClient(documentManagementPort)).thenReturn(endpoint);
+
+      // When
+      var res = batchClient.writeDocuments(INSURANT_ID, documents);
+
+      // Then
+      assertTrue(res.isSuccess());
+      assertEquals(3, res.results().size());
+      assertEquals("r3", res.results().get(2).requestId());
+      verify(documentManagementPort, times(2))
+          .documentRepositoryProvideAndRegisterDocumentSetB(any());
+      verify(authorizationService, times(1)).authorizeVauWithSmcB(HTTPS_ENDPOINT_URI, INSURANT_ID);
+    }
+  }
+
+  @Test
+  void writeDocuments_shouldKeepWrittenBatches_whenLaterBatchFails() {
+
+    // Given
+    var batchClient =
+        new Epa4AllClientImpl(
+            informationService,
+            authorizationService,
+            card,
+            soapClientFactory,
+            sessionCache,
+            new BatchLimits(2, 1024 * 1024),
+            Epa4AllClientImpl.VIRTUAL_THREADS);
+
+    when(informationService.findAccountEndpoint(INSURANT_ID))
+        .thenReturn(Optional.of(HTTPS_ENDPOINT_URI));
+
+    var regRes = mockRegistryResponseType("r1");
+    var transportFailure = new WebServiceException("connection reset");
+    var documentManagementPort = mock(IDocumentManagementPortType.class);
+    when(soapClientFactory.getIDocumentManagementPort(any())).thenReturn(documentManagementPort);
+    when(documentManagementPort.documentRepositoryProvideAndRegisterDocumentSetB(any()))
+        .thenReturn(regRes)
+        .thenThrow(transportFailure);
+
+    var documents =
+        List.of(
+            mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME),
+            mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME),
+            mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME),
+            mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME),
+            mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME));
+
+    try (var m = mockStatic(ClientProxy.class)) {
+      var endpoint = mock(Client.class);
+      when(endpoint.getRequestContext()).thenReturn(new java.util.HashMap<>());
+      m.when(() -> ClientProxy.getClient(documentManagementPort)).thenReturn(endpoint);
+
+      // When
+      var res = batchClient.writeDocuments(INSURANT_ID, documents);
+
+      // Then
+      assertFalse(res.isSuccess());
+      var statuses = res.results().stream().map(r -> r.status()).toList();
+      assertEquals(
+          List.of(
+              WriteDocumentsResponse.Status.WRITTEN,
+              WriteDocumentsResponse.Status.WRITTEN,
+              WriteDocumentsResponse.Status.NOT_WRITTEN,
+              WriteDocumentsResponse.Status.NOT_WRITTEN,
+              WriteDocumentsResponse.Status.NOT_WRITTEN),
+          statuses);
+      assertEquals("r1", res.results().get(1).requestId());
+      assertSame(transportFailure, res.results().get(4).cause());
+
+      // the remaining batch is not attempted
+      verify(documentManagementPort, times(2))
+          .documentRepositoryProvideAndRegisterDocumentSetB(any());
+    }
+  }
+
+  @Test
+  void writeDocument_shouldSkipDocumentWrittenBefore(@TempDir Path dir) {
+
+    // Given
+    var index =
+        DeduplicationIndex.open(dir.resolve("dedup.idx"), Duration.ofDays(1), Clock.systemUTC());
+    var dedupClient =
+        new Epa4AllClientImpl(
+            informationService,
+            authorizationService,
+            card,
+            soapClientFactory,
+            sessionCache,
+            BatchLimits.DEFAULT,
+            Runnable::run,
+            index);
+
+    when(informationService.findAccountEndpoint(INSURANT_ID))
+        .thenReturn(Optional.of(HTTPS_ENDPOINT_URI));
+
+    var regRes = mockRegistryResponseType("r7");
+    var documentManagementPort = mockDocumentManagementPort(regRes);
+    var document = mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME);
+
+    try (index;
+        var m = mockStatic(ClientProxy.class)) {
+      var endpoint = mock(Client.class);
+      when(endpoint.getRequestContext()).thenReturn(new java.util.HashMap<>());
+      m.when(() -> ClientProxy.getClient(documentManagementPort)).thenReturn(endpoint);
+
+      // When
+      var first = dedupClient.writeDocument(INSURANT_ID, document);
+      var second = dedupClient.writeDocument(INSURANT_ID, document);
+      var bypassed = dedupClient.writeDocument(INSURANT_ID, document, true);
+
+      // Then
+      assertFalse(first.deduplicated());
+      assertTrue(second.deduplicated());
+      assertEquals("r7", second.requestId());
+      assertFalse(bypassed.deduplicated());
+      verify(documentManagementPort, times(2))
+          .documentRepositoryProvideAndRegisterDocumentSetB(any());
+    }
+  }
+
+  @Test
+  void writeDocument_shouldReleaseClaim_whenWriteFailsWithError(@TempDir Path dir) {
+
+    // Given
+    var index =
+        DeduplicationIndex.open(dir.resolve("dedup.idx"), Duration.ofDays(1), Clock.systemUTC());
+    var dedupClient =
+        new Epa4AllClientImpl(
+            informationService,
+            authorizationService,
+            card,
+            soapClientFactory,
+            sessionCache,
+            BatchLimits.DEFAULT,
+            Runnable::run,
+            index);
+    when(informationService.findAccountEndpoint(INSURANT_ID))
+        .thenThrow(new StackOverflowError("boom"));
+    var document = mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME);
+
+    try (index) {
+
+      // When
+      assertThrows(
+          StackOverflowError.class, () -> dedupClient.writeDocument(INSURANT_ID, document));
+
+      // Then
+      assertTrue(index.claim(INSURANT_ID, document, Duration.ofMillis(100)).isEmpty());
+    }
+  }
+
+  @Test
+  void writeDocumentAsync_success() {
+
+    // Given
+    var asyncClient = newClientWithExecutor(Runnable::run);
+
+    when(informationService.findAccountEndpoint(INSURANT_ID))
+        .thenReturn(Optional.of(HTTPS_ENDPOINT_URI));
+
+    var regRes = mockRegistryResponseType("r4");
+    var documentManagementPort = mockDocumentManagementPort(regRes);
+    var document = mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME);
+
+    try (var m = mockStatic(ClientProxy.class)) {
+      var endpoint = mock(Client.class);
+      when(endpoint.getRequestContext()).thenReturn(new java.util.HashMap<>());
+      m.when(() -> ClientProxy.getClient(documentManagementPort)).thenReturn(endpoint);
+
+      // When
+      var res = asyncClient.writeDocumentAsync(INSURANT_ID, document);
+
+      // Then
+      assertEquals("r4", res.join().requestId());
+    }
+  }
+
+  @Test
+  void writeDocumentAsync_shouldCompleteExceptionally_whenNoAccount() {
+
+    // Given
+    var asyncClient = newClientWithExecutor(Epa4AllClientImpl.VIRTUAL_THREADS);
+    when(informationService.findAccountEndpoint(INSURANT_ID)).thenReturn(Optional.empty());
+    var document = mockDocumentWithAuthor(TELEMATIK_ID, HOLDER_NAME);
+
+    // When
+    var res = asyncClient.writeDocumentAsync(INSURANT_ID, document);
+
+    // Then
+    var e = assertThrows(CompletionException.class, res::join);
+    assertInstanceOf(ClientException.class, e.getCause());
+    verifyNoInteractions(authorizationService, soapClientFactory);
+  }
+
+  private Epa4AllClientImpl newClientWithExecutor(Executor executor) {
+    return new Epa4AllClientImpl(
+        informationService,
+        authorizationService,
+        card,
+        soapClientFactory,
+        sessionCache,
+        BatchLimits.DEFAULT,
+        executor);
+  }
+
   private RegistryResponseType mockRegistryResponseType(String requestId) {
     var regRes = mock(RegistryResponseType.class);
     when(regRes.getStatus())
@@ -123,6 +464,22 @@ class Epa4AllClientImplTest {
     assertEquals("endpoint for KVNR X123456789 not found", exception.getMessage());
   }
 
+  @Test
+  void writeDocument_shouldNotReportFailedLookupAsMissingAccount() {
+    // Given
+    var lookupFailed = new AccountLookupException("provider unreachable");
+    when(informationService.findAccountEndpoint(INSURANT_ID)).thenThrow(lookupFailed);
+
+    // When
+    var exception =
+        assertThrows(
+            RuntimeException.class, () -> client.writeDocument(INSURANT_ID, mockDocument()));
+
+    // Then
+    assertSame(lookupFailed, exception);
+    verifyNoInteractions(authorizationService, soapClientFactory);
+  }
+
   @Test
   void replaceDocument_shouldThrowExceptionWhenEndpointNotFound() {
     // Given
@@ -0,0 +1,74 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+class LogsTest {
+
+  private final List<String> batches = new CopyOnWriteArrayList<>();
+
+  @Test
+  void flush_shouldExportBufferedEventsInOneBatch() {
+
+    // Given
+    var logs = new Logs(batches::add, 16, 100, Duration.ofHours(1), true);
+    for (int i = 0; i < 5; i++) {
+      logs.offer("write_document", new Logs.Attr("n", String.valueOf(i)));
+    }
+
+    // When
+    logs.flushAndWait(Duration.ofSeconds(5));
+
+    // Then
+    assertEquals(1, batches.size());
+    var lines = batches.get(0).lines().toList();
+    assertEquals(5, lines.size());
+    assertTrue(lines.get(0).startsWith("{\"$event\":\"write_document\""));
+    assertTrue(lines.get(4).endsWith(",\"n\":\"4\"}"));
+  }
+
+  @Test
+  void offer_shouldDropAndCountEventsWhenBufferIsFull() {
+
+    // Given
+    var logs = new Logs(batches::add, 4, 100, Duration.ofHours(1), true);
+
+    // When
+    for (int i = 0; i < 10; i++) {
+      logs.offer("write_document");
+    }
+
+    // Then
+    assertEquals(6, logs.dropped());
+    logs.flushAndWait(Duration.ofSeconds(5));
+    var lines = batches.get(0).lines().toList();
+    assertEquals(5, lines.size());
+    assertTrue(lines.get(4).contains("\"$event\":\"telemetry_dropped\""));
+    assertTrue(lines.get(4).endsWith(",\"count\":\"6\"}"));
+    assertEquals(0, logs.dropped());
+  }
+
+  @Test
+  void offer_shouldExportFullBatchWithoutWaitingForInterval() throws Exception {
+
+    // Given
+    var logs = new Logs(batches::add, 64, 8, Duration.ofHours(1), true);
+
+    // When
+    for (int i = 0; i < 8; i++) {
+      logs.offer("write_document");
+    }
+
+    // Then
+    var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (batches.isEmpty() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(8, batches.get(0).lines().count());
+  }
+}
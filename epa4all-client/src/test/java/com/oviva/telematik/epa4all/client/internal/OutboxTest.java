@@ -0,0 +1,262 @@
+package com.oviva.telematik.epa4all.client.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.oviva.telematik.epa4all.client.Epa4AllClient;
+import com.oviva.telematik.epa4all.client.WriteDocumentResponse;
+import com.oviva.telematik.epaapi.WriteDocumentException;
+import com.oviva.telematik.vau.epa4all.client.info.AccountLookupException;
+import com.oviva.telematik.vau.epa4all.client.info.InformationService;
+import de.gematik.epa.ihe.model.document.Document;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutboxTest {
+
+  private static final String KVNR = "X123456789";
+  private static final URI IBM = URI.create("https://epa-as-1.dev.epa4all.de");
+
+  @TempDir Path dir;
+
+  private Epa4AllClient client;
+  private InformationService informationService;
+  private Document document;
+  private final LinkedBlockingQueue<Outbox.Outcome> outcomes = new LinkedBlockingQueue<>();
+
+  @BeforeEach
+  void setUp() {
+    client = mock(Epa4AllClient.class);
+    informationService = mock(InformationService.class);
+    document = mock(Document.class);
+    when(informationService.findAccountEndpoint(KVNR)).thenReturn(Optional.of(IBM));
+  }
+
+  @Test
+  void enqueue_shouldWriteOnceForSameIdempotencyKey() throws Exception {
+    // Given
+    when(client.writeDocument(KVNR, document)).thenReturn(new WriteDocumentResponse("r1"));
+
+    try (var outbox = Outbox.open(client, informationService, options(), outcomes::add)) {
+
+      // When
+      outbox.enqueue("job-1", KVNR, document).get(5, TimeUnit.SECONDS);
+      var outcome = outcomes.poll(5, TimeUnit.SECONDS);
+      outbox.enqueue("job-1", KVNR, document).get(5, TimeUnit.SECONDS);
+
+      // Then
+      assertEquals(Outbox.Status.WRITTEN, outcome.status());
+      assertEquals("r1", outcome.requestId());
+      assertEquals(0, outbox.pendingCount());
+      verify(client, times(1)).writeDocument(any(), any());
+    }
+  }
+
+  @Test
+  void open_shouldResumePendingWrites() throws Exception {
+    // Given
+    when(client.writeDocument(KVNR, document)).thenThrow(new IllegalStateException("TI down"));
+
+    var slowRetries =
+        new Outbox.Options(
+            dir.resolve("outbox.journal"),
+            1,
+            1,
+            10,
+            Duration.ofHours(1),
+            Duration.ofHours(1),
+            Duration.ofDays(1),
+            new StubCodec());
+    try (var outbox = Outbox.open(client, informationService, slowRetries, outcomes::add)) {
+      outbox.enqueue("job-2", KVNR, document).get(5, TimeUnit.SECONDS);
+      verify(client, timeout(5000)).writeDocument(KVNR, document);
+    }
+
+    // When
+    var recovered = mock(Epa4AllClient.class);
+    when(recovered.writeDocument(KVNR, document)).thenReturn(new WriteDocumentResponse("r2"));
+    try (var outbox = Outbox.open(recovered, informationService, options(), outcomes::add)) {
+
+      // Then
+      var outcome = outcomes.poll(5, TimeUnit.SECONDS);
+      assertEquals("job-2", outcome.jobId());
+      assertEquals(Outbox.Status.WRITTEN, outcome.status());
+    }
+  }
+
+  @Test
+  void open_shouldIgnoreTornJournalTail() throws Exception {
+    // Given
+    when(client.writeDocument(KVNR, document)).thenReturn(new WriteDocumentResponse("r3"));
+    var journal = dir.resolve("outbox.journal");
+    try (var outbox = Outbox.open(client, informationService, options(), outcomes::add)) {
+      outbox.enqueue("job-3", KVNR, document).get(5, TimeUnit.SECONDS);
+      outcomes.poll(5, TimeUnit.SECONDS);
+    }
+    Files.write(journal, new byte[] {0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+    // When
+    try (var outbox = Outbox.open(client, informationService, options(), outcomes::add)) {
+      outbox.enqueue("job-3", KVNR, document).get(5, TimeUnit.SECONDS);
+
+      // Then
+      assertEquals(0, outbox.pendingCount());
+      verify(client, times(1)).writeDocument(any(), any());
+    }
+  }
+
+  @Test
+  void process_shouldRetryFailedAccountLookup() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint(KVNR))
+        .thenThrow(new AccountLookupException("provider unreachable"))
+        .thenReturn(Optional.of(IBM));
+    when(client.writeDocument(KVNR, document)).thenReturn(new WriteDocumentResponse("r4"));
+
+    try (var outbox = Outbox.open(client, informationService, options(), outcomes::add)) {
+
+      // When
+      outbox.enqueue("job-4", KVNR, document).get(5, TimeUnit.SECONDS);
+      var outcome = outcomes.poll(5, TimeUnit.SECONDS);
+
+      // Then
+      assertEquals(Outbox.Status.WRITTEN, outcome.status());
+      assertEquals("r4", outcome.requestId());
+    }
+  }
+
+  @Test
+  void process_shouldFailWithoutAccount() throws Exception {
+    // Given
+    when(informationService.findAccountEndpoint(KVNR)).thenReturn(Optional.empty());
+
+    try (var outbox = Outbox.open(client, informationService, options(), outcomes::add)) {
+
+      // When
+      outbox.enqueue("job-5", KVNR, document).get(5, TimeUnit.SECONDS);
+      var outcome = outcomes.poll(5, TimeUnit.SECONDS);
+
+      // Then
+      assertEquals(Outbox.Status.FAILED, outcome.status());
+      verifyNoInteractions(client);
+    }
+  }
+
+  @Test
+  void process_shouldRetryUnknownAccountOnce() throws Exception {
+    // Given
+    var unknownPatient =
+        new WriteDocumentException(
+            "Failure",
+            List.of(
+                new WriteDocumentException.Error(
+                    "unknown patient", null, "XDSUnknownPatientId", "Error", null)));
+    when(client.writeDocument(KVNR, document)).thenThrow(unknownPatient);
+
+    try (var outbox = Outbox.open(client, informationService, options(), outcomes::add)) {
+
+      // When
+      outbox.enqueue("job-6", KVNR, document).get(5, TimeUnit.SECONDS);
+      var outcome = outcomes.poll(5, TimeUnit.SECONDS);
+
+      // Then
+      assertEquals(Outbox.Status.FAILED, outcome.status());
+      verify(client, times(2)).writeDocument(KVNR, document);
+    }
+  }
+
+  @Test
+  void process_shouldNotRetryRejectedDocument() throws Exception {
+    // Given
+    var rejected =
+        new WriteDocumentException(
+            "Failure",
+            List.of(
+                new WriteDocumentException.Error(
+                    "bad metadata", null, "XDSRegistryMetadataError", "Error", null)));
+    when(client.writeDocument(KVNR, document)).thenThrow(rejected);
+
+    try (var outbox = Outbox.open(client, informationService, options(), outcomes::add)) {
+
+      // When
+      outbox.enqueue("job-7", KVNR, document).get(5, TimeUnit.SECONDS);
+      var outcome = outcomes.poll(5, TimeUnit.SECONDS);
+
+      // Then
+      assertEquals(Outbox.Status.FAILED, outcome.status());
+      verify(client, times(1)).writeDocument(KVNR, document);
+    }
+  }
+
+  @Test
+  void complete_shouldCompactJournalWhileRunning() throws Exception {
+    // Given
+    when(client.writeDocument(KVNR, document)).thenReturn(new WriteDocumentResponse("r"));
+    var compacted = dir.resolve("compacted.journal");
+    var uncompacted = dir.resolve("uncompacted.journal");
+
+    // When
+    writeJobs(options(compacted), 1, 20);
+    writeJobs(options(uncompacted), Long.MAX_VALUE, 20);
+
+    // Then
+    assertTrue(Files.size(compacted) < Files.size(uncompacted));
+    try (var outbox = Outbox.open(client, informationService, options(compacted), outcomes::add)) {
+      outbox.enqueue("job-0", KVNR, document).get(5, TimeUnit.SECONDS);
+      assertEquals(0, outbox.pendingCount());
+    }
+    verify(client, times(40)).writeDocument(any(), any());
+  }
+
+  private void writeJobs(Outbox.Options options, long compactAtBytes, int count) throws Exception {
+    try (var outbox =
+        Outbox.open(
+            client,
+            informationService,
+            options,
+            outcomes::add,
+            Clock.systemUTC(),
+            compactAtBytes)) {
+      for (int i = 0; i < count; i++) {
+        outbox.enqueue("job-" + i, KVNR, document).get(5, TimeUnit.SECONDS);
+        assertEquals(Outbox.Status.WRITTEN, outcomes.poll(5, TimeUnit.SECONDS).status());
+      }
+    }
+  }
+
+  private Outbox.Options options() {
+    return options(dir.resolve("outbox.journal"));
+  }
+
+  private Outbox.Options options(Path journal) {
+    return new Outbox.Options(
+        journal, 2, 4, 3, Duration.ZERO, Duration.ZERO, Duration.ofDays(1), new StubCodec());
+  }
+
+  private class StubCodec implements DocumentCodec {
+
+    @Override
+    public byte[] encode(Document d) {
+      return "doc".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Document decode(byte[] data) {
+      return document;
+    }
+  }
+}
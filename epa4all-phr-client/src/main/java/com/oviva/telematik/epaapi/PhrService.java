@@ -27,10 +27,24 @@ public class PhrService {
   }
 
   public String writeDocument(String insurantId, Document document) {
+    return writeDocuments(insurantId, List.of(document));
+  }
+
+  /**
+   * Writes all documents in a single submission set. The submission is atomic, either all documents
+   * are stored or none.
+   *
+   * @return the request ID of the submission
+   */
+  public String writeDocuments(String insurantId, List<Document> documents) {
+
+    if (documents.isEmpty()) {
+      throw new IllegalArgumentException("no documents");
+    }
 
-    var metadata = getSubmissionSetMetadata(document.documentMetadata());
+    var metadata = getSubmissionSetMetadata(documents.get(0).documentMetadata());
     var docSubmissionRequest =
-        new DocumentSubmissionRequest(new InsurantAdapter(insurantId), List.of(document), metadata);
+        new DocumentSubmissionRequest(new InsurantAdapter(insurantId), documents, metadata);
 
     var req = LibIheXdsMain.convertDocumentSubmissionRequest(docSubmissionRequest);
 
@@ -7,6 +7,8 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.cxf.endpoint.Client;
 import org.apache.cxf.ext.logging.LoggingFeature;
 import org.apache.cxf.ext.logging.event.EventType;
@@ -24,14 +26,40 @@ public class SoapClientFactory {
 
   private final ClientConfiguration configuration;
 
+  // ports are thread-safe as long as they use a thread local request context, building one is
+  // expensive though (service model, JAXB context, conduit)
+  private final ConcurrentHashMap<URI, IDocumentManagementPortType> documentManagementPorts =
+      new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
   public SoapClientFactory(ClientConfiguration configuration) {
     this.configuration = configuration;
   }
 
+  /**
+   * @return a port for the given endpoint, shared between all callers and threads
+   */
   public IDocumentManagementPortType getIDocumentManagementPort(URI endpointAddress) {
-    return getClientProxyImpl(IDocumentManagementPortType.class, endpointAddress);
+    var port = documentManagementPorts.get(endpointAddress);
+    if (port != null) {
+      hits.increment();
+      return port;
+    }
+    return documentManagementPorts.computeIfAbsent(
+        endpointAddress,
+        e -> {
+          misses.increment();
+          return getClientProxyImpl(IDocumentManagementPortType.class, e);
+        });
+  }
+
+  public PortCacheStats portCacheStats() {
+    return new PortCacheStats(hits.sum(), misses.sum(), documentManagementPorts.size());
   }
 
+  public record PortCacheStats(long hits, long misses, int size) {}
+
   private <T> T getClientProxyImpl(Class<T> portType, URI endpointAddress) {
 
     var jaxWsProxyFactory = newJaxWsProxyFactoryBean(portType, endpointAddress);
@@ -0,0 +1,34 @@
+package com.oviva.telematik.epaapi;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import org.junit.jupiter.api.Test;
+
+class SoapClientFactoryTest {
+
+  private static final URI IBM =
+      URI.create("http://epa-as-1.dev.epa4all.de/epa/xds-document/api/I_Document_Management");
+  private static final URI BITMARCK =
+      URI.create("http://epa-as-2.dev.epa4all.de/epa/xds-document/api/I_Document_Management");
+
+  @Test
+  void getIDocumentManagementPort_shouldReusePortPerEndpoint() {
+    // Given
+    var factory = new SoapClientFactory(new ClientConfiguration(null));
+
+    // When
+    var first = factory.getIDocumentManagementPort(IBM);
+    var second = factory.getIDocumentManagementPort(IBM);
+    var other = factory.getIDocumentManagementPort(BITMARCK);
+
+    // Then
+    assertSame(first, second);
+    assertNotSame(first, other);
+
+    var stats = factory.portCacheStats();
+    assertEquals(1, stats.hits());
+    assertEquals(2, stats.misses());
+    assertEquals(2, stats.size());
+  }
+}
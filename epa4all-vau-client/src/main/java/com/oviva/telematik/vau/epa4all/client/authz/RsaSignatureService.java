@@ -7,4 +7,13 @@ public interface RsaSignatureService {
   X509Certificate authCertificate();
 
   byte[] authSign(byte[] bytesToSign);
+
+  /**
+   * Picks the card for one signature. Implementations spreading signatures over several cards
+   * return a service bound to a single card, so that the certificate embedded into a token and its
+   * signature belong together.
+   */
+  default RsaSignatureService select() {
+    return this;
+  }
 }
@@ -20,6 +20,7 @@ import java.net.URI;
 import java.net.URL;
 import java.security.Security;
 import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
 import java.text.ParseException;
 import java.time.Instant;
 import java.util.List;
@@ -220,7 +221,9 @@ public class AuthnChallengeResponder {
     try {
       var claims = new JWTClaimsSet.Builder().claim("njwt", challenge).build();
 
-      var cert = rsaSignatureService.authCertificate();
+      // certificate and signature must come from the same card
+      var cardSigner = rsaSignatureService.select();
+      var cert = cardSigner.authCertificate();
 
       var header =
           // FUTURE: use ECC instead
@@ -232,10 +235,10 @@ public class AuthnChallengeResponder {
 
       var jwt = new SignedJWT(header, claims);
 
-      var signer = new SmcBSigner(rsaSignatureService);
+      var signer = new SmcBSigner(cardSigner);
       jwt.sign(signer);
 
-      debugLogSignedChallenge(challenge, jwt);
+      debugLogSignedChallenge(challenge, jwt, cert);
 
       return jwt;
     } catch (JOSEException | ParseException | CertificateEncodingException e) {
@@ -243,12 +246,13 @@ public class AuthnChallengeResponder {
     }
   }
 
-  private void debugLogSignedChallenge(String challenge, SignedJWT jwt) throws ParseException {
+  private void debugLogSignedChallenge(String challenge, SignedJWT jwt, X509Certificate cert)
+      throws ParseException {
     if (!log.isDebugEnabled()) {
       return;
     }
 
-    var principal = rsaSignatureService.authCertificate().getSubjectX500Principal().getName();
+    var principal = cert.getSubjectX500Principal().getName();
     var header = jwt.getHeader().toString();
     var payload = JSONObjectUtils.toJSONString(jwt.getJWTClaimsSet().toJSONObject());
     log.atDebug()
@@ -38,7 +38,9 @@ public class AuthnClientAttester {
             .claim("nonce", nonce)
             .build();
 
-    var cert = rsaSignatureService.authCertificate();
+    // certificate and signature must come from the same card
+    var cardSigner = rsaSignatureService.select();
+    var cert = cardSigner.authCertificate();
 
     try {
       var x5c = Base64.encode(cert.getEncoded());
@@ -55,7 +57,7 @@ public class AuthnClientAttester {
 
       var jwt = new SignedJWT(header, claims);
 
-      jwt.sign(new SmcBSigner(rsaSignatureService));
+      jwt.sign(new SmcBSigner(cardSigner));
       return jwt;
     } catch (JOSEException | CertificateEncodingException e) {
       throw new AuthorizationException("failed client attestation - signing nonce", e);
@@ -0,0 +1,235 @@
+package com.oviva.telematik.vau.epa4all.client.authz.internal;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SmcbCard;
+import com.oviva.telematik.vau.epa4all.client.Epa4AllClientException;
+import com.oviva.telematik.vau.epa4all.client.authz.RsaSignatureService;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spreads signatures over all SMC-B cards of one institution, i.e. with the same telematik-id. The
+ * Konnektor processes the operations of a card one after the other, more cards allow more
+ * signatures in parallel.
+ *
+ * <p>Each signature goes to the least busy card. A card failing to sign or without a verified PIN
+ * is taken out of rotation for a while and re-admitted afterwards. Cards are bound to a signature
+ * via {@link #select()}, the certificate of a token must match its signature.
+ *
+ * <p>{@link #withKonnektorService(KonnektorService)} shares the cards with another view signing via
+ * a different service, e.g. with bulk priority.
+ */
+public class SmcbCardPool implements RsaSignatureService {
+
+  public static final Duration DEFAULT_QUARANTINE = Duration.ofSeconds(30);
+
+  private static final Logger log = LoggerFactory.getLogger(SmcbCardPool.class);
+
+  private final KonnektorService konnektorService;
+  private final String telematikId;
+  private final Duration quarantine;
+  private final Clock clock;
+
+  // shared by all views of the pool
+  private final Map<String, PooledCard> cards;
+  private final AtomicInteger rotation;
+  private final AtomicReference<Instant> lastRefresh;
+
+  /**
+   * @param telematikId the institution, cards of other institutions are ignored
+   * @param initialCards cards known so far, e.g. from {@link KonnektorService#listSmcbCards()}
+   * @param quarantine how long a failed card is out of rotation
+   */
+  public SmcbCardPool(
+      KonnektorService konnektorService,
+      String telematikId,
+      List<SmcbCard> initialCards,
+      Duration quarantine,
+      Clock clock) {
+    if (telematikId == null) {
+      throw new IllegalArgumentException("telematik-id missing");
+    }
+    this.konnektorService = konnektorService;
+    this.telematikId = telematikId;
+    this.quarantine = quarantine;
+    this.clock = clock;
+    this.cards = new ConcurrentHashMap<>();
+    this.rotation = new AtomicInteger();
+    this.lastRefresh = new AtomicReference<>(Instant.MIN);
+    update(initialCards);
+  }
+
+  private SmcbCardPool(SmcbCardPool pool, KonnektorService konnektorService) {
+    this.konnektorService = konnektorService;
+    this.telematikId = pool.telematikId;
+    this.quarantine = pool.quarantine;
+    this.clock = pool.clock;
+    this.cards = pool.cards;
+    this.rotation = pool.rotation;
+    this.lastRefresh = pool.lastRefresh;
+  }
+
+  /**
+   * A view of this pool signing via the given service, cards and their quarantine are shared.
+   *
+   * @param konnektorService e.g. {@code KonnektorClient#withPriority} for background jobs
+   */
+  public SmcbCardPool withKonnektorService(KonnektorService konnektorService) {
+    return new SmcbCardPool(this, konnektorService);
+  }
+
+  /** Picks the least busy usable card, the returned service signs with this card only. */
+  @Override
+  public RsaSignatureService select() {
+    var selected = leastBusy();
+    if (selected == null && refreshDue()) {
+      // maybe cards were plugged in or PINs verified meanwhile
+      refresh();
+      selected = leastBusy();
+    }
+    if (selected == null) {
+      throw new Epa4AllClientException(
+          "no usable SMC-B card for telematik-id %s, cards: %d".formatted(telematikId, size()));
+    }
+    return new SelectedCard(selected, konnektorService);
+  }
+
+  /**
+   * Not supported, each call would pick another card. Use the card returned by {@link #select()}.
+   */
+  @Override
+  public X509Certificate authCertificate() {
+    throw new UnsupportedOperationException("select() a card first");
+  }
+
+  /** Not supported, see {@link #authCertificate()}. */
+  @Override
+  public byte[] authSign(byte[] bytesToSign) {
+    throw new UnsupportedOperationException("select() a card first");
+  }
+
+  /** Re-reads the cards from the Konnektor, adding new cards and removing unplugged ones. */
+  public void refresh() {
+    lastRefresh.set(clock.instant());
+    update(konnektorService.listSmcbCards());
+  }
+
+  public int size() {
+    return cards.size();
+  }
+
+  public int availableCount() {
+    var now = clock.instant();
+    return (int) cards.values().stream().filter(c -> c.isAvailable(now)).count();
+  }
+
+  private void update(List<SmcbCard> current) {
+    var handles = new ArrayList<String>();
+    for (var card : current) {
+      if (!telematikId.equals(card.telematikId())) {
+        continue;
+      }
+      handles.add(card.handle());
+      cards.compute(
+          card.handle(),
+          (h, existing) -> {
+            if (existing != null && existing.card.equals(card)) {
+              return existing;
+            }
+            log.atInfo().log("SMC-B card {} added to pool of {}", h, telematikId);
+            // an unverified card is re-admitted after the quarantine, signing re-checks the PIN
+            return new PooledCard(
+                card, card.pinVerified() ? null : clock.instant().plus(quarantine));
+          });
+    }
+    cards.keySet().retainAll(handles);
+  }
+
+  private PooledCard leastBusy() {
+    var now = clock.instant();
+    var candidates = List.copyOf(cards.values());
+    if (candidates.isEmpty()) {
+      return null;
+    }
+
+    // rotate the start, spreads sequential signatures over idle cards
+    var start = Math.floorMod(rotation.getAndIncrement(), candidates.size());
+    PooledCard best = null;
+    for (int i = 0; i < candidates.size(); i++) {
+      var c = candidates.get((start + i) % candidates.size());
+      if (c.isAvailable(now) && (best == null || c.inFlight.get() < best.inFlight.get())) {
+        best = c;
+      }
+    }
+    return best;
+  }
+
+  private boolean refreshDue() {
+    return !lastRefresh.get().plus(quarantine).isAfter(clock.instant());
+  }
+
+  private record SelectedCard(PooledCard pooled, KonnektorService konnektorService)
+      implements RsaSignatureService {
+
+    @Override
+    public X509Certificate authCertificate() {
+      return pooled.card.authRsaCertificate();
+    }
+
+    @Override
+    public byte[] authSign(byte[] bytesToSign) {
+      return pooled.sign(konnektorService, bytesToSign);
+    }
+  }
+
+  private class PooledCard {
+
+    private final SmcbCard card;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // null while healthy
+    private volatile Instant quarantinedUntil;
+
+    private PooledCard(SmcbCard card, Instant quarantinedUntil) {
+      this.card = card;
+      this.quarantinedUntil = quarantinedUntil;
+    }
+
+    private byte[] sign(KonnektorService konnektorService, byte[] bytesToSign) {
+      inFlight.incrementAndGet();
+      try {
+        if (konnektorService.verifySmcPin(card.handle()) != PinStatus.VERIFIED) {
+          throw new Epa4AllClientException(
+              "PIN not verified: %s (%s)".formatted(card.holderName(), card.handle()));
+        }
+        var signature = konnektorService.authSignRsaPss(card.handle(), bytesToSign);
+        quarantinedUntil = null;
+        return signature;
+      } catch (RuntimeException e) {
+        quarantinedUntil = clock.instant().plus(quarantine);
+        log.atWarn()
+            .setCause(e)
+            .log("SMC-B card {} failed, out of rotation for {}", card.handle(), quarantine);
+        throw e;
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }
+
+    private boolean isAvailable(Instant now) {
+      var until = quarantinedUntil;
+      return until == null || !until.isAfter(now);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the outcome of account lookups per insurant. Positive, negative and failed lookups each
+ * have their own TTL, a TTL of zero disables caching of that outcome.
+ */
+class AccountEndpointCache {
+
+  private final Clock clock;
+  private final Duration positiveTtl;
+  private final Duration negativeTtl;
+  private final Duration errorTtl;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  private final Map<String, Entry> entries;
+
+  AccountEndpointCache(
+      Clock clock, Duration positiveTtl, Duration negativeTtl, Duration errorTtl, int maxEntries) {
+    this.clock = clock;
+    this.positiveTtl = positiveTtl;
+    this.negativeTtl = negativeTtl;
+    this.errorTtl = errorTtl;
+
+    // least recently used entries are evicted first
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  static AccountEndpointCache disabled() {
+    return new AccountEndpointCache(
+        Clock.systemUTC(), Duration.ZERO, Duration.ZERO, Duration.ZERO, 0);
+  }
+
+  /**
+   * @return the cached lookup or null if there is none
+   */
+  Lookup get(String insurantId) {
+    Entry e;
+    synchronized (entries) {
+      e = entries.get(insurantId);
+      if (e != null && !e.expiresAt().isAfter(clock.instant())) {
+        entries.remove(insurantId);
+        e = null;
+      }
+    }
+
+    if (e == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return e.lookup();
+  }
+
+  void put(String insurantId, Lookup lookup) {
+    var ttl =
+        switch (lookup.outcome()) {
+          case FOUND -> positiveTtl;
+          case NOT_FOUND -> negativeTtl;
+          case ERROR -> errorTtl;
+        };
+    if (ttl.isZero() || ttl.isNegative()) {
+      return;
+    }
+
+    var entry = new Entry(lookup, clock.instant().plus(ttl));
+    synchronized (entries) {
+      entries.put(insurantId, entry);
+    }
+  }
+
+  void invalidate(String insurantId) {
+    synchronized (entries) {
+      if (entries.remove(insurantId) != null) {
+        invalidations.increment();
+      }
+    }
+  }
+
+  InformationService.CacheStats stats() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return new InformationService.CacheStats(hits.sum(), misses.sum(), invalidations.sum(), size);
+  }
+
+  enum Outcome {
+    FOUND,
+    NOT_FOUND,
+    ERROR
+  }
+
+  record Lookup(Outcome outcome, URI endpoint) {}
+
+  private record Entry(Lookup lookup, Instant expiresAt) {}
+}
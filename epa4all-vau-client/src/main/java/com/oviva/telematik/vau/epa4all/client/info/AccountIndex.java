@@ -0,0 +1,467 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of KVNR to the provider holding the account, survives restarts. The index is a
+ * memory-mapped open addressing hash table with fixed-width slots, so it does not grow the heap.
+ * Deleted and expired entries are dropped by compacting the file on open and once deleted slots
+ * pile up.
+ *
+ * <p>Slot layout (24 bytes):
+ *
+ * <pre>
+ *   state(1) | kvnr(10, ASCII) | provider id(1) | unused(4) | resolved at, epoch seconds(8)
+ * </pre>
+ *
+ * Reads are lock-free unless they race a write. Only a single process may open an index file at a
+ * time.
+ */
+public class AccountIndex implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(AccountIndex.class);
+
+  private static final Pattern KVNR_PATTERN = Pattern.compile("[A-Z][0-9]{9}");
+
+  private static final long MAGIC = 0x4550_4149_4458_0001L; // "EPAIDX" v1
+  private static final int HEADER_SIZE = 64;
+  private static final int OFFSET_MAGIC = 0;
+  private static final int OFFSET_CAPACITY = 8;
+  private static final int OFFSET_USED = 12;
+  private static final int OFFSET_DELETED = 16;
+
+  private static final int SLOT_SIZE = 24;
+  private static final int KVNR_LENGTH = 10;
+  private static final int SLOT_STATE = 0;
+  private static final int SLOT_KVNR = 1;
+  private static final int SLOT_PROVIDER = 11;
+  private static final int SLOT_TIMESTAMP = 16;
+
+  private static final byte EMPTY = 0;
+  private static final byte OCCUPIED = 1;
+  private static final byte DELETED = 2;
+
+  private static final double MAX_LOAD = 0.7;
+
+  // if at least this share of the used slots are deleted, rehashing reclaims them instead of
+  // growing
+  private static final double MAX_DELETED = 0.5;
+
+  // smaller tables are not worth compacting on removal
+  private static final int MIN_COMPACT_CAPACITY = 1024;
+
+  private final Path file;
+  private final Duration maxAge;
+  private final Clock clock;
+  private final StampedLock lock = new StampedLock();
+
+  // replaced as a whole on rehash, readers never see a buffer with the capacity of another
+  private volatile Table table;
+
+  // occupied + deleted slots, both lengthen probe sequences
+  private int used;
+  private int deleted;
+
+  private record Table(FileChannel channel, MappedByteBuffer buffer, int capacity) {}
+
+  private AccountIndex(Path file, Duration maxAge, Clock clock) {
+    this.file = file;
+    this.maxAge = maxAge;
+    this.clock = clock;
+  }
+
+  /**
+   * Opens or creates an index.
+   *
+   * @param initialCapacity number of slots for a new index, rounded up to a power of two
+   * @param maxAge entries resolved longer ago are ignored and dropped on compaction
+   */
+  public static AccountIndex open(Path file, int initialCapacity, Duration maxAge, Clock clock) {
+    var index = new AccountIndex(file, maxAge, clock);
+    try {
+      if (Files.exists(file) && Files.size(file) > 0) {
+        index.table = index.map(file);
+        index.compactOnOpen();
+      } else {
+        index.table = create(file, tableSizeFor(initialCapacity));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to open account index " + file, e);
+    }
+    return index;
+  }
+
+  /**
+   * @return the provider id of the account, empty if unknown or expired
+   */
+  public Optional<Integer> get(String insurantId) {
+    if (!isIndexable(insurantId)) {
+      return Optional.empty();
+    }
+    var key = insurantId.getBytes(StandardCharsets.US_ASCII);
+
+    var stamp = lock.tryOptimisticRead();
+    var found = find(table, key);
+    if (!lock.validate(stamp)) {
+      // raced a write, the slot may have been half written
+      stamp = lock.readLock();
+      try {
+        found = find(table, key);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return Optional.ofNullable(found);
+  }
+
+  public void put(String insurantId, int providerId) {
+    if (!isIndexable(insurantId)) {
+      return;
+    }
+    if (providerId <= 0 || providerId > 255) {
+      throw new IllegalArgumentException("invalid provider id: %d".formatted(providerId));
+    }
+    var key = insurantId.getBytes(StandardCharsets.US_ASCII);
+
+    var stamp = lock.writeLock();
+    try {
+      var capacity = table.capacity();
+      if (used + 1 > capacity * MAX_LOAD) {
+        // mostly deleted slots, e.g. after many invalidations, do not need a bigger table
+        rehash(deleted >= used * MAX_DELETED ? capacity : capacity * 2);
+        capacity = table.capacity();
+      }
+
+      var buffer = table.buffer();
+      var slot = slotOf(key, capacity);
+      var firstDeleted = -1;
+      while (true) {
+        var state = buffer.get(offset(slot) + SLOT_STATE);
+        if (state == EMPTY) {
+          break;
+        }
+        if (state == DELETED && firstDeleted < 0) {
+          firstDeleted = slot;
+        }
+        if (state == OCCUPIED && keyEquals(slot, key)) {
+          writeSlot(slot, key, providerId);
+          return;
+        }
+        slot = (slot + 1) & (capacity - 1);
+      }
+
+      if (firstDeleted >= 0) {
+        writeSlot(firstDeleted, key, providerId);
+        deleted--;
+        buffer.putInt(OFFSET_DELETED, deleted);
+      } else {
+        writeSlot(slot, key, providerId);
+        used++;
+        buffer.putInt(OFFSET_USED, used);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public void remove(String insurantId) {
+    if (!isIndexable(insurantId)) {
+      return;
+    }
+    var key = insurantId.getBytes(StandardCharsets.US_ASCII);
+
+    var stamp = lock.writeLock();
+    try {
+      var slot = findSlot(key);
+      if (slot >= 0) {
+        // keep probe sequences intact, the slot is re-used by later inserts or compaction
+        var buffer = table.buffer();
+        buffer.put(offset(slot) + SLOT_STATE, DELETED);
+        deleted++;
+        buffer.putInt(OFFSET_DELETED, deleted);
+        if (table.capacity() >= MIN_COMPACT_CAPACITY && deleted >= used * MAX_DELETED) {
+          compactLocked();
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Rewrites the index without deleted and expired entries. */
+  public void compact() {
+    var stamp = lock.writeLock();
+    try {
+      compactLocked();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private void compactLocked() {
+    var live = countLive();
+    rehash(Math.max(tableSizeFor((int) Math.ceil(live / MAX_LOAD) + 1), 16));
+  }
+
+  private void compactOnOpen() {
+    try {
+      compactLocked();
+    } catch (UncheckedIOException e) {
+      // still usable, merely larger than needed
+      log.atWarn().setCause(e).log("failed to compact account index {}", file);
+    }
+  }
+
+  public int size() {
+    var stamp = lock.readLock();
+    try {
+      return countLive();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  public void flush() {
+    var stamp = lock.readLock();
+    try {
+      table.buffer().force();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public void close() {
+    var stamp = lock.writeLock();
+    try {
+      table.buffer().force();
+      table.channel().close();
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to close account index " + file, e);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private Integer find(Table t, byte[] key) {
+    var buf = t.buffer();
+    var cap = t.capacity();
+    var slot = hash(key) & (cap - 1);
+    for (int probes = 0; probes < cap; probes++) {
+      var off = offset(slot);
+      var state = buf.get(off + SLOT_STATE);
+      if (state == EMPTY) {
+        return null;
+      }
+      if (state == OCCUPIED && keyEquals(buf, off, key)) {
+        if (isExpired(buf.getLong(off + SLOT_TIMESTAMP))) {
+          return null;
+        }
+        return buf.get(off + SLOT_PROVIDER) & 0xff;
+      }
+      slot = (slot + 1) & (cap - 1);
+    }
+    return null;
+  }
+
+  private int findSlot(byte[] key) {
+    var buffer = table.buffer();
+    var capacity = table.capacity();
+    var slot = slotOf(key, capacity);
+    for (int probes = 0; probes < capacity; probes++) {
+      var state = buffer.get(offset(slot) + SLOT_STATE);
+      if (state == EMPTY) {
+        return -1;
+      }
+      if (state == OCCUPIED && keyEquals(slot, key)) {
+        return slot;
+      }
+      slot = (slot + 1) & (capacity - 1);
+    }
+    return -1;
+  }
+
+  private int countLive() {
+    var buffer = table.buffer();
+    var capacity = table.capacity();
+    var live = 0;
+    for (int slot = 0; slot < capacity; slot++) {
+      var off = offset(slot);
+      if (buffer.get(off + SLOT_STATE) == OCCUPIED
+          && !isExpired(buffer.getLong(off + SLOT_TIMESTAMP))) {
+        live++;
+      }
+    }
+    return live;
+  }
+
+  /**
+   * Copies all live entries into a fresh file of the given capacity and swaps it in. The new table
+   * is only published once the file replaced the old one, on failure the old table stays in use.
+   */
+  private void rehash(int newCapacity) {
+    var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    var old = table;
+
+    Table fresh = null;
+    try {
+      Files.deleteIfExists(tmp);
+      fresh = create(tmp, newCapacity);
+      var src = old.buffer();
+      var buffer = fresh.buffer();
+      var newUsed = 0;
+      for (int slot = 0; slot < old.capacity(); slot++) {
+        var off = offset(slot);
+        if (src.get(off + SLOT_STATE) != OCCUPIED || isExpired(src.getLong(off + SLOT_TIMESTAMP))) {
+          continue;
+        }
+        var key = new byte[KVNR_LENGTH];
+        src.get(off + SLOT_KVNR, key);
+        var target = slotOf(key, newCapacity);
+        while (buffer.get(offset(target) + SLOT_STATE) != EMPTY) {
+          target = (target + 1) & (newCapacity - 1);
+        }
+        var dst = offset(target);
+        buffer.put(dst + SLOT_STATE, OCCUPIED);
+        buffer.put(dst + SLOT_KVNR, key);
+        buffer.put(dst + SLOT_PROVIDER, src.get(off + SLOT_PROVIDER));
+        buffer.putLong(dst + SLOT_TIMESTAMP, src.getLong(off + SLOT_TIMESTAMP));
+        newUsed++;
+      }
+      buffer.putInt(OFFSET_USED, newUsed);
+      buffer.force();
+
+      // the mapping follows the file, it stays valid after the move
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      table = fresh;
+      used = newUsed;
+      deleted = 0;
+    } catch (IOException e) {
+      discard(fresh, tmp, e);
+      throw new UncheckedIOException("failed to rehash account index " + file, e);
+    } catch (RuntimeException e) {
+      discard(fresh, tmp, e);
+      throw e;
+    }
+
+    try {
+      old.channel().close();
+    } catch (IOException e) {
+      // the old file is gone already, nothing to lose
+    }
+  }
+
+  private static void discard(Table fresh, Path tmp, Exception cause) {
+    try {
+      if (fresh != null) {
+        fresh.channel().close();
+      }
+      Files.deleteIfExists(tmp);
+    } catch (IOException e) {
+      cause.addSuppressed(e);
+    }
+  }
+
+  private static Table create(Path path, int slots) throws IOException {
+    var size = HEADER_SIZE + (long) slots * SLOT_SIZE;
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("account index too large: %d slots".formatted(slots));
+    }
+    var channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    buffer.putLong(OFFSET_MAGIC, MAGIC);
+    buffer.putInt(OFFSET_CAPACITY, slots);
+    buffer.putInt(OFFSET_USED, 0);
+    buffer.putInt(OFFSET_DELETED, 0);
+    return new Table(channel, buffer, slots);
+  }
+
+  private Table map(Path path) throws IOException {
+    var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+    if (header.getLong(OFFSET_MAGIC) != MAGIC) {
+      channel.close();
+      throw new IOException("not an account index: " + path);
+    }
+    var slots = header.getInt(OFFSET_CAPACITY);
+    var buffer =
+        channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+    used = buffer.getInt(OFFSET_USED);
+    deleted = buffer.getInt(OFFSET_DELETED);
+    return new Table(channel, buffer, slots);
+  }
+
+  private void writeSlot(int slot, byte[] key, int providerId) {
+    var buffer = table.buffer();
+    var off = offset(slot);
+    // the key is written before the state, optimistic readers never see a half written key
+    buffer.put(off + SLOT_KVNR, key);
+    buffer.put(off + SLOT_PROVIDER, (byte) providerId);
+    buffer.putLong(off + SLOT_TIMESTAMP, clock.instant().getEpochSecond());
+    buffer.put(off + SLOT_STATE, OCCUPIED);
+  }
+
+  private boolean keyEquals(int slot, byte[] key) {
+    return keyEquals(table.buffer(), offset(slot), key);
+  }
+
+  private static boolean keyEquals(MappedByteBuffer buf, int off, byte[] key) {
+    for (int i = 0; i < KVNR_LENGTH; i++) {
+      if (buf.get(off + SLOT_KVNR + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isExpired(long resolvedAtEpochSeconds) {
+    return Instant.ofEpochSecond(resolvedAtEpochSeconds).plus(maxAge).isBefore(clock.instant());
+  }
+
+  private static int slotOf(byte[] key, int capacity) {
+    return hash(key) & (capacity - 1);
+  }
+
+  private static int offset(int slot) {
+    return HEADER_SIZE + slot * SLOT_SIZE;
+  }
+
+  private static int hash(byte[] key) {
+    // FNV-1a
+    var h = 0x811c9dc5;
+    for (var b : key) {
+      h ^= b;
+      h *= 0x01000193;
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean isIndexable(String insurantId) {
+    return insurantId != null && KVNR_PATTERN.matcher(insurantId).matches();
+  }
+
+  private static int tableSizeFor(int n) {
+    var size = Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+    return Math.max(size, 16);
+  }
+}
@@ -0,0 +1,17 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import com.oviva.telematik.vau.epa4all.client.Epa4AllClientException;
+
+/**
+ * Looking up the account of an insurant failed, e.g. a provider was unreachable. Unlike a missing
+ * account this is transient, the lookup may be retried.
+ */
+public class AccountLookupException extends Epa4AllClientException {
+  public AccountLookupException(String message) {
+    super(message);
+  }
+
+  public AccountLookupException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
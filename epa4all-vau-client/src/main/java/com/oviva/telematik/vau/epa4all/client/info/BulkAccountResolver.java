@@ -0,0 +1,281 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import static java.net.http.HttpResponse.BodyHandlers.discarding;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Looks up the accounts of many insurants, e.g. for onboarding campaigns. Uses the same outer HTTP
+ * client and provider endpoints as the {@link InformationService} it is created from and feeds the
+ * results into its cache.
+ *
+ * <p>Optionally, completed lookups are appended to a checkpoint file. When resolving again with the
+ * same file, insurants already contained are skipped. Failed lookups are not checkpointed and are
+ * retried on the next run.
+ */
+public class BulkAccountResolver {
+
+  private static final Logger log = LoggerFactory.getLogger(BulkAccountResolver.class);
+
+  private final InformationService informationService;
+  private final Options options;
+  private final RateLimiter rateLimiter;
+  private final Map<URI, Semaphore> providerPermits = new ConcurrentHashMap<>();
+
+  public BulkAccountResolver(InformationService informationService, Options options) {
+    this.informationService = informationService;
+    this.options = options;
+    this.rateLimiter = new RateLimiter(options.requestsPerSecond());
+    for (var endpoint : informationService.endpoints()) {
+      providerPermits.put(endpoint, new Semaphore(options.concurrencyPerProvider()));
+    }
+  }
+
+  /**
+   * @param concurrencyPerProvider max. concurrent requests to each provider
+   * @param requestsPerSecond max. requests per second over all providers
+   * @param maxAttempts attempts per provider before a lookup is considered failed
+   * @param initialBackoff backoff before the first retry, doubles with every further attempt
+   * @param maxBackoff upper bound for the backoff
+   * @param checkpointFile optional file to record completed lookups in, null to disable
+   */
+  public record Options(
+      int concurrencyPerProvider,
+      double requestsPerSecond,
+      int maxAttempts,
+      Duration initialBackoff,
+      Duration maxBackoff,
+      Path checkpointFile) {
+
+    public Options {
+      if (concurrencyPerProvider <= 0) {
+        throw new IllegalArgumentException(
+            "invalid concurrency per provider: %d".formatted(concurrencyPerProvider));
+      }
+      if (maxAttempts <= 0) {
+        throw new IllegalArgumentException("invalid max attempts: %d".formatted(maxAttempts));
+      }
+      if (initialBackoff == null || maxBackoff == null) {
+        throw new IllegalArgumentException("backoff missing");
+      }
+    }
+
+    public static Options defaults() {
+      return new Options(8, 50, 4, Duration.ofMillis(200), Duration.ofSeconds(10), null);
+    }
+
+    public Options withCheckpointFile(Path checkpointFile) {
+      return new Options(
+          concurrencyPerProvider,
+          requestsPerSecond,
+          maxAttempts,
+          initialBackoff,
+          maxBackoff,
+          checkpointFile);
+    }
+  }
+
+  public enum Status {
+    FOUND,
+    NOT_FOUND,
+    ERROR
+  }
+
+  /**
+   * @param endpoint the endpoint of the provider having the account, null unless found
+   */
+  public record Result(String insurantId, Status status, URI endpoint) {}
+
+  /**
+   * Resolves all given insurants and blocks until done. Results are passed to the sink as they
+   * complete, in no particular order. The sink is never called concurrently. Duplicates are only
+   * resolved once.
+   *
+   * <p>If writing the checkpoint or the sink fails, no further insurants are started and the first
+   * failure is thrown once the running lookups completed.
+   */
+  public void resolve(Stream<String> insurantIds, Consumer<Result> sink) {
+
+    var completed = readCheckpoint();
+    var seen = ConcurrentHashMap.<String>newKeySet();
+    var inFlight = new Semaphore(options.concurrencyPerProvider() * providerPermits.size());
+    var failure = new AtomicReference<RuntimeException>();
+
+    try (var checkpoint = openCheckpoint();
+        var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+      var emitter = new Emitter(checkpoint, sink);
+      insurantIds.forEach(
+          insurantId -> {
+            if (failure.get() != null || completed.contains(insurantId) || !seen.add(insurantId)) {
+              return;
+            }
+
+            // bounds the number of waiting tasks, the stream may be huge
+            inFlight.acquireUninterruptibly();
+            executor.execute(
+                () -> {
+                  try {
+                    emitter.emit(resolveOne(insurantId));
+                  } catch (RuntimeException e) {
+                    if (!failure.compareAndSet(null, e)) {
+                      failure.get().addSuppressed(e);
+                    }
+                  } finally {
+                    inFlight.release();
+                  }
+                });
+          });
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to write checkpoint", e);
+    }
+
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  private Result resolveOne(String insurantId) {
+    var failed = false;
+    try {
+      for (var endpoint : informationService.endpoints()) {
+        var outcome = probeWithRetry(insurantId, endpoint);
+        if (outcome == AccountEndpointCache.Outcome.FOUND) {
+          informationService.remember(
+              insurantId, new AccountEndpointCache.Lookup(outcome, endpoint));
+          return new Result(insurantId, Status.FOUND, endpoint);
+        }
+        failed |= outcome == AccountEndpointCache.Outcome.ERROR;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new Result(insurantId, Status.ERROR, null);
+    }
+
+    if (failed) {
+      return new Result(insurantId, Status.ERROR, null);
+    }
+    informationService.remember(
+        insurantId, new AccountEndpointCache.Lookup(AccountEndpointCache.Outcome.NOT_FOUND, null));
+    return new Result(insurantId, Status.NOT_FOUND, null);
+  }
+
+  private AccountEndpointCache.Outcome probeWithRetry(String insurantId, URI endpoint)
+      throws InterruptedException {
+
+    var permits = providerPermits.get(endpoint);
+    var backoff = options.initialBackoff();
+    for (int attempt = 1; ; attempt++) {
+
+      AccountEndpointCache.Outcome outcome;
+      permits.acquire();
+      try {
+        rateLimiter.acquire();
+        outcome = probe(insurantId, endpoint);
+      } finally {
+        permits.release();
+      }
+
+      if (outcome != AccountEndpointCache.Outcome.ERROR || attempt >= options.maxAttempts()) {
+        return outcome;
+      }
+
+      // full jitter, avoids retrying in lock-step
+      Thread.sleep(ThreadLocalRandom.current().nextLong(backoff.toMillis() + 1));
+      backoff = min(backoff.multipliedBy(2), options.maxBackoff());
+    }
+  }
+
+  private AccountEndpointCache.Outcome probe(String insurantId, URI endpoint)
+      throws InterruptedException {
+    try {
+      var res =
+          informationService
+              .outerHttpClient()
+              .send(informationService.probeRequest(insurantId, endpoint), discarding());
+      return InformationService.mapStatus(res.statusCode());
+    } catch (IOException e) {
+      log.atDebug().setCause(e).log("failed to reach ePA account endpoint '{}'", endpoint);
+      return AccountEndpointCache.Outcome.ERROR;
+    }
+  }
+
+  private Set<String> readCheckpoint() {
+    var file = options.checkpointFile();
+    if (file == null || !Files.exists(file)) {
+      return Set.of();
+    }
+
+    var completed = new HashSet<String>();
+    try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+      lines.map(l -> l.split("\t", 2)[0]).filter(s -> !s.isBlank()).forEach(completed::add);
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to read checkpoint " + file, e);
+    }
+
+    log.atInfo().log("resuming bulk lookup, {} insurants already done", completed.size());
+    return completed;
+  }
+
+  private BufferedWriter openCheckpoint() throws IOException {
+    var file = options.checkpointFile();
+    if (file == null) {
+      return null;
+    }
+    return Files.newBufferedWriter(
+        file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  private static Duration min(Duration a, Duration b) {
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+
+  private static class Emitter {
+
+    private final BufferedWriter checkpoint;
+    private final Consumer<Result> sink;
+
+    Emitter(BufferedWriter checkpoint, Consumer<Result> sink) {
+      this.checkpoint = checkpoint;
+      this.sink = sink;
+    }
+
+    synchronized void emit(Result result) {
+      if (checkpoint != null && result.status() != Status.ERROR) {
+        try {
+          // KVNR <TAB> status <TAB> endpoint
+          checkpoint.write(
+              "%s\t%s\t%s\n"
+                  .formatted(
+                      result.insurantId(),
+                      result.status(),
+                      result.endpoint() != null ? result.endpoint() : ""));
+          checkpoint.flush();
+        } catch (IOException e) {
+          throw new UncheckedIOException("failed to write checkpoint", e);
+        }
+      }
+      sink.accept(result);
+    }
+  }
+}
@@ -1,60 +1,239 @@
 package com.oviva.telematik.vau.epa4all.client.info;
 
-import java.io.IOException;
+import static java.net.http.HttpResponse.BodyHandlers.discarding;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class InformationService {
 
   private static final Logger log = LoggerFactory.getLogger(InformationService.class);
+
+  static final Duration DEFAULT_PROBE_TIMEOUT = Duration.ofSeconds(10);
   private final HttpClient outerHttpClient;
 
+  private final List<EpaProvider> providers;
   private final List<URI> epaEndpoints;
+  private final AccountEndpointCache cache;
+  private final AccountIndex index;
+  private final Duration probeTimeout;
 
   public InformationService(
       java.net.http.HttpClient outerHttpClient,
       Environment environment,
       List<EpaProvider> providers) {
+    this(
+        outerHttpClient,
+        environment,
+        providers,
+        AccountEndpointCache.disabled(),
+        null,
+        DEFAULT_PROBE_TIMEOUT);
+  }
+
+  InformationService(
+      java.net.http.HttpClient outerHttpClient,
+      Environment environment,
+      List<EpaProvider> providers,
+      AccountEndpointCache cache,
+      AccountIndex index,
+      Duration probeTimeout) {
 
     this.outerHttpClient = outerHttpClient;
+    this.cache = cache;
+    this.index = index;
+    this.probeTimeout = probeTimeout;
+    this.providers = List.copyOf(providers);
     epaEndpoints = providers.stream().map(p -> deriveEndpoint(environment, p)).toList();
   }
 
+  /**
+   * @return the endpoint of the provider holding the account, empty if no provider has one
+   * @throws AccountLookupException if not all providers could be asked, retrying may help
+   */
   public Optional<URI> findAccountEndpoint(String insurantId) {
-    for (URI epaEndpoint : epaEndpoints) {
-      if (hasActiveAccount(insurantId, epaEndpoint)) {
-        return Optional.of(epaEndpoint);
+
+    var cached = cache.get(insurantId);
+    if (cached != null) {
+      return endpointOf(insurantId, cached);
+    }
+
+    var indexed = lookupIndex(insurantId);
+    if (indexed != null) {
+      cache.put(insurantId, indexed);
+      return Optional.of(indexed.endpoint());
+    }
+
+    var lookup = lookupAccount(insurantId);
+    remember(insurantId, lookup);
+    return endpointOf(insurantId, lookup);
+  }
+
+  /**
+   * Drops any cached lookup for the insurant, e.g. after the account turned out to not exist (any
+   * longer) at the cached endpoint.
+   */
+  public void invalidate(String insurantId) {
+    cache.invalidate(insurantId);
+    if (index != null) {
+      index.remove(insurantId);
+    }
+  }
+
+  public CacheStats cacheStats() {
+    return cache.stats();
+  }
+
+  List<URI> endpoints() {
+    return epaEndpoints;
+  }
+
+  HttpClient outerHttpClient() {
+    return outerHttpClient;
+  }
+
+  /** records the result of a lookup done elsewhere, e.g. by a bulk lookup */
+  void remember(String insurantId, AccountEndpointCache.Lookup lookup) {
+    cache.put(insurantId, lookup);
+    if (index != null && lookup.outcome() == AccountEndpointCache.Outcome.FOUND) {
+      var i = epaEndpoints.indexOf(lookup.endpoint());
+      if (i >= 0) {
+        index.put(insurantId, providers.get(i).id());
+      }
+    }
+  }
+
+  private static Optional<URI> endpointOf(String insurantId, AccountEndpointCache.Lookup lookup) {
+    if (lookup.outcome() == AccountEndpointCache.Outcome.ERROR) {
+      throw new AccountLookupException(
+          "looking up the account of KVNR %s failed, not all providers answered"
+              .formatted(insurantId));
+    }
+    return Optional.ofNullable(lookup.endpoint());
+  }
+
+  private AccountEndpointCache.Lookup lookupIndex(String insurantId) {
+    if (index == null) {
+      return null;
+    }
+    var providerId = index.get(insurantId);
+    if (providerId.isEmpty()) {
+      return null;
+    }
+    for (int i = 0; i < providers.size(); i++) {
+      if (providers.get(i).id() == providerId.get()) {
+        return new AccountEndpointCache.Lookup(
+            AccountEndpointCache.Outcome.FOUND, epaEndpoints.get(i));
       }
     }
-    return Optional.empty();
+
+    // provider no longer configured
+    return null;
   }
 
-  private boolean hasActiveAccount(String insurantId, URI endpoint) {
-    var req =
-        HttpRequest.newBuilder(endpoint.resolve("/information/api/v1/ehr"))
-            .headers("x-useragent", "Oviva/0.0.1", "x-insurantid", insurantId)
-            .GET()
-            .build();
+  public record CacheStats(long hits, long misses, long invalidations, int size) {}
+
+  /**
+   * Probes all providers concurrently, the first provider confirming an account wins and all other
+   * probes are cancelled.
+   */
+  private AccountEndpointCache.Lookup lookupAccount(String insurantId) {
+
+    var result = new CompletableFuture<AccountEndpointCache.Lookup>();
+    var inFlight = new ArrayList<CompletableFuture<?>>(epaEndpoints.size());
+    var outcomes = new ArrayList<CompletableFuture<AccountEndpointCache.Outcome>>();
+
+    for (URI epaEndpoint : epaEndpoints) {
+      var request = outerHttpClient.sendAsync(probeRequest(insurantId, epaEndpoint), discarding());
+      inFlight.add(request);
+
+      var outcome =
+          request
+              .handle((res, ex) -> mapResult(epaEndpoint, res, ex))
+              .completeOnTimeout(
+                  AccountEndpointCache.Outcome.ERROR, probeTimeout.toMillis(), MILLISECONDS);
+      outcome.thenAccept(
+          o -> {
+            if (o == AccountEndpointCache.Outcome.FOUND) {
+              result.complete(new AccountEndpointCache.Lookup(o, epaEndpoint));
+            }
+          });
+      outcomes.add(outcome);
+    }
+
+    CompletableFuture.allOf(outcomes.toArray(CompletableFuture[]::new))
+        .thenRun(() -> result.complete(combine(outcomes)));
 
     try {
-      var res = outerHttpClient.send(req, HttpResponse.BodyHandlers.discarding());
-      // status code mapping according to API spec
-      return res.statusCode() == 204;
-    } catch (IOException e) {
-      log.atDebug()
-          .addKeyValue("endpoint", endpoint)
-          .setCause(e)
-          .log("failed to reach ePA account endpoint '%s'", endpoint);
+      return result.get();
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
+      return new AccountEndpointCache.Lookup(AccountEndpointCache.Outcome.ERROR, null);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("unexpected failure looking up account", e);
+    } finally {
+      // no need to wait for the remaining providers
+      inFlight.forEach(f -> f.cancel(true));
     }
-    return false;
+  }
+
+  private AccountEndpointCache.Lookup combine(
+      List<CompletableFuture<AccountEndpointCache.Outcome>> outcomes) {
+
+    var failed = false;
+    for (int i = 0; i < outcomes.size(); i++) {
+      var outcome = outcomes.get(i).join();
+      if (outcome == AccountEndpointCache.Outcome.FOUND) {
+        return new AccountEndpointCache.Lookup(outcome, epaEndpoints.get(i));
+      }
+      failed |= outcome == AccountEndpointCache.Outcome.ERROR;
+    }
+
+    // only if all providers answered we can be sure there is no account
+    var outcome =
+        failed ? AccountEndpointCache.Outcome.ERROR : AccountEndpointCache.Outcome.NOT_FOUND;
+    return new AccountEndpointCache.Lookup(outcome, null);
+  }
+
+  HttpRequest probeRequest(String insurantId, URI endpoint) {
+    return HttpRequest.newBuilder(endpoint.resolve("/information/api/v1/ehr"))
+        .headers("x-useragent", "Oviva/0.0.1", "x-insurantid", insurantId)
+        .timeout(probeTimeout)
+        .GET()
+        .build();
+  }
+
+  private AccountEndpointCache.Outcome mapResult(URI endpoint, HttpResponse<?> res, Throwable ex) {
+    if (ex == null) {
+      return mapStatus(res.statusCode());
+    }
+
+    log.atDebug()
+        .addKeyValue("endpoint", endpoint)
+        .setCause(ex)
+        .log("failed to reach ePA account endpoint '%s'".formatted(endpoint));
+    return AccountEndpointCache.Outcome.ERROR;
+  }
+
+  static AccountEndpointCache.Outcome mapStatus(int status) {
+    // status code mapping according to API spec
+    return switch (status) {
+      case 204 -> AccountEndpointCache.Outcome.FOUND;
+        // 404: no account, 409: account exists but is not active
+      case 404, 409 -> AccountEndpointCache.Outcome.NOT_FOUND;
+      default -> AccountEndpointCache.Outcome.ERROR;
+    };
   }
 
   private static URI deriveEndpoint(Environment environment, EpaProvider provider) {
@@ -0,0 +1,116 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import java.net.http.HttpClient;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+public class InformationServiceBuilder {
+
+  private HttpClient outerHttpClient;
+  private InformationService.Environment environment;
+  private List<InformationService.EpaProvider> providers =
+      List.of(InformationService.EpaProvider.IBM, InformationService.EpaProvider.BITMARCK);
+
+  private Duration probeTimeout = InformationService.DEFAULT_PROBE_TIMEOUT;
+
+  private Duration positiveTtl = Duration.ofHours(24);
+  private Duration negativeTtl = Duration.ofHours(1);
+  private Duration errorTtl = Duration.ofSeconds(30);
+  private int maxCacheEntries = 100_000;
+  private Clock clock = Clock.systemUTC();
+
+  private AccountIndex accountIndex;
+
+  private InformationServiceBuilder() {}
+
+  public static InformationServiceBuilder newBuilder() {
+    return new InformationServiceBuilder();
+  }
+
+  public InformationServiceBuilder outerHttpClient(HttpClient outerHttpClient) {
+    this.outerHttpClient = outerHttpClient;
+    return this;
+  }
+
+  public InformationServiceBuilder environment(InformationService.Environment environment) {
+    this.environment = environment;
+    return this;
+  }
+
+  public InformationServiceBuilder providers(List<InformationService.EpaProvider> providers) {
+    this.providers = providers;
+    return this;
+  }
+
+  /** deadline for each provider to answer, providers that don't are treated as failed */
+  public InformationServiceBuilder probeTimeout(Duration probeTimeout) {
+    this.probeTimeout = probeTimeout;
+    return this;
+  }
+
+  /** how long to remember where an account was found, zero disables caching */
+  public InformationServiceBuilder positiveTtl(Duration positiveTtl) {
+    this.positiveTtl = positiveTtl;
+    return this;
+  }
+
+  /** how long to remember that no provider has an account, zero disables caching */
+  public InformationServiceBuilder negativeTtl(Duration negativeTtl) {
+    this.negativeTtl = negativeTtl;
+    return this;
+  }
+
+  /** how long to remember failed lookups, zero disables caching */
+  public InformationServiceBuilder errorTtl(Duration errorTtl) {
+    this.errorTtl = errorTtl;
+    return this;
+  }
+
+  public InformationServiceBuilder maxCacheEntries(int maxCacheEntries) {
+    this.maxCacheEntries = maxCacheEntries;
+    return this;
+  }
+
+  /**
+   * persistent index of where accounts were found, consulted before probing the providers. The
+   * caller owns the index and must close it.
+   */
+  public InformationServiceBuilder accountIndex(AccountIndex accountIndex) {
+    this.accountIndex = accountIndex;
+    return this;
+  }
+
+  public InformationServiceBuilder clock(Clock clock) {
+    this.clock = clock;
+    return this;
+  }
+
+  public InformationService build() {
+
+    if (outerHttpClient == null) {
+      throw new IllegalArgumentException("outer http client missing");
+    }
+    if (environment == null) {
+      throw new IllegalArgumentException("environment missing");
+    }
+    if (providers == null || providers.isEmpty()) {
+      throw new IllegalArgumentException("providers missing");
+    }
+    if (probeTimeout == null || probeTimeout.isZero() || probeTimeout.isNegative()) {
+      throw new IllegalArgumentException("invalid probe timeout: %s".formatted(probeTimeout));
+    }
+    if (positiveTtl == null || negativeTtl == null || errorTtl == null) {
+      throw new IllegalArgumentException("cache TTLs missing");
+    }
+    if (maxCacheEntries < 0) {
+      throw new IllegalArgumentException(
+          "invalid max cache entries: %d".formatted(maxCacheEntries));
+    }
+
+    var cache =
+        new AccountEndpointCache(clock, positiveTtl, negativeTtl, errorTtl, maxCacheEntries);
+    return new InformationService(
+        outerHttpClient, environment, providers, cache, accountIndex, probeTimeout);
+  }
+}
@@ -0,0 +1,30 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import java.util.concurrent.TimeUnit;
+
+/** Spaces out permits evenly, without bursts. */
+class RateLimiter {
+
+  private final long intervalNanos;
+  private long nextSlot = System.nanoTime();
+
+  RateLimiter(double permitsPerSecond) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgumentException("invalid rate: %s".formatted(permitsPerSecond));
+    }
+    this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+  }
+
+  void acquire() throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      var now = System.nanoTime();
+      var slot = Math.max(now, nextSlot);
+      nextSlot = slot + intervalNanos;
+      waitNanos = slot - now;
+    }
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package com.oviva.telematik.vau.epa4all.client.authz.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.MutableClock;
+import com.oviva.epa.client.model.KonnektorException;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SmcbCard;
+import com.oviva.telematik.vau.epa4all.client.Epa4AllClientException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SmcbCardPoolTest {
+
+  private static final String TELEMATIK_ID = "5-2-KH-1";
+
+  private KonnektorService konnektorService;
+  private final MutableClock clock = new MutableClock(Instant.parse("2025-01-10T10:00:00Z"));
+
+  private final SmcbCard cardA = card("A", TELEMATIK_ID, true);
+  private final SmcbCard cardB = card("B", TELEMATIK_ID, true);
+  private final SmcbCard otherInstitution = card("C", "5-2-KH-2", true);
+
+  @BeforeEach
+  void setUp() {
+    konnektorService = mock(KonnektorService.class);
+    when(konnektorService.verifySmcPin(any())).thenReturn(PinStatus.VERIFIED);
+    when(konnektorService.authSignRsaPss(any(), any())).thenReturn(new byte[] {1});
+  }
+
+  @Test
+  void select_shouldSpreadSignaturesOverCardsOfSameInstitution() {
+
+    // Given
+    var pool = newPool(List.of(cardA, cardB, otherInstitution));
+
+    // When
+    var first = pool.select();
+    first.authSign(new byte[] {42});
+    var second = pool.select();
+    second.authSign(new byte[] {42});
+
+    // Then
+    assertEquals(2, pool.size());
+    assertNotSame(first.authCertificate(), second.authCertificate());
+    verify(konnektorService).authSignRsaPss(eq("A"), any());
+    verify(konnektorService).authSignRsaPss(eq("B"), any());
+    verify(konnektorService, never()).authSignRsaPss(eq("C"), any());
+  }
+
+  @Test
+  void authSign_shouldTakeFailedCardOutOfRotationUntilQuarantineEnds() {
+
+    // Given
+    var pool = newPool(List.of(cardA, cardB));
+    when(konnektorService.authSignRsaPss(eq("A"), any()))
+        .thenThrow(new KonnektorException("card busy"));
+
+    var a = pool.select();
+    if (a.authCertificate() != cardA.authRsaCertificate()) {
+      a = pool.select();
+    }
+
+    // When
+    var failing = a;
+    assertThrows(KonnektorException.class, () -> failing.authSign(new byte[] {42}));
+
+    // Then
+    assertEquals(1, pool.availableCount());
+    for (int i = 0; i < 4; i++) {
+      assertSame(cardB.authRsaCertificate(), pool.select().authCertificate());
+    }
+
+    clock.advance(Duration.ofSeconds(31));
+    assertEquals(2, pool.availableCount());
+  }
+
+  @Test
+  void select_shouldRefreshWhenNoCardIsUsable() {
+
+    // Given
+    var unverified = card("A", TELEMATIK_ID, false);
+    var pool = newPool(List.of(unverified));
+    when(konnektorService.listSmcbCards()).thenReturn(List.of(cardA));
+
+    // When
+    var selected = pool.select();
+
+    // Then
+    assertSame(cardA.authRsaCertificate(), selected.authCertificate());
+  }
+
+  @Test
+  void select_shouldReadmitUnverifiedCardAfterQuarantine() {
+
+    // Given
+    var unverified = card("A", TELEMATIK_ID, false);
+    var pool = newPool(List.of(unverified, cardB));
+    assertEquals(1, pool.availableCount());
+
+    // When
+    clock.advance(Duration.ofSeconds(31));
+
+    // Then
+    assertEquals(2, pool.availableCount());
+    pool.select().authSign(new byte[] {42});
+    pool.select().authSign(new byte[] {42});
+    verify(konnektorService).verifySmcPin("A");
+    verify(konnektorService).authSignRsaPss(eq("A"), any());
+    verify(konnektorService, never()).listSmcbCards();
+  }
+
+  @Test
+  void select_shouldFailWithoutUsableCard() {
+
+    // Given
+    var pool = newPool(List.of(card("A", TELEMATIK_ID, false)));
+    when(konnektorService.listSmcbCards()).thenReturn(List.of());
+
+    // When
+    var e = assertThrows(Epa4AllClientException.class, pool::select);
+
+    // Then
+    assertTrue(e.getMessage().contains(TELEMATIK_ID));
+    assertEquals(0, pool.size());
+  }
+
+  @Test
+  void withKonnektorService_shouldSignViaOtherServiceSharingQuarantine() {
+
+    // Given
+    var pool = newPool(List.of(cardA));
+    var bulkService = mock(KonnektorService.class);
+    when(bulkService.verifySmcPin(any())).thenReturn(PinStatus.VERIFIED);
+    when(bulkService.authSignRsaPss(any(), any())).thenThrow(new KonnektorException("card busy"));
+    var bulk = pool.withKonnektorService(bulkService);
+
+    // When
+    assertThrows(KonnektorException.class, () -> bulk.select().authSign(new byte[] {42}));
+
+    // Then
+    verify(bulkService).authSignRsaPss(eq("A"), any());
+    verify(konnektorService, never()).authSignRsaPss(any(), any());
+    assertEquals(0, pool.availableCount());
+  }
+
+  @Test
+  void authSign_shouldRequireSelectedCard() {
+
+    // Given
+    var pool = newPool(List.of(cardA, cardB));
+
+    // When
+    assertThrows(UnsupportedOperationException.class, () -> pool.authSign(new byte[] {42}));
+    assertThrows(UnsupportedOperationException.class, pool::authCertificate);
+
+    // Then
+    verify(konnektorService, never()).authSignRsaPss(any(), any());
+  }
+
+  private SmcbCardPool newPool(List<SmcbCard> cards) {
+    return new SmcbCardPool(konnektorService, TELEMATIK_ID, cards, Duration.ofSeconds(30), clock);
+  }
+
+  private static SmcbCard card(String handle, String telematikId, boolean pinVerified) {
+    return new SmcbCard(
+        handle, telematikId, "Praxis " + handle, mock(X509Certificate.class), null, pinVerified);
+  }
+}
@@ -0,0 +1,214 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccountIndexTest {
+
+  private static final Duration MAX_AGE = Duration.ofDays(30);
+  private static final Clock CLOCK = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+
+  @TempDir Path dir;
+
+  @Test
+  void put_shouldSurviveReopen() {
+    // Given
+    var file = dir.resolve("accounts.idx");
+    try (var index = AccountIndex.open(file, 16, MAX_AGE, CLOCK)) {
+      index.put("X123456789", 2);
+    }
+
+    // When
+    try (var index = AccountIndex.open(file, 16, MAX_AGE, CLOCK)) {
+
+      // Then
+      assertEquals(Optional.of(2), index.get("X123456789"));
+      assertTrue(index.get("X000000000").isEmpty());
+    }
+  }
+
+  @Test
+  void put_shouldGrowBeyondInitialCapacity() throws Exception {
+    // Given
+    var file = dir.resolve("accounts.idx");
+    try (var index = AccountIndex.open(file, 16, MAX_AGE, CLOCK)) {
+
+      // When
+      for (int i = 0; i < 1000; i++) {
+        index.put(kvnr(i), 1 + i % 2);
+      }
+
+      // Then
+      assertEquals(1000, index.size());
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(Optional.of(1 + i % 2), index.get(kvnr(i)));
+      }
+    }
+    assertFalse(Files.exists(dir.resolve("accounts.idx.tmp")));
+  }
+
+  @Test
+  void remove_shouldKeepOtherEntriesReachable() {
+    try (var index = AccountIndex.open(dir.resolve("accounts.idx"), 16, MAX_AGE, CLOCK)) {
+      // Given
+      for (int i = 0; i < 10; i++) {
+        index.put(kvnr(i), 1);
+      }
+
+      // When
+      index.remove(kvnr(3));
+
+      // Then
+      assertTrue(index.get(kvnr(3)).isEmpty());
+      assertEquals(9, index.size());
+      assertEquals(Optional.of(1), index.get(kvnr(9)));
+    }
+  }
+
+  @Test
+  void compact_shouldDropExpiredEntries() {
+    // Given
+    var clock = mock(Clock.class);
+    when(clock.instant()).thenReturn(Instant.EPOCH);
+
+    try (var index = AccountIndex.open(dir.resolve("accounts.idx"), 1024, MAX_AGE, clock)) {
+      index.put("X123456789", 1);
+
+      when(clock.instant()).thenReturn(Instant.EPOCH.plus(Duration.ofDays(20)));
+      index.put("Y123456789", 2);
+
+      // When
+      when(clock.instant()).thenReturn(Instant.EPOCH.plus(Duration.ofDays(31)));
+      index.compact();
+
+      // Then
+      assertTrue(index.get("X123456789").isEmpty());
+      assertEquals(Optional.of(2), index.get("Y123456789"));
+      assertEquals(1, index.size());
+    }
+  }
+
+  @Test
+  void open_shouldDropExpiredEntries() throws Exception {
+    // Given
+    var file = dir.resolve("accounts.idx");
+    var clock = mock(Clock.class);
+    when(clock.instant()).thenReturn(Instant.EPOCH);
+    try (var index = AccountIndex.open(file, 1024, MAX_AGE, clock)) {
+      for (int i = 0; i < 500; i++) {
+        index.put(kvnr(i), 1);
+      }
+    }
+    var size = Files.size(file);
+
+    // When
+    when(clock.instant()).thenReturn(Instant.EPOCH.plus(Duration.ofDays(31)));
+    try (var index = AccountIndex.open(file, 1024, MAX_AGE, clock)) {
+
+      // Then
+      assertEquals(0, index.size());
+      assertTrue(Files.size(file) < size / 10);
+    }
+  }
+
+  @Test
+  void remove_shouldCompactOnceMostSlotsAreDeleted() throws Exception {
+    // Given
+    var file = dir.resolve("accounts.idx");
+    try (var index = AccountIndex.open(file, 2048, MAX_AGE, CLOCK)) {
+      for (int i = 0; i < 1000; i++) {
+        index.put(kvnr(i), 1);
+      }
+      var size = Files.size(file);
+
+      // When
+      for (int i = 0; i < 600; i++) {
+        index.remove(kvnr(i));
+      }
+
+      // Then
+      assertTrue(Files.size(file) < size);
+      assertEquals(400, index.size());
+      assertEquals(Optional.of(1), index.get(kvnr(999)));
+    }
+  }
+
+  @Test
+  void put_shouldReclaimDeletedSlotsWithoutGrowing() throws Exception {
+    // Given
+    var file = dir.resolve("accounts.idx");
+    try (var index = AccountIndex.open(file, 16, MAX_AGE, CLOCK)) {
+      var size = Files.size(file);
+
+      // When
+      for (int i = 0; i < 1000; i++) {
+        index.put(kvnr(i), 1);
+        index.remove(kvnr(i));
+      }
+      index.put(kvnr(1000), 2);
+
+      // Then
+      assertEquals(size, Files.size(file));
+      assertEquals(1, index.size());
+      assertEquals(Optional.of(2), index.get(kvnr(1000)));
+    }
+  }
+
+  @Test
+  void put_shouldKeepOldTable_whenRehashFails() throws Exception {
+    // Given
+    var file = dir.resolve("accounts.idx");
+    var tmp = dir.resolve("accounts.idx.tmp");
+    try (var index = AccountIndex.open(file, 16, MAX_AGE, CLOCK)) {
+      for (int i = 0; i < 11; i++) {
+        index.put(kvnr(i), 1);
+      }
+
+      // a non-empty directory cannot be replaced by the rehash
+      Files.createDirectories(tmp.resolve("blocker"));
+
+      // When
+      assertThrows(UncheckedIOException.class, () -> index.put(kvnr(11), 2));
+
+      // Then
+      assertEquals(11, index.size());
+      assertEquals(Optional.of(1), index.get(kvnr(10)));
+
+      Files.delete(tmp.resolve("blocker"));
+      Files.delete(tmp);
+      index.put(kvnr(11), 2);
+      assertEquals(Optional.of(2), index.get(kvnr(11)));
+    }
+    try (var index = AccountIndex.open(file, 16, MAX_AGE, CLOCK)) {
+      assertEquals(12, index.size());
+    }
+  }
+
+  @Test
+  void put_shouldIgnoreNonKvnrIds() {
+    try (var index = AccountIndex.open(dir.resolve("accounts.idx"), 16, MAX_AGE, CLOCK)) {
+      // When
+      index.put("not-a-kvnr", 1);
+
+      // Then
+      assertTrue(index.get("not-a-kvnr").isEmpty());
+      assertEquals(0, index.size());
+    }
+  }
+
+  private static String kvnr(int i) {
+    return "A%09d".formatted(i);
+  }
+}
@@ -0,0 +1,171 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatcher;
+
+class BulkAccountResolverTest {
+
+  private static final URI IBM = URI.create("https://epa-as-1.dev.epa4all.de");
+  private static final URI BITMARCK = URI.create("https://epa-as-2.dev.epa4all.de");
+
+  private static final BulkAccountResolver.Options OPTIONS =
+      new BulkAccountResolver.Options(2, 1000, 3, Duration.ofMillis(1), Duration.ofMillis(5), null);
+
+  private HttpClient httpClient;
+  private InformationService informationService;
+
+  @BeforeEach
+  void setUp() {
+    httpClient = mock(HttpClient.class);
+    informationService =
+        InformationServiceBuilder.newBuilder()
+            .outerHttpClient(httpClient)
+            .environment(InformationService.Environment.DEV)
+            .build();
+  }
+
+  @Test
+  void resolve_shouldEmitAllResultsOnce() throws Exception {
+    // Given
+    respond(IBM, "A000000001", 204);
+    respond(IBM, "B000000002", 404);
+    respond(BITMARCK, "B000000002", 204);
+    respond(IBM, "C000000003", 404);
+    respond(BITMARCK, "C000000003", 404);
+
+    var resolver = new BulkAccountResolver(informationService, OPTIONS);
+    var results = new ArrayList<BulkAccountResolver.Result>();
+
+    // When
+    resolver.resolve(
+        Stream.of("A000000001", "B000000002", "A000000001", "C000000003"), results::add);
+
+    // Then
+    assertEquals(3, results.size());
+    assertTrue(results.contains(new BulkAccountResolver.Result("A000000001", found(), IBM)));
+    assertTrue(results.contains(new BulkAccountResolver.Result("B000000002", found(), BITMARCK)));
+    assertTrue(
+        results.contains(
+            new BulkAccountResolver.Result(
+                "C000000003", BulkAccountResolver.Status.NOT_FOUND, null)));
+
+    // results also end up in the lookup cache
+    assertEquals(BITMARCK, informationService.findAccountEndpoint("B000000002").orElseThrow());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void resolve_shouldRetryTransientErrors() throws Exception {
+    // Given
+    var ok = mock(HttpResponse.class);
+    when(ok.statusCode()).thenReturn(204);
+    when(httpClient.send(argThat(request(IBM, "A000000001")), any()))
+        .thenThrow(new IOException("reset"))
+        .thenReturn(ok);
+
+    var resolver = new BulkAccountResolver(informationService, OPTIONS);
+    var results = new ArrayList<BulkAccountResolver.Result>();
+
+    // When
+    resolver.resolve(Stream.of("A000000001"), results::add);
+
+    // Then
+    assertEquals(List.of(new BulkAccountResolver.Result("A000000001", found(), IBM)), results);
+    verify(httpClient, times(2)).send(any(), any());
+  }
+
+  @Test
+  void resolve_shouldGiveUpAfterMaxAttempts() throws Exception {
+    // Given
+    when(httpClient.send(any(), any())).thenThrow(new IOException("down"));
+
+    var resolver = new BulkAccountResolver(informationService, OPTIONS);
+    var results = new ArrayList<BulkAccountResolver.Result>();
+
+    // When
+    resolver.resolve(Stream.of("A000000001"), results::add);
+
+    // Then
+    assertEquals(BulkAccountResolver.Status.ERROR, results.get(0).status());
+    verify(httpClient, times(6)).send(any(), any());
+  }
+
+  @Test
+  void resolve_shouldResumeFromCheckpoint(@TempDir Path dir) throws Exception {
+    // Given
+    var checkpoint = dir.resolve("checkpoint.tsv");
+    Files.writeString(checkpoint, "A000000001\tFOUND\thttps://epa-as-1.dev.epa4all.de\n");
+
+    respond(IBM, "B000000002", 204);
+
+    var resolver =
+        new BulkAccountResolver(informationService, OPTIONS.withCheckpointFile(checkpoint));
+    var results = new ArrayList<BulkAccountResolver.Result>();
+
+    // When
+    resolver.resolve(Stream.of("A000000001", "B000000002"), results::add);
+
+    // Then
+    assertEquals(List.of(new BulkAccountResolver.Result("B000000002", found(), IBM)), results);
+    var lines = Files.readAllLines(checkpoint);
+    assertEquals(2, lines.size());
+    assertEquals("B000000002\tFOUND\thttps://epa-as-1.dev.epa4all.de", lines.get(1));
+  }
+
+  @Test
+  void resolve_shouldThrowIfSinkFails() throws Exception {
+    // Given
+    respond(IBM, "A000000001", 204);
+    var resolver = new BulkAccountResolver(informationService, OPTIONS);
+
+    // When
+    var e =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                resolver.resolve(
+                    Stream.of("A000000001"),
+                    r -> {
+                      throw new IllegalStateException("sink full");
+                    }));
+
+    // Then
+    assertEquals("sink full", e.getMessage());
+  }
+
+  private static BulkAccountResolver.Status found() {
+    return BulkAccountResolver.Status.FOUND;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void respond(URI endpoint, String insurantId, int status) throws Exception {
+    var res = mock(HttpResponse.class);
+    when(res.statusCode()).thenReturn(status);
+    when(httpClient.send(argThat(request(endpoint, insurantId)), any())).thenReturn(res);
+  }
+
+  private static ArgumentMatcher<HttpRequest> request(URI endpoint, String insurantId) {
+    return r ->
+        r != null
+            && r.uri().getHost().equals(endpoint.getHost())
+            && r.headers().firstValue("x-insurantid").orElse("").equals(insurantId);
+  }
+}
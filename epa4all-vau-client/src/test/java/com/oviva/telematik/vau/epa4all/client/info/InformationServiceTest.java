@@ -0,0 +1,197 @@
+package com.oviva.telematik.vau.epa4all.client.info;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InformationServiceTest {
+
+  private static final String KVNR = "X123456789";
+  private static final URI IBM = URI.create("https://epa-as-1.dev.epa4all.de");
+  private static final URI BITMARCK = URI.create("https://epa-as-2.dev.epa4all.de");
+
+  private HttpClient httpClient;
+
+  @BeforeEach
+  void setUp() {
+    httpClient = mock(HttpClient.class);
+  }
+
+  @Test
+  void findAccountEndpoint_shouldCachePositiveLookup() throws Exception {
+    // Given
+    respond(IBM, 404);
+    respond(BITMARCK, 204);
+    var service = newService(Clock.systemUTC());
+
+    // When
+    var first = service.findAccountEndpoint(KVNR);
+    var second = service.findAccountEndpoint(KVNR);
+
+    // Then
+    assertEquals(BITMARCK, first.orElseThrow());
+    assertEquals(BITMARCK, second.orElseThrow());
+    verify(httpClient, times(2)).sendAsync(any(), any());
+
+    var stats = service.cacheStats();
+    assertEquals(1, stats.hits());
+    assertEquals(1, stats.misses());
+  }
+
+  @Test
+  void findAccountEndpoint_shouldCacheNegativeLookup() throws Exception {
+    // Given
+    respond(IBM, 404);
+    respond(BITMARCK, 404);
+    var service = newService(Clock.systemUTC());
+
+    // When
+    service.findAccountEndpoint(KVNR);
+    var second = service.findAccountEndpoint(KVNR);
+
+    // Then
+    assertTrue(second.isEmpty());
+    verify(httpClient, times(2)).sendAsync(any(), any());
+  }
+
+  @Test
+  void findAccountEndpoint_shouldExpireErrorsQuickly() throws Exception {
+    // Given
+    respond(IBM, 404);
+    when(httpClient.sendAsync(argThat(forEndpoint(BITMARCK)), any()))
+        .thenReturn(CompletableFuture.failedFuture(new IOException("connection reset")));
+
+    var clock = mock(Clock.class);
+    when(clock.instant()).thenReturn(Instant.EPOCH);
+    var service = newService(clock);
+
+    // When
+    assertThrows(AccountLookupException.class, () -> service.findAccountEndpoint(KVNR));
+    assertThrows(AccountLookupException.class, () -> service.findAccountEndpoint(KVNR));
+    when(clock.instant()).thenReturn(Instant.EPOCH.plusSeconds(31));
+    assertThrows(AccountLookupException.class, () -> service.findAccountEndpoint(KVNR));
+
+    // Then
+    verify(httpClient, times(4)).sendAsync(any(), any());
+  }
+
+  @Test
+  void invalidate_shouldForceNewLookup() throws Exception {
+    // Given
+    respond(IBM, 204);
+    respond(BITMARCK, 404);
+    var service = newService(Clock.fixed(Instant.EPOCH, ZoneOffset.UTC));
+    service.findAccountEndpoint(KVNR);
+
+    // When
+    service.invalidate(KVNR);
+    service.findAccountEndpoint(KVNR);
+
+    // Then
+    verify(httpClient, times(4)).sendAsync(any(), any());
+    assertEquals(1, service.cacheStats().invalidations());
+  }
+
+  @Test
+  void findAccountEndpoint_shouldReturnFirstMatchAndCancelOthers() throws Exception {
+    // Given
+    var pending = new CompletableFuture<HttpResponse<Object>>();
+    when(httpClient.sendAsync(argThat(forEndpoint(IBM)), any())).thenReturn(pending);
+    respond(BITMARCK, 204);
+    var service = newService(Clock.systemUTC());
+
+    // When
+    var endpoint = service.findAccountEndpoint(KVNR);
+
+    // Then
+    assertEquals(BITMARCK, endpoint.orElseThrow());
+    assertTrue(pending.isCancelled());
+  }
+
+  @Test
+  void findAccountEndpoint_shouldTreatSlowProviderAsError() throws Exception {
+    // Given
+    when(httpClient.sendAsync(argThat(forEndpoint(IBM)), any()))
+        .thenReturn(new CompletableFuture<>());
+    respond(BITMARCK, 404);
+    var service =
+        InformationServiceBuilder.newBuilder()
+            .outerHttpClient(httpClient)
+            .environment(InformationService.Environment.DEV)
+            .probeTimeout(Duration.ofMillis(50))
+            .errorTtl(Duration.ZERO)
+            .build();
+
+    // When / Then
+    assertThrows(AccountLookupException.class, () -> service.findAccountEndpoint(KVNR));
+    assertEquals(0, service.cacheStats().size(), "errors must not be cached with a zero TTL");
+  }
+
+  @Test
+  void findAccountEndpoint_shouldUsePersistentIndexAcrossInstances(@TempDir Path dir)
+      throws Exception {
+    // Given
+    respond(IBM, 404);
+    respond(BITMARCK, 204);
+    var file = dir.resolve("accounts.idx");
+    try (var index = AccountIndex.open(file, 16, Duration.ofDays(30), Clock.systemUTC())) {
+      newService(Clock.systemUTC(), index).findAccountEndpoint(KVNR);
+    }
+
+    // When
+    try (var index = AccountIndex.open(file, 16, Duration.ofDays(30), Clock.systemUTC())) {
+      var endpoint = newService(Clock.systemUTC(), index).findAccountEndpoint(KVNR);
+
+      // Then
+      assertEquals(BITMARCK, endpoint.orElseThrow());
+    }
+    verify(httpClient, times(2)).sendAsync(any(), any());
+  }
+
+  private InformationService newService(Clock clock) {
+    return newService(clock, null);
+  }
+
+  private InformationService newService(Clock clock, AccountIndex index) {
+    return InformationServiceBuilder.newBuilder()
+        .outerHttpClient(httpClient)
+        .environment(InformationService.Environment.DEV)
+        .providers(
+            List.of(InformationService.EpaProvider.IBM, InformationService.EpaProvider.BITMARCK))
+        .positiveTtl(Duration.ofHours(1))
+        .negativeTtl(Duration.ofMinutes(10))
+        .errorTtl(Duration.ofSeconds(30))
+        .clock(clock)
+        .accountIndex(index)
+        .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void respond(URI endpoint, int status) throws Exception {
+    var res = mock(HttpResponse.class);
+    when(res.statusCode()).thenReturn(status);
+    when(httpClient.sendAsync(argThat(forEndpoint(endpoint)), any()))
+        .thenReturn(CompletableFuture.completedFuture(res));
+  }
+
+  private static org.mockito.ArgumentMatcher<HttpRequest> forEndpoint(URI endpoint) {
+    return r -> r != null && r.uri().getHost().equals(endpoint.getHost());
+  }
+}
@@ -17,7 +17,9 @@
 package telematik.ws.conn;
 
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.core.Response;
 import telematik.ws.conn.servicedirectory.xsd.v3_1.ConnectorServices;
 
 /** Pseudo API for the retrieval of the connection information (connector.sds) from the Konnektor */
@@ -26,4 +28,17 @@ public interface SdsApi {
   @Path("connector.sds")
   @GET
   ConnectorServices getConnectorSds();
+
+  /**
+   * Fetches the service directory unless it is unchanged, then the response is {@code 304 Not
+   * Modified}.
+   *
+   * @param ifNoneMatch the ETag of the known directory, null if unknown
+   * @param ifModifiedSince the Last-Modified date of the known directory, null if unknown
+   */
+  @Path("connector.sds")
+  @GET
+  Response getConnectorSdsIfModified(
+      @HeaderParam("If-None-Match") String ifNoneMatch,
+      @HeaderParam("If-Modified-Since") String ifModifiedSince);
 }
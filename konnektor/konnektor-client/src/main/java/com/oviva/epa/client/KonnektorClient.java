@@ -0,0 +1,201 @@
+package com.oviva.epa.client;
+
+import com.oviva.epa.client.internal.CachingKonnektorService;
+import com.oviva.epa.client.internal.MultiKonnektorService;
+import com.oviva.epa.client.internal.PinCachingKonnektorService;
+import com.oviva.epa.client.internal.SigningScheduler;
+import com.oviva.epa.client.model.CardEvent;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SigningPriority;
+import com.oviva.epa.client.model.SmcbCard;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The {@link KonnektorService} built by {@link KonnektorServiceBuilder}, with access to the
+ * decorators it is made of. Only the decorators enabled in the builder are present.
+ *
+ * <p>Konnektor events go to {@link #cardEventListener(int)}, closing stops the background threads
+ * of the card cache and the Konnektor health checks.
+ */
+public final class KonnektorClient implements KonnektorService, AutoCloseable {
+
+  private final KonnektorService service;
+  private final MultiKonnektorService konnektors;
+  private final SigningScheduler signingScheduler;
+  private final PinCachingKonnektorService pinCache;
+  private final CachingKonnektorService cardCache;
+
+  KonnektorClient(
+      KonnektorService service,
+      MultiKonnektorService konnektors,
+      SigningScheduler signingScheduler,
+      PinCachingKonnektorService pinCache,
+      CachingKonnektorService cardCache) {
+    this.service = service;
+    this.konnektors = konnektors;
+    this.signingScheduler = signingScheduler;
+    this.pinCache = pinCache;
+    this.cardCache = cardCache;
+  }
+
+  @NonNull
+  @Override
+  public List<SmcbCard> listSmcbCards() {
+    return service.listSmcbCards();
+  }
+
+  @NonNull
+  @Override
+  public List<String> listSmcbCardHandles() {
+    return service.listSmcbCardHandles();
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignRsaPss(@NonNull String cardHandle, byte[] bytesToSign) {
+    return service.authSignRsaPss(cardHandle, bytesToSign);
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignEcdsa(@NonNull String cardHandle, byte[] bytesToSign) {
+    return service.authSignEcdsa(cardHandle, bytesToSign);
+  }
+
+  @Override
+  public @NonNull PinStatus verifySmcPin(@NonNull String cardHandle) {
+    return service.verifySmcPin(cardHandle);
+  }
+
+  /**
+   * Passes an event to the caches, its card handle must be one returned by this service. Events
+   * pushed by a Konnektor go through {@link #cardEventListener(int)}.
+   */
+  public void onCardEvent(CardEvent event) {
+    if (pinCache != null) {
+      pinCache.onCardEvent(event);
+    }
+    if (cardCache != null) {
+      cardCache.onCardEvent(event);
+    }
+  }
+
+  /**
+   * The listener for the events pushed by one Konnektor, e.g. via {@link
+   * com.oviva.epa.client.events.KonnektorEvents}. With several Konnektors their card handles are
+   * qualified like the handles returned by this service.
+   *
+   * @param konnektor the index of the connection factory the events are subscribed with, 0 for a
+   *     single connection
+   */
+  public Consumer<CardEvent> cardEventListener(int konnektor) {
+    if (konnektors != null) {
+      return event -> onCardEvent(konnektors.qualify(konnektor, event));
+    }
+    if (konnektor != 0) {
+      throw new IllegalArgumentException("unknown konnektor: %d".formatted(konnektor));
+    }
+    return this::onCardEvent;
+  }
+
+  /**
+   * The same service, signing with the given priority in the signing queue, e.g. {@link
+   * SigningPriority#BULK} for background jobs. Without a signing queue this client itself.
+   */
+  public KonnektorService withPriority(SigningPriority priority) {
+    if (signingScheduler == null) {
+      return this;
+    }
+    return new PrioritizedService(signingScheduler.withPriority(priority));
+  }
+
+  /** present if built with {@link KonnektorServiceBuilder#connectionFactories(List)} */
+  public Optional<MultiKonnektorService> konnektors() {
+    return Optional.ofNullable(konnektors);
+  }
+
+  /** present if built with {@link KonnektorServiceBuilder#queueSignatures} */
+  public Optional<SigningScheduler> signingScheduler() {
+    return Optional.ofNullable(signingScheduler);
+  }
+
+  /** present if built with {@link KonnektorServiceBuilder#cachePinStatus} */
+  public Optional<PinCachingKonnektorService> pinCache() {
+    return Optional.ofNullable(pinCache);
+  }
+
+  /** present if built with {@link KonnektorServiceBuilder#cacheCards} */
+  public Optional<CachingKonnektorService> cardCache() {
+    return Optional.ofNullable(cardCache);
+  }
+
+  @Override
+  public void close() {
+    try {
+      if (cardCache != null) {
+        cardCache.close();
+      }
+    } finally {
+      if (konnektors != null) {
+        konnektors.close();
+      }
+    }
+  }
+
+  /** Signs via a scheduler view, everything else goes through the caches. */
+  private final class PrioritizedService implements KonnektorService {
+
+    private final SigningScheduler scheduler;
+
+    private PrioritizedService(SigningScheduler scheduler) {
+      this.scheduler = scheduler;
+    }
+
+    @NonNull
+    @Override
+    public List<SmcbCard> listSmcbCards() {
+      return service.listSmcbCards();
+    }
+
+    @NonNull
+    @Override
+    public List<String> listSmcbCardHandles() {
+      return service.listSmcbCardHandles();
+    }
+
+    @NonNull
+    @Override
+    public byte[] authSignRsaPss(@NonNull String cardHandle, byte[] bytesToSign) {
+      return invalidateOnFailure(
+          cardHandle, () -> scheduler.authSignRsaPss(cardHandle, bytesToSign));
+    }
+
+    @NonNull
+    @Override
+    public byte[] authSignEcdsa(@NonNull String cardHandle, byte[] bytesToSign) {
+      return invalidateOnFailure(
+          cardHandle, () -> scheduler.authSignEcdsa(cardHandle, bytesToSign));
+    }
+
+    @Override
+    public @NonNull PinStatus verifySmcPin(@NonNull String cardHandle) {
+      return service.verifySmcPin(cardHandle);
+    }
+
+    private byte[] invalidateOnFailure(String cardHandle, Supplier<byte[]> call) {
+      try {
+        return call.get();
+      } catch (RuntimeException e) {
+        // bypasses the PIN cache, drop the status like a failed signature through it
+        if (pinCache != null) {
+          pinCache.invalidate(cardHandle);
+        }
+        throw e;
+      }
+    }
+  }
+}
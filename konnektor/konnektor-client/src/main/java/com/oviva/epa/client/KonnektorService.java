@@ -9,6 +9,15 @@ public interface KonnektorService {
   @NonNull
   List<SmcbCard> listSmcbCards();
 
+  /**
+   * Lists the handles of the SMC-B cards only, cheaper than {@link #listSmcbCards()} as no details
+   * are read. A handle changes when a card is plugged in again.
+   */
+  @NonNull
+  default List<String> listSmcbCardHandles() {
+    return listSmcbCards().stream().map(SmcbCard::handle).toList();
+  }
+
   /**
    * Uses the AuthSignatureServiceBinding::ExternalAuthenticate method of a specified card to sign
    * arbitrary bytes.
@@ -1,13 +1,29 @@
 package com.oviva.epa.client;
 
+import com.oviva.epa.client.internal.CachingKonnektorService;
 import com.oviva.epa.client.internal.ExceptionMappedKonnektorService;
 import com.oviva.epa.client.internal.KonnektorServiceImpl;
+import com.oviva.epa.client.internal.MultiKonnektorService;
+import com.oviva.epa.client.internal.PinCachingKonnektorService;
+import com.oviva.epa.client.internal.SigningScheduler;
 import com.oviva.epa.client.internal.svc.model.KonnektorContext;
 import com.oviva.epa.client.konn.KonnektorConnection;
+import com.oviva.epa.client.konn.KonnektorConnectionFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
 
 public class KonnektorServiceBuilder {
 
   private KonnektorConnection connection;
+  private List<KonnektorConnectionFactory> connectionFactories;
+  private MultiKonnektorService.Options multiKonnektorOptions =
+      MultiKonnektorService.Options.defaults();
+  private Duration cardPollInterval;
+  private boolean cacheCards = false;
+  private Duration pinStatusTtl;
+  private SigningScheduler.Options signingQueue;
   private String workplaceId = "a";
   private String mandantId = "m";
   private String clientSystemId = "c";
@@ -25,6 +41,54 @@ public class KonnektorServiceBuilder {
     return this;
   }
 
+  /**
+   * Spreads the requests over several Konnektors, see {@link MultiKonnektorService}. Replaces a
+   * single {@link #connection(KonnektorConnection)}.
+   *
+   * @param connectionFactories e.g. built with {@link
+   *     com.oviva.epa.client.konn.KonnektorConnectionFactoryBuilder}, one per Konnektor
+   */
+  public KonnektorServiceBuilder connectionFactories(
+      List<KonnektorConnectionFactory> connectionFactories) {
+    this.connectionFactories = connectionFactories;
+    return this;
+  }
+
+  public KonnektorServiceBuilder multiKonnektorOptions(MultiKonnektorService.Options options) {
+    this.multiKonnektorOptions = options;
+    return this;
+  }
+
+  /**
+   * Keeps the SMC-B card inventory in memory, see {@link CachingKonnektorService}.
+   *
+   * @param pollInterval how often the Konnektor is asked for plugged or removed cards, null to
+   *     never poll
+   */
+  public KonnektorServiceBuilder cacheCards(Duration pollInterval) {
+    this.cacheCards = true;
+    this.cardPollInterval = pollInterval;
+    return this;
+  }
+
+  /**
+   * Trusts a verified PIN for the given time without asking the Konnektor again, see {@link
+   * PinCachingKonnektorService}.
+   */
+  public KonnektorServiceBuilder cachePinStatus(Duration ttl) {
+    this.pinStatusTtl = ttl;
+    return this;
+  }
+
+  /**
+   * Queues signatures per card instead of sending them all to the Konnektor at once, see {@link
+   * SigningScheduler}.
+   */
+  public KonnektorServiceBuilder queueSignatures(SigningScheduler.Options options) {
+    this.signingQueue = options;
+    return this;
+  }
+
   public KonnektorServiceBuilder workplaceId(String workplace) {
     this.workplaceId = workplace;
     return this;
@@ -51,9 +115,12 @@ public class KonnektorServiceBuilder {
     return this;
   }
 
-  public KonnektorService build() {
+  /**
+   * @return the service, closing it stops the background threads of the enabled decorators
+   */
+  public KonnektorClient build() {
 
-    if (connection == null) {
+    if (connection == null && (connectionFactories == null || connectionFactories.isEmpty())) {
       throw new IllegalArgumentException("konnektor connection required");
     }
 
@@ -70,6 +137,41 @@ public class KonnektorServiceBuilder {
     }
 
     var ctx = new KonnektorContext(mandantId, clientSystemId, workplaceId, userId);
+    var base = buildService(ctx);
+    var konnektors = base instanceof MultiKonnektorService m ? m : null;
+
+    var svc = base;
+    SigningScheduler scheduler = null;
+    if (signingQueue != null) {
+      scheduler = new SigningScheduler(svc, signingQueue);
+      svc = scheduler;
+    }
+    PinCachingKonnektorService pinCache = null;
+    if (pinStatusTtl != null) {
+      pinCache = new PinCachingKonnektorService(svc, pinStatusTtl, Clock.systemUTC());
+      svc = pinCache;
+    }
+    CachingKonnektorService cardCache = null;
+    if (cacheCards) {
+      cardCache = new CachingKonnektorService(svc, cardPollInterval);
+      svc = cardCache;
+    }
+    return new KonnektorClient(svc, konnektors, scheduler, pinCache, cardCache);
+  }
+
+  private KonnektorService buildService(KonnektorContext ctx) {
+    if (connectionFactories != null && !connectionFactories.isEmpty()) {
+      var konnektors =
+          connectionFactories.stream()
+              .<Supplier<KonnektorService>>map(
+                  f ->
+                      () ->
+                          new ExceptionMappedKonnektorService(
+                              new KonnektorServiceImpl(userAgent, f.connect(), ctx)))
+              .toList();
+      return new MultiKonnektorService(konnektors, multiKonnektorOptions, Clock.systemUTC());
+    }
+
     var svc = new KonnektorServiceImpl(userAgent, connection, ctx);
     return new ExceptionMappedKonnektorService(svc);
   }
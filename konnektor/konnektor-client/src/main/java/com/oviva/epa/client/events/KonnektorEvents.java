@@ -0,0 +1,45 @@
+package com.oviva.epa.client.events;
+
+import com.oviva.epa.client.events.internal.CetpReceiver;
+import com.oviva.epa.client.events.internal.EventSubscription;
+import com.oviva.epa.client.model.CardEvent;
+import java.net.InetSocketAddress;
+import java.util.function.Consumer;
+
+/**
+ * Card events pushed by the Konnektor, built with {@link KonnektorEventsBuilder}. Listeners are
+ * called on the thread receiving the event and should return quickly.
+ *
+ * <p>Closing cancels the subscription and stops listening.
+ */
+public class KonnektorEvents implements AutoCloseable {
+
+  private final CetpReceiver receiver;
+  private final EventSubscription subscription;
+
+  KonnektorEvents(CetpReceiver receiver, EventSubscription subscription) {
+    this.receiver = receiver;
+    this.subscription = subscription;
+  }
+
+  public void addListener(Consumer<CardEvent> listener) {
+    receiver.addListener(listener);
+  }
+
+  public InetSocketAddress localAddress() {
+    return receiver.localAddress();
+  }
+
+  public String subscriptionId() {
+    return subscription.subscriptionId();
+  }
+
+  @Override
+  public void close() {
+    try {
+      subscription.close();
+    } finally {
+      receiver.close();
+    }
+  }
+}
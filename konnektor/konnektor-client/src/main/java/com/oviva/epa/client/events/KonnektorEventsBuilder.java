@@ -0,0 +1,156 @@
+package com.oviva.epa.client.events;
+
+import com.oviva.epa.client.events.internal.CetpReceiver;
+import com.oviva.epa.client.events.internal.EventSubscription;
+import com.oviva.epa.client.internal.svc.EventServiceClient;
+import com.oviva.epa.client.internal.svc.model.KonnektorContext;
+import com.oviva.epa.client.konn.KonnektorConnection;
+import com.oviva.epa.client.model.CardEvent;
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Subscribes to the card events of a Konnektor, e.g. to drop cached cards right away:
+ *
+ * <pre>{@code
+ * var events = KonnektorEventsBuilder.newBuilder()
+ *     .connection(connection)
+ *     .listenAddress(new InetSocketAddress(8585))
+ *     .advertisedHost("10.0.0.5")
+ *     .listener(konnektorClient.cardEventListener(0))
+ *     .build();
+ * }</pre>
+ */
+public class KonnektorEventsBuilder {
+
+  private KonnektorConnection connection;
+  private InetSocketAddress listenAddress = new InetSocketAddress(0);
+  private String advertisedHost;
+  private SSLContext sslContext;
+  private String topic = "CARD";
+  private Duration renewBefore = Duration.ofMinutes(1);
+  private final List<Consumer<CardEvent>> listeners = new ArrayList<>();
+  private String workplaceId = "a";
+  private String mandantId = "m";
+  private String clientSystemId = "c";
+  private String userId = "admin";
+
+  private KonnektorEventsBuilder() {}
+
+  public static KonnektorEventsBuilder newBuilder() {
+    return new KonnektorEventsBuilder();
+  }
+
+  public KonnektorEventsBuilder connection(KonnektorConnection connection) {
+    this.connection = connection;
+    return this;
+  }
+
+  /** Where to listen for events, port 0 picks a free port. */
+  public KonnektorEventsBuilder listenAddress(InetSocketAddress listenAddress) {
+    this.listenAddress = listenAddress;
+    return this;
+  }
+
+  /** The host or IP the Konnektor reaches this client at. */
+  public KonnektorEventsBuilder advertisedHost(String advertisedHost) {
+    this.advertisedHost = advertisedHost;
+    return this;
+  }
+
+  /**
+   * Accepts TLS connections only, as required by Konnektors with mandatory TLS. The Konnektor must
+   * present a client certificate trusted by the context.
+   *
+   * <p>Without a context events are received via plain TCP from anyone reaching the listen address,
+   * a forged event merely drops cached cards or PIN states but this should still only be used
+   * within a trusted network.
+   */
+  public KonnektorEventsBuilder sslContext(SSLContext sslContext) {
+    this.sslContext = sslContext;
+    return this;
+  }
+
+  /**
+   * @param topic the events of interest, defaults to {@code CARD} for all card and PIN events
+   */
+  public KonnektorEventsBuilder topic(String topic) {
+    this.topic = topic;
+    return this;
+  }
+
+  /** How long before its expiry the subscription is renewed. */
+  public KonnektorEventsBuilder renewBefore(Duration renewBefore) {
+    this.renewBefore = renewBefore;
+    return this;
+  }
+
+  public KonnektorEventsBuilder listener(Consumer<CardEvent> listener) {
+    this.listeners.add(listener);
+    return this;
+  }
+
+  public KonnektorEventsBuilder workplaceId(String workplace) {
+    this.workplaceId = workplace;
+    return this;
+  }
+
+  public KonnektorEventsBuilder mandantId(String mandantId) {
+    this.mandantId = mandantId;
+    return this;
+  }
+
+  public KonnektorEventsBuilder clientSystemId(String clientSystemId) {
+    this.clientSystemId = clientSystemId;
+    return this;
+  }
+
+  public KonnektorEventsBuilder userId(String userId) {
+    this.userId = userId;
+    return this;
+  }
+
+  /** Starts listening and subscribes, the Konnektor pushes events from now on. */
+  public KonnektorEvents build() {
+
+    if (connection == null) {
+      throw new IllegalArgumentException("konnektor connection required");
+    }
+
+    if (advertisedHost == null) {
+      throw new IllegalArgumentException("advertisedHost required");
+    }
+
+    if (topic == null) {
+      throw new IllegalArgumentException("topic required");
+    }
+
+    var ctx = new KonnektorContext(mandantId, clientSystemId, workplaceId, userId);
+
+    var receiver = new CetpReceiver(listenAddress, sslContext);
+    listeners.forEach(receiver::addListener);
+
+    var eventTo = "cetp://%s:%d".formatted(advertisedHost, receiver.localAddress().getPort());
+    var subscription =
+        new EventSubscription(
+            new EventServiceClient(connection.eventService(), ctx),
+            eventTo,
+            topic,
+            renewBefore,
+            Clock.systemUTC());
+    try {
+      subscription.subscribe();
+    } catch (RuntimeException e) {
+      subscription.close();
+      receiver.close();
+      throw e;
+    }
+
+    return new KonnektorEvents(receiver, subscription);
+  }
+}
@@ -0,0 +1,182 @@
+package com.oviva.epa.client.events.internal;
+
+import com.oviva.epa.client.model.CardEvent;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import telematik.ws.conn.eventservice.xsd.v6_1.Event;
+
+/**
+ * Receives the events the Konnektor pushes via CETP. Each frame is the magic {@code CETP}, the
+ * length of the payload as 4 byte big-endian integer and the {@code Event} XML.
+ *
+ * <p>The Konnektor may send several frames per connection, each connection is read by its own
+ * virtual thread.
+ */
+public class CetpReceiver implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(CetpReceiver.class);
+
+  private static final byte[] MAGIC = "CETP".getBytes(StandardCharsets.US_ASCII);
+  private static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+  private static final JAXBContext JAXB = newContext();
+
+  private final ServerSocket serverSocket;
+  private final List<Consumer<CardEvent>> listeners = new CopyOnWriteArrayList<>();
+  private final Thread acceptor;
+  private volatile boolean closed;
+
+  /**
+   * @param bindAddress where to listen, port 0 picks a free port
+   * @param sslContext to accept TLS connections only from peers with a certificate trusted by the
+   *     context, i.e. the Konnektor; null for plain TCP, which accepts events from anyone reaching
+   *     the port and should only be used within a trusted network
+   */
+  public CetpReceiver(InetSocketAddress bindAddress, SSLContext sslContext) {
+    try {
+      serverSocket =
+          sslContext != null
+              ? sslContext.getServerSocketFactory().createServerSocket()
+              : new ServerSocket();
+      if (serverSocket instanceof SSLServerSocket ssl) {
+        // only the Konnektor may push events, it authenticates with its certificate
+        ssl.setNeedClientAuth(true);
+      }
+      serverSocket.bind(bindAddress);
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to listen for CETP on %s".formatted(bindAddress), e);
+    }
+
+    acceptor = Thread.ofPlatform().name("konnektor-cetp").daemon().start(this::acceptConnections);
+    log.atInfo().log("listening for CETP events on {}", localAddress());
+  }
+
+  public void addListener(Consumer<CardEvent> listener) {
+    listeners.add(listener);
+  }
+
+  public InetSocketAddress localAddress() {
+    return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      log.atDebug().setCause(e).log("closing CETP receiver failed");
+    }
+    acceptor.interrupt();
+  }
+
+  private void acceptConnections() {
+    while (!closed) {
+      try {
+        var socket = serverSocket.accept();
+        Thread.ofVirtual().name("konnektor-cetp-connection").start(() -> receive(socket));
+      } catch (IOException e) {
+        if (!closed) {
+          log.atWarn().setCause(e).log("accepting CETP connection failed");
+        }
+      }
+    }
+  }
+
+  private void receive(Socket socket) {
+    try (socket;
+        var in = new DataInputStream(socket.getInputStream())) {
+      var unmarshaller = JAXB.createUnmarshaller();
+      while (!closed) {
+        var payload = readFrame(in);
+        if (payload == null) {
+          return;
+        }
+        publish(decode(unmarshaller, payload));
+      }
+    } catch (IOException | JAXBException | IllegalArgumentException e) {
+      log.atWarn()
+          .setCause(e)
+          .log("receiving CETP events from {} failed", socket.getRemoteSocketAddress());
+    }
+  }
+
+  /**
+   * @return the payload, null at the end of the stream
+   */
+  private static byte[] readFrame(DataInputStream in) throws IOException {
+    var magic = new byte[MAGIC.length];
+    try {
+      in.readFully(magic);
+    } catch (EOFException e) {
+      return null;
+    }
+    if (!Arrays.equals(MAGIC, magic)) {
+      throw new IllegalArgumentException("not a CETP frame");
+    }
+
+    var length = in.readInt();
+    if (length < 0 || length > MAX_FRAME_LENGTH) {
+      throw new IllegalArgumentException("invalid CETP frame length: %d".formatted(length));
+    }
+    var payload = new byte[length];
+    in.readFully(payload);
+    return payload;
+  }
+
+  private static CardEvent decode(Unmarshaller unmarshaller, byte[] payload) throws JAXBException {
+    var event = (Event) unmarshaller.unmarshal(new ByteArrayInputStream(payload));
+
+    var parameters = new LinkedHashMap<String, String>();
+    if (event.getMessage() != null) {
+      for (var p : event.getMessage().getParameter()) {
+        parameters.put(p.getKey(), p.getValue());
+      }
+    }
+
+    return new CardEvent(
+        CardEvent.typeOf(event.getTopic()),
+        event.getTopic(),
+        parameters.get("CardHandle"),
+        Collections.unmodifiableMap(parameters));
+  }
+
+  private void publish(CardEvent event) {
+    log.atDebug().log("CETP event {} for card {}", event.topic(), event.cardHandle());
+    for (var l : listeners) {
+      try {
+        l.accept(event);
+      } catch (RuntimeException e) {
+        log.atWarn().setCause(e).log("CETP event listener failed");
+      }
+    }
+  }
+
+  private static JAXBContext newContext() {
+    try {
+      return JAXBContext.newInstance(Event.class);
+    } catch (JAXBException e) {
+      throw new IllegalStateException("failed to initialize CETP event unmarshaller", e);
+    }
+  }
+}
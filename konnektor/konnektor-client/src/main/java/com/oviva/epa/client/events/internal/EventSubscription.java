@@ -0,0 +1,149 @@
+package com.oviva.epa.client.events.internal;
+
+import com.oviva.epa.client.internal.svc.EventServiceClient;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a Konnektor event subscription alive. The subscription is renewed shortly before it
+ * expires, if that fails the old one is cancelled and a new one is made. Closing cancels the
+ * subscription.
+ */
+public class EventSubscription implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(EventSubscription.class);
+
+  // the Konnektor default lifetime of a subscription, if it does not tell
+  private static final Duration DEFAULT_LIFETIME = Duration.ofHours(1);
+  private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+  // no busy loop if the Konnektor grants less than the renewal margin
+  private static final Duration MIN_RENEWAL_DELAY = Duration.ofSeconds(1);
+
+  private final EventServiceClient eventService;
+  private final String eventTo;
+  private final String topic;
+  private final Duration renewBefore;
+  private final Clock clock;
+  private final ScheduledExecutorService scheduler;
+
+  private volatile String subscriptionId;
+  private volatile boolean closed;
+
+  /**
+   * @param eventTo where the Konnektor sends the events to, e.g. {@code cetp://10.0.0.5:8585}
+   * @param topic the events of interest, e.g. {@code CARD}
+   * @param renewBefore how long before its expiry the subscription is renewed
+   */
+  public EventSubscription(
+      EventServiceClient eventService,
+      String eventTo,
+      String topic,
+      Duration renewBefore,
+      Clock clock) {
+    if (renewBefore == null || renewBefore.isNegative()) {
+      throw new IllegalArgumentException("invalid renewal margin: %s".formatted(renewBefore));
+    }
+    this.eventService = eventService;
+    this.eventTo = eventTo;
+    this.topic = topic;
+    this.renewBefore = renewBefore;
+    this.clock = clock;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("konnektor-event-subscription").daemon().factory());
+  }
+
+  /** Subscribes, failures are thrown to the caller. Renewals happen in the background. */
+  public void subscribe() {
+    var res = eventService.subscribe(eventTo, topic);
+    subscriptionId = res.getSubscriptionID();
+    log.atInfo().log("subscribed to {} events via {}: {}", topic, eventTo, subscriptionId);
+    scheduleRenewal(res.getTerminationTime());
+  }
+
+  public String subscriptionId() {
+    return subscriptionId;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    scheduler.shutdownNow();
+    unsubscribe();
+  }
+
+  private void renew() {
+    if (closed) {
+      return;
+    }
+    try {
+      var res = eventService.renewSubscription(subscriptionId);
+      var renewal =
+          res.getSubscribeRenewals() == null
+              ? null
+              : res.getSubscribeRenewals().getSubscriptionRenewal().stream()
+                  .filter(r -> subscriptionId.equals(r.getSubscriptionID()))
+                  .findFirst()
+                  .orElse(null);
+      if (renewal != null) {
+        log.atDebug().log("renewed subscription {}", subscriptionId);
+        scheduleRenewal(renewal.getTerminationTime());
+        return;
+      }
+      log.atWarn().log("subscription {} not renewed, subscribing again", subscriptionId);
+    } catch (RuntimeException e) {
+      log.atWarn().setCause(e).log("renewing subscription {} failed", subscriptionId);
+    }
+    resubscribe();
+  }
+
+  private void resubscribe() {
+    if (closed) {
+      return;
+    }
+    // the old subscription may still be alive, both would deliver every event
+    unsubscribe();
+    try {
+      subscribe();
+    } catch (RuntimeException e) {
+      log.atWarn().setCause(e).log("subscribing to {} events failed, retrying", topic);
+      schedule(RETRY_DELAY, this::resubscribe);
+    }
+  }
+
+  private void unsubscribe() {
+    var id = subscriptionId;
+    if (id == null) {
+      return;
+    }
+    subscriptionId = null;
+    try {
+      eventService.unsubscribe(id);
+    } catch (RuntimeException e) {
+      // expires anyway
+      log.atWarn().setCause(e).log("unsubscribing {} failed", id);
+    }
+  }
+
+  private void scheduleRenewal(XMLGregorianCalendar terminationTime) {
+    var now = clock.instant();
+    var expiry =
+        terminationTime != null
+            ? terminationTime.toGregorianCalendar().toInstant()
+            : now.plus(DEFAULT_LIFETIME);
+    var delay = Duration.between(now, expiry.minus(renewBefore));
+    schedule(delay.compareTo(MIN_RENEWAL_DELAY) < 0 ? MIN_RENEWAL_DELAY : delay, this::renew);
+  }
+
+  private void schedule(Duration delay, Runnable task) {
+    if (!closed) {
+      scheduler.schedule(task, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+}
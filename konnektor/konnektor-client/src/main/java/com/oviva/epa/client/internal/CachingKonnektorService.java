@@ -0,0 +1,178 @@
+package com.oviva.epa.client.internal;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.CardEvent;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SmcbCard;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorator keeping the SMC-B card inventory in memory. The inventory is read again once a card is
+ * plugged in or removed, detected by polling the card handles or signalled via {@link
+ * #invalidate()}, e.g. on a Konnektor card event.
+ *
+ * <p>A card listed without a verified PIN is read again once its PIN is verified, signalled by a
+ * card event or detected while polling. {@link #verifySmcPin(String)} always asks the Konnektor.
+ */
+public class CachingKonnektorService implements KonnektorService, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(CachingKonnektorService.class);
+
+  public record CacheStats(long hits, long misses, long invalidations) {}
+
+  private final KonnektorService delegate;
+  private final ScheduledExecutorService poller;
+
+  private final Object loadLock = new Object();
+  private volatile List<SmcbCard> cards;
+  // incremented on every invalidation, a load started before must not be cached
+  private final AtomicLong generation = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * @param pollInterval how often the card handles are compared, null to rely on {@link
+   *     #invalidate()} only
+   */
+  public CachingKonnektorService(KonnektorService delegate, Duration pollInterval) {
+    this.delegate = delegate;
+    if (pollInterval != null) {
+      var interval = pollInterval.toMillis();
+      poller =
+          Executors.newSingleThreadScheduledExecutor(
+              Thread.ofPlatform().name("konnektor-card-poller").daemon().factory());
+      poller.scheduleWithFixedDelay(this::pollSafely, interval, interval, TimeUnit.MILLISECONDS);
+    } else {
+      poller = null;
+    }
+  }
+
+  @NonNull
+  @Override
+  public List<SmcbCard> listSmcbCards() {
+    var cached = cards;
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached;
+    }
+
+    synchronized (loadLock) {
+      cached = cards;
+      if (cached != null) {
+        hits.incrementAndGet();
+        return cached;
+      }
+
+      misses.incrementAndGet();
+      var gen = generation.get();
+      var loaded = delegate.listSmcbCards();
+      if (generation.get() == gen) {
+        cards = loaded;
+      }
+      return loaded;
+    }
+  }
+
+  @NonNull
+  @Override
+  public List<String> listSmcbCardHandles() {
+    var cached = cards;
+    if (cached != null) {
+      return cached.stream().map(SmcbCard::handle).toList();
+    }
+    return delegate.listSmcbCardHandles();
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignRsaPss(@NonNull String cardHandle, byte[] bytesToSign) {
+    return delegate.authSignRsaPss(cardHandle, bytesToSign);
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignEcdsa(@NonNull String cardHandle, byte[] bytesToSign) {
+    return delegate.authSignEcdsa(cardHandle, bytesToSign);
+  }
+
+  @Override
+  public @NonNull PinStatus verifySmcPin(@NonNull String cardHandle) {
+    return delegate.verifySmcPin(cardHandle);
+  }
+
+  /** Drops the inventory, the next listing reads the cards again. */
+  public void invalidate() {
+    generation.incrementAndGet();
+    cards = null;
+    invalidations.incrementAndGet();
+  }
+
+  /**
+   * Drops the inventory once a card is plugged in or removed or a PIN was verified, see {@link
+   * CardEvent}.
+   */
+  public void onCardEvent(CardEvent event) {
+    switch (event.type()) {
+      case CARD_INSERTED, CARD_REMOVED, PIN_VERIFIED -> invalidate();
+      default -> {}
+    }
+  }
+
+  /**
+   * Compares the cached cards with the handles the Konnektor currently reports and checks whether
+   * the PIN of a card listed as unverified was verified meanwhile.
+   */
+  public void checkForChanges() {
+    var cached = cards;
+    if (cached == null) {
+      return;
+    }
+    var current = new HashSet<>(delegate.listSmcbCardHandles());
+    var known = new HashSet<>(cached.stream().map(SmcbCard::handle).toList());
+    if (!current.equals(known)) {
+      log.atDebug().log("SMC-B cards changed, was {} now {}", known, current);
+      invalidate();
+      return;
+    }
+
+    for (var card : cached) {
+      if (!card.pinVerified() && delegate.verifySmcPin(card.handle()) == PinStatus.VERIFIED) {
+        log.atDebug().log("PIN of SMC-B card {} verified", card.handle());
+        invalidate();
+        return;
+      }
+    }
+  }
+
+  public CacheStats stats() {
+    return new CacheStats(hits.get(), misses.get(), invalidations.get());
+  }
+
+  @Override
+  public void close() {
+    if (poller != null) {
+      poller.shutdownNow();
+    }
+  }
+
+  private void pollSafely() {
+    try {
+      checkForChanges();
+    } catch (RuntimeException e) {
+      // unknown state, better read again
+      log.atDebug().setCause(e).log("polling SMC-B cards failed");
+      invalidate();
+    }
+  }
+}
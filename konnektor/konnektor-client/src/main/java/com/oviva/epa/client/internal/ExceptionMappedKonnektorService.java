@@ -25,6 +25,12 @@ public class ExceptionMappedKonnektorService implements KonnektorService {
     return wrap(delegate::listSmcbCards);
   }
 
+  @NonNull
+  @Override
+  public List<String> listSmcbCardHandles() {
+    return wrap(delegate::listSmcbCardHandles);
+  }
+
   @NonNull
   @Override
   public byte[] authSignRsaPss(@NonNull String cardHandle, byte[] bytesToSign) {
@@ -3,23 +3,39 @@ package com.oviva.epa.client.internal;
 import com.oviva.epa.client.*;
 import com.oviva.epa.client.internal.svc.*;
 import com.oviva.epa.client.internal.svc.model.KonnektorContext;
+import com.oviva.epa.client.internal.svc.utils.CertificateUtils;
 import com.oviva.epa.client.internal.svc.utils.Digest;
 import com.oviva.epa.client.konn.KonnektorConnection;
 import com.oviva.epa.client.model.*;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import telematik.ws.conn.cardservice.xsd.v8_1.CardInfoType;
 import telematik.ws.conn.cardservice.xsd.v8_1.PinStatusEnum;
 import telematik.ws.conn.cardservicecommon.xsd.v2_0.CardTypeType;
 
 public class KonnektorServiceImpl implements KonnektorService {
 
+  // card lookups only wait for the Konnektor
+  private static final ExecutorService LOOKUPS = Executors.newVirtualThreadPerTaskExecutor();
+
   private final String userAgent; // A_22470-05
   private final EventServiceClient eventServiceClient;
   private final CardServiceClient cardServiceClient;
   private final CertificateServiceClient certificateServiceClient;
   private final AuthSignatureServiceClient authSignatureServiceClient;
 
+  // certificates never change for a handle, a card plugged in again gets a new one
+  private final Map<String, CompletableFuture<CardCertificates>> certificates =
+      new ConcurrentHashMap<>();
+
   public KonnektorServiceImpl(
       String userAgent, KonnektorConnection connection, KonnektorContext konnektorContext) {
     this.userAgent = userAgent;
@@ -38,33 +54,102 @@ public class KonnektorServiceImpl implements KonnektorService {
   @NonNull
   @Override
   public List<SmcbCard> listSmcbCards() {
+    var smcbCards = getSmcbCardInfos();
+    var handles = smcbCards.stream().map(CardInfoType::getCardHandle).collect(Collectors.toSet());
+    certificates.keySet().retainAll(handles);
+
+    // the details of all cards are looked up concurrently
+    var cards =
+        smcbCards.stream()
+            .map(c -> CompletableFuture.supplyAsync(() -> getCardDetails(c), LOOKUPS))
+            .toList();
+
+    return cards.stream().map(KonnektorServiceImpl::join).toList();
+  }
+
+  @NonNull
+  @Override
+  public List<String> listSmcbCardHandles() {
+    return getSmcbCardInfos().stream().map(CardInfoType::getCardHandle).toList();
+  }
+
+  private List<CardInfoType> getSmcbCardInfos() {
     return eventServiceClient.getSmbInfo().getCards().getCard().stream()
         .filter(c -> c.getCardType() == CardTypeType.SMC_B)
-        .map(this::getCardDetails)
         .toList();
   }
 
   private SmcbCard getCardDetails(CardInfoType cardInfo) {
 
     var cardHandle = cardInfo.getCardHandle();
-    var authRsaCertificate =
-        certificateServiceClient.readRsaAuthenticationCertificateForCard(cardHandle);
-    var authEccCertificate =
-        certificateServiceClient.readEccAuthenticationCertificateForCard(cardHandle);
+    var cardCertificates = readCertificates(cardHandle);
 
     var pinVerified =
-        cardServiceClient.getPinStatusResponse(cardHandle, "PIN.SMC").getPinStatus()
-            == PinStatusEnum.VERIFIED;
-
-    var telematikId = certificateServiceClient.getTelematikIdForCard(cardHandle);
+        lookup(
+            () ->
+                cardServiceClient.getPinStatusResponse(cardHandle, "PIN.SMC").getPinStatus()
+                    == PinStatusEnum.VERIFIED);
 
+    var certs = join(cardCertificates);
     return new SmcbCard(
         cardHandle,
-        telematikId,
+        certs.telematikId(),
         cardInfo.getCardHolderName(),
-        authRsaCertificate,
-        authEccCertificate,
-        pinVerified);
+        certs.authRsaCertificate(),
+        certs.authEccCertificate(),
+        join(pinVerified));
+  }
+
+  private CompletableFuture<CardCertificates> readCertificates(String cardHandle) {
+    var cached = certificates.get(cardHandle);
+    if (cached != null) {
+      return cached;
+    }
+
+    var authRsaCertificate =
+        lookup(() -> certificateServiceClient.readRsaAuthenticationCertificateForCard(cardHandle));
+    // the telematik-id is taken from the ECC certificate, no need to read it twice
+    var authEccCertificate =
+        lookup(() -> certificateServiceClient.readEccAuthenticationCertificateForCard(cardHandle));
+
+    var read =
+        authRsaCertificate.thenCombine(
+            authEccCertificate,
+            (rsa, ecc) ->
+                new CardCertificates(
+                    rsa, ecc, CertificateUtils.getTelematikIdFromCertificate(ecc)));
+
+    certificates.put(cardHandle, read);
+    // failures are not cached, the next listing tries again
+    read.whenComplete(
+        (c, e) -> {
+          if (e != null) {
+            certificates.remove(cardHandle, read);
+          }
+        });
+    return read;
+  }
+
+  private static <T> CompletableFuture<T> lookup(Supplier<T> call) {
+    return CompletableFuture.supplyAsync(call, LOOKUPS);
+  }
+
+  private record CardCertificates(
+      X509Certificate authRsaCertificate, X509Certificate authEccCertificate, String telematikId) {}
+
+  private static <T> T join(CompletableFuture<T> f) {
+    try {
+      return f.join();
+    } catch (CompletionException e) {
+      // callers expect the exceptions of the web service clients
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      if (e.getCause() instanceof Error err) {
+        throw err;
+      }
+      throw e;
+    }
   }
 
   @Override
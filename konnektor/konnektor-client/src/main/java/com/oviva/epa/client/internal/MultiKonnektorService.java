@@ -0,0 +1,405 @@
+package com.oviva.epa.client.internal;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.CardEvent;
+import com.oviva.epa.client.model.KonnektorException;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SmcbCard;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jakarta.xml.ws.soap.SOAPFaultException;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import telematik.ws.conn.exception.FaultMessageException;
+
+/**
+ * Spreads the requests over several Konnektors. Card handles are only valid on the Konnektor that
+ * issued them, the handles returned by {@link #listSmcbCards()} are therefore qualified with the
+ * Konnektor they belong to and requests for a card are routed to its Konnektor.
+ *
+ * <p>A card reachable via several Konnektors, e.g. in a shared card terminal, is recognised by its
+ * certificate. Its requests are spread over these Konnektors weighted by their observed latency and
+ * fail over to another one if a Konnektor fails.
+ *
+ * <p>Konnektors failing repeatedly are ejected for a while. Afterward they are probed by a
+ * background health check and re-admitted once they respond again.
+ */
+public class MultiKonnektorService implements KonnektorService, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(MultiKonnektorService.class);
+
+  private static final String HANDLE_SEPARATOR = "/";
+  private static final double LATENCY_SMOOTHING = 0.2;
+
+  /**
+   * @param failureThreshold consecutive failures before a Konnektor is ejected
+   * @param ejection how long an ejected Konnektor is not used before it is probed again
+   * @param healthCheckInterval how often ejected Konnektors are probed, null to not probe in the
+   *     background but let the next request through after the ejection
+   */
+  public record Options(int failureThreshold, Duration ejection, Duration healthCheckInterval) {
+
+    public Options {
+      if (failureThreshold <= 0) {
+        throw new IllegalArgumentException(
+            "invalid failure threshold: %d".formatted(failureThreshold));
+      }
+      if (ejection == null || ejection.isNegative()) {
+        throw new IllegalArgumentException("invalid ejection: %s".formatted(ejection));
+      }
+    }
+
+    public static Options defaults() {
+      return new Options(2, Duration.ofSeconds(30), Duration.ofSeconds(10));
+    }
+  }
+
+  private final List<Member> members;
+  private final Options options;
+  private final Clock clock;
+  private final ScheduledExecutorService healthChecks;
+
+  // cards by certificate, to find the same card on other Konnektors
+  private final Map<X509Certificate, List<Route>> routesByCertificate = new ConcurrentHashMap<>();
+
+  /**
+   * @param konnektors connects to each Konnektor, called lazily and again after failures
+   */
+  public MultiKonnektorService(
+      List<Supplier<KonnektorService>> konnektors, Options options, Clock clock) {
+    if (konnektors == null || konnektors.isEmpty()) {
+      throw new IllegalArgumentException("at least one konnektor required");
+    }
+    this.options = options;
+    this.clock = clock;
+
+    var list = new ArrayList<Member>();
+    for (int i = 0; i < konnektors.size(); i++) {
+      list.add(new Member("k" + i, konnektors.get(i)));
+    }
+    this.members = List.copyOf(list);
+
+    if (options.healthCheckInterval() != null) {
+      var interval = options.healthCheckInterval().toMillis();
+      healthChecks =
+          Executors.newSingleThreadScheduledExecutor(
+              Thread.ofPlatform().name("konnektor-health").daemon().factory());
+      healthChecks.scheduleWithFixedDelay(
+          this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    } else {
+      healthChecks = null;
+    }
+  }
+
+  @NonNull
+  @Override
+  public List<SmcbCard> listSmcbCards() {
+    var now = clock.instant();
+    var available = members.stream().filter(m -> m.isAvailable(now)).toList();
+    if (available.isEmpty()) {
+      throw new KonnektorException("no konnektor available");
+    }
+
+    var cards = new ArrayList<SmcbCard>();
+    RuntimeException lastError = null;
+    var anySucceeded = false;
+    for (var m : available) {
+      try {
+        cards.addAll(listCards(m));
+        anySucceeded = true;
+      } catch (RuntimeException e) {
+        lastError = e;
+      }
+    }
+
+    if (!anySucceeded) {
+      throw lastError;
+    }
+    return cards;
+  }
+
+  @NonNull
+  @Override
+  public List<String> listSmcbCardHandles() {
+    var now = clock.instant();
+    var handles = new ArrayList<String>();
+    for (var m : members) {
+      if (!m.isAvailable(now)) {
+        continue;
+      }
+      try {
+        call(m, KonnektorService::listSmcbCardHandles).stream()
+            .map(h -> m.name + HANDLE_SEPARATOR + h)
+            .forEach(handles::add);
+      } catch (RuntimeException e) {
+        log.atDebug().setCause(e).log("listing card handles via konnektor {} failed", m.name);
+      }
+    }
+    return handles;
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignRsaPss(@NonNull String cardHandle, byte[] bytesToSign) {
+    return route(cardHandle, (svc, handle) -> svc.authSignRsaPss(handle, bytesToSign));
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignEcdsa(@NonNull String cardHandle, byte[] bytesToSign) {
+    return route(cardHandle, (svc, handle) -> svc.authSignEcdsa(handle, bytesToSign));
+  }
+
+  @Override
+  public @NonNull PinStatus verifySmcPin(@NonNull String cardHandle) {
+    return route(cardHandle, KonnektorService::verifySmcPin);
+  }
+
+  /**
+   * Qualifies the card handle of an event pushed by one of the Konnektors like the handles returned
+   * by this service.
+   *
+   * @param konnektor the index of the Konnektor in the list given to the constructor
+   */
+  public CardEvent qualify(int konnektor, CardEvent event) {
+    if (konnektor < 0 || konnektor >= members.size()) {
+      throw new IllegalArgumentException("unknown konnektor: %d".formatted(konnektor));
+    }
+    if (event.cardHandle() == null) {
+      return event;
+    }
+    return new CardEvent(
+        event.type(),
+        event.topic(),
+        members.get(konnektor).name + HANDLE_SEPARATOR + event.cardHandle(),
+        event.parameters());
+  }
+
+  /** Probes the ejected Konnektors whose ejection is over, re-admitting those responding. */
+  public void checkHealth() {
+    var now = clock.instant();
+    for (var m : members) {
+      if (m.ejectedUntil == null || m.ejectedUntil.isAfter(now)) {
+        continue;
+      }
+      try {
+        listCards(m);
+        log.atInfo().log("konnektor {} re-admitted", m.name);
+      } catch (RuntimeException e) {
+        log.atDebug().setCause(e).log("konnektor {} still unhealthy", m.name);
+      }
+    }
+  }
+
+  /**
+   * @return the Konnektors currently in use
+   */
+  public int availableCount() {
+    var now = clock.instant();
+    return (int) members.stream().filter(m -> m.isAvailable(now)).count();
+  }
+
+  @Override
+  public void close() {
+    if (healthChecks != null) {
+      healthChecks.shutdownNow();
+    }
+  }
+
+  private List<SmcbCard> listCards(Member m) {
+    var cards = call(m, KonnektorService::listSmcbCards);
+
+    routesByCertificate.values().forEach(routes -> routes.removeIf(r -> r.member() == m));
+    for (var c : cards) {
+      if (c.authRsaCertificate() != null) {
+        routesByCertificate
+            .computeIfAbsent(c.authRsaCertificate(), k -> new CopyOnWriteArrayList<>())
+            .add(new Route(m, c.handle()));
+      }
+    }
+
+    return cards.stream()
+        .map(
+            c ->
+                new SmcbCard(
+                    m.name + HANDLE_SEPARATOR + c.handle(),
+                    c.telematikId(),
+                    c.holderName(),
+                    c.authRsaCertificate(),
+                    c.authEccCertificate(),
+                    c.pinVerified()))
+        .toList();
+  }
+
+  private <T> T route(String cardHandle, CardCall<T> call) {
+    var owner = parseHandle(cardHandle);
+    var now = clock.instant();
+
+    // the owner and the same card on other Konnektors
+    var candidates = new ArrayList<Route>();
+    candidates.add(owner);
+    routesByCertificate.values().stream()
+        .filter(routes -> routes.contains(owner))
+        .flatMap(List::stream)
+        .filter(r -> !r.equals(owner))
+        .forEach(candidates::add);
+
+    var available = candidates.stream().filter(r -> r.member().isAvailable(now)).toList();
+    if (available.isEmpty()) {
+      // nothing healthy, better try the owner than fail right away
+      available = List.of(owner);
+    }
+
+    RuntimeException lastError = null;
+    for (var r : weightedOrder(available)) {
+      try {
+        return call(r.member(), svc -> call.apply(svc, r.handle()));
+      } catch (RuntimeException e) {
+        if (isFault(e)) {
+          // the Konnektor rejected the request, another one won't do better
+          throw e;
+        }
+        lastError = e;
+        log.atDebug().setCause(e).log("request via konnektor {} failed", r.member().name);
+      }
+    }
+    throw lastError;
+  }
+
+  /** Orders the routes randomly, a route is picked first with a probability inverse to latency. */
+  private List<Route> weightedOrder(List<Route> routes) {
+    if (routes.size() == 1) {
+      return routes;
+    }
+    var rnd = ThreadLocalRandom.current();
+    return routes.stream()
+        .map(r -> new Weighted(r, -Math.log(rnd.nextDouble()) * r.member().latencyMillis))
+        .sorted(Comparator.comparingDouble(Weighted::key))
+        .map(Weighted::route)
+        .toList();
+  }
+
+  private Route parseHandle(String cardHandle) {
+    var i = cardHandle.indexOf(HANDLE_SEPARATOR);
+    if (i > 0) {
+      var name = cardHandle.substring(0, i);
+      for (var m : members) {
+        if (m.name.equals(name)) {
+          return new Route(m, cardHandle.substring(i + 1));
+        }
+      }
+    }
+    throw new IllegalArgumentException(
+        "card handle of unknown konnektor: %s".formatted(cardHandle));
+  }
+
+  private <T> T call(Member m, Function<KonnektorService, T> call) {
+    var start = System.nanoTime();
+    try {
+      var res = call.apply(m.service());
+      m.succeeded(System.nanoTime() - start);
+      return res;
+    } catch (RuntimeException e) {
+      if (isFault(e)) {
+        // answered, the Konnektor itself is fine
+        m.succeeded(System.nanoTime() - start);
+      } else {
+        m.failed(e);
+      }
+      throw e;
+    }
+  }
+
+  private static boolean isFault(Throwable e) {
+    for (var t = e; t != null; t = t.getCause()) {
+      // a fault may arrive unmapped or wrapped in a KonnektorException
+      if (t instanceof SOAPFaultException || t instanceof FaultMessageException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private interface CardCall<T> {
+    T apply(KonnektorService svc, String localHandle);
+  }
+
+  private record Route(Member member, String handle) {}
+
+  private record Weighted(Route route, double key) {}
+
+  private final class Member {
+
+    private final String name;
+    private final Supplier<KonnektorService> connector;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private volatile KonnektorService service;
+    private volatile Instant ejectedUntil;
+
+    // exponentially weighted moving average, starts optimistic
+    private volatile double latencyMillis = 1;
+
+    private Member(String name, Supplier<KonnektorService> connector) {
+      this.name = name;
+      this.connector = connector;
+    }
+
+    private KonnektorService service() {
+      var s = service;
+      if (s == null) {
+        synchronized (this) {
+          if (service == null) {
+            service = connector.get();
+          }
+          s = service;
+        }
+      }
+      return s;
+    }
+
+    private boolean isAvailable(Instant now) {
+      var until = ejectedUntil;
+      if (until == null) {
+        return true;
+      }
+      // with background checks the probe re-admits, otherwise the next request does
+      return healthChecks == null && !until.isAfter(now);
+    }
+
+    private void succeeded(long nanos) {
+      consecutiveFailures.set(0);
+      ejectedUntil = null;
+      var millis = Math.max(nanos / 1_000_000.0, 0.1);
+      latencyMillis = LATENCY_SMOOTHING * millis + (1 - LATENCY_SMOOTHING) * latencyMillis;
+    }
+
+    private void failed(RuntimeException e) {
+      if (consecutiveFailures.incrementAndGet() < options.failureThreshold()) {
+        return;
+      }
+      if (ejectedUntil == null) {
+        log.atWarn().setCause(e).log("konnektor {} ejected for {}", name, options.ejection());
+      }
+      ejectedUntil = clock.instant().plus(options.ejection());
+      // connect again on the next attempt, e.g. the service directory may have changed
+      service = null;
+    }
+  }
+}
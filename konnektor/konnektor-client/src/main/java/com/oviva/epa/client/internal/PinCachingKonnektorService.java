@@ -0,0 +1,120 @@
+package com.oviva.epa.client.internal;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.CardEvent;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SmcbCard;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Decorator remembering verified PINs for a short time. Signers check the PIN before every
+ * signature, with a verified PIN cached a signature is a single Konnektor call.
+ *
+ * <p>Only {@link PinStatus#VERIFIED} is cached, any other status is asked again so a PIN verified
+ * meanwhile is noticed right away. A failed signature drops the cached status of its card, {@link
+ * #invalidate(String)} does so e.g. on a Konnektor PIN or card event.
+ */
+public class PinCachingKonnektorService implements KonnektorService {
+
+  private final KonnektorService delegate;
+  private final Duration ttl;
+  private final Clock clock;
+
+  // card handle -> verified until
+  private final Map<String, Instant> verified = new ConcurrentHashMap<>();
+  private final AtomicLong checksAvoided = new AtomicLong();
+
+  /**
+   * @param ttl how long a verified PIN is trusted without asking the Konnektor
+   */
+  public PinCachingKonnektorService(KonnektorService delegate, Duration ttl, Clock clock) {
+    if (ttl == null || ttl.isNegative()) {
+      throw new IllegalArgumentException("invalid PIN status TTL: %s".formatted(ttl));
+    }
+    this.delegate = delegate;
+    this.ttl = ttl;
+    this.clock = clock;
+  }
+
+  @NonNull
+  @Override
+  public List<SmcbCard> listSmcbCards() {
+    return delegate.listSmcbCards();
+  }
+
+  @NonNull
+  @Override
+  public List<String> listSmcbCardHandles() {
+    return delegate.listSmcbCardHandles();
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignRsaPss(@NonNull String cardHandle, byte[] bytesToSign) {
+    return invalidateOnFailure(cardHandle, () -> delegate.authSignRsaPss(cardHandle, bytesToSign));
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignEcdsa(@NonNull String cardHandle, byte[] bytesToSign) {
+    return invalidateOnFailure(cardHandle, () -> delegate.authSignEcdsa(cardHandle, bytesToSign));
+  }
+
+  @Override
+  public @NonNull PinStatus verifySmcPin(@NonNull String cardHandle) {
+    var until = verified.get(cardHandle);
+    if (until != null && until.isAfter(clock.instant())) {
+      checksAvoided.incrementAndGet();
+      return PinStatus.VERIFIED;
+    }
+
+    var status = delegate.verifySmcPin(cardHandle);
+    if (status == PinStatus.VERIFIED) {
+      verified.put(cardHandle, clock.instant().plus(ttl));
+    } else {
+      verified.remove(cardHandle);
+    }
+    return status;
+  }
+
+  /** Drops the cached PIN status of a card, the next check asks the Konnektor. */
+  public void invalidate(String cardHandle) {
+    verified.remove(cardHandle);
+  }
+
+  /** Drops the cached PIN status of a card once an event concerns it, see {@link CardEvent}. */
+  public void onCardEvent(CardEvent event) {
+    if (event.cardHandle() != null) {
+      invalidate(event.cardHandle());
+    }
+  }
+
+  public void invalidateAll() {
+    verified.clear();
+  }
+
+  /**
+   * @return the number of PIN checks answered without asking the Konnektor
+   */
+  public long pinChecksAvoided() {
+    return checksAvoided.get();
+  }
+
+  private <T> T invalidateOnFailure(String cardHandle, Supplier<T> call) {
+    try {
+      return call.get();
+    } catch (RuntimeException e) {
+      // maybe the PIN was reset or the card removed
+      invalidate(cardHandle);
+      throw e;
+    }
+  }
+}
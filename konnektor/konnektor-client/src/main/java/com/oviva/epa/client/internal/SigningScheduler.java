@@ -0,0 +1,280 @@
+package com.oviva.epa.client.internal;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.KonnektorException;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SigningPriority;
+import com.oviva.epa.client.model.SmcbCard;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Decorator queueing signatures per card. The Konnektor signs with a card one after the other,
+ * instead of piling up requests until they time out they wait here for their turn.
+ *
+ * <p>Waiting signatures are served by {@link SigningPriority}, then in arrival order. Bulk jobs
+ * sign via {@link #withPriority(SigningPriority)}, everything else is interactive. The inputs of a
+ * batch are queued one by one, each takes its own turn with the card. A signature not started
+ * within the maximum queue time is rejected, right away if the queue ahead of it is already
+ * expected to take longer.
+ */
+public class SigningScheduler implements KonnektorService {
+
+  private static final double SERVICE_TIME_SMOOTHING = 0.2;
+
+  /**
+   * @param maxInFlightPerCard signatures sent to the Konnektor at once per card
+   * @param maxQueueTime how long a signature may wait for its card
+   */
+  public record Options(int maxInFlightPerCard, Duration maxQueueTime) {
+
+    public Options {
+      if (maxInFlightPerCard <= 0) {
+        throw new IllegalArgumentException(
+            "invalid max in-flight per card: %d".formatted(maxInFlightPerCard));
+      }
+      if (maxQueueTime == null || maxQueueTime.isNegative()) {
+        throw new IllegalArgumentException("invalid max queue time: %s".formatted(maxQueueTime));
+      }
+    }
+
+    public static Options defaults() {
+      return new Options(1, Duration.ofSeconds(10));
+    }
+  }
+
+  /**
+   * @param signed signatures sent to the Konnektor, failed ones included
+   * @param rejected signatures rejected because the card was too busy
+   */
+  public record Stats(
+      long signed,
+      long rejected,
+      Duration averageQueueTime,
+      Duration maxQueueTime,
+      Duration averageServiceTime) {}
+
+  private final KonnektorService delegate;
+  private final Options options;
+  private final SigningPriority priority;
+
+  // shared by all priorities
+  private final Map<String, CardQueue> queues;
+  private final AtomicLong arrivals;
+
+  private final LongAdder signed;
+  private final LongAdder rejected;
+  private final LongAdder queueNanos;
+  private final LongAccumulator maxQueueNanos;
+  private final LongAdder serviceNanos;
+
+  public SigningScheduler(KonnektorService delegate, Options options) {
+    this.delegate = delegate;
+    this.options = options;
+    this.priority = SigningPriority.INTERACTIVE;
+    this.queues = new ConcurrentHashMap<>();
+    this.arrivals = new AtomicLong();
+    this.signed = new LongAdder();
+    this.rejected = new LongAdder();
+    this.queueNanos = new LongAdder();
+    this.maxQueueNanos = new LongAccumulator(Math::max, 0);
+    this.serviceNanos = new LongAdder();
+  }
+
+  private SigningScheduler(SigningScheduler scheduler, SigningPriority priority) {
+    this.delegate = scheduler.delegate;
+    this.options = scheduler.options;
+    this.priority = priority;
+    this.queues = scheduler.queues;
+    this.arrivals = scheduler.arrivals;
+    this.signed = scheduler.signed;
+    this.rejected = scheduler.rejected;
+    this.queueNanos = scheduler.queueNanos;
+    this.maxQueueNanos = scheduler.maxQueueNanos;
+    this.serviceNanos = scheduler.serviceNanos;
+  }
+
+  /**
+   * The same scheduler signing with the given priority, e.g. for bulk jobs. Queues and stats are
+   * shared, the priority goes with the returned instance regardless of the calling thread.
+   */
+  public SigningScheduler withPriority(SigningPriority priority) {
+    return priority == this.priority ? this : new SigningScheduler(this, priority);
+  }
+
+  @NonNull
+  @Override
+  public List<SmcbCard> listSmcbCards() {
+    return delegate.listSmcbCards();
+  }
+
+  @NonNull
+  @Override
+  public List<String> listSmcbCardHandles() {
+    return delegate.listSmcbCardHandles();
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignRsaPss(@NonNull String cardHandle, byte[] bytesToSign) {
+    return schedule(cardHandle, () -> delegate.authSignRsaPss(cardHandle, bytesToSign));
+  }
+
+  @NonNull
+  @Override
+  public byte[] authSignEcdsa(@NonNull String cardHandle, byte[] bytesToSign) {
+    return schedule(cardHandle, () -> delegate.authSignEcdsa(cardHandle, bytesToSign));
+  }
+
+  @Override
+  public @NonNull PinStatus verifySmcPin(@NonNull String cardHandle) {
+    return delegate.verifySmcPin(cardHandle);
+  }
+
+  public Stats stats() {
+    var count = signed.sum();
+    return new Stats(
+        count,
+        rejected.sum(),
+        Duration.ofNanos(count == 0 ? 0 : queueNanos.sum() / count),
+        Duration.ofNanos(maxQueueNanos.get()),
+        Duration.ofNanos(count == 0 ? 0 : serviceNanos.sum() / count));
+  }
+
+  /**
+   * @return the signatures waiting for the card
+   */
+  public int queued(String cardHandle) {
+    var queue = queues.get(cardHandle);
+    if (queue == null) {
+      return 0;
+    }
+    synchronized (queue) {
+      return queue.waiting.size();
+    }
+  }
+
+  private <T> T schedule(String cardHandle, Supplier<T> call) {
+    var queue = queues.computeIfAbsent(cardHandle, h -> new CardQueue());
+
+    var arrived = System.nanoTime();
+    queue.acquire(cardHandle, priority);
+    var started = System.nanoTime();
+    var queued = started - arrived;
+    queueNanos.add(queued);
+    maxQueueNanos.accumulate(queued);
+    try {
+      return call.get();
+    } finally {
+      var took = System.nanoTime() - started;
+      serviceNanos.add(took);
+      signed.increment();
+      queue.release(took);
+    }
+  }
+
+  private record Waiter(SigningPriority priority, long seq, CompletableFuture<Void> turn) {}
+
+  private static final Comparator<Waiter> ORDER =
+      Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::seq);
+
+  private final class CardQueue {
+
+    // guarded by this
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(ORDER);
+    private int inFlight;
+
+    // exponentially weighted moving average, to estimate the wait
+    private volatile double serviceNanos;
+
+    private void acquire(String cardHandle, SigningPriority priority) {
+      var waiter = new Waiter(priority, arrivals.incrementAndGet(), new CompletableFuture<>());
+      var maxWait = options.maxQueueTime().toNanos();
+
+      synchronized (this) {
+        if (inFlight < options.maxInFlightPerCard() && waiting.isEmpty()) {
+          inFlight++;
+          return;
+        }
+        if (expectedWaitNanos(priority) > maxWait) {
+          // would time out anyway, fail fast instead of blocking a thread
+          throw reject(cardHandle);
+        }
+        waiting.add(waiter);
+      }
+
+      try {
+        waiter.turn().get(maxWait, TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        synchronized (this) {
+          if (waiting.remove(waiter)) {
+            throw reject(cardHandle);
+          }
+        }
+        // got its turn meanwhile
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        abandon(waiter);
+        throw new KonnektorException("interrupted waiting for card %s".formatted(cardHandle), e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private void release(long serviceNanos) {
+      this.serviceNanos =
+          this.serviceNanos == 0
+              ? serviceNanos
+              : SERVICE_TIME_SMOOTHING * serviceNanos
+                  + (1 - SERVICE_TIME_SMOOTHING) * this.serviceNanos;
+      handOver();
+    }
+
+    private synchronized void handOver() {
+      var next = waiting.poll();
+      if (next == null) {
+        inFlight--;
+        return;
+      }
+      // the slot passes on directly, no one can overtake
+      next.turn().complete(null);
+    }
+
+    private void abandon(Waiter waiter) {
+      synchronized (this) {
+        if (waiting.remove(waiter)) {
+          return;
+        }
+      }
+      // the turn was granted meanwhile, pass it on
+      handOver();
+    }
+
+    private long expectedWaitNanos(SigningPriority priority) {
+      var ahead =
+          inFlight + waiting.stream().filter(w -> w.priority().compareTo(priority) <= 0).count();
+      var rounds = ahead / options.maxInFlightPerCard();
+      return (long) (rounds * serviceNanos);
+    }
+
+    private KonnektorException reject(String cardHandle) {
+      rejected.increment();
+      return new KonnektorException(
+          "card %s too busy, signature not started within %s"
+              .formatted(cardHandle, options.maxQueueTime()));
+    }
+  }
+}
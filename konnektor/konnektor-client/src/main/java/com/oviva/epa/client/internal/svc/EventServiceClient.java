@@ -23,6 +23,9 @@ import telematik.ws.conn.eventservice.wsdl.v6_1.EventServicePortType;
 import telematik.ws.conn.eventservice.xsd.v6_1.GetCards;
 import telematik.ws.conn.eventservice.xsd.v6_1.GetCardsResponse;
 import telematik.ws.conn.eventservice.xsd.v6_1.ObjectFactory;
+import telematik.ws.conn.eventservice.xsd.v6_1.RenewSubscriptionsResponse;
+import telematik.ws.conn.eventservice.xsd.v6_1.SubscribeResponse;
+import telematik.ws.conn.eventservice.xsd.v6_1.SubscriptionType;
 
 public class EventServiceClient {
 
@@ -44,6 +47,31 @@ public class EventServiceClient {
     return eventService.getCards(request);
   }
 
+  /**
+   * @param eventTo where the Konnektor sends the events to, e.g. {@code cetp://10.0.0.5:8585}
+   * @param topic the events of interest, e.g. {@code CARD} for all card events
+   */
+  public SubscribeResponse subscribe(@NonNull String eventTo, @NonNull String topic) {
+    var request = new ObjectFactory().createSubscribe();
+    request.setContext(context.toContext());
+    request.setSubscription(new SubscriptionType().withEventTo(eventTo).withTopic(topic));
+    return eventService.subscribe(request);
+  }
+
+  public RenewSubscriptionsResponse renewSubscription(@NonNull String subscriptionId) {
+    var request = new ObjectFactory().createRenewSubscriptions();
+    request.setContext(context.toContext());
+    request.getSubscriptionID().add(subscriptionId);
+    return eventService.renewSubscriptions(request);
+  }
+
+  public void unsubscribe(@NonNull String subscriptionId) {
+    var request = new ObjectFactory().createUnsubscribe();
+    request.setContext(context.toContext());
+    request.setSubscriptionID(subscriptionId);
+    eventService.unsubscribe(request);
+  }
+
   private GetCards buildGetAllSmBCards() {
     final var getCardsRequest = new ObjectFactory().createGetCards();
     getCardsRequest.setCardType(CardTypeType.SM_B);
@@ -3,6 +3,7 @@ package com.oviva.epa.client.konn;
 import com.oviva.epa.client.konn.internal.KonnektorConnectionConfiguration;
 import com.oviva.epa.client.konn.internal.KonnektorConnectionConfiguration.BasicAuthenticationConfig;
 import com.oviva.epa.client.konn.internal.KonnektorConnectionConfiguration.ProxyAddressConfig;
+import com.oviva.epa.client.konn.internal.KonnektorConnectionConfiguration.ServiceDirectoryConfig;
 import com.oviva.epa.client.konn.internal.KonnektorConnectionConfiguration.TlsConfig;
 import com.oviva.epa.client.konn.internal.KonnektorConnectionFactoryImpl;
 import com.oviva.epa.client.konn.internal.util.NaiveTrustManager;
@@ -13,6 +14,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -35,6 +37,8 @@ public class KonnektorConnectionFactoryBuilder {
   private TlsConfig tlsConfig = null;
   private ProxyAddressConfig proxyAddress = null;
   private BasicAuthenticationConfig basicAuthentication = null;
+  private Duration serviceDirectoryRefreshInterval = Duration.ofMinutes(10);
+  private Path serviceDirectoryCacheFile = null;
 
   private List<String> ciphersuites = DEFAULT_TLS_CIPHERSUITES;
   private List<KeyManager> keyManagers = null;
@@ -86,6 +90,24 @@ public class KonnektorConnectionFactoryBuilder {
     return this;
   }
 
+  /**
+   * How long the service directory (connector.sds) is used before it is revalidated with the
+   * Konnektor, {@link Duration#ZERO} to revalidate on every connect.
+   */
+  @NonNull
+  public KonnektorConnectionFactoryBuilder serviceDirectoryRefreshInterval(
+      @NonNull Duration refreshInterval) {
+    this.serviceDirectoryRefreshInterval = refreshInterval;
+    return this;
+  }
+
+  /** Keeps the service directory (connector.sds) in the given file across restarts. */
+  @NonNull
+  public KonnektorConnectionFactoryBuilder serviceDirectoryCacheFile(@NonNull Path cacheFile) {
+    this.serviceDirectoryCacheFile = cacheFile;
+    return this;
+  }
+
   @NonNull
   public KonnektorConnectionFactoryBuilder clientKeys(@NonNull List<KeyManager> keyManagers) {
     this.keyManagers = keyManagers;
@@ -126,7 +148,12 @@ public class KonnektorConnectionFactoryBuilder {
     }
 
     var cfg =
-        new KonnektorConnectionConfiguration(uri, tlsConfig, proxyAddress, basicAuthentication);
+        new KonnektorConnectionConfiguration(
+            uri,
+            tlsConfig,
+            proxyAddress,
+            basicAuthentication,
+            new ServiceDirectoryConfig(serviceDirectoryRefreshInterval, serviceDirectoryCacheFile));
     return new KonnektorConnectionFactoryImpl(cfg);
   }
 }
@@ -17,6 +17,8 @@
 package com.oviva.epa.client.konn.internal;
 
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.TrustManager;
@@ -27,7 +29,8 @@ public record KonnektorConnectionConfiguration(
     URI uri,
     TlsConfig tlsConfig,
     ProxyAddressConfig proxyAddress,
-    BasicAuthenticationConfig basicAuthentication) {
+    BasicAuthenticationConfig basicAuthentication,
+    ServiceDirectoryConfig serviceDirectory) {
 
   public record TlsConfig(
       List<KeyManager> keyManagers,
@@ -43,4 +46,10 @@ public record KonnektorConnectionConfiguration(
   public record ProxyAddressConfig(String address, Integer port, boolean enabled) {}
 
   public record BasicAuthenticationConfig(String username, String password, boolean enabled) {}
+
+  /**
+   * @param refreshInterval how long connector.sds is used before it is revalidated
+   * @param cacheFile where to keep connector.sds across restarts, null for memory only
+   */
+  public record ServiceDirectoryConfig(Duration refreshInterval, Path cacheFile) {}
 }
@@ -20,9 +20,11 @@ import static jakarta.xml.ws.soap.SOAPBinding.SOAP11HTTP_BINDING;
 
 import com.oviva.epa.client.konn.KonnektorConnection;
 import com.oviva.epa.client.konn.KonnektorConnectionFactory;
+import com.oviva.epa.client.konn.internal.KonnektorConnectionConfiguration.ServiceDirectoryConfig;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.net.URI;
-import java.util.Arrays;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -50,8 +52,6 @@ import telematik.ws.conn.certificateservice.wsdl.v6_0.CertificateService;
 import telematik.ws.conn.certificateservice.wsdl.v6_0.CertificateServicePortType;
 import telematik.ws.conn.eventservice.wsdl.v6_1.EventService;
 import telematik.ws.conn.eventservice.wsdl.v6_1.EventServicePortType;
-import telematik.ws.conn.servicedirectory.xsd.v3_1.ConnectorServices;
-import telematik.ws.conn.serviceinformation.xsd.v2_0.EndpointType;
 
 /** Uses Apache CXF to generate client implementations for the Konnektor web services. */
 public class KonnektorConnectionFactoryImpl implements KonnektorConnectionFactory {
@@ -60,26 +60,51 @@ public class KonnektorConnectionFactoryImpl implements KonnektorConnectionFactor
   private final LoggingFeature loggingFeature = newLoggingFeature();
   private final KonnektorConnectionConfiguration configuration;
   boolean isTlsPreferred = true;
+  private final ServiceDirectory serviceDirectory;
+  private SdsApi sdsApi;
 
   public KonnektorConnectionFactoryImpl(KonnektorConnectionConfiguration config) {
     this.configuration = config;
     this.isTlsPreferred = determineIfTlsPreferred();
+
+    var sds =
+        Optional.ofNullable(config.serviceDirectory())
+            .orElse(new ServiceDirectoryConfig(Duration.ZERO, null));
+    this.serviceDirectory =
+        new ServiceDirectory(
+            this::fetchServiceDirectory,
+            sds.refreshInterval(),
+            sds.cacheFile(),
+            isTlsPreferred,
+            Clock.systemUTC());
   }
 
   @Override
   public KonnektorConnection connect() {
 
-    var connectorServices = sdsApi().getConnectorSds();
+    var endpoints = serviceDirectory.endpoints();
 
-    var eventService = createEventService(connectorServices);
-    var cardService = createCardService(connectorServices);
-    var certificateService = createCertificateService(connectorServices);
-    var authSignatureService = createAuthSignatureService(connectorServices);
+    var eventService = createEventService(endpoints);
+    var cardService = createCardService(endpoints);
+    var certificateService = createCertificateService(endpoints);
+    var authSignatureService = createAuthSignatureService(endpoints);
 
     return new KonnektorConnectionImpl(
         eventService, cardService, certificateService, authSignatureService);
   }
 
+  /** Called by the {@link ServiceDirectory}, one call at a time. */
+  private ServiceDirectory.Fetched fetchServiceDirectory(String etag, String lastModified) {
+    if (sdsApi == null) {
+      sdsApi = sdsApi();
+    }
+    try (var res = sdsApi.getConnectorSdsIfModified(etag, lastModified)) {
+      var body = res.getStatus() == 200 ? res.readEntity(byte[].class) : null;
+      return new ServiceDirectory.Fetched(
+          res.getStatus(), body, res.getHeaderString("ETag"), res.getHeaderString("Last-Modified"));
+    }
+  }
+
   /**
    * Get the client implementation of the {@link SdsApi}, for the retrieval of the connection
    * information of the Konnektor web services.
@@ -167,89 +192,48 @@ public class KonnektorConnectionFactoryImpl implements KonnektorConnectionFactor
     return getClientProxyImpl(portType, SOAP11HTTP_BINDING, endpointAddress, null);
   }
 
-  private AuthSignatureServicePortType createAuthSignatureService(
-      ConnectorServices connectorServices) {
+  private AuthSignatureServicePortType createAuthSignatureService(ServiceEndpoints endpoints) {
     return getClientProxyImpl(
         AuthSignatureServicePortType.class,
-        readServiceEndpoint(
-            connectorServices, AuthSignatureService.SERVICE.getLocalPart(), "7.4.1", "7"));
+        endpoints.endpoint(AuthSignatureService.SERVICE.getLocalPart(), "7.4.1", "7"));
   }
 
   /**
    * Creates the actual client implementation of the Konnektors {@link EventServicePortType}
    * interface.<br>
-   * Endpoint of the Konnektor Service to talk to is retrieved from the information in the {@link
-   * ConnectorServices} bean.
+   * Endpoint of the Konnektor Service to talk to is retrieved from the service directory.
    *
    * @return EventServicePortType implementation
    */
-  private EventServicePortType createEventService(ConnectorServices connectorServices) {
+  private EventServicePortType createEventService(ServiceEndpoints endpoints) {
     return getClientProxyImpl(
-        EventServicePortType.class,
-        readServiceEndpoint(connectorServices, EventService.SERVICE.getLocalPart(), ""));
+        EventServicePortType.class, endpoints.endpoint(EventService.SERVICE.getLocalPart(), ""));
   }
 
   /**
    * Creates the actual client implementation of the Konnektors {@link CertificateServicePortType}
    * interface.<br>
-   * Endpoint of the Konnektor Service to talk to is retrieved from the information in the {@link
-   * ConnectorServices} bean.
+   * Endpoint of the Konnektor Service to talk to is retrieved from the service directory.
    *
    * @return CertificateServicePortType implementation
    */
-  private CertificateServicePortType createCertificateService(ConnectorServices connectorServices) {
+  private CertificateServicePortType createCertificateService(ServiceEndpoints endpoints) {
     return getClientProxyImpl(
         CertificateServicePortType.class,
-        readServiceEndpoint(
-            connectorServices, CertificateService.SERVICE.getLocalPart(), "6.0.1", "6"));
+        endpoints.endpoint(CertificateService.SERVICE.getLocalPart(), "6.0.1", "6"));
   }
 
   /**
    * Creates the actual client implementation of the Konnektors {@link CardServicePortType}
    * interface.<br>
-   * Endpoint of the Konnektor Service to talk to is retrieved from the information in the {@link
-   * ConnectorServices} bean.
+   * Endpoint of the Konnektor Service to talk to is retrieved from the service directory.
    *
    * @return CardServicePortType implementation
    */
-  private CardServicePortType createCardService(ConnectorServices connectorServices) {
+  private CardServicePortType createCardService(ServiceEndpoints endpoints) {
     return getClientProxyImpl(
         CardServicePortType.class,
-        readServiceEndpoint(
-            connectorServices, CardService.SERVICE.getLocalPart(), "8.1.2", "8.1", "8"));
-  }
-
-  private URI readServiceEndpoint(
-      ConnectorServices connectorServices, String serviceName, String... serviceVersionStartsWith) {
-    for (String svsw : serviceVersionStartsWith) {
-      var endpoint = readSingleServiceEndpoint(connectorServices, serviceName, svsw);
-      if (Objects.nonNull(endpoint)) {
-        return endpoint;
-      }
-    }
-
-    throw new IllegalArgumentException(
-        String.format(
-            "No usable service endpoint configuration found for service %s in version %s",
-            serviceName, Arrays.toString(serviceVersionStartsWith)));
-  }
-
-  private URI readSingleServiceEndpoint(
-      ConnectorServices connectorServices, String serviceName, String serviceVersionStartsWith) {
-    return connectorServices.getServiceInformation().getService().stream()
-        .filter(service -> serviceName.equals(service.getName()))
-        .flatMap(service -> service.getVersions().getVersion().stream())
-        .filter(
-            versionedService -> versionedService.getVersion().startsWith(serviceVersionStartsWith))
-        .map(
-            versionedService ->
-                Optional.ofNullable(versionedService.getEndpointTLS())
-                    .filter(endpoint -> connectorServices.isTLSMandatory() || isTlsPreferred)
-                    .orElse(versionedService.getEndpoint()))
-        .map(EndpointType::getLocation)
-        .map(URI::create)
-        .findFirst()
-        .orElse(null);
+        endpoints.endpoint(CardService.SERVICE.getLocalPart(), "8.1.2", "8.1", "8"));
   }
 
   private Boolean determineIfTlsPreferred() {
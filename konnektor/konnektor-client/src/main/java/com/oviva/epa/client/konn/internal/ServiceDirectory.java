@@ -0,0 +1,207 @@
+package com.oviva.epa.client.konn.internal;
+
+import com.oviva.epa.client.model.KonnektorException;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import telematik.ws.conn.servicedirectory.xsd.v3_1.ConnectorServices;
+
+/**
+ * Keeps the Konnektor service directory, connector.sds, in memory and optionally on disk. Once the
+ * refresh interval passed it is revalidated with the ETag and Last-Modified date of the Konnektor,
+ * an unchanged directory is not transferred again.
+ *
+ * <p>If the Konnektor cannot be reached the last known directory is used, e.g. the one on disk
+ * after a restart.
+ */
+public class ServiceDirectory {
+
+  private static final Logger log = LoggerFactory.getLogger(ServiceDirectory.class);
+
+  private static final int FILE_FORMAT = 1;
+  private static final int STATUS_OK = 200;
+  private static final int STATUS_NOT_MODIFIED = 304;
+
+  private static final JAXBContext JAXB = newContext();
+
+  /** Fetches connector.sds, conditionally if validators are given. */
+  public interface Fetcher {
+
+    /**
+     * @param etag the ETag of the known directory, null if unknown
+     * @param lastModified the Last-Modified date of the known directory, null if unknown
+     */
+    Fetched fetch(String etag, String lastModified);
+  }
+
+  /**
+   * @param body the directory, null if not modified
+   */
+  public record Fetched(int status, byte[] body, String etag, String lastModified) {}
+
+  private final Fetcher fetcher;
+  private final Duration refreshInterval;
+  private final Path cacheFile;
+  private final boolean tlsPreferred;
+  private final Clock clock;
+
+  // guarded by this
+  private ServiceEndpoints endpoints;
+  private String etag;
+  private String lastModified;
+  private Instant validUntil = Instant.MIN;
+
+  private final AtomicLong fetches = new AtomicLong();
+
+  /**
+   * @param refreshInterval how long the directory is used without asking the Konnektor
+   * @param cacheFile where to keep the directory across restarts, null to keep it in memory only
+   * @param tlsPreferred see {@link ServiceEndpoints#of(ConnectorServices, boolean)}
+   */
+  public ServiceDirectory(
+      Fetcher fetcher,
+      Duration refreshInterval,
+      Path cacheFile,
+      boolean tlsPreferred,
+      Clock clock) {
+    if (refreshInterval == null || refreshInterval.isNegative()) {
+      throw new IllegalArgumentException(
+          "invalid service directory refresh interval: %s".formatted(refreshInterval));
+    }
+    this.fetcher = fetcher;
+    this.refreshInterval = refreshInterval;
+    this.cacheFile = cacheFile;
+    this.tlsPreferred = tlsPreferred;
+    this.clock = clock;
+    loadCacheFile();
+  }
+
+  /** The current endpoints, fetched or revalidated if the refresh interval passed. */
+  public synchronized ServiceEndpoints endpoints() {
+    var now = clock.instant();
+    if (endpoints != null && now.isBefore(validUntil)) {
+      return endpoints;
+    }
+
+    try {
+      revalidate();
+    } catch (RuntimeException e) {
+      if (endpoints == null) {
+        throw e;
+      }
+      log.atWarn().setCause(e).log("refreshing connector.sds failed, using the last known one");
+    }
+    validUntil = now.plus(refreshInterval);
+    return endpoints;
+  }
+
+  /**
+   * @return the requests made to the Konnektor
+   */
+  public long fetches() {
+    return fetches.get();
+  }
+
+  private void revalidate() {
+    fetches.incrementAndGet();
+    var fetched = fetcher.fetch(etag, lastModified);
+
+    if (fetched.status() == STATUS_NOT_MODIFIED && endpoints != null) {
+      log.atDebug().log("connector.sds not modified");
+      return;
+    }
+    if (fetched.status() != STATUS_OK || fetched.body() == null) {
+      throw new KonnektorException(
+          "fetching connector.sds failed with status %d".formatted(fetched.status()));
+    }
+
+    endpoints = ServiceEndpoints.of(parse(fetched.body()), tlsPreferred);
+    etag = fetched.etag();
+    lastModified = fetched.lastModified();
+    saveCacheFile(fetched);
+  }
+
+  private void loadCacheFile() {
+    if (cacheFile == null || !Files.exists(cacheFile)) {
+      return;
+    }
+    try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+      if (in.readInt() != FILE_FORMAT) {
+        return;
+      }
+      var cachedEtag = readNullable(in);
+      var cachedLastModified = readNullable(in);
+      var body = in.readNBytes(in.readInt());
+
+      endpoints = ServiceEndpoints.of(parse(body), tlsPreferred);
+      etag = cachedEtag;
+      lastModified = cachedLastModified;
+      // revalidated on first use
+    } catch (IOException | RuntimeException e) {
+      log.atWarn().setCause(e).log("ignoring unreadable connector.sds cache {}", cacheFile);
+    }
+  }
+
+  private void saveCacheFile(Fetched fetched) {
+    if (cacheFile == null) {
+      return;
+    }
+    try {
+      var tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+      try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(FILE_FORMAT);
+        writeNullable(out, fetched.etag());
+        writeNullable(out, fetched.lastModified());
+        out.writeInt(fetched.body().length);
+        out.write(fetched.body());
+      }
+      Files.move(
+          tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // the in-memory copy still works
+      log.atWarn().setCause(e).log("failed to write connector.sds cache {}", cacheFile);
+    }
+  }
+
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeNullable(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static ConnectorServices parse(byte[] body) {
+    try {
+      return (ConnectorServices)
+          JAXB.createUnmarshaller().unmarshal(new ByteArrayInputStream(body));
+    } catch (JAXBException e) {
+      throw new KonnektorException("invalid connector.sds", e);
+    }
+  }
+
+  private static JAXBContext newContext() {
+    try {
+      return JAXBContext.newInstance(ConnectorServices.class);
+    } catch (JAXBException e) {
+      throw new IllegalStateException("failed to initialize connector.sds unmarshaller", e);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.oviva.epa.client.konn.internal;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import telematik.ws.conn.servicedirectory.xsd.v3_1.ConnectorServices;
+
+/** The endpoints of the Konnektor services by service name and version, from connector.sds. */
+public class ServiceEndpoints {
+
+  // service name -> version -> endpoint, versions in the order of the directory
+  private final Map<String, Map<String, URI>> endpoints;
+
+  private ServiceEndpoints(Map<String, Map<String, URI>> endpoints) {
+    this.endpoints = endpoints;
+  }
+
+  /**
+   * @param tlsPreferred use the TLS endpoints if available, even if the Konnektor does not mandate
+   *     TLS
+   */
+  public static ServiceEndpoints of(ConnectorServices connectorServices, boolean tlsPreferred) {
+    var useTls = connectorServices.isTLSMandatory() || tlsPreferred;
+
+    var endpoints = new HashMap<String, Map<String, URI>>();
+    for (var service : connectorServices.getServiceInformation().getService()) {
+      var versions = endpoints.computeIfAbsent(service.getName(), n -> new LinkedHashMap<>());
+      for (var v : service.getVersions().getVersion()) {
+        var endpoint = useTls && v.getEndpointTLS() != null ? v.getEndpointTLS() : v.getEndpoint();
+        if (endpoint != null) {
+          versions.putIfAbsent(v.getVersion(), URI.create(endpoint.getLocation()));
+        }
+      }
+    }
+    return new ServiceEndpoints(endpoints);
+  }
+
+  /**
+   * @param serviceVersionStartsWith acceptable version prefixes, the first one with an endpoint
+   *     wins
+   */
+  public URI endpoint(String serviceName, String... serviceVersionStartsWith) {
+    var versions = endpoints.getOrDefault(serviceName, Map.of());
+    for (var prefix : serviceVersionStartsWith) {
+      for (var v : versions.entrySet()) {
+        if (v.getKey().startsWith(prefix)) {
+          return v.getValue();
+        }
+      }
+    }
+
+    throw new IllegalArgumentException(
+        String.format(
+            "No usable service endpoint configuration found for service %s in version %s",
+            serviceName, Arrays.toString(serviceVersionStartsWith)));
+  }
+}
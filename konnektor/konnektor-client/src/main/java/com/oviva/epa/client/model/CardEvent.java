@@ -0,0 +1,33 @@
+package com.oviva.epa.client.model;
+
+import java.util.Map;
+
+/**
+ * An event pushed by the Konnektor, e.g. a card was plugged in.
+ *
+ * @param topic the Konnektor topic, e.g. {@code CARD/INSERTED}
+ * @param cardHandle the card concerned, null if the event is not about a card
+ * @param parameters all parameters of the event, e.g. {@code CardType}
+ */
+public record CardEvent(
+    Type type, String topic, String cardHandle, Map<String, String> parameters) {
+
+  public enum Type {
+    CARD_INSERTED,
+    CARD_REMOVED,
+    PIN_VERIFIED,
+    OTHER
+  }
+
+  public static Type typeOf(String topic) {
+    if (topic == null) {
+      return Type.OTHER;
+    }
+    return switch (topic) {
+      case "CARD/INSERTED" -> Type.CARD_INSERTED;
+      case "CARD/REMOVED" -> Type.CARD_REMOVED;
+      case "CARD/PIN/VERIFY_FINISHED" -> Type.PIN_VERIFIED;
+      default -> Type.OTHER;
+    };
+  }
+}
@@ -0,0 +1,7 @@
+package com.oviva.epa.client.model;
+
+/** Order of signatures waiting for a busy card, interactive ones go first. */
+public enum SigningPriority {
+  INTERACTIVE,
+  BULK
+}
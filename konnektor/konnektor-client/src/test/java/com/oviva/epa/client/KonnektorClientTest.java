@@ -0,0 +1,182 @@
+package com.oviva.epa.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.internal.CachingKonnektorService;
+import com.oviva.epa.client.internal.MultiKonnektorService;
+import com.oviva.epa.client.internal.PinCachingKonnektorService;
+import com.oviva.epa.client.internal.SigningScheduler;
+import com.oviva.epa.client.konn.KonnektorConnection;
+import com.oviva.epa.client.model.CardEvent;
+import com.oviva.epa.client.model.SigningPriority;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class KonnektorClientTest {
+
+  private static final String CARD = "SMC-B-1";
+
+  @Test
+  void build_shouldExposeEnabledDecorators() {
+
+    // Given
+    var builder =
+        KonnektorServiceBuilder.newBuilder()
+            .connectionFactories(List.of(() -> mock(KonnektorConnection.class)))
+            .queueSignatures(SigningScheduler.Options.defaults())
+            .cachePinStatus(Duration.ofSeconds(30))
+            .cacheCards(null);
+
+    // When
+    try (var client = builder.build()) {
+
+      // Then
+      assertTrue(client.konnektors().isPresent());
+      assertTrue(client.signingScheduler().isPresent());
+      assertTrue(client.pinCache().isPresent());
+      assertTrue(client.cardCache().isPresent());
+    }
+  }
+
+  @Test
+  void build_shouldLeaveOutDisabledDecorators() {
+
+    // Given
+    var builder = KonnektorServiceBuilder.newBuilder().connection(mock(KonnektorConnection.class));
+
+    // When
+    try (var client = builder.build()) {
+
+      // Then
+      assertTrue(client.konnektors().isEmpty());
+      assertTrue(client.signingScheduler().isEmpty());
+      assertTrue(client.pinCache().isEmpty());
+      assertTrue(client.cardCache().isEmpty());
+    }
+  }
+
+  @Test
+  void onCardEvent_shouldReachBothCaches() {
+
+    // Given
+    var pinCache = mock(PinCachingKonnektorService.class);
+    var cardCache = mock(CachingKonnektorService.class);
+    var client = new KonnektorClient(cardCache, null, null, pinCache, cardCache);
+    var event = new CardEvent(CardEvent.Type.CARD_REMOVED, "CARD/REMOVED", "SMC-B-1", Map.of());
+
+    // When
+    client.onCardEvent(event);
+
+    // Then
+    verify(pinCache).onCardEvent(event);
+    verify(cardCache).onCardEvent(event);
+  }
+
+  @Test
+  void cardEventListener_shouldQualifyHandlesOfMultipleKonnektors() {
+
+    // Given
+    var konnektors =
+        new MultiKonnektorService(
+            List.of(() -> mock(KonnektorService.class), () -> mock(KonnektorService.class)),
+            new MultiKonnektorService.Options(2, Duration.ofSeconds(30), null),
+            Clock.systemUTC());
+    var pinCache = mock(PinCachingKonnektorService.class);
+    var client = new KonnektorClient(pinCache, konnektors, null, pinCache, null);
+
+    // When
+    client
+        .cardEventListener(1)
+        .accept(new CardEvent(CardEvent.Type.CARD_REMOVED, "CARD/REMOVED", "SMC-B-1", Map.of()));
+
+    // Then
+    verify(pinCache).onCardEvent(argThat(e -> "k1/SMC-B-1".equals(e.cardHandle())));
+  }
+
+  @Test
+  void close_shouldStopCardPollingAndHealthChecks() {
+
+    // Given
+    var konnektors = mock(MultiKonnektorService.class);
+    var cardCache = mock(CachingKonnektorService.class);
+    var client = new KonnektorClient(cardCache, konnektors, null, null, cardCache);
+
+    // When
+    client.close();
+
+    // Then
+    verify(cardCache).close();
+    verify(konnektors).close();
+  }
+
+  @Test
+  void withPriority_shouldLetInteractiveSignaturesOvertakeBulkJob() throws Exception {
+
+    // Given
+    var konnektor = mock(KonnektorService.class);
+    var cardReleased = new CountDownLatch(1);
+    var signedInOrder = new CopyOnWriteArrayList<Byte>();
+    when(konnektor.authSignRsaPss(any(), any()))
+        .then(
+            i -> {
+              byte[] input = i.getArgument(1);
+              signedInOrder.add(input[0]);
+              assertTrue(cardReleased.await(5, TimeUnit.SECONDS));
+              return input;
+            });
+    var scheduler =
+        new SigningScheduler(konnektor, new SigningScheduler.Options(1, Duration.ofSeconds(5)));
+    var client = new KonnektorClient(scheduler, null, scheduler, null, null);
+    var bulkJob = client.withPriority(SigningPriority.BULK);
+
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var first = executor.submit(() -> bulkJob.authSignRsaPss(CARD, new byte[] {1}));
+      while (signedInOrder.isEmpty()) {
+        Thread.sleep(1);
+      }
+      var second = executor.submit(() -> bulkJob.authSignRsaPss(CARD, new byte[] {2}));
+      awaitQueued(scheduler, 1);
+      var interactive = executor.submit(() -> client.authSignRsaPss(CARD, new byte[] {3}));
+      awaitQueued(scheduler, 2);
+
+      // When
+      cardReleased.countDown();
+
+      // Then
+      first.get(5, TimeUnit.SECONDS);
+      second.get(5, TimeUnit.SECONDS);
+      interactive.get(5, TimeUnit.SECONDS);
+    }
+    assertEquals(List.of((byte) 1, (byte) 3, (byte) 2), signedInOrder);
+  }
+
+  @Test
+  void withPriority_shouldReturnClientWithoutSigningQueue() {
+
+    // Given
+    var client = new KonnektorClient(mock(KonnektorService.class), null, null, null, null);
+
+    // When
+    var bulkJob = client.withPriority(SigningPriority.BULK);
+
+    // Then
+    assertSame(client, bulkJob);
+  }
+
+  private static void awaitQueued(SigningScheduler scheduler, int count)
+      throws InterruptedException {
+    while (scheduler.queued(CARD) < count) {
+      Thread.sleep(1);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.oviva.epa.client.events.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.oviva.epa.client.model.CardEvent;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CetpReceiverTest {
+
+  private final BlockingQueue<CardEvent> received = new LinkedBlockingQueue<>();
+  private CetpReceiver receiver;
+
+  @BeforeEach
+  void setUp() {
+    receiver = new CetpReceiver(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), null);
+    receiver.addListener(received::add);
+  }
+
+  @AfterEach
+  void tearDown() {
+    receiver.close();
+  }
+
+  @Test
+  void receive_shouldPublishTypedEvents() throws Exception {
+
+    // Given
+    try (var socket = connect();
+        var out = new DataOutputStream(socket.getOutputStream())) {
+
+      // When
+      writeFrame(out, event("CARD/INSERTED", "SMC-B-1"));
+      writeFrame(out, event("CARD/PIN/VERIFY_FINISHED", "SMC-B-1"));
+      out.flush();
+
+      // Then
+      var inserted = received.poll(5, TimeUnit.SECONDS);
+      assertNotNull(inserted);
+      assertEquals(CardEvent.Type.CARD_INSERTED, inserted.type());
+      assertEquals("SMC-B-1", inserted.cardHandle());
+      assertEquals("SMC-B", inserted.parameters().get("CardType"));
+
+      var verified = received.poll(5, TimeUnit.SECONDS);
+      assertNotNull(verified);
+      assertEquals(CardEvent.Type.PIN_VERIFIED, verified.type());
+    }
+  }
+
+  @Test
+  void receive_shouldDropConnectionWithoutCetpFraming() throws Exception {
+
+    // Given
+    try (var socket = connect();
+        var out = new DataOutputStream(socket.getOutputStream())) {
+
+      // When
+      out.write("GET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+
+      // Then
+      assertEquals(-1, socket.getInputStream().read());
+      assertTrue(received.isEmpty());
+    }
+  }
+
+  private Socket connect() throws IOException {
+    var socket = new Socket();
+    socket.connect(receiver.localAddress(), 5_000);
+    socket.setSoTimeout(5_000);
+    return socket;
+  }
+
+  private static void writeFrame(DataOutputStream out, String xml) throws IOException {
+    var payload = xml.getBytes(StandardCharsets.UTF_8);
+    out.write("CETP".getBytes(StandardCharsets.US_ASCII));
+    out.writeInt(payload.length);
+    out.write(payload);
+  }
+
+  private static String event(String topic, String cardHandle) {
+    return """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <EVT:Event xmlns:EVT="http://ws.gematik.de/conn/EventService/v7.2">
+          <EVT:Topic>%s</EVT:Topic>
+          <EVT:Type>Operation</EVT:Type>
+          <EVT:Severity>Info</EVT:Severity>
+          <EVT:SubscriptionID>sub-1</EVT:SubscriptionID>
+          <EVT:Message>
+            <EVT:Parameter><EVT:Key>CardHandle</EVT:Key><EVT:Value>%s</EVT:Value></EVT:Parameter>
+            <EVT:Parameter><EVT:Key>CardType</EVT:Key><EVT:Value>SMC-B</EVT:Value></EVT:Parameter>
+          </EVT:Message>
+        </EVT:Event>
+        """
+        .formatted(topic, cardHandle)
+        .strip();
+  }
+}
@@ -0,0 +1,126 @@
+package com.oviva.epa.client.events.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.internal.svc.EventServiceClient;
+import com.oviva.epa.client.internal.svc.model.KonnektorContext;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.GregorianCalendar;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import telematik.ws.conn.eventservice.wsdl.v6_1.EventServicePortType;
+import telematik.ws.conn.eventservice.xsd.v6_1.RenewSubscriptionsResponse;
+import telematik.ws.conn.eventservice.xsd.v6_1.Subscribe;
+import telematik.ws.conn.eventservice.xsd.v6_1.SubscribeResponse;
+import telematik.ws.conn.eventservice.xsd.v6_1.SubscriptionRenewal;
+import telematik.ws.conn.eventservice.xsd.v6_1.Unsubscribe;
+
+class EventSubscriptionTest {
+
+  private static final String EVENT_TO = "cetp://10.0.0.5:8585";
+
+  private EventServicePortType port;
+  private EventSubscription subscription;
+
+  @BeforeEach
+  void setUp() {
+    port = mock(EventServicePortType.class);
+    var client = new EventServiceClient(port, new KonnektorContext("m", "c", "a", "admin"));
+    subscription =
+        new EventSubscription(client, EVENT_TO, "CARD", Duration.ofMinutes(1), Clock.systemUTC());
+  }
+
+  @Test
+  void subscribe_shouldRenewBeforeExpiryAndUnsubscribeOnClose() throws Exception {
+
+    // Given
+    when(port.subscribe(any()))
+        .thenReturn(
+            new SubscribeResponse()
+                .withSubscriptionID("sub-1")
+                // due right away, renewed after the minimum delay
+                .withTerminationTime(at(Instant.now().plusSeconds(30))));
+    var renewed = new CountDownLatch(1);
+    when(port.renewSubscriptions(any()))
+        .then(
+            i -> {
+              renewed.countDown();
+              return renewal("sub-1");
+            });
+
+    // When
+    subscription.subscribe();
+
+    // Then
+    var subscribe = captureSubscribe();
+    assertEquals(EVENT_TO, subscribe.getSubscription().getEventTo());
+    assertEquals("CARD", subscribe.getSubscription().getTopic());
+
+    assertTrue(renewed.await(5, TimeUnit.SECONDS));
+    subscription.close();
+    verify(port).unsubscribe(argThat((Unsubscribe u) -> "sub-1".equals(u.getSubscriptionID())));
+    verify(port, times(1)).subscribe(any());
+  }
+
+  @Test
+  void renew_shouldSubscribeAgainWhenSubscriptionIsGone() {
+
+    // Given
+    when(port.subscribe(any()))
+        .thenReturn(
+            new SubscribeResponse()
+                .withSubscriptionID("sub-1")
+                .withTerminationTime(at(Instant.now().plusSeconds(30))))
+        .thenReturn(
+            new SubscribeResponse()
+                .withSubscriptionID("sub-2")
+                .withTerminationTime(at(Instant.now().plusSeconds(3600))));
+    when(port.renewSubscriptions(any())).thenReturn(new RenewSubscriptionsResponse());
+
+    // When
+    subscription.subscribe();
+
+    // Then
+    assertTimeout(
+        Duration.ofSeconds(5),
+        () -> {
+          while (!"sub-2".equals(subscription.subscriptionId())) {
+            Thread.sleep(10);
+          }
+        });
+    verify(port, times(2)).subscribe(any());
+    verify(port).unsubscribe(argThat((Unsubscribe u) -> "sub-1".equals(u.getSubscriptionID())));
+    subscription.close();
+  }
+
+  private static RenewSubscriptionsResponse renewal(String subscriptionId) {
+    return new RenewSubscriptionsResponse()
+        .withSubscribeRenewals(
+            new RenewSubscriptionsResponse.SubscribeRenewals()
+                .withSubscriptionRenewal(
+                    new SubscriptionRenewal()
+                        .withSubscriptionID(subscriptionId)
+                        .withTerminationTime(at(Instant.now().plusSeconds(3600)))));
+  }
+
+  private Subscribe captureSubscribe() {
+    var captor = ArgumentCaptor.forClass(Subscribe.class);
+    verify(port, atLeastOnce()).subscribe(captor.capture());
+    return captor.getValue();
+  }
+
+  private static XMLGregorianCalendar at(Instant instant) {
+    var cal = GregorianCalendar.from(instant.atZone(ZoneOffset.UTC));
+    return DatatypeFactory.newDefaultInstance().newXMLGregorianCalendar(cal);
+  }
+}
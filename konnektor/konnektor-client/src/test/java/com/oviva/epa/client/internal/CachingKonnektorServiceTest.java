@@ -0,0 +1,139 @@
+package com.oviva.epa.client.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.CardEvent;
+import com.oviva.epa.client.model.KonnektorException;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SmcbCard;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CachingKonnektorServiceTest {
+
+  private KonnektorService delegate;
+  private CachingKonnektorService service;
+
+  @BeforeEach
+  void setUp() {
+    delegate = mock(KonnektorService.class);
+    service = new CachingKonnektorService(delegate, null);
+  }
+
+  @Test
+  void listSmcbCards_shouldReadInventoryOnce() {
+
+    // Given
+    when(delegate.listSmcbCards()).thenReturn(List.of(card("SMC-B-1")));
+
+    // When
+    var first = service.listSmcbCards();
+    var second = service.listSmcbCards();
+
+    // Then
+    assertEquals(first, second);
+    verify(delegate, times(1)).listSmcbCards();
+    assertEquals(new CachingKonnektorService.CacheStats(1, 1, 0), service.stats());
+  }
+
+  @Test
+  void checkForChanges_shouldReloadWhenCardWasPluggedIn() {
+
+    // Given
+    when(delegate.listSmcbCards())
+        .thenReturn(List.of(card("SMC-B-1")))
+        .thenReturn(List.of(card("SMC-B-1"), card("SMC-B-2")));
+    when(delegate.listSmcbCardHandles()).thenReturn(List.of("SMC-B-1", "SMC-B-2"));
+    service.listSmcbCards();
+
+    // When
+    service.checkForChanges();
+    var cards = service.listSmcbCards();
+
+    // Then
+    assertEquals(2, cards.size());
+    verify(delegate, times(2)).listSmcbCards();
+  }
+
+  @Test
+  void checkForChanges_shouldKeepInventoryWhenCardsAreUnchanged() {
+
+    // Given
+    when(delegate.listSmcbCards()).thenReturn(List.of(card("SMC-B-1")));
+    when(delegate.listSmcbCardHandles()).thenReturn(List.of("SMC-B-1"));
+    service.listSmcbCards();
+
+    // When
+    service.checkForChanges();
+    service.listSmcbCards();
+
+    // Then
+    verify(delegate, times(1)).listSmcbCards();
+    assertEquals(0, service.stats().invalidations());
+  }
+
+  @Test
+  void checkForChanges_shouldReloadWhenPinWasVerified() {
+
+    // Given
+    when(delegate.listSmcbCards())
+        .thenReturn(List.of(card("SMC-B-1", false)))
+        .thenReturn(List.of(card("SMC-B-1", true)));
+    when(delegate.listSmcbCardHandles()).thenReturn(List.of("SMC-B-1"));
+    when(delegate.verifySmcPin("SMC-B-1")).thenReturn(PinStatus.VERIFIED);
+    service.listSmcbCards();
+
+    // When
+    service.checkForChanges();
+    var cards = service.listSmcbCards();
+
+    // Then
+    assertTrue(cards.get(0).pinVerified());
+    assertEquals(1, service.stats().invalidations());
+  }
+
+  @Test
+  void onCardEvent_shouldReloadWhenPinWasVerified() {
+
+    // Given
+    when(delegate.listSmcbCards())
+        .thenReturn(List.of(card("SMC-B-1", false)))
+        .thenReturn(List.of(card("SMC-B-1", true)));
+    service.listSmcbCards();
+
+    // When
+    service.onCardEvent(
+        new CardEvent(CardEvent.Type.PIN_VERIFIED, "CARD/PIN/VERIFY_FINISHED", "SMC-B-1", null));
+    var cards = service.listSmcbCards();
+
+    // Then
+    assertTrue(cards.get(0).pinVerified());
+  }
+
+  @Test
+  void listSmcbCards_shouldNotCacheFailures() {
+
+    // Given
+    when(delegate.listSmcbCards())
+        .thenThrow(new KonnektorException("down"))
+        .thenReturn(List.of(card("SMC-B-1")));
+
+    // When
+    assertThrows(KonnektorException.class, service::listSmcbCards);
+    var cards = service.listSmcbCards();
+
+    // Then
+    assertEquals(1, cards.size());
+  }
+
+  private static SmcbCard card(String handle) {
+    return card(handle, true);
+  }
+
+  private static SmcbCard card(String handle, boolean pinVerified) {
+    return new SmcbCard(handle, "5-2-KH-1", "Praxis", null, null, pinVerified);
+  }
+}
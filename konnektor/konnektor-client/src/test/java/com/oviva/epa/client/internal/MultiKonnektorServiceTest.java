@@ -0,0 +1,144 @@
+package com.oviva.epa.client.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.MutableClock;
+import com.oviva.epa.client.model.KonnektorException;
+import com.oviva.epa.client.model.SmcbCard;
+import jakarta.xml.ws.WebServiceException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import telematik.ws.conn.certificateservice.wsdl.v6_0.FaultMessage;
+
+class MultiKonnektorServiceTest {
+
+  private static final byte[] DATA = new byte[] {42};
+
+  private KonnektorService k0;
+  private KonnektorService k1;
+  private final MutableClock clock = new MutableClock(Instant.parse("2025-01-10T10:00:00Z"));
+
+  @BeforeEach
+  void setUp() {
+    k0 = mock(KonnektorService.class);
+    k1 = mock(KonnektorService.class);
+  }
+
+  @Test
+  void listSmcbCards_shouldQualifyHandlesAndRouteToOwningKonnektor() {
+
+    // Given
+    when(k0.listSmcbCards()).thenReturn(List.of(card("SMC-B-1", mock(X509Certificate.class))));
+    when(k1.listSmcbCards()).thenReturn(List.of(card("SMC-B-1", mock(X509Certificate.class))));
+    when(k1.authSignRsaPss("SMC-B-1", DATA)).thenReturn(new byte[] {1});
+
+    var service = newService(new MultiKonnektorService.Options(2, Duration.ofSeconds(30), null));
+
+    // When
+    var cards = service.listSmcbCards();
+    var signature = service.authSignRsaPss(cards.get(1).handle(), DATA);
+
+    // Then
+    assertEquals(
+        List.of("k0/SMC-B-1", "k1/SMC-B-1"), cards.stream().map(SmcbCard::handle).toList());
+    assertArrayEquals(new byte[] {1}, signature);
+    verify(k0, never()).authSignRsaPss(any(), any());
+  }
+
+  @Test
+  void authSignRsaPss_shouldFailOverToSameCardOnOtherKonnektor() {
+
+    // Given
+    var certificate = mock(X509Certificate.class);
+    when(k0.listSmcbCards()).thenReturn(List.of(card("SMC-B-1", certificate)));
+    when(k1.listSmcbCards()).thenReturn(List.of(card("SMC-B-7", certificate)));
+    when(k0.authSignRsaPss(any(), any()))
+        .thenThrow(new KonnektorException("down", new WebServiceException("connect timed out")));
+    when(k1.authSignRsaPss("SMC-B-7", DATA)).thenReturn(new byte[] {7});
+
+    var service = newService(new MultiKonnektorService.Options(1, Duration.ofSeconds(30), null));
+    service.listSmcbCards();
+
+    // When
+    for (int i = 0; i < 5; i++) {
+      var signature = service.authSignRsaPss("k0/SMC-B-1", DATA);
+
+      // Then
+      assertArrayEquals(new byte[] {7}, signature);
+    }
+    verify(k1, times(5)).authSignRsaPss("SMC-B-7", DATA);
+  }
+
+  @Test
+  void authSignRsaPss_shouldNotFailOverOnFault() {
+
+    // Given
+    var certificate = mock(X509Certificate.class);
+    when(k0.listSmcbCards()).thenReturn(List.of(card("SMC-B-1", certificate)));
+    when(k1.listSmcbCards()).thenReturn(List.of(card("SMC-B-7", certificate)));
+    var fault = new FaultMessage("4085: PIN not verified");
+    var mapped = new KonnektorException("request failed: " + fault.getMessage(), fault);
+    when(k0.authSignRsaPss(any(), any())).thenThrow(mapped);
+    when(k1.authSignRsaPss(any(), any())).thenThrow(mapped);
+
+    var service = newService(new MultiKonnektorService.Options(1, Duration.ofSeconds(30), null));
+    service.listSmcbCards();
+
+    // When
+    var e =
+        assertThrows(KonnektorException.class, () -> service.authSignRsaPss("k0/SMC-B-1", DATA));
+
+    // Then
+    assertSame(fault, e.getCause());
+    assertEquals(2, service.availableCount());
+    var attempts =
+        mockingDetails(k0).getInvocations().size() + mockingDetails(k1).getInvocations().size();
+    // one listSmcbCards per Konnektor and a single signing attempt
+    assertEquals(3, attempts);
+  }
+
+  @Test
+  void checkHealth_shouldReadmitKonnektorAfterEjection() {
+
+    // Given
+    when(k0.listSmcbCards())
+        .thenThrow(new KonnektorException("down", new WebServiceException("connection refused")))
+        .thenReturn(List.of(card("SMC-B-1", mock(X509Certificate.class))));
+    when(k1.listSmcbCards()).thenReturn(List.of());
+
+    var service =
+        newService(
+            new MultiKonnektorService.Options(1, Duration.ofSeconds(30), Duration.ofHours(1)));
+    service.listSmcbCards();
+    assertEquals(1, service.availableCount());
+
+    // When
+    service.checkHealth();
+    var stillEjected = service.availableCount();
+    clock.advance(Duration.ofSeconds(31));
+    service.checkHealth();
+
+    // Then
+    assertEquals(1, stillEjected);
+    assertEquals(2, service.availableCount());
+    assertEquals(1, service.listSmcbCards().size());
+    service.close();
+  }
+
+  private MultiKonnektorService newService(MultiKonnektorService.Options options) {
+    return new MultiKonnektorService(
+        List.<Supplier<KonnektorService>>of(() -> k0, () -> k1), options, clock);
+  }
+
+  private static SmcbCard card(String handle, X509Certificate certificate) {
+    return new SmcbCard(handle, "5-2-KH-1", "Praxis", certificate, null, true);
+  }
+}
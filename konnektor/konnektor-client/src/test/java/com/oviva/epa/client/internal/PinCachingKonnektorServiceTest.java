@@ -0,0 +1,107 @@
+package com.oviva.epa.client.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.MutableClock;
+import com.oviva.epa.client.model.KonnektorException;
+import com.oviva.epa.client.model.PinStatus;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PinCachingKonnektorServiceTest {
+
+  private static final String HANDLE = "SMC-B-1";
+  private static final Instant NOW = Instant.parse("2025-01-10T10:00:00Z");
+
+  private KonnektorService delegate;
+
+  @BeforeEach
+  void setUp() {
+    delegate = mock(KonnektorService.class);
+  }
+
+  @Test
+  void verifySmcPin_shouldAnswerFromCacheWithinTtl() {
+
+    // Given
+    when(delegate.verifySmcPin(HANDLE)).thenReturn(PinStatus.VERIFIED);
+    var service = newService(NOW);
+
+    // When
+    service.verifySmcPin(HANDLE);
+    var status = service.verifySmcPin(HANDLE);
+
+    // Then
+    assertEquals(PinStatus.VERIFIED, status);
+    verify(delegate, times(1)).verifySmcPin(HANDLE);
+    assertEquals(1, service.pinChecksAvoided());
+  }
+
+  @Test
+  void verifySmcPin_shouldAskAgainAfterTtl() {
+
+    // Given
+    when(delegate.verifySmcPin(HANDLE)).thenReturn(PinStatus.VERIFIED);
+    var clock = new MutableClock(NOW);
+    var service = new PinCachingKonnektorService(delegate, Duration.ofSeconds(30), clock);
+    service.verifySmcPin(HANDLE);
+
+    // When
+    clock.advance(Duration.ofSeconds(31));
+    service.verifySmcPin(HANDLE);
+
+    // Then
+    verify(delegate, times(2)).verifySmcPin(HANDLE);
+    assertEquals(0, service.pinChecksAvoided());
+  }
+
+  @Test
+  void verifySmcPin_shouldNotCacheUnverifiedPin() {
+
+    // Given
+    when(delegate.verifySmcPin(HANDLE))
+        .thenReturn(PinStatus.VERIFIABLE)
+        .thenReturn(PinStatus.VERIFIED);
+    var service = newService(NOW);
+
+    // When
+    var first = service.verifySmcPin(HANDLE);
+    var second = service.verifySmcPin(HANDLE);
+
+    // Then
+    assertEquals(PinStatus.VERIFIABLE, first);
+    assertEquals(PinStatus.VERIFIED, second);
+    assertEquals(0, service.pinChecksAvoided());
+  }
+
+  @Test
+  void authSignRsaPss_shouldDropCachedPinOnFailure() {
+
+    // Given
+    when(delegate.verifySmcPin(HANDLE)).thenReturn(PinStatus.VERIFIED);
+    when(delegate.authSignRsaPss(eq(HANDLE), any())).thenThrow(new KonnektorException("fault"));
+    var service = newService(NOW);
+    service.verifySmcPin(HANDLE);
+
+    // When
+    assertThrows(KonnektorException.class, () -> service.authSignRsaPss(HANDLE, new byte[] {1}));
+    service.verifySmcPin(HANDLE);
+
+    // Then
+    verify(delegate, times(2)).verifySmcPin(HANDLE);
+  }
+
+  private PinCachingKonnektorService newService(Instant now) {
+    return new PinCachingKonnektorService(delegate, Duration.ofSeconds(30), clockAt(now));
+  }
+
+  private static Clock clockAt(Instant instant) {
+    return Clock.fixed(instant, ZoneOffset.UTC);
+  }
+}
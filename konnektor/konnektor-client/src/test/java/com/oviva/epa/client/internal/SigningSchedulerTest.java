@@ -0,0 +1,149 @@
+package com.oviva.epa.client.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.KonnektorException;
+import com.oviva.epa.client.model.SigningPriority;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SigningSchedulerTest {
+
+  private static final String CARD = "SMC-B-1";
+  private static final Duration MAX_QUEUE_TIME = Duration.ofSeconds(5);
+
+  private KonnektorService delegate;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  // the card blocks until released
+  private final CountDownLatch cardReleased = new CountDownLatch(1);
+  private final List<Byte> signedInOrder = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    delegate = mock(KonnektorService.class);
+    when(delegate.authSignRsaPss(any(), any()))
+        .then(
+            i -> {
+              byte[] input = i.getArgument(1);
+              signedInOrder.add(input[0]);
+              assertTrue(cardReleased.await(5, TimeUnit.SECONDS));
+              return input;
+            });
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void authSignRsaPss_shouldLimitSignaturesInFlightPerCard() throws Exception {
+
+    // Given
+    var scheduler = new SigningScheduler(delegate, new SigningScheduler.Options(1, MAX_QUEUE_TIME));
+    var inFlight = new AtomicInteger();
+    var maxInFlight = new AtomicInteger();
+    doAnswer(
+            i -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              Thread.sleep(10);
+              inFlight.decrementAndGet();
+              return new byte[] {1};
+            })
+        .when(delegate)
+        .authSignRsaPss(any(), any());
+
+    // When
+    var signatures =
+        List.of(sign(scheduler, 1), sign(scheduler, 2), sign(scheduler, 3), sign(scheduler, 4));
+    for (var s : signatures) {
+      s.get(5, TimeUnit.SECONDS);
+    }
+
+    // Then
+    assertEquals(1, maxInFlight.get());
+    var stats = scheduler.stats();
+    assertEquals(4, stats.signed());
+    assertEquals(0, stats.rejected());
+    assertTrue(stats.averageServiceTime().toMillis() >= 10);
+    assertTrue(stats.maxQueueTime().toMillis() >= 10);
+  }
+
+  @Test
+  void authSignRsaPss_shouldServeInteractiveSignaturesBeforeBulk() throws Exception {
+
+    // Given
+    var scheduler = new SigningScheduler(delegate, new SigningScheduler.Options(1, MAX_QUEUE_TIME));
+    var first = sign(scheduler, 1);
+    awaitSigning(1);
+
+    var bulk = sign(scheduler.withPriority(SigningPriority.BULK), 2);
+    awaitQueued(scheduler, 1);
+    var interactive = sign(scheduler, 3);
+    awaitQueued(scheduler, 2);
+
+    // When
+    cardReleased.countDown();
+
+    // Then
+    first.get(5, TimeUnit.SECONDS);
+    bulk.get(5, TimeUnit.SECONDS);
+    interactive.get(5, TimeUnit.SECONDS);
+    assertEquals(List.of((byte) 1, (byte) 3, (byte) 2), signedInOrder);
+  }
+
+  @Test
+  void authSignRsaPss_shouldRejectSignatureWaitingTooLong() throws Exception {
+
+    // Given
+    var scheduler =
+        new SigningScheduler(delegate, new SigningScheduler.Options(1, Duration.ofMillis(50)));
+    var first = sign(scheduler, 1);
+    awaitSigning(1);
+
+    // When
+    var e =
+        assertThrows(
+            KonnektorException.class, () -> scheduler.authSignRsaPss(CARD, new byte[] {2}));
+
+    // Then
+    assertTrue(e.getMessage().contains(CARD));
+    assertEquals(1, scheduler.stats().rejected());
+    assertEquals(0, scheduler.queued(CARD));
+
+    cardReleased.countDown();
+    first.get(5, TimeUnit.SECONDS);
+    verify(delegate, times(1)).authSignRsaPss(any(), any());
+  }
+
+  private Future<byte[]> sign(SigningScheduler scheduler, int input) {
+    return executor.submit(() -> scheduler.authSignRsaPss(CARD, new byte[] {(byte) input}));
+  }
+
+  private void awaitSigning(int count) throws InterruptedException {
+    while (signedInOrder.size() < count) {
+      Thread.sleep(1);
+    }
+  }
+
+  private static void awaitQueued(SigningScheduler scheduler, int count)
+      throws InterruptedException {
+    while (scheduler.queued(CARD) < count) {
+      Thread.sleep(1);
+    }
+  }
+}
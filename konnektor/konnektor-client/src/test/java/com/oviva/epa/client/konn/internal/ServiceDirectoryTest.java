@@ -0,0 +1,167 @@
+package com.oviva.epa.client.konn.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.oviva.epa.client.MutableClock;
+import com.oviva.epa.client.model.KonnektorException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ServiceDirectoryTest {
+
+  private static final String ETAG = "\"v1\"";
+
+  private final MutableClock clock = new MutableClock(Instant.parse("2025-01-10T10:00:00Z"));
+  private final RecordingFetcher fetcher = new RecordingFetcher();
+
+  @TempDir Path tempDir;
+
+  @Test
+  void endpoints_shouldFetchDirectoryOncePerRefreshInterval() {
+
+    // Given
+    var directory = newDirectory(null);
+
+    // When
+    var first = directory.endpoints();
+    var second = directory.endpoints();
+
+    // Then
+    assertSame(first, second);
+    assertEquals(1, directory.fetches());
+    assertEquals(
+        URI.create("https://konnektor/ws/EventService"), first.endpoint("EventService", "7.2"));
+  }
+
+  @Test
+  void endpoints_shouldRevalidateWithEtagAfterRefreshInterval() {
+
+    // Given
+    var directory = newDirectory(null);
+    var first = directory.endpoints();
+    fetcher.next = new ServiceDirectory.Fetched(304, null, ETAG, null);
+
+    // When
+    clock.advance(Duration.ofMinutes(11));
+    var revalidated = directory.endpoints();
+
+    // Then
+    assertSame(first, revalidated);
+    assertEquals(List.of("null", ETAG), fetcher.etags);
+  }
+
+  @Test
+  void endpoints_shouldUseCacheFileWhenKonnektorIsUnreachable() {
+
+    // Given
+    var file = tempDir.resolve("connector.sds.cache");
+    newDirectory(file).endpoints();
+
+    fetcher.failing = true;
+
+    // When
+    var restarted = newDirectory(file);
+    var endpoints = restarted.endpoints();
+
+    // Then
+    assertEquals(
+        URI.create("https://konnektor/ws/CardService"),
+        endpoints.endpoint("CardService", "8.1.2", "8"));
+    assertEquals(ETAG, fetcher.etags.get(fetcher.etags.size() - 1));
+  }
+
+  @Test
+  void endpoints_shouldFailWithoutAnyDirectory() {
+
+    // Given
+    fetcher.failing = true;
+    var directory = newDirectory(null);
+
+    // When / Then
+    assertThrows(KonnektorException.class, directory::endpoints);
+  }
+
+  @Test
+  void endpoint_shouldFallBackToOlderVersionPrefix() {
+
+    // Given
+    var endpoints = newDirectory(null).endpoints();
+
+    // When
+    var uri = endpoints.endpoint("AuthSignatureService", "7.4.1", "7");
+
+    // Then
+    assertEquals(URI.create("https://konnektor/ws/AuthSignatureService"), uri);
+    assertThrows(IllegalArgumentException.class, () -> endpoints.endpoint("SignatureService", "7"));
+  }
+
+  private ServiceDirectory newDirectory(Path cacheFile) {
+    return new ServiceDirectory(fetcher, Duration.ofMinutes(10), cacheFile, true, clock);
+  }
+
+  private static class RecordingFetcher implements ServiceDirectory.Fetcher {
+
+    private final List<String> etags = new ArrayList<>();
+    private ServiceDirectory.Fetched next =
+        new ServiceDirectory.Fetched(200, SDS.getBytes(StandardCharsets.UTF_8), ETAG, null);
+    private boolean failing;
+
+    @Override
+    public ServiceDirectory.Fetched fetch(String etag, String lastModified) {
+      etags.add(String.valueOf(etag));
+      if (failing) {
+        throw new KonnektorException("konnektor unreachable");
+      }
+      return next;
+    }
+  }
+
+  private static final String SDS =
+      """
+      <?xml version="1.0" encoding="UTF-8"?>
+      <CONN:ConnectorServices xmlns:CONN="http://ws.gematik.de/conn/ServiceDirectory/v3.1"
+          xmlns:SI="http://ws.gematik.de/conn/ServiceInformation/v2.0"
+          xmlns:PI="http://ws.gematik.de/int/version/ProductInformation/v1.1">
+        <CONN:TLSMandatory>true</CONN:TLSMandatory>
+        <CONN:ClientAutMandatory>false</CONN:ClientAutMandatory>
+        <SI:ServiceInformation>
+          <SI:Service Name="EventService">
+            <SI:Abstract>EventService</SI:Abstract>
+            <SI:Versions>
+              <SI:Version Version="7.2.0">
+                <SI:Abstract>EventService</SI:Abstract>
+                <SI:EndpointTLS Location="https://konnektor/ws/EventService"/>
+              </SI:Version>
+            </SI:Versions>
+          </SI:Service>
+          <SI:Service Name="CardService">
+            <SI:Abstract>CardService</SI:Abstract>
+            <SI:Versions>
+              <SI:Version Version="8.1.2">
+                <SI:Abstract>CardService</SI:Abstract>
+                <SI:EndpointTLS Location="https://konnektor/ws/CardService"/>
+              </SI:Version>
+            </SI:Versions>
+          </SI:Service>
+          <SI:Service Name="AuthSignatureService">
+            <SI:Abstract>AuthSignatureService</SI:Abstract>
+            <SI:Versions>
+              <SI:Version Version="7.4.0">
+                <SI:Abstract>AuthSignatureService</SI:Abstract>
+                <SI:Endpoint Location="http://konnektor/ws/AuthSignatureService"/>
+                <SI:EndpointTLS Location="https://konnektor/ws/AuthSignatureService"/>
+              </SI:Version>
+            </SI:Versions>
+          </SI:Service>
+        </SI:ServiceInformation>
+      </CONN:ConnectorServices>
+      """
+          .strip();
+}
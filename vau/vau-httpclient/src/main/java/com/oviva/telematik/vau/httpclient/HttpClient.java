@@ -2,6 +2,7 @@ package com.oviva.telematik.vau.httpclient;
 
 import com.oviva.telematik.vau.httpclient.internal.HttpCodec;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
@@ -10,6 +11,16 @@ public interface HttpClient {
 
   Response call(Request req);
 
+  /**
+   * Same as {@link #call(Request)}, though implementations may return the body as a view into the
+   * received data instead of copying it.
+   */
+  default BufferedResponse callBuffered(Request req) {
+    var res = call(req);
+    var body = res.body() != null ? ByteBuffer.wrap(res.body()) : ByteBuffer.allocate(0);
+    return new BufferedResponse(res.status(), res.headers(), body);
+  }
+
   record Request(URI uri, String method, List<Header> headers, byte[] body) {
     @Override
     public String toString() {
@@ -19,6 +30,8 @@ public interface HttpClient {
 
   record Response(int status, List<Header> headers, byte[] body) {}
 
+  record BufferedResponse(int status, List<Header> headers, ByteBuffer body) {}
+
   record Header(String name, String value) {}
 
   class HttpException extends RuntimeException {
@@ -20,6 +20,8 @@ public class VauClientFactoryBuilder {
 
   private String xUserAgent;
 
+  private VauMetrics metrics = VauMetrics.NOOP;
+
   private HttpClient outerClient =
       JavaHttpClient.from(
           java.net.http.HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build());
@@ -46,6 +48,11 @@ public class VauClientFactoryBuilder {
     return this;
   }
 
+  public VauClientFactoryBuilder metrics(VauMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
   public VauClientFactoryBuilder withInsecureTrustValidator() {
     this.trustValidator = (a, b, c, d) -> {};
     return this;
@@ -70,6 +77,10 @@ public class VauClientFactoryBuilder {
       throw new IllegalArgumentException("xUserAgent missing");
     }
 
+    if (metrics == null) {
+      throw new IllegalArgumentException("metrics missing");
+    }
+
     var userAgentHeaders =
         List.of(
             new HttpClient.Header("X-Useragent", xUserAgent),
@@ -78,6 +89,6 @@ public class VauClientFactoryBuilder {
 
     var clientFactory =
         new SignedPublicKeysTrustValidatorFactory(isPu, outerClient, trustValidator);
-    return new ConnectionFactory(outerClient, xUserAgent, clientFactory);
+    return new ConnectionFactory(outerClient, xUserAgent, clientFactory, metrics);
   }
 }
@@ -0,0 +1,24 @@
+package com.oviva.telematik.vau.httpclient;
+
+import java.net.URI;
+import java.time.Duration;
+
+/** Hooks to instrument the VAU transport, all methods must be thread-safe and non-blocking. */
+public interface VauMetrics {
+
+  VauMetrics NOOP = new VauMetrics() {};
+
+  default void handshakeCompleted(URI vauUri, Duration latency) {}
+
+  default void handshakeFailed(URI vauUri) {}
+
+  /**
+   * @param plaintextBytes size of the inner HTTP request before encryption
+   */
+  default void encrypted(int plaintextBytes) {}
+
+  /**
+   * @param plaintextBytes size of the inner HTTP response after decryption
+   */
+  default void decrypted(int plaintextBytes) {}
+}
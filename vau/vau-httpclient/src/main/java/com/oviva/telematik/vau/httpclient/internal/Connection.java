@@ -1,6 +1,7 @@
 package com.oviva.telematik.vau.httpclient.internal;
 
 import com.oviva.telematik.vau.httpclient.HttpClient;
+import com.oviva.telematik.vau.httpclient.VauMetrics;
 import de.gematik.vau.lib.VauClientStateMachine;
 import java.net.URI;
 import java.util.List;
@@ -16,13 +17,24 @@ public class Connection {
   private final String cid;
   private final URI sessionUri;
   private final VauClientStateMachine client;
+  private final VauMetrics metrics;
 
   public Connection(
       HttpClient outerClient, String cid, URI sessionUri, VauClientStateMachine client) {
+    this(outerClient, cid, sessionUri, client, VauMetrics.NOOP);
+  }
+
+  public Connection(
+      HttpClient outerClient,
+      String cid,
+      URI sessionUri,
+      VauClientStateMachine client,
+      VauMetrics metrics) {
     this.outerClient = outerClient;
     this.cid = cid;
     this.sessionUri = sessionUri;
     this.client = client;
+    this.metrics = metrics;
   }
 
   public byte[] call(byte[] requestBody) {
@@ -30,6 +42,7 @@ public class Connection {
     // https://gemspec.gematik.de/docs/gemSpec/gemSpec_Krypt/latest/#A_24628-01
 
     var ciphertextRequest = client.encryptVauMessage(requestBody);
+    metrics.encrypted(requestBody.length);
     var req =
         new HttpClient.Request(
             sessionUri,
@@ -57,6 +70,8 @@ public class Connection {
           "bad status code %d != 200, cid=%s".formatted(res.status(), cid));
     }
     var ciphertextResponse = res.body();
-    return client.decryptVauMessage(ciphertextResponse);
+    var plaintextResponse = client.decryptVauMessage(ciphertextResponse);
+    metrics.decrypted(plaintextResponse.length);
+    return plaintextResponse;
   }
 }
@@ -6,10 +6,12 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.oviva.telematik.vau.httpclient.HttpClient;
 import com.oviva.telematik.vau.httpclient.VauClientFactory;
+import com.oviva.telematik.vau.httpclient.VauMetrics;
 import de.gematik.vau.lib.VauClientStateMachine;
 import de.gematik.vau.lib.exceptions.VauProtocolException;
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 import java.util.regex.Pattern;
 import org.slf4j.Logger;
@@ -28,6 +30,7 @@ public class ConnectionFactory implements VauClientFactory {
   private final List<HttpClient.Header> userAgentHeaders;
 
   private final SignedPublicKeysTrustValidatorFactory signedPublicKeysTrustValidatorFactory;
+  private final VauMetrics metrics;
 
   /**
    * @param xUserAgent as registered with Gematik, CLIENTID1234567890AB/2.1.12-45
@@ -36,12 +39,21 @@ public class ConnectionFactory implements VauClientFactory {
       HttpClient outerClient,
       String xUserAgent,
       SignedPublicKeysTrustValidatorFactory signedPublicKeysTrustValidatorFactory) {
+    this(outerClient, xUserAgent, signedPublicKeysTrustValidatorFactory, VauMetrics.NOOP);
+  }
+
+  public ConnectionFactory(
+      HttpClient outerClient,
+      String xUserAgent,
+      SignedPublicKeysTrustValidatorFactory signedPublicKeysTrustValidatorFactory,
+      VauMetrics metrics) {
     this.userAgentHeaders =
         List.of(
             new HttpClient.Header("X-Useragent", xUserAgent),
             new HttpClient.Header("User-Agent", xUserAgent));
     this.outerClient = new HeaderDecoratorHttpClient(outerClient, userAgentHeaders);
     this.signedPublicKeysTrustValidatorFactory = signedPublicKeysTrustValidatorFactory;
+    this.metrics = metrics;
   }
 
   /**
@@ -59,7 +71,15 @@ public class ConnectionFactory implements VauClientFactory {
       log.atDebug().log("starting VAU handshake");
     }
 
-    var result = handshake(vauUri.resolve("/VAU"), client);
+    var start = System.nanoTime();
+    HandshakeResult result;
+    try {
+      result = handshake(vauUri.resolve("/VAU"), client);
+    } catch (RuntimeException e) {
+      metrics.handshakeFailed(vauUri);
+      throw e;
+    }
+    metrics.handshakeCompleted(vauUri, Duration.ofNanos(System.nanoTime() - start));
 
     if (log.isDebugEnabled()) {
       log.atDebug().log("successful VAU handshake");
@@ -67,7 +87,7 @@ public class ConnectionFactory implements VauClientFactory {
 
     var innerClient =
         new VauHttpClientImpl(
-            new Connection(outerClient, result.cid(), result.sessionUri(), client));
+            new Connection(outerClient, result.cid(), result.sessionUri(), client, metrics));
 
     // user-agent headers: A_24677 & A_22470
     return new HeaderDecoratorHttpClient(innerClient, userAgentHeaders);
@@ -16,6 +16,15 @@ public class HeaderDecoratorHttpClient implements HttpClient {
 
   @Override
   public Response call(Request req) {
+    return delegate.call(decorate(req));
+  }
+
+  @Override
+  public BufferedResponse callBuffered(Request req) {
+    return delegate.callBuffered(decorate(req));
+  }
+
+  private Request decorate(Request req) {
 
     var decorated = new ArrayList<>(extraHeaders);
     if (req.headers() != null) {
@@ -27,8 +36,7 @@ public class HeaderDecoratorHttpClient implements HttpClient {
       }
     }
 
-    var newRequest = new Request(req.uri(), req.method(), decorated, req.body());
-    return delegate.call(newRequest);
+    return new Request(req.uri(), req.method(), decorated, req.body());
   }
 
   private boolean isExtraHeader(Header h) {
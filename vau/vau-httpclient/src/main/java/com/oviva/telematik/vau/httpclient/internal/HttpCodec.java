@@ -1,8 +1,9 @@
 package com.oviva.telematik.vau.httpclient.internal;
 
 import com.oviva.telematik.vau.httpclient.HttpClient;
-import java.io.*;
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -21,96 +22,112 @@ public class HttpCodec {
   private static final Pattern HEADER_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9-_]+");
 
   public static HttpClient.Response decode(byte[] bytes) {
+    var res = decodeBuffered(bytes);
+    var body = new byte[res.body().remaining()];
+    res.body().get(body);
+    return new HttpClient.Response(res.status(), res.headers(), body);
+  }
 
-    try (var reader =
-        new BufferedReader(new StringReader(new String(bytes, StandardCharsets.UTF_8)))) {
+  /**
+   * Decodes a response in place, only the status line and headers are copied. The body of the
+   * returned response is a read-only view into the given bytes.
+   */
+  public static HttpClient.BufferedResponse decodeBuffered(byte[] bytes) {
+    if (bytes == null) {
+      throw new HttpClient.HttpException("failed to decode response, no data");
+    }
 
-      // HTTP/1.1 404 Not Found
-      var statusLine = reader.readLine();
-      var status = parseStatusLine(statusLine);
-      var headers = parseHeaders(reader);
+    // HTTP/1.1 404 Not Found
+    var statusLineEnd = indexOfLineEnd(bytes, 0);
+    if (statusLineEnd < 0) {
+      throw new HttpClient.HttpException("failed to decode response, missing status line");
+    }
+    var status = parseStatusLine(line(bytes, 0, statusLineEnd));
 
-      var baos = new ByteArrayOutputStream();
-      try (var bodyReader = reader;
-          var w = new OutputStreamWriter(baos)) {
-        bodyReader.transferTo(w);
-      }
+    var headers = new ArrayList<HttpClient.Header>();
+    var contentLength = -1;
 
-      var body = baos.toByteArray();
-      if (body.length != headers.contentLength()) {
-        /* IMPORTANT: At least RISE connectors don't actually set the `content-length`
-         * Argumentation:
-         *
-         * Wie Sie selbst festgestellt haben fehlt im inneren HTTP der Content-Length Header.
-         * Aus unserer Sicht haben wir nicht die Möglichkeit, diesen Header in jeder Situation zu setzen,
-         * weil das Aktensystem oft mit großen Datenmengen hantieren muss. Die Content-Length hier vorab zu
-         * bestimmen wäre zu speicherintensiv.
-         *
-         * Clients müssen somit aus unserer Sicht jedenfalls mit der Situation eines fehlenden Content-Length
-         * Headers umgehen können. Sie nennen selbst die bestehenden Möglichkeiten für einen Server, wie er in diesem
-         * Fall den Clients ermöglichen muss, den Response trotzdem erfolgreich zu parsen.
-         *
-         * Keine dieser Möglichkeiten ist aus unserer Sicht auf das spezielle Design des inneren HTTP anwendbar.
-         * Allerdings liefern wir das äußere HTTP von verschlüsseltem Nachrichten stets mit einem chunked
-         * Transfer-Encoding aus, womit die Längeninformationen indirekt über das äußere HTTP zu Verfügung stehen.
-         * Auch wenn wir damit sicherlich nicht vollständig HTTP-konform sind,
-         * ist dies aus unserer Sicht ausreichend, damit Clients die verschlüsselten Nachrichten
-         * trotzdem erfolgreich parsen können.
-         */
-        //        throw new HttpClient.HttpException(
-        //            "content-length '%d' != actual length '%d'"
-        //                .formatted(headers.contentLength(), body.length));
+    var pos = statusLineEnd + 1;
+    while (true) {
+      var lineEnd = indexOfLineEnd(bytes, pos);
+      if (lineEnd < 0) {
+        throw new HttpClient.HttpException("failed to parse headers, unterminated header section");
+      }
+      var line = line(bytes, pos, lineEnd);
+      pos = lineEnd + 1;
+      if (line.isEmpty()) {
+        break;
       }
 
-      return new HttpClient.Response(status, headers.all(), body);
+      var h = parseHeader(line);
+      if ("Content-Length".equals(h.name())) {
+        // we've already set the content-length!
+        if (contentLength >= 0) {
+          throw new HttpClient.HttpException("content-length set more than once!");
+        }
+        contentLength = parseContentLength(h.value());
+      }
+      headers.add(h);
+    }
 
-    } catch (IOException e) {
-      throw new HttpClient.HttpException("failed to decode response", e);
+    var bodyLength = bytes.length - pos;
+    if (contentLength >= 0 && bodyLength != contentLength) {
+      /* IMPORTANT: At least RISE connectors don't actually set the `content-length`
+       * Argumentation:
+       *
+       * Wie Sie selbst festgestellt haben fehlt im inneren HTTP der Content-Length Header.
+       * Aus unserer Sicht haben wir nicht die Möglichkeit, diesen Header in jeder Situation zu setzen,
+       * weil das Aktensystem oft mit großen Datenmengen hantieren muss. Die Content-Length hier vorab zu
+       * bestimmen wäre zu speicherintensiv.
+       *
+       * Clients müssen somit aus unserer Sicht jedenfalls mit der Situation eines fehlenden Content-Length
+       * Headers umgehen können. Sie nennen selbst die bestehenden Möglichkeiten für einen Server, wie er in diesem
+       * Fall den Clients ermöglichen muss, den Response trotzdem erfolgreich zu parsen.
+       *
+       * Keine dieser Möglichkeiten ist aus unserer Sicht auf das spezielle Design des inneren HTTP anwendbar.
+       * Allerdings liefern wir das äußere HTTP von verschlüsseltem Nachrichten stets mit einem chunked
+       * Transfer-Encoding aus, womit die Längeninformationen indirekt über das äußere HTTP zu Verfügung stehen.
+       * Auch wenn wir damit sicherlich nicht vollständig HTTP-konform sind,
+       * ist dies aus unserer Sicht ausreichend, damit Clients die verschlüsselten Nachrichten
+       * trotzdem erfolgreich parsen können.
+       */
+      //        throw new HttpClient.HttpException(
+      //            "content-length '%d' != actual length '%d'"
+      //                .formatted(contentLength, bodyLength));
     }
+
+    var body = ByteBuffer.wrap(bytes, pos, bodyLength).slice().asReadOnlyBuffer();
+    return new HttpClient.BufferedResponse(status, headers, body);
   }
 
-  private static ResponseHeaders parseHeaders(BufferedReader reader) {
+  /** Returns the index of the next LF, lines may be terminated by either CRLF or a bare LF. */
+  private static int indexOfLineEnd(byte[] bytes, int from) {
+    for (int i = from; i < bytes.length; i++) {
+      if (bytes[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
 
-    var headers = new ArrayList<HttpClient.Header>();
-    var contentLength = -1;
+  private static String line(byte[] bytes, int from, int lfIndex) {
+    var end = lfIndex;
+    if (end > from && bytes[end - 1] == '\r') {
+      end--;
+    }
+    return new String(bytes, from, end - from, StandardCharsets.UTF_8);
+  }
 
+  private static int parseContentLength(String value) {
     try {
-      var line = reader.readLine();
-      while (line != null) {
-        if (line.isEmpty()) {
-          contentLength = contentLength == -1 ? 0 : contentLength;
-          return new ResponseHeaders(headers, contentLength);
-        }
-
-        var h = parseHeader(line);
-        if ("Content-Length".equals(h.name())) {
-
-          // we've already set the content-length!
-          if (contentLength >= 0) {
-            throw new HttpClient.HttpException("content-length set more than once!");
-          }
-
-          try {
-            var maybeContentLength = Integer.parseInt(h.value());
-            if (maybeContentLength >= 0) {
-              contentLength = maybeContentLength;
-            } else {
-              throw new HttpClient.HttpException(
-                  "invalid content-length: '%d'".formatted(maybeContentLength));
-            }
-          } catch (NumberFormatException e) {
-            throw new HttpClient.HttpException("invalid content-length: '%s'".formatted(h.value()));
-          }
-        }
-
-        headers.add(h);
-        line = reader.readLine();
+      var contentLength = Integer.parseInt(value);
+      if (contentLength < 0) {
+        throw new HttpClient.HttpException("invalid content-length: '%d'".formatted(contentLength));
       }
-    } catch (IOException e) {
-      throw new HttpClient.HttpException("failed to parse headers", e);
+      return contentLength;
+    } catch (NumberFormatException e) {
+      throw new HttpClient.HttpException("invalid content-length: '%s'".formatted(value));
     }
-
-    throw new IllegalStateException("unreachable");
   }
 
   private static HttpClient.Header parseHeader(String line) {
@@ -125,8 +142,6 @@ public class HttpCodec {
     return new HttpClient.Header(name, value);
   }
 
-  private record ResponseHeaders(List<HttpClient.Header> all, int contentLength) {}
-
   private static int parseStatusLine(String statusLine) {
     var splits = statusLine.split(" ", 3);
     if (splits.length != 3) {
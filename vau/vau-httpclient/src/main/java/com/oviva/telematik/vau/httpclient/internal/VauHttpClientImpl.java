@@ -23,6 +23,15 @@ public class VauHttpClientImpl implements HttpClient {
 
   @Override
   public Response call(Request req) {
+    return HttpCodec.decode(exchange(req));
+  }
+
+  @Override
+  public BufferedResponse callBuffered(Request req) {
+    return HttpCodec.decodeBuffered(exchange(req));
+  }
+
+  private byte[] exchange(Request req) {
     // https://datatracker.ietf.org/doc/html/rfc2616
 
     List<Header> headers = new ArrayList<>();
@@ -55,7 +64,7 @@ public class VauHttpClientImpl implements HttpClient {
           new String(rxBytes != null ? rxBytes : new byte[0], StandardCharsets.UTF_8));
     }
 
-    return HttpCodec.decode(rxBytes);
+    return rxBytes;
   }
 
   private List<Header> adjustContentLengthHeader(List<Header> headers, int actualSize) {
@@ -360,4 +360,68 @@ class HttpCodecTest {
     var decodedBodyString = new String(decodedResponse.body(), StandardCharsets.UTF_8);
     assertEquals(originalBodyString, decodedBodyString, "Body should match original");
   }
+
+  @Test
+  void decode_shouldPreserveBinaryBody() {
+    // Given
+    var head = "HTTP/1.1 200 OK\r\nContent-Type: application/octet-stream\r\n\r\n";
+    var body = new byte[] {(byte) 0xff, 0x00, (byte) 0xc3, 0x28, '\r', '\n', (byte) 0x80};
+    var responseBytes = concat(head.getBytes(StandardCharsets.UTF_8), body);
+
+    // When
+    var response = HttpCodec.decode(responseBytes);
+
+    // Then
+    assertEquals(200, response.status());
+    assertArrayEquals(body, response.body(), "Binary body must not be re-encoded");
+  }
+
+  @Test
+  void decodeBuffered_shouldReturnSliceOfReceivedBytes() {
+    // Given
+    var responseBytes =
+        """
+        HTTP/1.1 201 Created\r
+        Location: /here\r
+        Content-Length: 5\r
+        \r
+        hello"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    // When
+    var response = HttpCodec.decodeBuffered(responseBytes);
+
+    // Then
+    assertEquals(201, response.status());
+    assertEquals(2, response.headers().size());
+
+    var body = response.body();
+    assertEquals(5, body.remaining());
+    assertTrue(body.isReadOnly());
+
+    var copy = new byte[body.remaining()];
+    body.duplicate().get(copy);
+    assertEquals("hello", new String(copy, StandardCharsets.UTF_8));
+
+    // the body is a view, not a copy
+    responseBytes[responseBytes.length - 1] = '!';
+    assertEquals('!', body.get(4));
+  }
+
+  @Test
+  void decode_shouldFailOnUnterminatedHeaders() {
+    // Given
+    var responseBytes =
+        "HTTP/1.1 200 OK\r\nContent-Type: text/plain".getBytes(StandardCharsets.UTF_8);
+
+    // Then
+    assertThrows(HttpClient.HttpException.class, () -> HttpCodec.decode(responseBytes));
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    var out = new byte[a.length + b.length];
+    System.arraycopy(a, 0, out, 0, a.length);
+    System.arraycopy(b, 0, out, a.length, b.length);
+    return out;
+  }
 }
@@ -0,0 +1,68 @@
+package com.oviva.telematik.vau.proxy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Serves operational endpoints of the proxy, intended to be bound to an internal interface only.
+ *
+ * <ul>
+ *   <li>GET /metrics - Prometheus text format
+ *   <li>GET /sessions - JSON listing of the established VAU sessions
+ * </ul>
+ */
+public class AdminHandler implements HttpHandler {
+
+  private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final ObjectMapper mapper =
+      new ObjectMapper()
+          .registerModule(new JavaTimeModule())
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  private final ProxyMetrics metrics;
+  private final VauProxyHandler proxyHandler;
+
+  public AdminHandler(ProxyMetrics metrics, VauProxyHandler proxyHandler) {
+    this.metrics = metrics;
+    this.proxyHandler = proxyHandler;
+  }
+
+  @Override
+  public void handleRequest(HttpServerExchange exchange) {
+
+    if (!Methods.GET.equals(exchange.getRequestMethod())) {
+      exchange.setStatusCode(StatusCodes.METHOD_NOT_ALLOWED).endExchange();
+      return;
+    }
+
+    switch (exchange.getRequestPath()) {
+      case "/metrics" -> send(exchange, PROMETHEUS_CONTENT_TYPE, metrics.render());
+      case "/sessions" ->
+          send(exchange, "application/json", toJson(Map.of("sessions", proxyHandler.sessions())));
+      default -> exchange.setStatusCode(StatusCodes.NOT_FOUND).endExchange();
+    }
+  }
+
+  private void send(HttpServerExchange exchange, String contentType, String body) {
+    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, contentType);
+    exchange.getResponseSender().send(body, StandardCharsets.UTF_8);
+  }
+
+  private String toJson(Object o) {
+    try {
+      return mapper.writeValueAsString(o);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("failed to write json", e);
+    }
+  }
+}
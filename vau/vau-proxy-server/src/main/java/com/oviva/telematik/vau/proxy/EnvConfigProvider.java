@@ -0,0 +1,26 @@
+package com.oviva.telematik.vau.proxy;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Reads configuration from environment variables, e.g. the name 'listen_port' with prefix
+ * 'VAU_PROXY' is looked up as 'VAU_PROXY_LISTEN_PORT'.
+ */
+public class EnvConfigProvider implements ConfigProvider {
+
+  private final String prefix;
+  private final Function<String, String> getenv;
+
+  public EnvConfigProvider(String prefix, Function<String, String> getenv) {
+    this.prefix = prefix;
+    this.getenv = getenv;
+  }
+
+  @Override
+  public Optional<String> get(String name) {
+    var key = "%s_%s".formatted(prefix, name).toUpperCase(Locale.ROOT).replace('.', '_');
+    return Optional.ofNullable(getenv.apply(key)).filter(v -> !v.isBlank());
+  }
+}
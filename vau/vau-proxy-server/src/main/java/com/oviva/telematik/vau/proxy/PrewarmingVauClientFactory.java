@@ -0,0 +1,126 @@
+package com.oviva.telematik.vau.proxy;
+
+import com.oviva.telematik.vau.httpclient.HttpClient;
+import com.oviva.telematik.vau.httpclient.VauClientFactory;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a number of already handshaked, not yet used VAU sessions per configured endpoint. A fresh
+ * VAU session is not bound to an insurant until the first request, so any of them can be handed out
+ * for a new tunnel. Sessions that are handed out are replenished in the background.
+ */
+public class PrewarmingVauClientFactory implements VauClientFactory {
+
+  private static final Logger log = LoggerFactory.getLogger(PrewarmingVauClientFactory.class);
+
+  private final VauClientFactory delegate;
+  private final Executor executor;
+  private final int sessionsPerEndpoint;
+  private final Duration maxIdle;
+  private final Clock clock;
+
+  private final Map<URI, Pool> idle = new ConcurrentHashMap<>();
+
+  public PrewarmingVauClientFactory(
+      VauClientFactory delegate,
+      Executor executor,
+      List<URI> endpoints,
+      int sessionsPerEndpoint,
+      Duration maxIdle,
+      Clock clock) {
+    this.delegate = delegate;
+    this.executor = executor;
+    this.sessionsPerEndpoint = sessionsPerEndpoint;
+    this.maxIdle = maxIdle;
+    this.clock = clock;
+
+    for (var e : endpoints) {
+      idle.put(normalize(e), new Pool());
+    }
+  }
+
+  /** Handshakes all configured sessions, blocks until done. Failures are logged but not fatal. */
+  public void prewarm() {
+    var pending = new ArrayList<CompletableFuture<Void>>();
+    for (var endpoint : idle.keySet()) {
+      for (int i = 0; i < sessionsPerEndpoint; i++) {
+        pending.add(CompletableFuture.runAsync(() -> replenish(endpoint), executor));
+      }
+    }
+    CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+
+    log.atInfo().log(
+        "pre-warmed {} VAU sessions for {} endpoints", idleSessionCount(), idle.size());
+  }
+
+  @Override
+  public HttpClient connect(URI vauBaseUri) {
+
+    var endpoint = normalize(vauBaseUri);
+    var pool = idle.get(endpoint);
+    if (pool == null) {
+      return delegate.connect(vauBaseUri);
+    }
+
+    var now = clock.instant();
+    IdleSession s;
+    while ((s = pool.sessions.pollFirst()) != null) {
+      pool.slots.decrementAndGet();
+      if (s.createdAt().plus(maxIdle).isAfter(now)) {
+        log.atDebug().log("using pre-warmed VAU session for {}", endpoint);
+        executor.execute(() -> replenish(endpoint));
+        return s.client();
+      }
+
+      // too old, the VAU has likely expired it already
+      executor.execute(() -> replenish(endpoint));
+    }
+
+    return delegate.connect(vauBaseUri);
+  }
+
+  public int idleSessionCount() {
+    return idle.values().stream().mapToInt(p -> p.sessions.size()).sum();
+  }
+
+  private void replenish(URI endpoint) {
+    var pool = idle.get(endpoint);
+    // reserve the slot before the handshake, concurrent replenishments must not overshoot
+    var reserved = pool.slots.getAndUpdate(n -> n < sessionsPerEndpoint ? n + 1 : n);
+    if (reserved >= sessionsPerEndpoint) {
+      return;
+    }
+    try {
+      var client = delegate.connect(endpoint);
+      pool.sessions.addLast(new IdleSession(client, clock.instant()));
+    } catch (RuntimeException e) {
+      pool.slots.decrementAndGet();
+      log.atWarn().setCause(e).log("failed to pre-warm VAU session for {}", endpoint);
+    }
+  }
+
+  private static URI normalize(URI uri) {
+    return URI.create("%s://%s".formatted(uri.getScheme(), uri.getAuthority()));
+  }
+
+  private record IdleSession(HttpClient client, Instant createdAt) {}
+
+  private static final class Pool {
+    private final ConcurrentLinkedDeque<IdleSession> sessions = new ConcurrentLinkedDeque<>();
+    // idle sessions plus those being handshaked
+    private final AtomicInteger slots = new AtomicInteger();
+  }
+}
@@ -0,0 +1,194 @@
+package com.oviva.telematik.vau.proxy;
+
+import com.oviva.telematik.vau.httpclient.VauMetrics;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/** In-memory counters of the VAU proxy, rendered in the Prometheus text exposition format. */
+public class ProxyMetrics implements VauMetrics {
+
+  // seconds, handshakes are four round trips plus signature validation
+  private static final double[] HANDSHAKE_BUCKETS = {0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+  private final Map<String, LongAdder> handshakes = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> handshakeFailures = new ConcurrentHashMap<>();
+  private final LongAdder[] handshakeBuckets = newAdders(HANDSHAKE_BUCKETS.length + 1);
+  private final LongAdder handshakeSecondsMicros = new LongAdder();
+
+  private final AtomicLong inFlight = new AtomicLong();
+  private final Map<StatusKey, LongAdder> responses = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> upstreamErrors = new ConcurrentHashMap<>();
+
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder bytesEncrypted = new LongAdder();
+  private final LongAdder bytesDecrypted = new LongAdder();
+
+  private volatile IntSupplier cacheSize = () -> 0;
+
+  @Override
+  public void handshakeCompleted(URI vauUri, Duration latency) {
+    counter(handshakes, endpoint(vauUri)).increment();
+
+    var seconds = latency.toNanos() / 1e9;
+    var i = 0;
+    while (i < HANDSHAKE_BUCKETS.length && seconds > HANDSHAKE_BUCKETS[i]) {
+      i++;
+    }
+    handshakeBuckets[i].increment();
+    handshakeSecondsMicros.add(latency.toNanos() / 1000);
+  }
+
+  @Override
+  public void handshakeFailed(URI vauUri) {
+    counter(handshakeFailures, endpoint(vauUri)).increment();
+  }
+
+  @Override
+  public void encrypted(int plaintextBytes) {
+    bytesEncrypted.add(plaintextBytes);
+  }
+
+  @Override
+  public void decrypted(int plaintextBytes) {
+    bytesDecrypted.add(plaintextBytes);
+  }
+
+  public void requestStarted() {
+    inFlight.incrementAndGet();
+  }
+
+  public void requestFinished() {
+    inFlight.decrementAndGet();
+  }
+
+  public void upstreamResponse(URI endpoint, int status) {
+    counter(responses, new StatusKey(endpoint(endpoint), status)).increment();
+  }
+
+  public void upstreamError(URI endpoint) {
+    counter(upstreamErrors, endpoint(endpoint)).increment();
+  }
+
+  public void sessionEvicted() {
+    evictions.increment();
+  }
+
+  public void cacheSize(IntSupplier cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  /** Renders all metrics in the Prometheus text format, version 0.0.4. */
+  public String render() {
+    var sb = new StringBuilder(2048);
+
+    header(sb, "vau_proxy_handshakes_total", "counter", "Successful VAU handshakes.");
+    perEndpoint(sb, "vau_proxy_handshakes_total", handshakes);
+
+    header(sb, "vau_proxy_handshake_failures_total", "counter", "Failed VAU handshakes.");
+    perEndpoint(sb, "vau_proxy_handshake_failures_total", handshakeFailures);
+
+    header(sb, "vau_proxy_handshake_duration_seconds", "histogram", "Latency of VAU handshakes.");
+    long cumulative = 0;
+    for (int i = 0; i < HANDSHAKE_BUCKETS.length; i++) {
+      cumulative += handshakeBuckets[i].sum();
+      sb.append("vau_proxy_handshake_duration_seconds_bucket{le=\"")
+          .append(formatDouble(HANDSHAKE_BUCKETS[i]))
+          .append("\"} ")
+          .append(cumulative)
+          .append('\n');
+    }
+    cumulative += handshakeBuckets[HANDSHAKE_BUCKETS.length].sum();
+    sb.append("vau_proxy_handshake_duration_seconds_bucket{le=\"+Inf\"} ")
+        .append(cumulative)
+        .append('\n');
+    sb.append("vau_proxy_handshake_duration_seconds_sum ")
+        .append(formatDouble(handshakeSecondsMicros.sum() / 1e6))
+        .append('\n');
+    sb.append("vau_proxy_handshake_duration_seconds_count ").append(cumulative).append('\n');
+
+    header(sb, "vau_proxy_requests_in_flight", "gauge", "Requests currently being proxied.");
+    sb.append("vau_proxy_requests_in_flight ").append(inFlight.get()).append('\n');
+
+    header(sb, "vau_proxy_responses_total", "counter", "Responses received through VAU tunnels.");
+    var sortedResponses = new TreeMap<String, Long>();
+    responses.forEach(
+        (k, v) ->
+            sortedResponses.put(
+                "{endpoint=\"%s\",status=\"%d\"}".formatted(escape(k.endpoint()), k.status()),
+                v.sum()));
+    sortedResponses.forEach(
+        (labels, v) ->
+            sb.append("vau_proxy_responses_total")
+                .append(labels)
+                .append(' ')
+                .append(v)
+                .append('\n'));
+
+    header(sb, "vau_proxy_upstream_errors_total", "counter", "Failed calls through VAU tunnels.");
+    perEndpoint(sb, "vau_proxy_upstream_errors_total", upstreamErrors);
+
+    header(sb, "vau_proxy_sessions", "gauge", "VAU sessions in the tunnel cache.");
+    sb.append("vau_proxy_sessions ").append(cacheSize.getAsInt()).append('\n');
+
+    header(sb, "vau_proxy_session_evictions_total", "counter", "VAU sessions evicted.");
+    sb.append("vau_proxy_session_evictions_total ").append(evictions.sum()).append('\n');
+
+    header(sb, "vau_proxy_encrypted_bytes_total", "counter", "Plaintext bytes encrypted.");
+    sb.append("vau_proxy_encrypted_bytes_total ").append(bytesEncrypted.sum()).append('\n');
+
+    header(sb, "vau_proxy_decrypted_bytes_total", "counter", "Plaintext bytes decrypted.");
+    sb.append("vau_proxy_decrypted_bytes_total ").append(bytesDecrypted.sum()).append('\n');
+
+    return sb.toString();
+  }
+
+  private static void header(StringBuilder sb, String name, String type, String help) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void perEndpoint(StringBuilder sb, String name, Map<String, LongAdder> values) {
+    new TreeMap<>(values)
+        .forEach(
+            (endpoint, v) ->
+                sb.append(name)
+                    .append("{endpoint=\"")
+                    .append(escape(endpoint))
+                    .append("\"} ")
+                    .append(v.sum())
+                    .append('\n'));
+  }
+
+  private static <K> LongAdder counter(Map<K, LongAdder> counters, K key) {
+    return counters.computeIfAbsent(key, k -> new LongAdder());
+  }
+
+  private static String endpoint(URI uri) {
+    return uri.getHost() != null ? uri.getHost() : String.valueOf(uri);
+  }
+
+  private static String escape(String label) {
+    return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String formatDouble(double d) {
+    return String.format(Locale.ROOT, "%s", d);
+  }
+
+  private static LongAdder[] newAdders(int n) {
+    var adders = new LongAdder[n];
+    for (int i = 0; i < n; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  private record StatusKey(String endpoint, int status) {}
+}
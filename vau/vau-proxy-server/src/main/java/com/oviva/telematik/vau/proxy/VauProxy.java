@@ -1,24 +1,30 @@
 package com.oviva.telematik.vau.proxy;
 
 import com.oviva.telematik.vau.httpclient.HttpClient;
+import com.oviva.telematik.vau.httpclient.VauClientFactory;
 import com.oviva.telematik.vau.httpclient.VauClientFactoryBuilder;
 import com.oviva.telematik.vau.httpclient.internal.JavaHttpClient;
 import com.oviva.telematik.vau.httpclient.internal.LoggingHttpClient;
 import com.oviva.telematik.vau.httpclient.internal.cert.TrustStoreValidator;
 import io.undertow.Undertow;
 import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.GracefulShutdownHandler;
 import io.undertow.server.handlers.RequestDumpingHandler;
 import java.net.InetSocketAddress;
 import java.net.ProxySelector;
+import java.net.URI;
 import java.security.*;
+import java.time.Clock;
 import java.time.Duration;
-import java.util.concurrent.CountDownLatch;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.net.ssl.SSLContext;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import sun.misc.Signal;
 
 public class VauProxy {
 
@@ -29,9 +35,10 @@ public class VauProxy {
     Security.addProvider(new BouncyCastleProvider());
   }
 
-  private final CountDownLatch startedCount = new CountDownLatch(1);
-
   private Undertow proxyServer;
+  private Undertow adminServer;
+  private GracefulShutdownHandler shutdownHandler;
+  private ExecutorService ownedExecutor;
 
   private final Configuration config;
 
@@ -39,23 +46,76 @@ public class VauProxy {
     this.config = config;
   }
 
+  /**
+   * @param upstreamProxy optional HTTP proxy to reach the VAUs, e.g. the Konnektor
+   * @param listenHost the host to bind to, defaults to 'localhost'
+   * @param listenPort the port to bind to, '0' picks a random free port
+   * @param prewarming optional sessions to handshake at startup
+   * @param adminListenAddress optional address to serve metrics and session introspection on
+   */
   public record Configuration(
       InetSocketAddress upstreamProxy,
+      String listenHost,
       int listenPort,
       boolean isPu,
       String xUserAgent,
       SSLContext outerVauSslContext,
-      KeyStore trustStore) {}
+      KeyStore trustStore,
+      ThreadModel threadModel,
+      Prewarming prewarming,
+      InetSocketAddress adminListenAddress) {}
+
+  /**
+   * VAU sessions to handshake ahead of time so that new tunnels do not pay the handshake cost.
+   *
+   * @param endpoints the VAU base URIs, e.g. 'https://epa-as-1.dev.epa4all.de'
+   * @param sessionsPerEndpoint number of unused sessions to keep per endpoint
+   * @param maxIdle unused sessions older than this are discarded
+   */
+  public record Prewarming(List<URI> endpoints, int sessionsPerEndpoint, Duration maxIdle) {}
+
+  /**
+   * Thread model of the proxy. Every proxied request blocks on (at least) one round trip to the
+   * VAU, so the number of concurrent requests is bounded by the number of workers.
+   *
+   * @param ioThreads number of Undertow IO threads, these never block
+   * @param workerThreads size of the Undertow worker pool, ignored if virtual workers are used
+   * @param virtualWorkers if true, each request is dispatched onto its own virtual thread instead
+   *     of the fixed worker pool
+   * @param executor optional executor shared by the outer JDK HTTP client and - with virtual
+   *     workers - the request dispatch, if null the proxy creates its own as needed
+   */
+  public record ThreadModel(
+      int ioThreads, int workerThreads, boolean virtualWorkers, Executor executor) {
+
+    public static ThreadModel defaults() {
+      return new ThreadModel(2, 4, false, null);
+    }
+
+    public static ThreadModel virtualThreads() {
+      return new ThreadModel(2, 0, true, null);
+    }
+  }
 
-  public record ServerInfo(InetSocketAddress listenAddress) {}
+  /**
+   * @param adminListenAddress the address of the admin listener, null if disabled
+   */
+  public record ServerInfo(InetSocketAddress listenAddress, InetSocketAddress adminListenAddress) {}
 
   public ServerInfo start() {
 
+    var threadModel = config.threadModel() != null ? config.threadModel() : ThreadModel.defaults();
+    var executor = determineExecutor(threadModel);
+
     var outerVauClientBuilder =
         java.net.http.HttpClient.newBuilder()
             .sslContext(config.outerVauSslContext())
             .connectTimeout(Duration.ofSeconds(10));
 
+    if (executor != null) {
+      outerVauClientBuilder.executor(executor);
+    }
+
     if (config.upstreamProxy() != null) {
       outerVauClientBuilder.proxy(ProxySelector.of(config.upstreamProxy()));
     }
@@ -66,28 +126,42 @@ public class VauProxy {
       outerVauClient = new LoggingHttpClient(outerVauClient, log);
     }
 
+    var metrics = new ProxyMetrics();
+
     // connect VAU tunnel
-    var clientFactory =
+    VauClientFactory clientFactory =
         VauClientFactoryBuilder.newBuilder()
+            .metrics(metrics)
             .xUserAgent(config.xUserAgent())
             .outerClient(outerVauClient)
             .isPu(config.isPu())
             .trustValidator(new TrustStoreValidator(config.trustStore()))
             .build();
 
-    HttpHandler handler = new VauProxyHandler(clientFactory);
+    clientFactory = prewarm(clientFactory, executor);
+
+    // with virtual workers blocking requests leave the Undertow worker pool entirely
+    var dispatchExecutor = threadModel.virtualWorkers() ? executor : null;
+    var proxyHandler =
+        new VauProxyHandler(clientFactory, dispatchExecutor, metrics, Clock.systemUTC());
+    HttpHandler handler = proxyHandler;
     if (log.isDebugEnabled()) {
       handler = new RequestDumpingHandler(handler);
     }
+    shutdownHandler = new GracefulShutdownHandler(handler);
 
-    proxyServer =
+    var listenHost = config.listenHost() != null ? config.listenHost() : "localhost";
+    var serverBuilder =
         Undertow.builder()
-            // TODO: configurable
-            .addHttpListener(config.listenPort(), "localhost")
-            .setIoThreads(2)
-            .setWorkerThreads(4)
-            .setHandler(handler)
-            .build();
+            .addHttpListener(config.listenPort(), listenHost)
+            .setIoThreads(threadModel.ioThreads())
+            .setHandler(shutdownHandler);
+
+    if (!threadModel.virtualWorkers()) {
+      serverBuilder.setWorkerThreads(threadModel.workerThreads());
+    }
+
+    proxyServer = serverBuilder.build();
 
     proxyServer.start();
 
@@ -95,13 +169,108 @@ public class VauProxy {
     var addr = (InetSocketAddress) listener.getAddress();
     log.info("VAU proxy started at {}", addr);
 
-    Signal.handle(new Signal("INT"), signal -> startedCount.countDown());
-    return new ServerInfo(addr);
+    var adminAddr = startAdminServer(new AdminHandler(metrics, proxyHandler));
+
+    return new ServerInfo(addr, adminAddr);
+  }
+
+  private InetSocketAddress startAdminServer(AdminHandler handler) {
+    var listen = config.adminListenAddress();
+    if (listen == null) {
+      return null;
+    }
+
+    adminServer =
+        Undertow.builder()
+            .addHttpListener(listen.getPort(), listen.getHostString())
+            .setIoThreads(1)
+            .setWorkerThreads(1)
+            .setHandler(handler)
+            .build();
+    adminServer.start();
+
+    var addr = (InetSocketAddress) adminServer.getListenerInfo().get(0).getAddress();
+    log.info("VAU proxy admin listener started at {}", addr);
+    return addr;
+  }
+
+  private VauClientFactory prewarm(VauClientFactory clientFactory, Executor executor) {
+    var prewarming = config.prewarming();
+    if (prewarming == null
+        || prewarming.endpoints() == null
+        || prewarming.endpoints().isEmpty()
+        || prewarming.sessionsPerEndpoint() <= 0) {
+      return clientFactory;
+    }
+
+    if (executor == null) {
+      executor = ownedExecutor();
+    }
+
+    var prewarmingFactory =
+        new PrewarmingVauClientFactory(
+            clientFactory,
+            executor,
+            prewarming.endpoints(),
+            prewarming.sessionsPerEndpoint(),
+            prewarming.maxIdle() != null ? prewarming.maxIdle() : Duration.ofMinutes(10),
+            Clock.systemUTC());
+    prewarmingFactory.prewarm();
+    return prewarmingFactory;
+  }
+
+  private Executor determineExecutor(ThreadModel threadModel) {
+    if (threadModel.executor() != null) {
+      return threadModel.executor();
+    }
+    if (threadModel.virtualWorkers()) {
+      return ownedExecutor();
+    }
+
+    // use the JDK HTTP client default
+    return null;
+  }
+
+  private ExecutorService ownedExecutor() {
+    if (ownedExecutor == null) {
+      ownedExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+    return ownedExecutor;
+  }
+
+  /**
+   * Stops accepting new requests and waits for in-flight requests to complete before stopping the
+   * server.
+   *
+   * @return true if all in-flight requests completed within the timeout
+   */
+  public boolean shutdown(Duration drainTimeout) {
+    var drained = true;
+    if (shutdownHandler != null) {
+      shutdownHandler.shutdown();
+      try {
+        drained = shutdownHandler.awaitShutdown(drainTimeout.toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        drained = false;
+      }
+      if (!drained) {
+        log.atWarn().log("VAU proxy did not drain within {}, stopping anyway", drainTimeout);
+      }
+    }
+    stop();
+    return drained;
   }
 
   public void stop() {
     if (proxyServer != null) {
       proxyServer.stop();
     }
+    if (adminServer != null) {
+      adminServer.stop();
+    }
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+    }
   }
 }
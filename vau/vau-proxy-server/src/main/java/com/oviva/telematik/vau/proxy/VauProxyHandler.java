@@ -5,29 +5,65 @@ import com.oviva.telematik.vau.httpclient.VauClientFactory;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.AttachmentKey;
+import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
 import io.undertow.util.Methods;
 import io.undertow.util.StatusCodes;
 import java.net.URI;
-import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class VauProxyHandler implements HttpHandler {
 
-  private static final AttachmentKey<HttpClient> UPSTREAM_KEY =
-      AttachmentKey.create(HttpClient.class);
+  private static final AttachmentKey<Session> UPSTREAM_KEY = AttachmentKey.create(Session.class);
   private static final Logger log = LoggerFactory.getLogger(VauProxyHandler.class);
 
-  private final ConcurrentHashMap<CacheKey, HttpClient> clientCache = new ConcurrentHashMap<>();
+  // random per process, the insurant ids are too few to hide behind a plain hash
+  private static final SecretKeySpec INSURANT_HASH_KEY =
+      new SecretKeySpec(randomBytes(32), "HmacSHA256");
+
+  private final ConcurrentHashMap<CacheKey, CompletableFuture<Session>> clientCache =
+      new ConcurrentHashMap<>();
 
   private final VauClientFactory vauClientFactory;
+  private final Executor dispatchExecutor;
+  private final ProxyMetrics metrics;
+  private final Clock clock;
 
   public VauProxyHandler(VauClientFactory vauClientFactory) {
+    this(vauClientFactory, null, new ProxyMetrics(), Clock.systemUTC());
+  }
+
+  /**
+   * @param dispatchExecutor the executor blocking requests are dispatched to, if null the Undertow
+   *     worker pool is used
+   */
+  public VauProxyHandler(
+      VauClientFactory vauClientFactory,
+      Executor dispatchExecutor,
+      ProxyMetrics metrics,
+      Clock clock) {
     this.vauClientFactory = vauClientFactory;
+    this.dispatchExecutor = dispatchExecutor;
+    this.metrics = metrics;
+    this.clock = clock;
+    metrics.cacheSize(clientCache::size);
   }
 
   @Override
@@ -41,38 +77,84 @@ public class VauProxyHandler implements HttpHandler {
 
     var blocking = exchange.startBlocking();
     if (exchange.isInIoThread()) {
-      exchange.dispatch(this);
+      if (dispatchExecutor != null) {
+        exchange.dispatch(dispatchExecutor, this);
+      } else {
+        exchange.dispatch(this);
+      }
       return;
     }
 
+    metrics.requestStarted();
+    exchange.addExchangeCompleteListener(
+        (ex, next) -> {
+          metrics.requestFinished();
+          next.proceed();
+        });
+
     blocking
         .getReceiver()
         .receiveFullBytes(
             (fbex, requestBytes) -> {
 
               // open or re-use a VAU tunnel
-              var httpClient = getOrCreateUpstream(fbex);
+              var session = getOrCreateUpstream(fbex);
               var req = prepareRequest(fbex, requestBytes);
-              HttpClient.Response res = null;
+              HttpClient.BufferedResponse res = null;
               try {
-                res = httpClient.call(req);
+                session.requests().increment();
+                res = session.client().callBuffered(req);
               } catch (HttpClient.HttpException e) {
                 log.atDebug()
                     .setCause(e)
                     .log("upstream VAU call failed: %s".formatted(e.getMessage()));
+                metrics.upstreamError(session.key().uri());
+
+                // the tunnel is likely broken, the next request will do a new handshake
+                evict(session);
                 fbex.setStatusCode(StatusCodes.BAD_GATEWAY).endExchange();
                 return;
               }
+              metrics.upstreamResponse(session.key().uri(), res.status());
               sendResponse(fbex, res);
             });
   }
 
-  private synchronized HttpClient getOrCreateUpstream(HttpServerExchange exchange) {
+  /** Returns a snapshot of all established VAU sessions. */
+  public List<SessionInfo> sessions() {
+    var now = clock.instant();
+    var infos = new ArrayList<SessionInfo>();
+    for (var f : clientCache.values()) {
+      var s = f.getNow(null);
+      if (s == null || f.isCompletedExceptionally()) {
+        continue;
+      }
+      infos.add(
+          new SessionInfo(
+              s.key().uri().toString(),
+              hashInsurantId(s.key().insurantId()),
+              s.createdAt(),
+              Duration.between(s.createdAt(), now).toSeconds(),
+              s.requests().sum()));
+    }
+    return infos;
+  }
 
-    var client = exchange.getAttachment(UPSTREAM_KEY);
+  /**
+   * Information about an established VAU session, the insurant id is hashed to not leak it.
+   *
+   * @param insurantHash truncated HMAC-SHA256 of the insurant id with a key random per process,
+   *     correlates sessions of the same insurant without revealing it; null if none was given
+   */
+  public record SessionInfo(
+      String endpoint, String insurantHash, Instant createdAt, long ageSeconds, long requests) {}
+
+  private Session getOrCreateUpstream(HttpServerExchange exchange) {
+
+    var session = exchange.getAttachment(UPSTREAM_KEY);
     // TODO should we verify that the client is for the right upstream AND insurantId?
-    if (client != null) {
-      return client;
+    if (session != null) {
+      return session;
     }
 
     var requestUri = URI.create(exchange.getRequestURI());
@@ -83,29 +165,102 @@ public class VauProxyHandler implements HttpHandler {
     var insurantId = exchange.getRequestHeaders().getFirst("x-insurantid");
     var key = new CacheKey(upstreamEndpoint, insurantId);
 
-    return clientCache.computeIfAbsent(
-        key,
-        upstream -> {
-          var newClient = vauClientFactory.connect(upstream.uri());
-          exchange.putAttachment(UPSTREAM_KEY, newClient);
-          return newClient;
-        });
+    session = connectOnce(key);
+    exchange.putAttachment(UPSTREAM_KEY, session);
+    return session;
   }
 
-  private void sendResponse(HttpServerExchange exchange, HttpClient.Response res) {
+  /**
+   * Concurrent requests for the same key share a single VAU handshake. The handshake itself runs
+   * outside any lock so that (virtual) threads waiting for other tunnels are not blocked.
+   */
+  private Session connectOnce(CacheKey key) {
+
+    var pending = new CompletableFuture<Session>();
+    var existing = clientCache.putIfAbsent(key, pending);
+    if (existing != null) {
+      return await(existing);
+    }
+
+    try {
+      var client = vauClientFactory.connect(key.uri());
+      pending.complete(new Session(key, client, clock.instant(), new LongAdder()));
+    } catch (RuntimeException e) {
+      // do not cache failed handshakes, the next request retries
+      clientCache.remove(key, pending);
+      pending.completeExceptionally(e);
+    }
+    return await(pending);
+  }
+
+  private void evict(Session session) {
+    var current = clientCache.get(session.key());
+    if (current != null
+        && current.getNow(null) == session
+        && clientCache.remove(session.key(), current)) {
+      metrics.sessionEvicted();
+    }
+  }
+
+  private Session await(CompletableFuture<Session> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw e;
+    }
+  }
+
+  private static String hashInsurantId(String insurantId) {
+    if (insurantId == null) {
+      return null;
+    }
+    try {
+      var mac = Mac.getInstance("HmacSHA256");
+      mac.init(INSURANT_HASH_KEY);
+      var digest = mac.doFinal(insurantId.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest, 0, 8);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("HmacSHA256 not available", e);
+    }
+  }
+
+  private static byte[] randomBytes(int length) {
+    var bytes = new byte[length];
+    new SecureRandom().nextBytes(bytes);
+    return bytes;
+  }
+
+  private void sendResponse(HttpServerExchange exchange, HttpClient.BufferedResponse res) {
 
     for (var h : res.headers()) {
+      // the framing is determined by the actual body we got out of the VAU tunnel, some VAUs do
+      // not send a (correct) content-length
+      if (isFramingHeader(h)) {
+        continue;
+      }
       exchange.getResponseHeaders().add(HttpString.tryFromString(h.name()), h.value());
     }
 
     exchange.setStatusCode(res.status());
+
+    // the body is a view into the decrypted VAU message, no need to copy it again
     var body = res.body();
-    if (body != null && body.length > 0) {
-      exchange.getResponseSender().send(ByteBuffer.wrap(body));
+    var length = body != null ? body.remaining() : 0;
+    exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, length);
+    if (length > 0) {
+      exchange.getResponseSender().send(body);
     }
     exchange.endExchange();
   }
 
+  private boolean isFramingHeader(HttpClient.Header h) {
+    return Headers.CONTENT_LENGTH_STRING.equalsIgnoreCase(h.name())
+        || Headers.TRANSFER_ENCODING_STRING.equalsIgnoreCase(h.name());
+  }
+
   private HttpClient.Request prepareRequest(HttpServerExchange exchange, byte[] body) {
     var method = exchange.getRequestMethod().toString();
     var headers = exchange.getRequestHeaders();
@@ -127,4 +282,6 @@ public class VauProxyHandler implements HttpHandler {
   }
 
   record CacheKey(URI uri, String insurantId) {}
+
+  private record Session(CacheKey key, HttpClient client, Instant createdAt, LongAdder requests) {}
 }
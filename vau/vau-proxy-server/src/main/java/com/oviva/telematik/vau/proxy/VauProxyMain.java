@@ -0,0 +1,222 @@
+package com.oviva.telematik.vau.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.Security;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the VAU proxy as a standalone, long-running process. Several application instances can share
+ * the proxy and its (pre-warmed) VAU sessions.
+ *
+ * <p>All configuration is read from the environment, prefixed with 'VAU_PROXY_':
+ *
+ * <ul>
+ *   <li>LISTEN_HOST, LISTEN_PORT - where to accept proxy requests, default 'localhost:7080'
+ *   <li>UPSTREAM_PROXY - optional 'host:port' of an HTTP proxy to reach the VAUs
+ *   <li>ENVIRONMENT - 'PU' or 'RU', default 'RU'
+ *   <li>X_USER_AGENT - the registered product identifier, required
+ *   <li>TRUST_STORE_PATH, TRUST_STORE_PASSWORD - optional PKCS#12 with the TI root certificates,
+ *       defaults to the bundled roots of the environment
+ *   <li>OUTER_TRUST_STORE_PATH, OUTER_TRUST_STORE_PASSWORD - optional PKCS#12 with the CAs trusted
+ *       for the outer TLS connection to the VAUs, defaults to the JVM's default trust store
+ *   <li>IO_THREADS, WORKER_THREADS, VIRTUAL_THREADS - see {@link VauProxy.ThreadModel}
+ *   <li>PREWARM_ENDPOINTS - comma separated VAU base URIs to handshake sessions for at startup
+ *   <li>PREWARM_SESSIONS, PREWARM_MAX_IDLE - sessions per endpoint and their maximum age
+ *   <li>ADMIN_LISTEN_HOST, ADMIN_LISTEN_PORT - optional listener serving '/metrics' and
+ *       '/sessions', disabled unless a port is set
+ *   <li>SHUTDOWN_DRAIN_TIMEOUT - time to wait for in-flight requests on shutdown, e.g. 'PT30S'
+ * </ul>
+ */
+public class VauProxyMain {
+
+  private static final Logger log = LoggerFactory.getLogger(VauProxyMain.class);
+
+  private static final String CONFIG_PREFIX = "VAU_PROXY";
+  private static final String BUNDLED_TRUST_STORE_PW = "1234";
+
+  static {
+    Security.addProvider(new BouncyCastlePQCProvider());
+    Security.addProvider(new BouncyCastleProvider());
+  }
+
+  private final ConfigProvider config;
+
+  public VauProxyMain(ConfigProvider config) {
+    this.config = config;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    var main = new VauProxyMain(new EnvConfigProvider(CONFIG_PREFIX, System::getenv));
+    var proxy = new VauProxy(main.loadConfiguration());
+    var drainTimeout = main.drainTimeout();
+
+    var stopped = new CountDownLatch(1);
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  log.atInfo().log("shutting down VAU proxy, draining for up to {}", drainTimeout);
+                  proxy.shutdown(drainTimeout);
+                  stopped.countDown();
+                },
+                "vau-proxy-shutdown"));
+
+    proxy.start();
+    stopped.await();
+  }
+
+  public VauProxy.Configuration loadConfiguration() {
+
+    var isPu = config.get("environment").map("PU"::equalsIgnoreCase).orElse(false);
+
+    var listenHost = config.get("listen_host").orElse("localhost");
+    var listenPort = config.get("listen_port").map(Integer::parseInt).orElse(7080);
+
+    var upstreamProxy = config.get("upstream_proxy").map(VauProxyMain::parseHostPort).orElse(null);
+
+    var xUserAgent =
+        config
+            .get("x_user_agent")
+            .orElseThrow(() -> new IllegalArgumentException("missing config: x_user_agent"));
+
+    return new VauProxy.Configuration(
+        upstreamProxy,
+        listenHost,
+        listenPort,
+        isPu,
+        xUserAgent,
+        loadOuterSslContext(),
+        loadTrustStore(isPu),
+        loadThreadModel(),
+        loadPrewarming(),
+        loadAdminListenAddress());
+  }
+
+  private InetSocketAddress loadAdminListenAddress() {
+    return config
+        .get("admin_listen_port")
+        .map(Integer::parseInt)
+        .map(
+            port ->
+                new InetSocketAddress(config.get("admin_listen_host").orElse("localhost"), port))
+        .orElse(null);
+  }
+
+  public Duration drainTimeout() {
+    return config.get("shutdown_drain_timeout").map(Duration::parse).orElse(Duration.ofSeconds(30));
+  }
+
+  private VauProxy.ThreadModel loadThreadModel() {
+    var defaults = VauProxy.ThreadModel.defaults();
+    var virtual = config.get("virtual_threads").map(Boolean::parseBoolean).orElse(true);
+    var ioThreads = config.get("io_threads").map(Integer::parseInt).orElse(defaults.ioThreads());
+    var workerThreads =
+        config.get("worker_threads").map(Integer::parseInt).orElse(defaults.workerThreads());
+    return new VauProxy.ThreadModel(ioThreads, workerThreads, virtual, null);
+  }
+
+  private VauProxy.Prewarming loadPrewarming() {
+    var endpoints =
+        config
+            .get("prewarm_endpoints")
+            .map(
+                s ->
+                    Arrays.stream(s.split(","))
+                        .map(String::trim)
+                        .filter(e -> !e.isEmpty())
+                        .map(URI::create)
+                        .toList())
+            .orElse(List.of());
+    if (endpoints.isEmpty()) {
+      return null;
+    }
+
+    var sessions = config.get("prewarm_sessions").map(Integer::parseInt).orElse(1);
+    var maxIdle =
+        config.get("prewarm_max_idle").map(Duration::parse).orElse(Duration.ofMinutes(10));
+    return new VauProxy.Prewarming(endpoints, sessions, maxIdle);
+  }
+
+  private KeyStore loadTrustStore(boolean isPu) {
+    var path = config.get("trust_store_path");
+    if (path.isPresent()) {
+      return readP12(path.get(), config.get("trust_store_password").orElse(""));
+    }
+
+    var bundled = isPu ? "/root-ca-pu.p12" : "/root-ca-test.p12";
+    return loadP12(
+        VauProxyMain.class.getResourceAsStream(bundled), BUNDLED_TRUST_STORE_PW, bundled);
+  }
+
+  private SSLContext loadOuterSslContext() {
+    var path = config.get("outer_trust_store_path");
+    if (path.isEmpty()) {
+      return defaultSslContext();
+    }
+
+    var trustStore = readP12(path.get(), config.get("outer_trust_store_password").orElse(""));
+    try {
+      var tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      tmf.init(trustStore);
+      var ctx = SSLContext.getInstance("TLS");
+      ctx.init(null, tmf.getTrustManagers(), null);
+      return ctx;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("failed to create outer TLS context", e);
+    }
+  }
+
+  private static KeyStore readP12(String path, String password) {
+    try (var is = Files.newInputStream(Path.of(path))) {
+      return loadP12(is, password, path);
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to read trust store: " + path, e);
+    }
+  }
+
+  private static KeyStore loadP12(InputStream is, String password, String name) {
+    try {
+      var ks = KeyStore.getInstance("PKCS12", BouncyCastleProvider.PROVIDER_NAME);
+      ks.load(is, password.toCharArray());
+      if (ks.size() == 0) {
+        throw new IllegalStateException("trust store %s is empty".formatted(name));
+      }
+      return ks;
+    } catch (GeneralSecurityException | IOException e) {
+      throw new IllegalStateException("failed to load trust store: " + name, e);
+    }
+  }
+
+  private static SSLContext defaultSslContext() {
+    try {
+      return SSLContext.getDefault();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("no default TLS context available", e);
+    }
+  }
+
+  private static InetSocketAddress parseHostPort(String hostPort) {
+    var uri = URI.create("http://" + hostPort.trim());
+    if (uri.getHost() == null || uri.getPort() < 0) {
+      throw new IllegalArgumentException("invalid upstream_proxy: '%s'".formatted(hostPort));
+    }
+    return new InetSocketAddress(uri.getHost(), uri.getPort());
+  }
+}
@@ -0,0 +1,133 @@
+package com.oviva.telematik.vau.proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.oviva.telematik.vau.httpclient.HttpClient;
+import com.oviva.telematik.vau.httpclient.VauClientFactory;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PrewarmingVauClientFactoryTest {
+
+  private static final URI ENDPOINT = URI.create("https://epa-as-1.dev.epa4all.de");
+  private static final Executor DIRECT = Runnable::run;
+
+  @Mock private VauClientFactory delegate;
+
+  @Test
+  void connect_shouldHandOutPrewarmedSession() {
+    // Given
+    var prewarmed = mock(HttpClient.class);
+    var replenished = mock(HttpClient.class);
+    when(delegate.connect(ENDPOINT)).thenReturn(prewarmed, replenished);
+
+    var factory = newFactory(Clock.systemUTC());
+    factory.prewarm();
+
+    // When
+    var client = factory.connect(URI.create("https://epa-as-1.dev.epa4all.de/"));
+
+    // Then
+    assertSame(prewarmed, client);
+    assertEquals(1, factory.idleSessionCount(), "should have been replenished");
+    verify(delegate, times(2)).connect(ENDPOINT);
+  }
+
+  @Test
+  void connect_shouldDelegate_forUnknownEndpoint() {
+    // Given
+    var other = URI.create("https://epa-as-2.dev.epa4all.de");
+    var client = mock(HttpClient.class);
+    when(delegate.connect(other)).thenReturn(client);
+
+    var factory = newFactory(Clock.systemUTC());
+
+    // When
+    var got = factory.connect(other);
+
+    // Then
+    assertSame(client, got);
+  }
+
+  @Test
+  void connect_shouldDiscardExpiredSessions() {
+    // Given
+    var clock = mock(Clock.class);
+    when(clock.instant()).thenReturn(Instant.EPOCH);
+
+    var stale = mock(HttpClient.class);
+    var fresh = mock(HttpClient.class);
+    when(delegate.connect(ENDPOINT)).thenReturn(stale, fresh, fresh, fresh);
+
+    var factory = newFactory(clock);
+    factory.prewarm();
+
+    when(clock.instant()).thenReturn(Instant.EPOCH.plus(Duration.ofHours(1)));
+
+    // When
+    var client = factory.connect(ENDPOINT);
+
+    // Then
+    assertNotSame(stale, client);
+  }
+
+  @Test
+  void prewarm_shouldTolerateFailedHandshakes() {
+    // Given
+    when(delegate.connect(ENDPOINT)).thenThrow(new HttpClient.HttpException("nope"));
+
+    var factory = newFactory(Clock.fixed(Instant.EPOCH, ZoneOffset.UTC));
+
+    // When
+    factory.prewarm();
+
+    // Then
+    assertEquals(0, factory.idleSessionCount());
+  }
+
+  @Test
+  void prewarm_shouldNotOvershootSessionsPerEndpoint() throws Exception {
+    // Given
+    when(delegate.connect(ENDPOINT))
+        .then(
+            i -> {
+              // slow handshake, concurrent replenishments overlap
+              Thread.sleep(50);
+              return mock(HttpClient.class);
+            });
+
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var factory =
+          new PrewarmingVauClientFactory(
+              delegate, executor, List.of(ENDPOINT), 2, Duration.ofMinutes(10), Clock.systemUTC());
+
+      // When
+      var first = executor.submit(factory::prewarm);
+      var second = executor.submit(factory::prewarm);
+      first.get(5, TimeUnit.SECONDS);
+      second.get(5, TimeUnit.SECONDS);
+
+      // Then
+      assertEquals(2, factory.idleSessionCount());
+      verify(delegate, times(2)).connect(ENDPOINT);
+    }
+  }
+
+  private PrewarmingVauClientFactory newFactory(Clock clock) {
+    return new PrewarmingVauClientFactory(
+        delegate, DIRECT, List.of(ENDPOINT), 1, Duration.ofMinutes(10), clock);
+  }
+}
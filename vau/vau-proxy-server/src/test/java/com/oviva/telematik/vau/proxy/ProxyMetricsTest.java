@@ -0,0 +1,66 @@
+package com.oviva.telematik.vau.proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class ProxyMetricsTest {
+
+  private static final URI ENDPOINT = URI.create("https://epa-as-1.dev.epa4all.de");
+
+  @Test
+  void render_shouldExposeHandshakeHistogram() {
+    // Given
+    var metrics = new ProxyMetrics();
+    metrics.handshakeCompleted(ENDPOINT, Duration.ofMillis(80));
+    metrics.handshakeCompleted(ENDPOINT, Duration.ofMillis(700));
+    metrics.handshakeCompleted(ENDPOINT, Duration.ofSeconds(30));
+
+    // When
+    var text = metrics.render();
+
+    // Then
+    assertTrue(
+        text.contains("vau_proxy_handshakes_total{endpoint=\"epa-as-1.dev.epa4all.de\"} 3\n"));
+    assertTrue(text.contains("vau_proxy_handshake_duration_seconds_bucket{le=\"0.05\"} 0\n"));
+    assertTrue(text.contains("vau_proxy_handshake_duration_seconds_bucket{le=\"0.1\"} 1\n"));
+    assertTrue(text.contains("vau_proxy_handshake_duration_seconds_bucket{le=\"1.0\"} 2\n"));
+    assertTrue(text.contains("vau_proxy_handshake_duration_seconds_bucket{le=\"10.0\"} 2\n"));
+    assertTrue(text.contains("vau_proxy_handshake_duration_seconds_bucket{le=\"+Inf\"} 3\n"));
+    assertTrue(text.contains("vau_proxy_handshake_duration_seconds_count 3\n"));
+  }
+
+  @Test
+  void render_shouldExposeRequestCounters() {
+    // Given
+    var metrics = new ProxyMetrics();
+    metrics.cacheSize(() -> 7);
+    metrics.requestStarted();
+    metrics.requestStarted();
+    metrics.requestFinished();
+    metrics.upstreamResponse(ENDPOINT, 200);
+    metrics.upstreamResponse(ENDPOINT, 200);
+    metrics.upstreamResponse(ENDPOINT, 403);
+    metrics.sessionEvicted();
+    metrics.encrypted(100);
+    metrics.decrypted(250);
+
+    // When
+    var text = metrics.render();
+
+    // Then
+    assertTrue(text.contains("vau_proxy_requests_in_flight 1\n"));
+    assertTrue(
+        text.contains(
+            "vau_proxy_responses_total{endpoint=\"epa-as-1.dev.epa4all.de\",status=\"200\"} 2\n"));
+    assertTrue(
+        text.contains(
+            "vau_proxy_responses_total{endpoint=\"epa-as-1.dev.epa4all.de\",status=\"403\"} 1\n"));
+    assertTrue(text.contains("vau_proxy_sessions 7\n"));
+    assertTrue(text.contains("vau_proxy_session_evictions_total 1\n"));
+    assertTrue(text.contains("vau_proxy_encrypted_bytes_total 100\n"));
+    assertTrue(text.contains("vau_proxy_decrypted_bytes_total 250\n"));
+  }
+}